@@ -0,0 +1,142 @@
+package crossword;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of looking up every cell of a square grid in a map of cells, keyed by Points
+ * with the hash row + col that Point used to have, by Points with Point's hash, and by packed
+ * longs in a PackedCellMap; and of building the CellGrid of a puzzle with an entry across
+ * every row and down every column of such a grid.
+ *
+ * Command: java -cp bin:lib/* org.openjdk.jmh.Main CellLookupBenchmark [-p side=100,500]
+ * (on Windows, -cp "bin;lib/*"). side is the number of rows and of columns of a grid, and
+ * each lookup operation looks up every cell of the grid once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CellLookupBenchmark {
+
+    /* A point hashed as Point was before, so that every cell of an anti-diagonal collides */
+    private static class DiagonalPoint {
+        private final int row;
+        private final int col;
+
+        private DiagonalPoint(int row, int col) {
+            this.row = row;
+            this.col = col;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof DiagonalPoint && ((DiagonalPoint) other).row == row
+                    && ((DiagonalPoint) other).col == col;
+        }
+
+        @Override
+        public int hashCode() {
+            return row + col;
+        }
+    }
+
+    @Param({ "100", "500" })
+    public int side;
+
+    private Map<DiagonalPoint, Integer> diagonal;
+    private Map<Point, Integer> points;
+    private PackedCellMap packed;
+    private Map<Integer, PuzzleEntry> entries;
+
+    /**
+     * Fills the maps with every cell of the grid, and makes the entries of the full grid.
+     */
+    @Setup
+    public void setUp() {
+        diagonal = new HashMap<>();
+        points = new HashMap<>();
+        packed = new PackedCellMap(side * side);
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                diagonal.put(new DiagonalPoint(row, col), row * side + col);
+                points.put(new Point(row, col), row * side + col);
+                packed.put(PackedCellMap.key(row, col), row * side + col);
+            }
+        }
+        entries = new HashMap<>();
+        final String word = "a".repeat(side);
+        for (int line = 0; line < side; line++) {
+            entries.put(entries.size(), new PuzzleEntry(word, "row", Orientation.ACROSS, new Point(line, 0)));
+            entries.put(entries.size(), new PuzzleEntry(word, "column", Orientation.DOWN, new Point(0, line)));
+        }
+        if (new CellGrid(entries).cellCount() != side * side) {
+            throw new IllegalStateException("grid of side " + side + " has the wrong number of cells");
+        }
+    }
+
+    /**
+     * @return sum of the cells' values, looked up by row + col hash
+     */
+    @Benchmark
+    public long hashMapDiagonalHash() {
+        long sum = 0;
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                sum += diagonal.get(new DiagonalPoint(row, col));
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return sum of the cells' values, looked up by Point hash
+     */
+    @Benchmark
+    public long hashMapPointHash() {
+        long sum = 0;
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                sum += points.get(new Point(row, col));
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return sum of the cells' values, looked up by packed key
+     */
+    @Benchmark
+    public long packedCellMap() {
+        long sum = 0;
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                sum += packed.get(PackedCellMap.key(row, col));
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return grid of the full grid's entries
+     */
+    @Benchmark
+    public CellGrid cellGridOfFullGrid() {
+        return new CellGrid(entries);
+    }
+}
@@ -0,0 +1,135 @@
+package crossword;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark comparing the conflict check a TRY or CHALLENGE makes, finding the player
+ * entries that disagree with a guess, done by hashing every letter of every player entry
+ * (as Match.getInconsistentWords did) and by walking the puzzle's crossing graph.
+ *
+ * Command: java -cp bin:lib/* org.openjdk.jmh.Main ConflictCheckBenchmark [-p size=1000,10000]
+ * (on Windows, -cp "bin;lib/*"). size is the number of entries of a generated puzzle whose
+ * entries, all but one, have been guessed correctly; every check is for a guess that
+ * conflicts at one crossing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConflictCheckBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int size;
+
+    private PlayablePuzzle playable;
+    private List<PuzzleEntry> guesses;
+    private int next = 0;
+
+    /**
+     * Guesses all but the last entry of a generated puzzle, and makes the conflicting guesses.
+     */
+    @Setup
+    public void setUp() {
+        final Puzzle puzzle = PuzzleGenerator.generate(size);
+        playable = new PlayablePuzzle(puzzle);
+        playable.seatPlayer(PlayablePuzzle.SEAT_ONE, new Player("one"));
+        guesses = new ArrayList<>();
+        for (int wordID = 0; wordID < size; wordID++) {
+            PuzzleEntry entry = puzzle.getEntries().get(wordID);
+            if (wordID < size - 1) {
+                playable.addPlayerEntry(wordID, PlayablePuzzle.SEAT_ONE, entry);
+            }
+            // changes the first letter, which another entry crosses
+            String word = entry.getWord();
+            guesses.add(new PuzzleEntry((word.charAt(0) == 'a' ? 'b' : 'a') + word.substring(1),
+                    entry.getClue(), entry.getOrientation(), entry.getPosition()));
+        }
+        for (int wordID = 0; wordID < size; wordID++) {
+            if (!hashedConflicts(playable, wordID, guesses.get(wordID))
+                    .equals(playable.getConflictingEntries(wordID, guesses.get(wordID).getWord()))) {
+                throw new IllegalStateException("conflict checks disagree on entry " + wordID);
+            }
+        }
+    }
+
+    /**
+     * @return conflicts of the next guess, found by hashing letters
+     */
+    @Benchmark
+    public List<Integer> hashedLettersBefore() {
+        final int wordID = nextWordID();
+        return hashedConflicts(playable, wordID, guesses.get(wordID));
+    }
+
+    /**
+     * @return conflicts of the next guess, found on the crossing graph
+     */
+    @Benchmark
+    public List<Integer> crossingGraph() {
+        final int wordID = nextWordID();
+        return playable.getConflictingEntries(wordID, guesses.get(wordID).getWord());
+    }
+
+    /*
+     * @return ID of the entry the next check guesses, cycling through the puzzle
+     */
+    private int nextWordID() {
+        final int wordID = next;
+        next = (next + 1) % size;
+        return wordID;
+    }
+
+    /*
+     * Finds the player entries inconsistent with guess the way Match.getInconsistentWords
+     * did before the crossing graph.
+     */
+    private static List<Integer> hashedConflicts(PlayablePuzzle playable, int wordID, PuzzleEntry guess) {
+        Map<Integer, PuzzleEntry> entries = playable.getFlattenedPlayerEntries();
+        entries.remove(wordID);
+        Map<Point, Character> pointToLetter = new HashMap<>();
+        String word = guess.getWord();
+        for (int j = 0; j < word.length(); j++) {
+            pointToLetter.put(letterPosition(guess, j), word.charAt(j));
+        }
+        List<Integer> wordIDs = new ArrayList<>();
+        for (Integer i : entries.keySet()) {
+            PuzzleEntry entry = entries.get(i);
+            for (int j = 0; j < entry.getWord().length(); j++) {
+                Point letterPosition = letterPosition(entry, j);
+                if (pointToLetter.containsKey(letterPosition) && pointToLetter.get(letterPosition) != entry.getWord().charAt(j)) {
+                    wordIDs.add(i);
+                }
+            }
+        }
+        return wordIDs;
+    }
+
+    /*
+     * @return position of the letter at index j of entry
+     */
+    private static Point letterPosition(PuzzleEntry entry, int j) {
+        Point position = entry.getPosition();
+        if (entry.getOrientation() == Orientation.ACROSS) {
+            return new Point(position.getRow(), position.getCol() + j);
+        }
+        return new Point(position.getRow() + j, position.getCol());
+    }
+}
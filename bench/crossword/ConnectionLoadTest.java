@@ -0,0 +1,146 @@
+package crossword;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * Load test that parks as many WATCH / WAIT_PLAY listener connections on one in-process
+ * server as the JVM will hold, and reports the server's thread count and heap use as it goes.
+ *
+ * Command: java -cp bin:lib/parserlib.jar crossword.ConnectionLoadTest threads|virtual|nio [connections] [step]
+ *      e.g. java -Xmx512m -cp bin:lib/parserlib.jar crossword.ConnectionLoadTest virtual 20000 1000
+ * virtual needs a Java 21+ runtime. The client sockets live in the same process, so every
+ * parked connection costs two file descriptors; raise ulimit -n for large runs.
+ */
+public class ConnectionLoadTest {
+    private static final String LOCALHOST = "127.0.0.1";
+    private static final int DEFAULT_CONNECTIONS = 10000;
+    private static final int DEFAULT_STEP = 1000;
+    private static final int SETTLE_MILLIS = 500;
+    private static final NotificationDispatcher dispatcher = new NotificationDispatcher();
+
+    /**
+     * Runs the load test.
+     *
+     * @param args server mode, then optionally the number of connections to attempt and how
+     *             many connections to open between reports
+     * @throws IOException if the server cannot be started
+     * @throws UnableToParseException if the puzzles cannot be parsed
+     * @throws InterruptedException if interrupted while waiting for the server to settle
+     */
+    public static void main(String[] args) throws IOException, UnableToParseException, InterruptedException {
+        final Queue<String> arguments = new LinkedList<>(List.of(args));
+        final String mode = arguments.isEmpty() ? "threads" : arguments.remove();
+        final int connections = arguments.isEmpty() ? DEFAULT_CONNECTIONS : Integer.parseInt(arguments.remove());
+        final int step = arguments.isEmpty() ? DEFAULT_STEP : Integer.parseInt(arguments.remove());
+
+        final Game game = Game.parseGameFromFiles("puzzles/");
+        final int port = startServer(mode, game);
+        System.out.println("mode=" + mode + " java=" + System.getProperty("java.version")
+                + " maxHeapMB=" + Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        report(0);
+
+        final List<Socket> sockets = new ArrayList<>();
+        try {
+            while (sockets.size() < connections) {
+                final int target = Math.min(connections, sockets.size() + step);
+                while (sockets.size() < target) {
+                    final int i = sockets.size();
+                    Socket socket = new Socket(LOCALHOST, port);
+                    sockets.add(socket);
+                    PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8), true);
+                    // Half the clients watch the lobby, half wait for plays in a match
+                    out.println("load" + i + (i % 2 == 0 ? " WATCH" : " WAIT_PLAY"));
+                }
+                Thread.sleep(SETTLE_MILLIS);
+                report(sockets.size());
+            }
+        } catch (IOException | Error e) {
+            System.out.println("stopped after " + sockets.size() + " connections: " + e);
+        } finally {
+            game.printListenerStats();
+            game.printLobbyStats();
+            dispatcher.printStats();
+            for (Socket socket : sockets) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // closing anyway
+                }
+            }
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Starts a server in the given mode on a background thread.
+     * @param mode threads, virtual, or nio
+     * @param game game to serve
+     * @return port the server listens on
+     * @throws IOException if the server cannot be started
+     */
+    private static int startServer(String mode, Game game) throws IOException {
+        final int port;
+        final Thread thread;
+        switch (mode) {
+        case "threads":
+        case "virtual":
+            TextServer textServer = (mode.equals("threads"))
+                    ? new TextServer(game, 0, command -> new Thread(command).start(), dispatcher)
+                    : new TextServer(game, 0, TextServer.newVirtualThreadExecutor(), dispatcher);
+            port = textServer.port();
+            thread = new Thread(() -> serve(textServer::serve));
+            break;
+        case "nio":
+            NioTextServer nioServer = new NioTextServer(game, 0);
+            port = nioServer.port();
+            thread = new Thread(() -> serve(nioServer::serve));
+            break;
+        default:
+            throw new IllegalArgumentException("unknown server mode: " + mode);
+        }
+        thread.setDaemon(true);
+        thread.start();
+        return port;
+    }
+
+    /** A server's serve() method */
+    private interface Server {
+        /**
+         * Serves forever
+         * @throws IOException if the server fails
+         */
+        public void serve() throws IOException;
+    }
+
+    private static void serve(Server server) {
+        try {
+            server.serve();
+        } catch (IOException ioe) {
+            throw new RuntimeException("serve() threw IOException", ioe);
+        }
+    }
+
+    /**
+     * Prints the live thread count and heap use after a GC.
+     * @param connections number of parked connections
+     */
+    private static void report(int connections) {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long usedMB = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        System.out.println("connections=" + connections + " platformThreads=" + threads + " heapUsedMB=" + usedMB);
+    }
+}
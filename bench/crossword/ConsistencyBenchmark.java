@@ -0,0 +1,137 @@
+package crossword;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark comparing Puzzle.isConsistent, which buckets entries by line and sorts them,
+ * with the pairwise check it replaced, on generated puzzles. isConsistent reads the crossings
+ * of the puzzle's CellGrid, which is built when the puzzle is made, so building the grid is
+ * measured on its own too.
+ *
+ * Command: java -cp bin:lib/* org.openjdk.jmh.Main ConsistencyBenchmark [-p size=1000,10000,20000]
+ * (on Windows, -cp "bin;lib/*"). size is the number of entries of a generated puzzle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ConsistencyBenchmark {
+
+    @Param({ "1000", "10000", "20000" })
+    public int size;
+
+    private Puzzle puzzle;
+
+    /**
+     * Generates the puzzle, and checks that both checks agree on it and on a copy with a
+     * duplicated word.
+     */
+    @Setup
+    public void setUp() {
+        puzzle = PuzzleGenerator.generate(size);
+        final List<PuzzleEntry> entries = new ArrayList<>(puzzle.getEntries().values());
+        // the same puzzle with its last entry's word also given to the first entry
+        entries.set(0, new PuzzleEntry(entries.get(size - 1).getWord(), "copy", Orientation.ACROSS, new Point(-10, 0)));
+        final Puzzle duplicated = new Puzzle("Duplicated", "duplicated word", entries);
+        for (Puzzle checked : List.of(puzzle, duplicated)) {
+            if (isConsistentPairwise(checked) != checked.isConsistent()) {
+                throw new IllegalStateException("consistency checks disagree on " + checked.getName());
+            }
+        }
+    }
+
+    /**
+     * @return whether the puzzle is consistent, checked pairwise
+     */
+    @Benchmark
+    public boolean pairwiseBefore() {
+        return isConsistentPairwise(puzzle);
+    }
+
+    /**
+     * @return whether the puzzle is consistent, checked by Puzzle.isConsistent
+     */
+    @Benchmark
+    public boolean bucketedByLine() {
+        return puzzle.isConsistent();
+    }
+
+    /**
+     * @return grid of the puzzle's entries
+     */
+    @Benchmark
+    public CellGrid cellGridBuild() {
+        return new CellGrid(puzzle.getEntries());
+    }
+
+    /*
+     * The consistency check Puzzle.isConsistent made before it bucketed entries by line.
+     */
+    private static boolean isConsistentPairwise(Puzzle puzzle) {
+        Map<Integer, PuzzleEntry> entries = puzzle.getEntries();
+        Map<Point, Character> pointToLetter = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            PuzzleEntry entry = entries.get(i);
+            String word = entry.getWord();
+            Point position = entry.getPosition();
+            for (int j = 0; j < word.length(); j++) {
+                Point letterPosition = entry.getOrientation() == Orientation.ACROSS
+                        ? new Point(position.getRow(), position.getCol() + j)
+                        : new Point(position.getRow() + j, position.getCol());
+                if (pointToLetter.containsKey(letterPosition) && pointToLetter.get(letterPosition) != word.charAt(j)) {
+                    return false;
+                } else {
+                    pointToLetter.put(letterPosition, word.charAt(j));
+                }
+            }
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            PuzzleEntry currentPuzzle = entries.get(i);
+            for (int j = i + 1; j < entries.size(); j++) {
+                PuzzleEntry otherPuzzle = entries.get(j);
+                if (currentPuzzle.getWord().equals(otherPuzzle.getWord()) && !currentPuzzle.equals(otherPuzzle)) {
+                    return false;
+                }
+                final Orientation currentOrientation = currentPuzzle.getOrientation();
+                final Point currentPosition = currentPuzzle.getPosition();
+                final Point otherPosition = otherPuzzle.getPosition();
+                final String currentWord = currentPuzzle.getWord();
+                final String otherWord = otherPuzzle.getWord();
+                if (currentOrientation == otherPuzzle.getOrientation()) {
+                    if (currentOrientation == Orientation.ACROSS) {
+                        if (currentPosition.getRow() == otherPosition.getRow() &&
+                                !(currentPosition.getCol() + currentWord.length() < otherPosition.getCol()
+                                || currentPosition.getCol() > otherPosition.getCol() + otherWord.length())) {
+                            return false;
+                        }
+                    } else {
+                        if (currentPosition.getCol() == otherPosition.getCol() &&
+                                !(currentPosition.getRow() + currentWord.length() < otherPosition.getRow()
+                                || currentPosition.getRow() > otherPosition.getRow() + otherWord.length())) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+}
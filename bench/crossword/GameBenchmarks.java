@@ -0,0 +1,335 @@
+package crossword;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the game's hot paths on synthetic puzzles from PuzzleGenerator. Puzzle
+ * benchmarks are parameterized by the number of entries (size), lobby benchmarks by the number
+ * of matches (matchCount). Benchmarks that change a match, like trying a word, move on to a
+ * fresh match in an untimed per-invocation setup once the current one has no word left.
+ *
+ * Command: java -cp bin:lib/* org.openjdk.jmh.Main GameBenchmarks [-p size=...] [-p matchCount=...]
+ *      e.g. java -cp bin:lib/* org.openjdk.jmh.Main 'GameBenchmarks.match.*' -p size=10,1000
+ * (on Windows, -cp "bin;lib/*"). Compare runs on the same machine and JVM to catch regressions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GameBenchmarks {
+    private static final int LOBBY_PUZZLE_SIZE = 10;
+    private static final int ONE = 0; // handle of player "one"
+    private static final int TWO = 1; // handle of player "two"
+
+    /** A generated puzzle, its file, and a match of it with every word but the last correctly guessed */
+    @State(Scope.Benchmark)
+    public static class PuzzleState {
+        @Param({ "10", "100", "1000", "10000" })
+        public int size;
+
+        private Puzzle puzzle;
+        private String puzzleFile;
+        private Match unfinished;
+
+        /**
+         * Generates the puzzle and plays the unfinished match.
+         */
+        @Setup
+        public void setUp() {
+            puzzle = PuzzleGenerator.generate(size);
+            puzzleFile = PuzzleGenerator.toPuzzleFile(puzzle);
+            unfinished = startMatch(puzzle, 0);
+            for (int wordID = 0; wordID < size - 1; wordID++) {
+                unfinished.tryWord(ONE, wordID, puzzle.getEntries().get(wordID).getWord());
+            }
+        }
+    }
+
+    /**
+     * Ongoing matches of a generated puzzle between "one" and "two". Player one tries the
+     * correct words of each match in ID order, so the board fills up over the match's
+     * invocations; the last word is never tried, so no match ends.
+     */
+    @State(Scope.Thread)
+    public static class Trying {
+        @Param({ "10", "100", "1000", "10000" })
+        public int size;
+
+        private Puzzle puzzle;
+        private Map<Integer, PuzzleEntry> entries;
+        private int matches = 0;
+        private Match match;
+        private int wordID;
+
+        /**
+         * Generates the puzzle.
+         */
+        @Setup
+        public void setUp() {
+            puzzle = PuzzleGenerator.generate(size);
+            entries = puzzle.getEntries();
+            wordID = size - 2;
+        }
+
+        /**
+         * Moves on to the next word, starting a fresh match after the second to last word.
+         */
+        @Setup(Level.Invocation)
+        public void next() {
+            wordID++;
+            if (wordID == size - 1) {
+                match = startMatch(puzzle, matches++);
+                wordID = 0;
+            }
+        }
+    }
+
+    /**
+     * Ongoing matches of a generated puzzle in which player one has wrongly guessed every word
+     * but the last. Player two challenges each match's guesses in ID order with the correct
+     * word, which confirms it and checks every other guess for a conflict.
+     */
+    @State(Scope.Thread)
+    public static class Challenging {
+        @Param({ "10", "100", "1000", "10000" })
+        public int size;
+
+        private Puzzle puzzle;
+        private Map<Integer, PuzzleEntry> entries;
+        private int matches = 0;
+        private Match match;
+        private int wordID;
+
+        /**
+         * Generates the puzzle.
+         */
+        @Setup
+        public void setUp() {
+            puzzle = PuzzleGenerator.generate(size);
+            entries = puzzle.getEntries();
+            wordID = size - 2;
+        }
+
+        /**
+         * Moves on to the next word, starting and wrongly guessing a fresh match after the
+         * second to last word.
+         */
+        @Setup(Level.Invocation)
+        public void next() {
+            wordID++;
+            if (wordID == size - 1) {
+                match = startMatch(puzzle, matches++);
+                for (int guessed = 0; guessed < size - 1; guessed++) {
+                    String wrong = PuzzleGenerator.wrongWord(entries.get(guessed).getWord());
+                    if (!match.tryWord(ONE, guessed, wrong)) {
+                        throw new IllegalStateException("expected wrong guess " + wrong + " to be accepted");
+                    }
+                }
+                wordID = 0;
+            }
+        }
+    }
+
+    /**
+     * A game whose players send TRY requests for the correct words through a RequestHandler,
+     * in ID order, each match's player one trying all but the last word of their match. Both
+     * players of every match stream it, as clients using SUBSCRIBE PLAY do.
+     */
+    @State(Scope.Thread)
+    public static class Requesting {
+        @Param({ "10", "100", "1000", "10000" })
+        public int size;
+
+        private Puzzle puzzle;
+        private Game game;
+        private RequestHandler handler;
+        private int matches = 0;
+        private int wordID;
+        private String request;
+
+        /**
+         * Generates the puzzle and makes the game.
+         */
+        @Setup
+        public void setUp() {
+            puzzle = PuzzleGenerator.generate(size);
+            game = new Game(Map.of(puzzle.getName(), puzzle));
+            handler = new RequestHandler(game);
+            wordID = size - 2;
+        }
+
+        /**
+         * Makes the next request, starting a fresh match after the second to last word.
+         * @throws IOException if the match cannot be started
+         */
+        @Setup(Level.Invocation)
+        public void next() throws IOException {
+            wordID++;
+            if (wordID == size - 1) {
+                matches++;
+                game.login("one" + matches);
+                game.login("two" + matches);
+                game.createMatch("one" + matches, "match" + matches, puzzle.getName(), "benchmark");
+                game.addWaitListener("one" + matches, () -> {});
+                game.joinMatch("two" + matches, "match" + matches);
+                game.subscribeToPlay("one" + matches, () -> {});
+                game.subscribeToPlay("two" + matches, () -> {});
+                wordID = 0;
+            }
+            request = "one" + matches + " TRY " + wordID + " " + puzzle.getEntries().get(wordID).getWord();
+        }
+    }
+
+    /** A game whose lobby has matchCount matches of a small puzzle, every other one waiting */
+    @State(Scope.Thread)
+    public static class Lobby {
+        @Param({ "10", "100", "1000", "10000" })
+        public int matchCount;
+
+        private Game game;
+        private RequestHandler handler;
+        private String lobbyPuzzle;
+
+        /**
+         * Makes the game and fills its lobby.
+         * @throws IOException if the game cannot be made
+         */
+        @Setup
+        public void setUp() throws IOException {
+            game = makeLobby(matchCount);
+            handler = new RequestHandler(game);
+            lobbyPuzzle = game.getPuzzleNames().iterator().next();
+        }
+    }
+
+    /**
+     * @param state match to try in
+     * @return whether the try was accepted
+     */
+    @Benchmark
+    public boolean matchTryWord(Trying state) {
+        return state.match.tryWord(ONE, state.wordID, state.entries.get(state.wordID).getWord());
+    }
+
+    /**
+     * @param state match to challenge in
+     * @return whether the challenge was accepted
+     */
+    @Benchmark
+    public boolean matchChallengeWord(Challenging state) {
+        return state.match.challengeWord(TWO, state.wordID, state.entries.get(state.wordID).getWord());
+    }
+
+    /**
+     * @param state puzzle and unfinished match
+     * @return whether the unfinished match has ended
+     */
+    @Benchmark
+    public boolean matchCheckGameEnd(PuzzleState state) {
+        return state.unfinished.checkGameEnd();
+    }
+
+    /**
+     * @param state puzzle to check
+     * @return whether the puzzle is consistent
+     */
+    @Benchmark
+    public boolean puzzleIsConsistent(PuzzleState state) {
+        return state.puzzle.isConsistent();
+    }
+
+    /**
+     * @param state puzzle whose file to parse
+     * @return parsed puzzle
+     * @throws Exception if the file cannot be parsed
+     */
+    @Benchmark
+    public Puzzle puzzleParserParse(PuzzleState state) throws Exception {
+        return PuzzleParser.parse(state.puzzleFile);
+    }
+
+    /**
+     * @param state game and request to send
+     * @return text of the TRY request's response
+     * @throws IOException if the request fails
+     */
+    @Benchmark
+    public String requestHandlerTry(Requesting state) throws IOException {
+        return state.handler.handleRequest(state.request, response -> {}).toText();
+    }
+
+    /**
+     * @param state game to list
+     * @return listing of the waiting matches, unchanged since the last listing
+     */
+    @Benchmark
+    public String gameGetAvailableMatchesForResponse(Lobby state) {
+        return state.game.getAvailableMatchesForResponse();
+    }
+
+    /**
+     * @param state game to list
+     * @return listing of the waiting matches, after a match entered and left the lobby
+     * @throws IOException if the match cannot be made
+     */
+    @Benchmark
+    public String gameGetAvailableMatchesForResponseChanged(Lobby state) throws IOException {
+        state.game.createMatch("churner", "churn", state.lobbyPuzzle, "churn");
+        state.game.exitWait("churner");
+        return state.game.getAvailableMatchesForResponse();
+    }
+
+    /**
+     * @param state game whose lobby to list
+     * @return text of the NEW_MATCH request's response
+     * @throws IOException if the request fails
+     */
+    @Benchmark
+    public String requestHandlerNewMatch(Lobby state) throws IOException {
+        return state.handler.handleRequest("watcher NEW_MATCH", response -> {}).toText();
+    }
+
+    /*
+     * @return an ongoing match of puzzle between "one" and "two", with handles ONE and TWO
+     */
+    private static Match startMatch(Puzzle puzzle, int id) {
+        Match match = new Match(String.valueOf(id), "benchmark", puzzle, "one", ONE);
+        match.joinMatch("two", TWO);
+        return match;
+    }
+
+    /*
+     * @return game whose lobby has matchCount matches of a small puzzle, every other one
+     *         waiting for a second player and the rest ongoing
+     */
+    private static Game makeLobby(int matchCount) throws IOException {
+        final Puzzle puzzle = PuzzleGenerator.generate(LOBBY_PUZZLE_SIZE);
+        final Game game = new Game(Map.of(puzzle.getName(), puzzle));
+        for (int i = 0; i < matchCount; i++) {
+            game.login("player" + i);
+            game.login("opponent" + i);
+            game.createMatch("player" + i, "match" + i, puzzle.getName(), "match number " + i);
+            if (i % 2 == 1) {
+                game.addWaitListener("player" + i, () -> {});
+                game.joinMatch("opponent" + i, "match" + i);
+            }
+        }
+        return game;
+    }
+}
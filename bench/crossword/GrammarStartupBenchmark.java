@@ -0,0 +1,70 @@
+package crossword;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Benchmark of parser startup: loading PuzzleParser and parsing a first puzzle file, which
+ * reads the grammar from the classpath but does not compile it, then the first parserlib
+ * reference parse on a thread, which compiles the grammar, then the first reference parse on
+ * a second thread, which compiles it again for that thread.
+ *
+ * Command: java -cp bin:lib/parserlib.jar crossword.GrammarStartupBenchmark
+ * Run it in a new JVM each time; the times are only meaningful before PuzzleParser is loaded.
+ */
+public class GrammarStartupBenchmark {
+    private static final int ENTRIES = 100;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(String[] args) throws Exception {
+        final Puzzle puzzle = PuzzleGenerator.generate(ENTRIES);
+        final String text = PuzzleGenerator.toPuzzleFile(puzzle);
+        final Path file = Files.createTempFile("startup", ".puzzle");
+        try {
+            Files.writeString(file, text);
+
+            long start = System.nanoTime();
+            final Puzzle fromFile = PuzzleParser.parseFromFile(file.toString());
+            final long fileNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final Puzzle firstReference = PuzzleParser.parse(text);
+            final long firstReferenceNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final Puzzle warmReference = PuzzleParser.parse(text);
+            final long warmReferenceNanos = System.nanoTime() - start;
+
+            final AtomicReference<Puzzle> otherThread = new AtomicReference<>();
+            final long[] otherThreadNanos = new long[1];
+            final Thread thread = new Thread(() -> {
+                try {
+                    final long threadStart = System.nanoTime();
+                    otherThread.set(PuzzleParser.parse(text));
+                    otherThreadNanos[0] = System.nanoTime() - threadStart;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            thread.start();
+            thread.join();
+
+            if (!puzzle.equals(fromFile) || !puzzle.equals(firstReference) || !puzzle.equals(warmReference)
+                    || !puzzle.equals(otherThread.get())) {
+                throw new IllegalStateException("parsers disagree on the generated puzzle");
+            }
+            System.out.println("load PuzzleParser and parse a file (no compile): " + fileNanos / 1_000 + " us");
+            System.out.println("first reference parse (compiles the grammar):     " + firstReferenceNanos / 1_000 + " us");
+            System.out.println("second reference parse, same thread:              " + warmReferenceNanos / 1_000 + " us");
+            System.out.println("first reference parse on another thread:          " + otherThreadNanos[0] / 1_000 + " us");
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
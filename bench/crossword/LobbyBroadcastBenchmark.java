@@ -0,0 +1,69 @@
+package crossword;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark of telling WATCH subscribers about a burst of lobby changes, with every change
+ * broadcast at once and with changes coalesced on a watch tick. Each subscriber reads the
+ * listing and builds its response, as RequestHandler's do, and the game's lobby stats give
+ * the fan-out enqueue latency percentiles.
+ *
+ * Command: java -cp bin:lib/parserlib.jar crossword.LobbyBroadcastBenchmark [watchers] [changes] [tick-millis]
+ *      e.g. java -cp bin:lib/parserlib.jar crossword.LobbyBroadcastBenchmark 1000 2000 50
+ * Each change makes a new waiting match, so the listing grows over the burst.
+ */
+public class LobbyBroadcastBenchmark {
+    private static final int DEFAULT_WATCHERS = 1000;
+    private static final int DEFAULT_CHANGES = 2000;
+    private static final long DEFAULT_TICK_MILLIS = 50;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally the number of subscribers, then of changes, then the watch tick
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(String[] args) throws Exception {
+        final Queue<String> arguments = new LinkedList<>(List.of(args));
+        final int watchers = arguments.isEmpty() ? DEFAULT_WATCHERS : Integer.parseInt(arguments.remove());
+        final int changes = arguments.isEmpty() ? DEFAULT_CHANGES : Integer.parseInt(arguments.remove());
+        final long tick = arguments.isEmpty() ? DEFAULT_TICK_MILLIS : Long.parseLong(arguments.remove());
+        for (long watchTick : new long[] { 0, tick }) {
+            run(watchers, changes, watchTick);
+        }
+    }
+
+    /*
+     * Makes changes lobby changes with watchers subscribers and prints how long the burst
+     * took, how many bytes of responses were built, and the game's lobby stats.
+     */
+    private static void run(int watchers, int changes, long watchTick) throws Exception {
+        final Puzzle puzzle = PuzzleGenerator.generate(10);
+        final Game game = new Game(Map.of(puzzle.getName(), puzzle));
+        game.setWatchTick(watchTick);
+        final AtomicLong responseChars = new AtomicLong();
+        for (int i = 0; i < watchers; i++) {
+            game.subscribeToWatch(() -> responseChars.addAndGet(("V" + game.getAvailableMatchesForResponse()).length()));
+        }
+        responseChars.set(0);
+        for (int i = 0; i < changes; i++) {
+            game.login("player" + i);
+        }
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < changes; i++) {
+            game.createMatch("player" + i, "match" + i, puzzle.getName(), "match number " + i);
+        }
+        final long burstMillis = (System.nanoTime() - start) / 1_000_000;
+        // lets the last tick of the burst be broadcast
+        Thread.sleep(2 * watchTick + 100);
+        System.out.println("watchers=" + watchers + " changes=" + changes + " tick=" + watchTick + " ms: burst "
+                + burstMillis + " ms, " + responseChars.get() / (1024 * 1024) + " MiB of responses built");
+        game.printLobbyStats();
+        System.out.println();
+    }
+}
@@ -0,0 +1,100 @@
+package crossword;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Benchmark of server startup, loading a directory of puzzle files the way ServerMain does,
+ * with no cache (parsing every file), with a cold cache (parsing every file, then writing the
+ * cache) and with a warm cache (reading every puzzle from the cache).
+ *
+ * Command: java -cp bin:lib/parserlib.jar crossword.PuzzleCacheBenchmark [files] [entries]
+ *      e.g. java -cp bin:lib/parserlib.jar crossword.PuzzleCacheBenchmark 5000 30
+ * Generated puzzles are written to a temporary directory, which is deleted afterwards with
+ * its cache.
+ */
+public class PuzzleCacheBenchmark {
+    private static final int DEFAULT_FILES = 5000;
+    private static final int DEFAULT_ENTRIES = 30;
+    private static final int ROUNDS = 3;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally the number of puzzle files, then the number of entries in each
+     * @throws Exception if the puzzles cannot be written or loaded
+     */
+    public static void main(String[] args) throws Exception {
+        final Queue<String> arguments = new LinkedList<>(List.of(args));
+        final int files = arguments.isEmpty() ? DEFAULT_FILES : Integer.parseInt(arguments.remove());
+        final int entries = arguments.isEmpty() ? DEFAULT_ENTRIES : Integer.parseInt(arguments.remove());
+
+        final Path parent = Files.createTempDirectory("bench");
+        final Path directory = Files.createDirectory(parent.resolve("puzzles"));
+        try {
+            for (int i = 0; i < files; i++) {
+                final Puzzle generated = PuzzleGenerator.generate(entries, i);
+                final Puzzle named = new Puzzle("Puzzle" + i, generated.getDescription(),
+                        new ArrayList<>(generated.getEntries().values()));
+                Files.writeString(directory.resolve(String.format("puzzle%05d.puzzle", i)), PuzzleGenerator.toPuzzleFile(named));
+            }
+            final Path cacheFile = parent.resolve("puzzles" + PuzzleCache.SUFFIX);
+            System.out.println("files=" + files + " entries=" + entries);
+
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                final Map<String, Puzzle> parsed = load(directory, null);
+                final long uncachedNanos = System.nanoTime() - start;
+
+                Files.deleteIfExists(cacheFile);
+                start = System.nanoTime();
+                final Map<String, Puzzle> cold = load(directory, PuzzleCache.beside(directory.toString()));
+                final long coldNanos = System.nanoTime() - start;
+
+                final PuzzleCache warmCache = PuzzleCache.beside(directory.toString());
+                start = System.nanoTime();
+                final Map<String, Puzzle> warm = load(directory, warmCache);
+                final long warmNanos = System.nanoTime() - start;
+
+                if (!parsed.equals(cold) || !parsed.equals(warm) || warmCache.getMisses() != 0) {
+                    throw new IllegalStateException("cached puzzles differ from parsed ones");
+                }
+                System.out.println("round " + round + ": no cache " + uncachedNanos / 1_000_000 + " ms, cold cache "
+                        + coldNanos / 1_000_000 + " ms, warm cache " + warmNanos / 1_000_000 + " ms ("
+                        + Files.size(cacheFile) / 1024 + " KiB cache)");
+            }
+        } finally {
+            deleteDirectory(directory);
+            deleteDirectory(parent);
+        }
+    }
+
+    /*
+     * Loads the puzzles in directory through cache, or parses them if cache is null.
+     */
+    private static Map<String, Puzzle> load(Path directory, PuzzleCache cache) throws IOException {
+        try (PuzzleDirectoryWatcher watcher = new PuzzleDirectoryWatcher(directory.toString(), cache)) {
+            return watcher.getPuzzles();
+        }
+    }
+
+    /*
+     * Deletes directory and the files in it.
+     */
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isDirectory(file)) {
+                    Files.delete(file);
+                }
+            }
+        }
+        Files.delete(directory);
+    }
+}
@@ -0,0 +1,128 @@
+package crossword;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates consistent synthetic puzzles of any size, so that benchmarks run on
+ * reproducible inputs.
+ *
+ * A puzzle is a column of 5x5 blocks one row apart. Each block holds three ACROSS words on
+ * rows 0, 2 and 4 and three DOWN words on columns 0, 2 and 4, so every word crosses three
+ * others at its letters 0, 2 and 4, and never at letters 1 and 3. Letters are drawn from a
+ * seeded Random, so the same size and seed always give the same puzzle.
+ */
+public class PuzzleGenerator {
+    /** Length of every generated word */
+    public static final int WORD_LENGTH = 5;
+    /** Letters of a generated word that no other word crosses */
+    public static final int[] UNCROSSED_LETTERS = { 1, 3 };
+    /** Seed used when none is given */
+    public static final long DEFAULT_SEED = 6031;
+
+    private static final int WORDS_PER_BLOCK = 6;
+    private static final int BLOCK_STRIDE = WORD_LENGTH + 1;
+
+    /**
+     * @param entries number of entries, >= 0
+     * @return consistent puzzle of that many entries, generated with DEFAULT_SEED
+     */
+    public static Puzzle generate(int entries) {
+        return generate(entries, DEFAULT_SEED);
+    }
+
+    /**
+     * @param entries number of entries, >= 0
+     * @param seed seed for the letters
+     * @return consistent puzzle of that many entries, with distinct words of WORD_LENGTH
+     *         letters and clues "clue 0", "clue 1", ... in ID order
+     */
+    public static Puzzle generate(int entries, long seed) {
+        final Random random = new Random(seed);
+        final Set<String> words = new HashSet<>();
+        final List<PuzzleEntry> puzzleEntries = new ArrayList<>();
+        for (int block = 0; puzzleEntries.size() < entries; block++) {
+            final int top = block * BLOCK_STRIDE;
+            List<PuzzleEntry> blockEntries;
+            do {
+                blockEntries = generateBlock(random, top);
+            } while (!distinct(blockEntries, words));
+            for (PuzzleEntry entry : blockEntries) {
+                if (puzzleEntries.size() < entries) {
+                    words.add(entry.getWord());
+                    puzzleEntries.add(new PuzzleEntry(entry.getWord(), "clue " + puzzleEntries.size(),
+                            entry.getOrientation(), entry.getPosition()));
+                }
+            }
+        }
+        return new Puzzle("Generated" + entries, "generated puzzle of " + entries + " entries", puzzleEntries);
+    }
+
+    /**
+     * @param puzzle puzzle whose name, description and clues need no escaping
+     * @return puzzle in the .puzzle file format, which PuzzleParser parses back to puzzle
+     */
+    public static String toPuzzleFile(Puzzle puzzle) {
+        StringBuilder file = new StringBuilder();
+        file.append(">> \"").append(puzzle.getName()).append("\" \"").append(puzzle.getDescription()).append("\"\n\n");
+        for (int id = 0; id < puzzle.getEntries().size(); id++) {
+            PuzzleEntry entry = puzzle.getEntries().get(id);
+            file.append('(').append(entry.getWord()).append(", \"").append(entry.getClue()).append("\", ")
+                .append(entry.getOrientation()).append(", ").append(entry.getPosition().getRow())
+                .append(", ").append(entry.getPosition().getCol()).append(")\n");
+        }
+        return file.toString();
+    }
+
+    /**
+     * @param word a word of WORD_LENGTH letters
+     * @return a different word of the same length that agrees with word at every crossed letter
+     */
+    public static String wrongWord(String word) {
+        char[] letters = word.toCharArray();
+        for (int i : UNCROSSED_LETTERS) {
+            letters[i] = (char) ('a' + (letters[i] - 'a' + 1) % 26);
+        }
+        return new String(letters);
+    }
+
+    /*
+     * Fills a block whose top row is top with random letters and returns its six words.
+     */
+    private static List<PuzzleEntry> generateBlock(Random random, int top) {
+        final char[][] grid = new char[WORD_LENGTH][WORD_LENGTH];
+        for (int row = 0; row < WORD_LENGTH; row++) {
+            for (int col = 0; col < WORD_LENGTH; col++) {
+                grid[row][col] = (char) ('a' + random.nextInt(26));
+            }
+        }
+        final List<PuzzleEntry> entries = new ArrayList<>(WORDS_PER_BLOCK);
+        for (int line = 0; line < WORD_LENGTH; line += 2) {
+            StringBuilder across = new StringBuilder();
+            StringBuilder down = new StringBuilder();
+            for (int i = 0; i < WORD_LENGTH; i++) {
+                across.append(grid[line][i]);
+                down.append(grid[i][line]);
+            }
+            entries.add(new PuzzleEntry(across.toString(), "", Orientation.ACROSS, new Point(top + line, 0)));
+            entries.add(new PuzzleEntry(down.toString(), "", Orientation.DOWN, new Point(top, line)));
+        }
+        return entries;
+    }
+
+    /*
+     * @return true if the words of entries differ from each other and from every word in taken
+     */
+    private static boolean distinct(List<PuzzleEntry> entries, Set<String> taken) {
+        Set<String> blockWords = new HashSet<>();
+        for (PuzzleEntry entry : entries) {
+            if (taken.contains(entry.getWord()) || !blockWords.add(entry.getWord())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,76 @@
+package crossword;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Benchmark of importing a large archive of generated puzzles into a game with
+ * PuzzleImporter, as one file of concatenated puzzles and as a zip of one entry per puzzle,
+ * printing progress while importing and the memory used afterwards.
+ *
+ * Command: java -cp bin:lib/parserlib.jar crossword.PuzzleImportBenchmark [puzzles] [entries]
+ *      e.g. java -cp bin:lib/parserlib.jar crossword.PuzzleImportBenchmark 20000 30
+ * The archives are written to temporary files, which are deleted afterwards.
+ */
+public class PuzzleImportBenchmark {
+    private static final int DEFAULT_PUZZLES = 20000;
+    private static final int DEFAULT_ENTRIES = 30;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally the number of puzzles, then the number of entries in each
+     * @throws Exception if the archives cannot be written or imported
+     */
+    public static void main(String[] args) throws Exception {
+        final Queue<String> arguments = new LinkedList<>(List.of(args));
+        final int puzzles = arguments.isEmpty() ? DEFAULT_PUZZLES : Integer.parseInt(arguments.remove());
+        final int entries = arguments.isEmpty() ? DEFAULT_ENTRIES : Integer.parseInt(arguments.remove());
+
+        final Path concatenated = Files.createTempFile("bench", ".puzzles");
+        final Path zipped = Files.createTempFile("bench", ".zip");
+        try {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(concatenated), UTF_8));
+                    OutputStream zipOut = Files.newOutputStream(zipped);
+                    ZipOutputStream zip = new ZipOutputStream(zipOut, UTF_8)) {
+                for (int i = 0; i < puzzles; i++) {
+                    // generated with few seeds so a large archive does not take long to write
+                    final String text = PuzzleGenerator.toPuzzleFile(PuzzleGenerator.generate(entries, i % 100));
+                    out.write(text);
+                    zip.putNextEntry(new ZipEntry(String.format("puzzle%06d.puzzle", i)));
+                    zip.write(text.getBytes(UTF_8));
+                }
+            }
+            System.out.println("puzzles=" + puzzles + " entries=" + entries + ", " + Files.size(concatenated) / 1024
+                    + " KiB concatenated, " + Files.size(zipped) / 1024 + " KiB zipped");
+
+            for (Path archive : List.of(concatenated, zipped)) {
+                final Game game = new Game(Map.of());
+                final PuzzleImporter importer = new PuzzleImporter(game, System.out);
+                importer.importFile(archive);
+                if (importer.getImported() != puzzles || game.getPuzzleNames().size() != puzzles) {
+                    throw new IllegalStateException("imported " + importer.getImported() + " of " + puzzles + " puzzles");
+                }
+                System.gc();
+                final Runtime runtime = Runtime.getRuntime();
+                System.out.println(archive.getFileName() + ": " + importer.getProgress() + ", "
+                        + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + " MiB in use with the game");
+            }
+        } finally {
+            Files.delete(concatenated);
+            Files.delete(zipped);
+        }
+    }
+}
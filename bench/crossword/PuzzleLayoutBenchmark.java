@@ -0,0 +1,101 @@
+package crossword;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Benchmark comparing the bytes allocated and time taken to serve a puzzle's layout to many
+ * matches, when the layout is rebuilt on every request (as before it was cached) and when it
+ * is read from the Puzzle template's cached layout.
+ *
+ * Command: java -cp bin:lib/parserlib.jar crossword.PuzzleLayoutBenchmark [entries] [requests]
+ *      e.g. java -cp bin:lib/parserlib.jar crossword.PuzzleLayoutBenchmark 2000 200
+ * Allocation is measured with com.sun.management.ThreadMXBean, so it needs a HotSpot-based JVM.
+ */
+public class PuzzleLayoutBenchmark {
+    private static final int DEFAULT_ENTRIES = 2000;
+    private static final int DEFAULT_REQUESTS = 200;
+    private static final int WARMUP_REQUESTS = 20;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally the number of entries in the generated puzzle, then the number of
+     *             matches that each request the layout once
+     */
+    public static void main(String[] args) {
+        final Queue<String> arguments = new LinkedList<>(List.of(args));
+        final int entries = arguments.isEmpty() ? DEFAULT_ENTRIES : Integer.parseInt(arguments.remove());
+        final int requests = arguments.isEmpty() ? DEFAULT_REQUESTS : Integer.parseInt(arguments.remove());
+
+        final Puzzle puzzle = generatePuzzle(entries);
+        System.out.println("entries=" + entries + " requests=" + requests
+                + " layoutChars=" + puzzle.getLayoutForResponse().length());
+
+        run("rebuilt", puzzle, WARMUP_REQUESTS, false);
+        run("cached", puzzle, WARMUP_REQUESTS, false);
+        run("rebuilt", puzzle, requests, true);
+        run("cached", puzzle, requests, true);
+    }
+
+    /*
+     * Serves the layout of puzzle to requests new matches, either rebuilding it each time or
+     * reading the cached layout, and prints the cost if report is true.
+     */
+    private static void run(String mode, Puzzle puzzle, int requests, boolean report) {
+        final long startBytes = allocatedBytes();
+        final long startNanos = System.nanoTime();
+        long chars = 0;
+        for (int i = 0; i < requests; i++) {
+            Match match = new Match(String.valueOf(i), "benchmark", puzzle, "player" + i);
+            String layout = mode.equals("cached") ? match.getPuzzleForResponse() : rebuildLayout(puzzle);
+            chars += layout.length();
+        }
+        final long nanos = System.nanoTime() - startNanos;
+        final long bytes = allocatedBytes() - startBytes;
+        if (report) {
+            System.out.println(mode + ": " + bytes / requests + " bytes allocated/request, "
+                    + nanos / requests / 1000 + " us/request (" + chars + " chars served)");
+        }
+    }
+
+    /*
+     * Serializes puzzle's layout the way it was done on every request before it was cached.
+     */
+    private static String rebuildLayout(Puzzle puzzle) {
+        String puzzleString = "";
+        for (Map.Entry<Integer, PuzzleEntry> entry: puzzle.getEntries().entrySet()) {
+            Integer id = entry.getKey();
+            PuzzleEntry puzzleEntry = entry.getValue();
+            puzzleString += id + Game.WORD_DELIM + puzzleEntry.getWord().length() + Game.WORD_DELIM + puzzleEntry.getClue() + Game.WORD_DELIM +
+                    puzzleEntry.getOrientation() + Game.WORD_DELIM + puzzleEntry.getPosition().getRow()
+                            + Game.WORD_DELIM + puzzleEntry.getPosition().getCol() + Game.ENTRY_DELIM;
+        }
+        return puzzleString.substring(0,puzzleString.length()-Game.ENTRY_DELIM.length());
+    }
+
+    /*
+     * Makes a consistent puzzle of the given number of ACROSS entries, one per row, with
+     * distinct words and clues.
+     */
+    private static Puzzle generatePuzzle(int entries) {
+        final List<PuzzleEntry> puzzleEntries = new ArrayList<>();
+        for (int i = 0; i < entries; i++) {
+            puzzleEntries.add(new PuzzleEntry("word" + Integer.toString(i, 26), "clue number " + i,
+                    Orientation.ACROSS, new Point(i, 0)));
+        }
+        return new Puzzle("Generated", "generated puzzle of " + entries + " entries", puzzleEntries);
+    }
+
+    /*
+     * @return bytes allocated so far by the current thread
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
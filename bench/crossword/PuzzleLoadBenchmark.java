@@ -0,0 +1,116 @@
+package crossword;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Benchmark comparing the time to load a directory of puzzle files one file at a time (as
+ * Game.parseGameFromFiles did) and in parallel (as it does now).
+ *
+ * Command: java -cp bin:lib/parserlib.jar crossword.PuzzleLoadBenchmark [files] [entries]
+ *      e.g. java -cp bin:lib/parserlib.jar crossword.PuzzleLoadBenchmark 5000 30
+ * Generated puzzles are written to a temporary directory, which is deleted afterwards. Every
+ * puzzle name is used by two files, so half of the puzzles are renamed when loaded.
+ */
+public class PuzzleLoadBenchmark {
+    private static final int DEFAULT_FILES = 5000;
+    private static final int DEFAULT_ENTRIES = 30;
+    private static final int ROUNDS = 3;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optionally the number of puzzle files, then the number of entries in each
+     * @throws Exception if the puzzles cannot be written or loaded
+     */
+    public static void main(String[] args) throws Exception {
+        final Queue<String> arguments = new LinkedList<>(List.of(args));
+        final int files = arguments.isEmpty() ? DEFAULT_FILES : Integer.parseInt(arguments.remove());
+        final int entries = arguments.isEmpty() ? DEFAULT_ENTRIES : Integer.parseInt(arguments.remove());
+
+        final Path directory = Files.createTempDirectory("puzzles");
+        try {
+            long bytes = 0;
+            for (int i = 0; i < files; i++) {
+                final Puzzle generated = PuzzleGenerator.generate(entries, i);
+                final Puzzle named = new Puzzle("Puzzle" + i / 2, generated.getDescription(),
+                        new ArrayList<>(generated.getEntries().values()));
+                final String file = PuzzleGenerator.toPuzzleFile(named);
+                bytes += file.length();
+                Files.writeString(directory.resolve(String.format("puzzle%05d.puzzle", i)), file);
+            }
+            System.out.println("files=" + files + " entries=" + entries + " bytes=" + bytes
+                    + " processors=" + Runtime.getRuntime().availableProcessors());
+
+            final String path = directory.toString() + File.separator;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                final Game sequential = parseSequentially(path);
+                final long sequentialNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                final Game parallel = Game.parseGameFromFiles(path);
+                final long parallelNanos = System.nanoTime() - start;
+                if (!sequential.getPuzzleNames().equals(parallel.getPuzzleNames())) {
+                    throw new IllegalStateException("loaders disagree on the puzzle names");
+                }
+                System.out.println("round " + round + ": sequential (before) " + sequentialNanos / 1_000_000
+                        + " ms, parallel " + parallelNanos / 1_000_000 + " ms");
+            }
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /*
+     * Loads the puzzles in directory the way Game.parseGameFromFiles did before it loaded
+     * them in parallel, except that files are taken in name order.
+     */
+    private static Game parseSequentially(String directory) throws Exception {
+        final Map<String, Puzzle> puzzles = new HashMap<>();
+        final File[] listOfPuzzles = new File(directory).listFiles();
+        Arrays.sort(listOfPuzzles);
+        for (File file : listOfPuzzles) {
+            if (file.isFile()) {
+                Puzzle newPuzzle = Puzzle.parseFromFile(directory + file.getName());
+                if (newPuzzle.isConsistent()) {
+                    String puzzleID = newPuzzle.getName();
+                    if (puzzleID.length() == 0) {
+                        puzzleID = "JYZ";
+                    }
+                    if (puzzles.containsKey(puzzleID)) {
+                        int i = 1;
+                        puzzleID += Integer.toString(i);
+                        while (puzzles.containsKey(puzzleID)) {
+                            i += 1;
+                            puzzleID = puzzleID.substring(0, puzzleID.length() - 1);
+                            puzzleID += Integer.toString(i);
+                        }
+                    }
+                    puzzles.put(puzzleID, newPuzzle);
+                }
+            }
+        }
+        return new Game(puzzles);
+    }
+
+    /*
+     * Deletes directory and the files in it.
+     */
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
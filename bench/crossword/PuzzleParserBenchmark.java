@@ -0,0 +1,108 @@
+package crossword;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of parsing throughput of the parserlib reference PuzzleParser.parse(String)
+ * and of the hand-written parser reading from a Reader and from UTF-8 bytes, on generated
+ * puzzles. Besides parses per second, each benchmark reports a "bytes" counter: the bytes
+ * of puzzle text parsed per second.
+ *
+ * Command: java -cp bin:lib/* org.openjdk.jmh.Main PuzzleParserBenchmark [-p size=100,1000,10000]
+ * (on Windows, -cp "bin;lib/*"). size is the number of entries of a generated puzzle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PuzzleParserBenchmark {
+
+    /** Bytes of puzzle text parsed by a thread, reported per second */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Parsed {
+        public long bytes;
+
+        /**
+         * Starts counting a new iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Param({ "100", "1000", "10000" })
+    public int size;
+
+    private String text;
+    private byte[] bytes;
+
+    /**
+     * Generates the puzzle file, and checks that every parser reads back the same puzzle.
+     * @throws Exception if a parser fails
+     */
+    @Setup
+    public void setUp() throws Exception {
+        final Puzzle puzzle = PuzzleGenerator.generate(size);
+        text = PuzzleGenerator.toPuzzleFile(puzzle);
+        bytes = text.getBytes(UTF_8);
+        if (!PuzzleParser.parse(text).equals(puzzle) || !PuzzleParser.parse(new StringReader(text)).equals(puzzle)
+                || !StreamingPuzzleParser.parse(ByteBuffer.wrap(bytes)).equals(puzzle)) {
+            throw new IllegalStateException("parsers disagree on the puzzle of " + size + " entries");
+        }
+    }
+
+    /**
+     * @param parsed counter of bytes parsed
+     * @return puzzle parsed by parserlib
+     * @throws Exception if the puzzle cannot be parsed
+     */
+    @Benchmark
+    public Puzzle parserlibReference(Parsed parsed) throws Exception {
+        parsed.bytes += bytes.length;
+        return PuzzleParser.parse(text);
+    }
+
+    /**
+     * @param parsed counter of bytes parsed
+     * @return puzzle parsed by the hand-written parser from a Reader
+     * @throws Exception if the puzzle cannot be parsed
+     */
+    @Benchmark
+    public Puzzle handWrittenReader(Parsed parsed) throws Exception {
+        parsed.bytes += bytes.length;
+        return PuzzleParser.parse(new StringReader(text));
+    }
+
+    /**
+     * @param parsed counter of bytes parsed
+     * @return puzzle parsed by the hand-written parser from UTF-8 bytes
+     * @throws Exception if the puzzle cannot be parsed
+     */
+    @Benchmark
+    public Puzzle handWrittenByteBuffer(Parsed parsed) throws Exception {
+        parsed.bytes += bytes.length;
+        return StreamingPuzzleParser.parse(ByteBuffer.wrap(bytes));
+    }
+}
@@ -0,0 +1,198 @@
+package crossword;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * Benchmark of holding a large catalog as PuzzleTemplates instead of Puzzles. The JMH
+ * benchmarks time getting a puzzle held by a PuzzleTemplateCache against decoding its
+ * template, from memory and from the PuzzleCache of its file; main measures the heap each
+ * form of the catalog takes. Puzzle files are written to a temporary directory, which is
+ * deleted afterwards with its cache.
+ *
+ * Command: java -cp bin:lib/* org.openjdk.jmh.Main PuzzleTemplateBenchmark [-p entries=30]
+ *          java -cp bin:lib/* crossword.PuzzleTemplateBenchmark [puzzles] [entries]
+ *      e.g. java -cp bin:lib/* crossword.PuzzleTemplateBenchmark 10000 30
+ * (on Windows, -cp "bin;lib/*"). entries is the number of entries of each generated puzzle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PuzzleTemplateBenchmark {
+    private static final int DEFAULT_PUZZLES = 10000;
+    private static final int DEFAULT_ENTRIES = 30;
+    private static final int CATALOG_SIZE = 1000;
+    private static final int HELD_PUZZLES = 100;
+
+    @Param({ "30" })
+    public int entries;
+
+    private List<PuzzleTemplate> catalog;
+    private List<PuzzleTemplate> fileCatalog;
+    private Path directory;
+    private PuzzleTemplateCache held;
+    private int next = 0;
+
+    /**
+     * Makes catalogs of templates of generated puzzles, held in memory and read from files
+     * through a saved PuzzleCache, and a cache that holds every puzzle it decodes.
+     * @throws Exception if the puzzle files or their cache cannot be written
+     */
+    @Setup
+    public void setUp() throws Exception {
+        catalog = new ArrayList<>();
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            catalog.add(new PuzzleTemplate(PuzzleGenerator.generate(entries, i)));
+        }
+        directory = Files.createTempDirectory("bench");
+        fileCatalog = writeCatalog(directory, CATALOG_SIZE, entries);
+        held = new PuzzleTemplateCache(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Deletes the puzzle files and their cache.
+     * @throws IOException if they cannot be deleted
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        deleteDirectory(directory);
+    }
+
+    /**
+     * @return the next of HELD_PUZZLES puzzles, from the cache
+     */
+    @Benchmark
+    public Puzzle held() {
+        final PuzzleTemplate template = catalog.get(next);
+        next = (next + 1) % HELD_PUZZLES;
+        return held.get(template);
+    }
+
+    /**
+     * @return the next puzzle of the catalog, decoded from its template
+     */
+    @Benchmark
+    public Puzzle decoded() {
+        final PuzzleTemplate template = catalog.get(next);
+        next = (next + 1) % CATALOG_SIZE;
+        return template.decode();
+    }
+
+    /**
+     * @return the next puzzle of the catalog, read from the cache of its file
+     */
+    @Benchmark
+    public Puzzle decodedFromFile() {
+        final PuzzleTemplate template = fileCatalog.get(next);
+        next = (next + 1) % CATALOG_SIZE;
+        return template.decode();
+    }
+
+    /**
+     * Prints the heap taken by a catalog of Puzzles, by the same catalog of PuzzleTemplates
+     * held in memory, and by PuzzleTemplates of their files.
+     *
+     * @param args optionally the number of puzzles, then the number of entries in each
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(String[] args) throws Exception {
+        final Queue<String> arguments = new LinkedList<>(List.of(args));
+        final int puzzleCount = arguments.isEmpty() ? DEFAULT_PUZZLES : Integer.parseInt(arguments.remove());
+        final int entries = arguments.isEmpty() ? DEFAULT_ENTRIES : Integer.parseInt(arguments.remove());
+
+        final long before = usedMemory();
+        final Map<String, Puzzle> puzzles = new HashMap<>();
+        for (int i = 0; i < puzzleCount; i++) {
+            puzzles.put("puzzle" + i, PuzzleGenerator.generate(entries, i));
+        }
+        final long withPuzzles = usedMemory();
+        final Map<String, PuzzleTemplate> templates = new HashMap<>();
+        for (Map.Entry<String, Puzzle> puzzle : puzzles.entrySet()) {
+            templates.put(puzzle.getKey(), new PuzzleTemplate(puzzle.getValue()));
+        }
+        final long withBoth = usedMemory();
+        puzzles.clear();
+        final Path directory = Files.createTempDirectory("bench");
+        try {
+            final long withTemplates = usedMemory();
+            final List<PuzzleTemplate> fileTemplates = writeCatalog(directory, puzzleCount, entries);
+            final long withFileTemplates = usedMemory();
+            System.out.println("puzzles=" + puzzleCount + " entries=" + entries + ": Puzzles "
+                    + (withPuzzles - before) / 1024 + " KiB, PuzzleTemplates " + (withBoth - withPuzzles) / 1024
+                    + " KiB, PuzzleTemplates of files " + (withFileTemplates - withTemplates) / 1024 + " KiB");
+            // keeps the catalogs reachable until they are measured
+            System.out.println(templates.size() + fileTemplates.size() + " templates");
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /*
+     * Writes count generated puzzles of entries entries to files in directory, loads them
+     * through a PuzzleCache beside the files, and saves it.
+     * @return templates of the files, read through the cache
+     */
+    private static List<PuzzleTemplate> writeCatalog(Path directory, int count, int entries)
+            throws IOException, UnableToParseException {
+        final PuzzleCache cache = new PuzzleCache(directory.resolve("catalog" + PuzzleCache.SUFFIX));
+        final List<PuzzleTemplate> templates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final File file = directory.resolve("puzzle" + i + ".puzzle").toFile();
+            Files.writeString(file.toPath(), PuzzleGenerator.toPuzzleFile(PuzzleGenerator.generate(entries, i)));
+            templates.add(new PuzzleTemplate(cache.load(file), file, cache));
+        }
+        cache.save();
+        return templates;
+    }
+
+    /*
+     * Deletes directory and the files in it.
+     */
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /*
+     * @return bytes of heap in use after collecting garbage
+     */
+    private static long usedMemory() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,108 @@
+package crossword;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of reading a response from the game and encoding it for the wire, as the
+ * servers do: as UTF-8 text ending in a newline, and as a binary frame in a pooled buffer.
+ * Each operation reads a fresh GUESSES response of a match, or the lobby's MATCHES response.
+ *
+ * Command: java -cp bin:lib/* org.openjdk.jmh.Main ResponseEncodingBenchmark -prof gc [-p size=10,100,1000]
+ * (on Windows, -cp "bin;lib/*"). size is the number of entries of a generated puzzle, all of
+ * them guessed, and the number of matches waiting in the lobby.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ResponseEncodingBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int size;
+
+    private Match match;
+    private Game lobby;
+    private ByteBufferPool pool;
+
+    /**
+     * Plays a match whose every word but the last is guessed, and fills a lobby.
+     * @throws IOException if the lobby cannot be made
+     */
+    @Setup
+    public void setUp() throws IOException {
+        final Puzzle puzzle = PuzzleGenerator.generate(size);
+        match = new Match("match", "benchmark", puzzle, "one", 0);
+        match.joinMatch("two", 1);
+        for (int wordID = 0; wordID < size - 1; wordID++) {
+            match.tryWord(wordID % 2, wordID, puzzle.getEntries().get(wordID).getWord());
+        }
+        lobby = new Game(Map.of(puzzle.getName(), puzzle));
+        for (int i = 0; i < size; i++) {
+            lobby.login("player" + i);
+            lobby.createMatch("player" + i, "match" + i, puzzle.getName(), "match number " + i);
+        }
+        pool = new ByteBufferPool(8 * 1024, 4);
+    }
+
+    /**
+     * @return the match's guesses encoded as text
+     */
+    @Benchmark
+    public ByteBuffer guessesText() {
+        return UTF_8.encode(match.getGuesses().toText() + "\n");
+    }
+
+    /**
+     * @return bytes of the match's guesses encoded as a binary frame
+     */
+    @Benchmark
+    public int guessesBinary() {
+        return encodeBinary(match.getGuesses());
+    }
+
+    /**
+     * @return the lobby's listing encoded as text
+     */
+    @Benchmark
+    public ByteBuffer lobbyText() {
+        return UTF_8.encode(lobby.getAvailableMatches().toText() + "\n");
+    }
+
+    /**
+     * @return bytes of the lobby's listing encoded as a binary frame
+     */
+    @Benchmark
+    public int lobbyBinary() {
+        return encodeBinary(lobby.getAvailableMatches());
+    }
+
+    /*
+     * Encodes response as a binary frame and gives the buffer back to the pool.
+     * @return bytes of the frame
+     */
+    private int encodeBinary(Response response) {
+        final ByteBuffer frame = BinaryProtocol.encode(response, pool);
+        final int bytes = frame.remaining();
+        pool.release(frame);
+        return bytes;
+    }
+}
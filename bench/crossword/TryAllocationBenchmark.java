@@ -0,0 +1,153 @@
+package crossword;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the time and bytes allocated by the checks a TRY makes, reading snapshots
+ * of a PlayablePuzzle's entries (as Match.tryWord did) and reading its slots in place; and of
+ * a whole Match.tryWord, for a player given by id and by handle. Run it with JMH's gc
+ * profiler, whose gc.alloc.rate.norm is the bytes allocated per try.
+ *
+ * Command: java -cp bin:lib/* org.openjdk.jmh.Main TryAllocationBenchmark -prof gc [-p size=100,10000]
+ * (on Windows, -cp "bin;lib/*"). size is the number of entries of a generated puzzle, half of
+ * them guessed correctly by the player trying; every try guesses one of that player's entries
+ * again with its correct word.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TryAllocationBenchmark {
+
+    @Param({ "100", "10000" })
+    public int size;
+
+    private Map<Integer, PuzzleEntry> entries;
+    private PlayablePuzzle playable;
+    private Player player;
+    private Match match;
+    private int guessed;
+    private int next = 0;
+
+    /**
+     * Has player "one" guess the first half of a generated puzzle, in a PlayablePuzzle and in
+     * an ongoing match.
+     */
+    @Setup
+    public void setUp() {
+        final Puzzle puzzle = PuzzleGenerator.generate(size);
+        entries = puzzle.getEntries();
+        playable = new PlayablePuzzle(puzzle);
+        player = new Player("one");
+        playable.seatPlayer(PlayablePuzzle.SEAT_ONE, player);
+        match = new Match("match", "benchmark", puzzle, "one", 0);
+        match.joinMatch("two", 1);
+        guessed = size / 2;
+        for (int wordID = 0; wordID < guessed; wordID++) {
+            playable.addPlayerEntry(wordID, PlayablePuzzle.SEAT_ONE, entries.get(wordID));
+            match.tryWord("one", wordID, entries.get(wordID).getWord());
+        }
+    }
+
+    /**
+     * @return whether the next try is valid, checked on snapshots
+     */
+    @Benchmark
+    public boolean snapshotChecksBefore() {
+        final int wordID = nextWordID();
+        return snapshotChecks(playable, player, wordID, entries.get(wordID).getWord());
+    }
+
+    /**
+     * @return whether the next try is valid, checked in place
+     */
+    @Benchmark
+    public boolean inPlaceChecks() {
+        final int wordID = nextWordID();
+        return inPlaceChecks(playable, PlayablePuzzle.SEAT_ONE, wordID, entries.get(wordID).getWord());
+    }
+
+    /**
+     * @return true, after the next try by id
+     */
+    @Benchmark
+    public boolean tryWordById() {
+        final int wordID = nextWordID();
+        if (!match.tryWord("one", wordID, entries.get(wordID).getWord())) {
+            throw new IllegalStateException("try of entry " + wordID + " rejected");
+        }
+        return true;
+    }
+
+    /**
+     * @return true, after the next try by handle
+     */
+    @Benchmark
+    public boolean tryWordByHandle() {
+        final int wordID = nextWordID();
+        if (!match.tryWord(0, wordID, entries.get(wordID).getWord())) {
+            throw new IllegalStateException("try of entry " + wordID + " rejected");
+        }
+        return true;
+    }
+
+    /*
+     * @return ID of the entry the next try guesses, cycling through the guessed entries
+     */
+    private int nextWordID() {
+        final int wordID = next;
+        next = (next + 1) % guessed;
+        return wordID;
+    }
+
+    /*
+     * Checks a try the way Match.tryWord did before reading slots in place.
+     * @return true if the try is valid
+     */
+    private static boolean snapshotChecks(PlayablePuzzle playable, Player player, int wordID, String word) {
+        Map<Integer, SimpleImmutableEntry<Player, PuzzleEntry>> playerEntries = playable.getPlayerEntries();
+        Map<Integer, PuzzleEntry> confirmedEntries = playable.getConfirmedEntries();
+        PuzzleEntry correctEntry = playable.getCorrectEntries().get(wordID);
+        PuzzleEntry guess = new PuzzleEntry(word, correctEntry.getClue(), correctEntry.getOrientation(), correctEntry.getPosition());
+        if (playerEntries.containsKey(wordID) && !playerEntries.get(wordID).getKey().getId().equals(player.getId())) {
+            return false;
+        } else if (confirmedEntries.containsKey(wordID)) {
+            return false;
+        } else if (word.length() != correctEntry.getWord().length()) {
+            return false;
+        }
+        return playable.getConflictingEntries(wordID, guess.getWord()).isEmpty();
+    }
+
+    /*
+     * Checks a try the way Match.tryWord does.
+     * @return true if the try is valid
+     */
+    private static boolean inPlaceChecks(PlayablePuzzle playable, int seat, int wordID, String word) {
+        int owner = playable.getOwner(wordID);
+        if (owner != PlayablePuzzle.NO_SEAT && owner != seat) {
+            return false;
+        } else if (playable.isConfirmed(wordID)) {
+            return false;
+        } else if (word.length() != playable.getCorrectEntry(wordID).getWord().length()) {
+            return false;
+        }
+        return !playable.hasConflictingEntries(wordID, word);
+    }
+}
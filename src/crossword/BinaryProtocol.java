@@ -0,0 +1,413 @@
+package crossword;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+
+/**
+ * Length-prefixed binary framing of the crossword protocol, negotiated by a client that
+ * sends MAGIC as the first bytes of its connection; the server answers with MAGIC.
+ *
+ * Requests keep the text grammar: int length, then the UTF-8 request line.
+ * Responses are typed: int length (of everything after it), byte ResponseType code, then the body:
+ *
+ *      OK, UNSUBSCRIBED    (empty)
+ *      ERROR               str message
+ *      PUZZLES_AND_MATCHES int n, str puzzleName * n, then a MATCHES body
+ *      MATCHES             int n, (str matchID, str description) * n
+ *      PUZZLE              int n, (int wordID, int length, str clue, orientation, int row, int col) * n
+ *      GUESSES             state, str player, int challengePoints, str player, int challengePoints,
+ *                          int n, (str player, bool confirmed, int wordID, str word, orientation, int row, int col) * n
+ *      SCORE               state, (str player, int challengePoints, int totalScore) * 2, str result
+ *      CHANGES             byte 0 (delta) or 1 (snapshot), str matchID, int version, then
+ *                          for a delta: int n, change * n; for a snapshot: a GUESSES body
+ *
+ * where str is a byte count, as an unsigned varint of 7 bits per byte with the low bits first
+ * and the high bit set on every byte but the last, followed by that many UTF-8 bytes; bool is
+ * a byte 0 or 1; state and orientation are the byte ordinals of MatchState and Orientation;
+ * and a change is a byte kind followed by its fields: ADD (0) str player, int wordID, str word,
+ * orientation, int row, int col; REMOVE (1) int wordID; CONFIRM (2) int wordID; SCORE (3)
+ * str player, int challengePoints; JOIN (4) str player; STATE (5) state.
+ *
+ * Each Response writes its own body from the values it read from the game, as it writes its
+ * text; this class writes the frame around it and the fields shared by every body.
+ */
+public class BinaryProtocol {
+    /** First bytes a client sends to choose the binary protocol; no text request starts with 0 */
+    public static final byte[] MAGIC = { 0, 'X', 'W', 1 };
+    /** Largest frame either side accepts */
+    public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    static final byte DELTA = 0;
+    static final byte SNAPSHOT = 1;
+    private static final String[] CHANGE_KINDS = { "ADD", "REMOVE", "CONFIRM", "SCORE", "JOIN", "STATE" };
+    private static final int VARINT_BITS = 7;
+    private static final int VARINT_MORE = 0x80;
+    private static final ThreadLocal<CharsetEncoder> ENCODER = ThreadLocal.withInitial(() -> UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE));
+
+    // Abstraction function:
+    //    AF(): the binary crossword protocol, described above
+    // Representation invariant:
+    //  true
+    // Safety from rep exposure:
+    //  MAGIC is the only mutable public field; it is a protocol constant that callers must not change
+    // Thread safety argument:
+    //  no shared mutable state: every method works on its arguments, and each thread has its own
+    //      CharsetEncoder
+
+    private BinaryProtocol() {
+        // only static methods
+    }
+
+    /**
+     * Writes one request frame.
+     * @param out stream to the server
+     * @param request text request line, without a line terminator
+     * @throws IOException if the request cannot be written
+     */
+    public static void writeRequest(DataOutputStream out, String request) throws IOException {
+        byte[] bytes = request.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    /**
+     * Reads one request frame.
+     * @param in stream from the client, positioned at a frame
+     * @return text request line, or null if the client closed the connection
+     * @throws IOException if the frame cannot be read or is too long
+     */
+    public static String readRequest(DataInputStream in) throws IOException {
+        byte[] frame = readFrameBytes(in);
+        return (frame == null) ? null : new String(frame, UTF_8);
+    }
+
+    /**
+     * Reads one response frame.
+     * @param in stream from the server, positioned at a frame
+     * @return buffer holding the frame's type code and body, or null if the server closed the connection
+     * @throws IOException if the frame cannot be read or is too long
+     */
+    public static ByteBuffer readResponse(DataInputStream in) throws IOException {
+        byte[] frame = readFrameBytes(in);
+        return (frame == null) ? null : ByteBuffer.wrap(frame);
+    }
+
+    private static byte[] readFrameBytes(DataInputStream in) throws IOException {
+        final int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException eof) {
+            return null;
+        }
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("bad frame length: " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+
+    /**
+     * Encodes a response as a response frame.
+     * @param response response to encode
+     * @param pool pool to borrow the buffer from
+     * @return buffer holding the whole frame between position and limit; give it back with
+     *         pool.release() once written
+     */
+    public static ByteBuffer encode(Response response, ByteBufferPool pool) {
+        ByteBuffer buffer = pool.acquire();
+        while (true) {
+            try {
+                buffer.clear();
+                buffer.putInt(0); // length, filled in below
+                buffer.put(response.getType().code());
+                response.writeBody(buffer);
+                buffer.putInt(0, buffer.position() - Integer.BYTES);
+                buffer.flip();
+                return buffer;
+            } catch (BufferOverflowException overflow) {
+                // Too big for a pooled buffer, so retry in a larger one of our own
+                int capacity = buffer.capacity() * 2;
+                pool.release(buffer);
+                buffer = ByteBuffer.allocate(capacity);
+            }
+        }
+    }
+
+    /**
+     * Decodes a response frame back to the text response it encodes.
+     * @param frame buffer from readResponse, positioned at the type code
+     * @return text response, starting with "V" or "I"
+     * @throws IllegalArgumentException if frame is not a valid response frame
+     */
+    public static String decodeToText(ByteBuffer frame) {
+        ResponseType type = ResponseType.fromCode(frame.get());
+        StringBuilder text = new StringBuilder(type == ResponseType.ERROR ? "I" : "V");
+        switch (type) {
+        case OK:
+            break;
+        case UNSUBSCRIBED:
+            text.append(RequestHandler.UNSUBSCRIBED);
+            break;
+        case ERROR:
+            text.append(getString(frame));
+            break;
+        case PUZZLES_AND_MATCHES: {
+            int n = frame.getInt();
+            for (int i = 0; i < n; i++) {
+                text.append(i == 0 ? "" : Game.ENTRY_DELIM).append(getString(frame));
+            }
+            text.append(Game.RESPONSE_DELIM);
+            readMatches(frame, text);
+            break;
+        }
+        case MATCHES:
+            readMatches(frame, text);
+            break;
+        case PUZZLE: {
+            int n = frame.getInt();
+            for (int i = 0; i < n; i++) {
+                text.append(i == 0 ? "" : Game.ENTRY_DELIM)
+                    .append(frame.getInt()).append(Game.WORD_DELIM)
+                    .append(frame.getInt()).append(Game.WORD_DELIM)
+                    .append(getString(frame)).append(Game.WORD_DELIM)
+                    .append(getOrientation(frame)).append(Game.WORD_DELIM)
+                    .append(frame.getInt()).append(Game.WORD_DELIM)
+                    .append(frame.getInt());
+            }
+            break;
+        }
+        case GUESSES:
+            readGuesses(frame, text);
+            break;
+        case SCORE: {
+            text.append(getState(frame)).append(Game.RESPONSE_DELIM);
+            for (int i = 0; i < 2; i++) {
+                text.append(i == 0 ? "" : Game.ENTRY_DELIM)
+                    .append(getString(frame)).append(Game.WORD_DELIM)
+                    .append(frame.getInt()).append(Game.WORD_DELIM)
+                    .append(frame.getInt());
+            }
+            text.append(Game.RESPONSE_DELIM).append(getString(frame));
+            break;
+        }
+        case CHANGES: {
+            boolean snapshot = frame.get() == SNAPSHOT;
+            text.append(snapshot ? Match.SNAPSHOT : Match.DELTA).append(Game.RESPONSE_DELIM)
+                .append(getString(frame)).append(Game.RESPONSE_DELIM)
+                .append(frame.getInt()).append(Game.RESPONSE_DELIM);
+            if (snapshot) {
+                readGuesses(frame, text);
+            } else {
+                readChanges(frame, text);
+            }
+            break;
+        }
+        default:
+            throw new IllegalArgumentException("no binary encoding for " + type);
+        }
+        return text.toString();
+    }
+
+    private static void readMatches(ByteBuffer frame, StringBuilder text) {
+        int n = frame.getInt();
+        for (int i = 0; i < n; i++) {
+            text.append(i == 0 ? "" : Game.ENTRY_DELIM)
+                .append(getString(frame)).append(Game.WORD_DELIM).append(getString(frame));
+        }
+    }
+
+    private static void readGuesses(ByteBuffer frame, StringBuilder text) {
+        text.append(getState(frame)).append(Game.RESPONSE_DELIM)
+            .append(getString(frame)).append(Game.WORD_DELIM).append(frame.getInt()).append(Game.ENTRY_DELIM)
+            .append(getString(frame)).append(Game.WORD_DELIM).append(frame.getInt()).append(Game.RESPONSE_DELIM);
+        int n = frame.getInt();
+        for (int i = 0; i < n; i++) {
+            text.append(i == 0 ? "" : Game.ENTRY_DELIM)
+                .append(getString(frame)).append(Game.WORD_DELIM)
+                .append(frame.get() == 1 ? "T" : "F").append(Game.WORD_DELIM)
+                .append(frame.getInt()).append(Game.WORD_DELIM)
+                .append(getString(frame)).append(Game.WORD_DELIM)
+                .append(getOrientation(frame)).append(Game.WORD_DELIM)
+                .append(frame.getInt()).append(Game.WORD_DELIM)
+                .append(frame.getInt());
+        }
+    }
+
+    private static void readChanges(ByteBuffer frame, StringBuilder text) {
+        int n = frame.getInt();
+        for (int i = 0; i < n; i++) {
+            byte kind = frame.get();
+            text.append(i == 0 ? "" : Game.ENTRY_DELIM).append(CHANGE_KINDS[kind]);
+            switch (kind) {
+            case 0:
+                text.append(Game.WORD_DELIM).append(getString(frame))
+                    .append(Game.WORD_DELIM).append(frame.getInt())
+                    .append(Game.WORD_DELIM).append(getString(frame))
+                    .append(Game.WORD_DELIM).append(getOrientation(frame))
+                    .append(Game.WORD_DELIM).append(frame.getInt())
+                    .append(Game.WORD_DELIM).append(frame.getInt());
+                break;
+            case 1:
+            case 2:
+                text.append(Game.WORD_DELIM).append(frame.getInt());
+                break;
+            case 3:
+                text.append(Game.WORD_DELIM).append(getString(frame))
+                    .append(Game.WORD_DELIM).append(frame.getInt());
+                break;
+            case 4:
+                text.append(Game.WORD_DELIM).append(getString(frame));
+                break;
+            default:
+                text.append(Game.WORD_DELIM).append(getState(frame));
+                break;
+            }
+        }
+    }
+
+    /**
+     * Puts the byte count of s as a varint and then its UTF-8 bytes, encoding straight into buffer
+     * @throws BufferOverflowException if buffer has too little room
+     */
+    static void putString(ByteBuffer buffer, String s) {
+        final int utf8Length = utf8Length(s);
+        for (int length = utf8Length; ; length >>>= VARINT_BITS) {
+            if (length < VARINT_MORE) {
+                buffer.put((byte) length);
+                break;
+            }
+            buffer.put((byte) (length | VARINT_MORE));
+        }
+        if (utf8Length == s.length()) {
+            // one byte per char: ASCII, which is its own UTF-8 byte, or an unpaired surrogate,
+            // which the encoder would replace with '?'
+            if (buffer.remaining() < utf8Length) {
+                throw new BufferOverflowException();
+            }
+            for (int i = 0; i < utf8Length; i++) {
+                final char c = s.charAt(i);
+                buffer.put(c < 0x80 ? (byte) c : (byte) '?');
+            }
+            return;
+        }
+        CharsetEncoder encoder = ENCODER.get().reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(s), buffer, true);
+        if (result.isOverflow()) {
+            throw new BufferOverflowException();
+        }
+        encoder.flush(buffer);
+    }
+
+    /**
+     * @param s string to measure
+     * @return bytes putString(buffer, s) puts
+     */
+    static int stringSize(String s) {
+        final int utf8Length = utf8Length(s);
+        int size = utf8Length + 1;
+        for (int length = utf8Length >>> VARINT_BITS; length > 0; length >>>= VARINT_BITS) {
+            size++;
+        }
+        return size;
+    }
+
+    /*
+     * Counts the UTF-8 bytes of s without encoding it; an unpaired surrogate counts as the one
+     * byte the encoder replaces it with.
+     */
+    private static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            final int oneByte = 0x80;
+            final int twoBytes = 0x800;
+            if (c < oneByte) {
+                length += 1;
+            } else if (c < twoBytes) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @param frame buffer positioned at a str
+     * @return the str, after which frame is positioned
+     */
+    public static String getString(ByteBuffer frame) {
+        int length = 0;
+        for (int shift = 0; ; shift += VARINT_BITS) {
+            byte b = frame.get();
+            length |= (b & (VARINT_MORE - 1)) << shift;
+            if ((b & VARINT_MORE) == 0) {
+                break;
+            }
+        }
+        String s = new String(frame.array(), frame.arrayOffset() + frame.position(), length, UTF_8);
+        frame.position(frame.position() + length);
+        return s;
+    }
+
+    /**
+     * Puts a bool
+     */
+    static void putBoolean(ByteBuffer buffer, boolean b) {
+        buffer.put((byte) (b ? 1 : 0));
+    }
+
+    /**
+     * Puts a state
+     */
+    static void putState(ByteBuffer buffer, MatchState state) {
+        buffer.put((byte) state.ordinal());
+    }
+
+    private static MatchState getState(ByteBuffer frame) {
+        return MatchState.values()[frame.get()];
+    }
+
+    /**
+     * Puts an orientation
+     */
+    static void putOrientation(ByteBuffer buffer, Orientation orientation) {
+        buffer.put((byte) orientation.ordinal());
+    }
+
+    /**
+     * @param kind kind of change, as Match.getChangesForResponse describes it
+     * @return byte code of kind
+     * @throws IllegalArgumentException if there is no such kind of change
+     */
+    static byte changeKind(String kind) {
+        for (byte code = 0; code < CHANGE_KINDS.length; code++) {
+            if (CHANGE_KINDS[code].equals(kind)) {
+                return code;
+            }
+        }
+        throw new IllegalArgumentException("unknown change: " + kind);
+    }
+
+    private static Orientation getOrientation(ByteBuffer frame) {
+        return Orientation.values()[frame.get()];
+    }
+}
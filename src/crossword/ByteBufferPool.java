@@ -0,0 +1,83 @@
+package crossword;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threadsafe pool of equally sized heap ByteBuffers, so that encoding a message does not
+ * allocate a new buffer each time.
+ */
+public class ByteBufferPool {
+    // Abstraction function:
+    //    AF(bufferSize, maxPooled, free, pooled): pool lending buffers of bufferSize bytes, where free
+    //          holds the idle buffers ready to lend and pooled counts them, keeping at most maxPooled
+    // Representation invariant:
+    //  bufferSize > 0, maxPooled >= 0
+    //  every buffer in free has capacity bufferSize
+    //  0 <= pooled.get() <= maxPooled
+    // Safety from rep exposure:
+    //  all fields are private and final
+    //  a buffer in free is never also lent out: acquire removes it and release adds it back
+    // Thread safety argument:
+    //  free is a concurrent queue and pooled is an atomic; pooled may briefly disagree with
+    //      free's size, which only affects whether a released buffer is kept
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Make an empty pool.
+     * @param bufferSize capacity of each buffer, > 0
+     * @param maxPooled most idle buffers to keep, >= 0
+     */
+    public ByteBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert bufferSize > 0;
+        assert maxPooled >= 0;
+    }
+
+    /**
+     * @return capacity of the buffers this pool lends
+     */
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Borrows a cleared buffer of bufferSize() bytes. Return it with release() when done.
+     * @return a buffer not in use by anyone else
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(bufferSize);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a borrowed buffer to the pool. Buffers of another size, or beyond
+     * the pool's limit, are left to the garbage collector.
+     * @param buffer buffer from acquire() that the caller no longer uses
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize || pooled.incrementAndGet() > maxPooled) {
+            if (buffer.capacity() == bufferSize) {
+                pooled.decrementAndGet();
+            }
+            return;
+        }
+        free.add(buffer);
+    }
+}
@@ -0,0 +1,170 @@
+package crossword;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable dense index of the cells of a puzzle and of which entries cross which. Each cell
+ * covered by some entry gets an index from 0 to cellCount() - 1, and primitive arrays give
+ * each cell's correct letter, each entry's cells, and each entry's crossings: the other
+ * entries sharing one of its cells, with the offsets of the shared letter in both words.
+ */
+class CellGrid {
+    // Abstraction function:
+    //    AF(entryCells, correctLetters, crossings): the cells of a puzzle, numbered 0 to
+    //          correctLetters.length - 1, where entry wordID covers the cells entryCells[wordID][0],
+    //          entryCells[wordID][1], ... in letter order and cell c's correct letter is
+    //          correctLetters[c]; entry wordID shares a cell with entry crossings[wordID][3k],
+    //          at its letter crossings[wordID][3k + 1] and the other entry's letter
+    //          crossings[wordID][3k + 2], for each k
+    // Representation invariant:
+    //  crossings[w].length is a multiple of 3
+    //  (o, i, j) is a triple of crossings[w] iff o != w and entryCells[w][i] == entryCells[o][j]
+    //  triples of crossings[w] are in increasing order of o, then of i
+    // Safety from rep exposure:
+    //  all fields are private and final, and the arrays are never returned; accessors only
+    //      return their primitive elements
+    // Thread safety argument:
+    //  this class is immutable and therefore threadsafe
+
+    private static final int CROSSING_FIELDS = 3;
+
+    private final int[][] entryCells;
+    private final char[] correctLetters;
+    private final int[][] crossings;
+
+    /**
+     * Indexes the cells of a puzzle. Where entries disagree on a cell's letter, the entry
+     * with the larger ID gives the correct letter.
+     * @param entries entries of a puzzle, with IDs 0 to entries.size() - 1
+     */
+    CellGrid(Map<Integer, PuzzleEntry> entries) {
+        int letterCount = 0;
+        for (PuzzleEntry entry : entries.values()) {
+            letterCount += entry.getWord().length();
+        }
+        final PackedCellMap cells = new PackedCellMap(letterCount);
+        final List<Character> letters = new ArrayList<>();
+        final List<List<int[]>> covering = new ArrayList<>(); // cell : [wordID, offset] of each entry over it
+        entryCells = new int[entries.size()][];
+        for (int wordID = 0; wordID < entries.size(); wordID++) {
+            PuzzleEntry entry = entries.get(wordID);
+            String word = entry.getWord();
+            entryCells[wordID] = new int[word.length()];
+            for (int j = 0; j < word.length(); j++) {
+                final long point = cellOf(entry, j);
+                int cell = cells.get(point);
+                if (cell < 0) {
+                    cell = letters.size();
+                    cells.put(point, cell);
+                    letters.add(word.charAt(j));
+                    covering.add(new ArrayList<>(2));
+                } else {
+                    letters.set(cell, word.charAt(j));
+                }
+                entryCells[wordID][j] = cell;
+                covering.get(cell).add(new int[] { wordID, j });
+            }
+        }
+        correctLetters = new char[letters.size()];
+        for (int cell = 0; cell < letters.size(); cell++) {
+            correctLetters[cell] = letters.get(cell);
+        }
+        crossings = new int[entries.size()][];
+        for (int wordID = 0; wordID < entries.size(); wordID++) {
+            List<int[]> wordCrossings = new ArrayList<>();
+            for (int i = 0; i < entryCells[wordID].length; i++) {
+                for (int[] other : covering.get(entryCells[wordID][i])) {
+                    if (other[0] != wordID) {
+                        wordCrossings.add(new int[] { other[0], i, other[1] });
+                    }
+                }
+            }
+            wordCrossings.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[1], b[1]));
+            crossings[wordID] = new int[CROSSING_FIELDS * wordCrossings.size()];
+            for (int k = 0; k < wordCrossings.size(); k++) {
+                System.arraycopy(wordCrossings.get(k), 0, crossings[wordID], CROSSING_FIELDS * k, CROSSING_FIELDS);
+            }
+        }
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert crossings.length == entryCells.length;
+        for (int[] wordCrossings : crossings) {
+            assert wordCrossings.length % CROSSING_FIELDS == 0;
+        }
+    }
+
+    /*
+     * @return the point of the letter at index j of entry, packed by PackedCellMap.key
+     */
+    private static long cellOf(PuzzleEntry entry, int j) {
+        Point position = entry.getPosition();
+        if (entry.getOrientation() == Orientation.ACROSS) {
+            return PackedCellMap.key(position.getRow(), position.getCol() + j);
+        }
+        return PackedCellMap.key(position.getRow() + j, position.getCol());
+    }
+
+    /**
+     * @return number of cells covered by some entry
+     */
+    int cellCount() {
+        return correctLetters.length;
+    }
+
+    /**
+     * @param wordID ID of an entry
+     * @param offset index of a letter of that entry
+     * @return the cell of that letter
+     */
+    int cell(int wordID, int offset) {
+        return entryCells[wordID][offset];
+    }
+
+    /**
+     * @param cell a cell, 0 <= cell < cellCount()
+     * @return the cell's correct letter
+     */
+    char correctLetter(int cell) {
+        return correctLetters[cell];
+    }
+
+    /**
+     * @param wordID ID of an entry
+     * @return number of cells the entry shares with other entries
+     */
+    int crossingCount(int wordID) {
+        return crossings[wordID].length / CROSSING_FIELDS;
+    }
+
+    /**
+     * @param wordID ID of an entry
+     * @param k 0 <= k < crossingCount(wordID)
+     * @return ID of the other entry at the entry's k-th crossing; crossings are in
+     *         increasing order of this ID
+     */
+    int crossingEntry(int wordID, int k) {
+        return crossings[wordID][CROSSING_FIELDS * k];
+    }
+
+    /**
+     * @param wordID ID of an entry
+     * @param k 0 <= k < crossingCount(wordID)
+     * @return index of the entry's letter at its k-th crossing
+     */
+    int crossingOffset(int wordID, int k) {
+        return crossings[wordID][CROSSING_FIELDS * k + 1];
+    }
+
+    /**
+     * @param wordID ID of an entry
+     * @param k 0 <= k < crossingCount(wordID)
+     * @return index of the other entry's letter at the entry's k-th crossing
+     */
+    int crossedOffset(int wordID, int k) {
+        return crossings[wordID][CROSSING_FIELDS * k + 2];
+    }
+}
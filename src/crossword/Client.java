@@ -161,9 +161,13 @@ public class Client {
                     PrintWriter watchSocketOut = new PrintWriter(new OutputStreamWriter(watchSocket.getOutputStream(), UTF_8), true);
                     BufferedReader watchSystemIn = new BufferedReader(new InputStreamReader(System.in));
                 ) {
+                    // One subscription streams every change until this thread closes the socket
+                    watchSocketOut.println(playerID + " " + "SUBSCRIBE WATCH");
                     while (canvas.getState() == State.CHOOSE) {
-                        watchSocketOut.println(playerID + " " + "WATCH");
                         String watchResponse = watchSocketIn.readLine();
+                        if (watchResponse == null || watchResponse.charAt(0) == 'I') {
+                            break;
+                        }
                         canvas.setMatchList(watchResponse.substring(1));
                         canvas.repaint();
                     }
@@ -284,9 +288,12 @@ public class Client {
                     PrintWriter playSocketOut = new PrintWriter(new OutputStreamWriter(playSocket.getOutputStream(), UTF_8), true);
                     BufferedReader playSystemIn = new BufferedReader(new InputStreamReader(System.in));
                 ) {
+                    playSocketOut.println(playerID + " " + "SUBSCRIBE PLAY");
                     while (canvas.getState() == State.PLAY) {
-                        playSocketOut.println(playerID + " " + "WAIT_PLAY");
                         String playResponse = playSocketIn.readLine();
+                        if (playResponse == null || playResponse.charAt(0) == 'I') {
+                            break;
+                        }
                         
                         processResponseForPlay(playResponse);
                     }
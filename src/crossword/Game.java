@@ -2,14 +2,26 @@ package crossword;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
-import edu.mit.eecs.parserlib.UnableToParseException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * A mutable Game class representing a single Crossword Game
@@ -20,99 +32,268 @@ public class Game {
     public static final String WORD_DELIM = " bs1fc ";
     public static final String RESPONSE_DELIM = " cs2fd ";
     private final Set<String> players; // set of all playerIDs currently logged in
-    private final Map<String, Puzzle> puzzles; // map of puzzleID : Puzzle
+    private final Map<String, Integer> handles; // map of playerID : handle, interned at login
+    private final AtomicInteger nextHandle; // handle to intern the next playerID to
+    private volatile Map<String, PuzzleTemplate> puzzles; // map of puzzleID : template, replaced whole by setPuzzles
+    private final List<PuzzleTemplate> importedPuzzles; // puzzles added by addPuzzles, in the order added
+    private final PuzzleTemplateCache templates; // puzzles decoded from the templates in puzzles
     private final Map<String, String> playerToMatch; // map of playerID : match_id
     private final Map<String, Match> matches; //  map of match_id : match
-    private Set<WatchListener> watchListeners;
+    private final LobbyIndex lobby; // the matches waiting for a second player
+    private final LobbyBroadcaster lobbyBroadcaster; // coalesces lobby changes into watch notifications
+    private final Set<WatchListener> watchListeners;
     private final Map<String, WaitListener> waitListeners;
     private final Map<String, PlayListener> playListeners;
+    private final Set<WatchListener> watchSubscribers;
+    private final Map<String, Set<PlayListener>> playSubscribers;
     
     /**
      * Main method. Makes the Game from Puzzle objects from parsing.
      * 
      * @param args command line arguments, not used
-     * @throws UnableToParseException if example expression can't be parsed
-     * @throws IOException if .puzzle file cannot be opened
+     * @throws IOException if the puzzles/ directory cannot be listed
      */
-    public static void main(final String[] args) throws UnableToParseException, IOException {
+    public static void main(final String[] args) throws IOException {
         System.out.println(Game.parseGameFromFiles("puzzles/").getPuzzleNames());
     }
     
     /**
+     * Parses the puzzles in a directory, reporting files that cannot be read or parsed to
+     * System.err instead of failing.
+     * 
+     * @param directory the folder to the puzzles
+     * @return a new Game with all consistent puzzles parsed from files inside directory
+     * @throws IOException if directory cannot be listed
+     */
+    public static Game parseGameFromFiles(String directory) throws IOException {
+        final Map<String, Exception> failures = new TreeMap<>();
+        final Game game = parseGameFromFiles(directory, failures);
+        reportFailures(failures);
+        return game;
+    }
+    
+    /**
+     * Prints puzzle files that could not be read or parsed to System.err.
+     * @param failures map of file name : exception reading or parsing it failed with
+     */
+    static void reportFailures(Map<String, Exception> failures) {
+        for (Map.Entry<String, Exception> failure : failures.entrySet()) {
+            System.err.println("Skipping puzzle " + failure.getKey() + ": " + failure.getValue());
+        }
+    }
+    
+    /**
+     * Parses and checks the puzzles in a directory in parallel, and names them as namePuzzles.
+     * 
      * @param directory the folder to the puzzles
-     * @return a new Game with all puzzles parsed from files inside puzzles/
-     * @throws UnableToParseException Puzzle cannot be parsed
-     * @throws IOException File cannot be read
-     */
-    public static Game parseGameFromFiles(String directory) throws UnableToParseException, IOException {
-        // Do something
-        HashMap<String, Puzzle> puzzles = new HashMap<>();
-        File folder = new File(directory);
-        File[] listofPuzzles = folder.listFiles();
-        for (File file : listofPuzzles) {
-            if (file.isFile()) {
-                Puzzle newPuzzle = Puzzle.parseFromFile(directory + file.getName()); 
-                if (newPuzzle.isConsistent()) {
-                    String puzzleID = newPuzzle.getName();
-                    if (puzzleID.length() == 0) {
-                        puzzleID = "JYZ";
+     * @param failures map to which the file name of each file that cannot be read or parsed
+     *                 is added, with the exception that read or parse failed with;
+     *                 inconsistent puzzles are skipped without being reported
+     * @return a new Game with all consistent puzzles parsed from files inside directory
+     * @throws IOException if directory cannot be listed
+     */
+    public static Game parseGameFromFiles(String directory, Map<String, Exception> failures) throws IOException {
+        final File[] listOfFiles = new File(directory).listFiles(File::isFile);
+        if (listOfFiles == null) {
+            throw new IOException("cannot list puzzle directory " + directory);
+        }
+        return new Game(namePuzzles(loadPuzzleFiles(Arrays.asList(listOfFiles), failures, null)));
+    }
+    
+    /**
+     * Parses and checks puzzle files in parallel.
+     * 
+     * @param files puzzle files with distinct names
+     * @param failures map to which the file name of each file that cannot be read or parsed
+     *                 is added, with the exception that read or parse failed with
+     * @param cache cache to load the files through, or null to parse every file
+     * @return map of file name : puzzle of the files that hold consistent puzzles
+     * @throws IOException if interrupted while loading
+     */
+    static SortedMap<String, Puzzle> loadPuzzleFiles(Collection<File> files, Map<String, Exception> failures,
+            PuzzleCache cache) throws IOException {
+        final SortedMap<String, Puzzle> puzzlesByFile = new TreeMap<>();
+        if (files.isEmpty()) {
+            return puzzlesByFile;
+        }
+        final int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        final ExecutorService loaders = Executors.newFixedThreadPool(threads);
+        final Map<String, Future<Puzzle>> loaded = new TreeMap<>();
+        try {
+            for (File file : files) {
+                // parses and checks the puzzle, or yields null if it is inconsistent
+                loaded.put(file.getName(), loaders.submit(() -> {
+                    final Puzzle puzzle = cache == null ? Puzzle.parseFromFile(file.getPath()) : cache.load(file);
+                    return puzzle.isConsistent() ? puzzle : null;
+                }));
+            }
+            for (Map.Entry<String, Future<Puzzle>> load : loaded.entrySet()) {
+                try {
+                    final Puzzle newPuzzle = load.getValue().get();
+                    if (newPuzzle != null) {
+                        puzzlesByFile.put(load.getKey(), newPuzzle);
                     }
-                    
-                    // If the puzzle name is already in puzzles, try 
-                    //  using puzzleName1, puzzleName2, etc. until one of them hasn't been taken yet
-                    if (puzzles.containsKey(puzzleID)) {
-                        int i = 1;
-                        puzzleID += Integer.toString(i);
-                        while (puzzles.containsKey(puzzleID)) {
-                            i += 1;
-                            // Remove the number at the end and replace it with a new number
-                            puzzleID = puzzleID.substring(0, puzzleID.length()-1);
-                            puzzleID += Integer.toString(i);
-                        }
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof Exception)) {
+                        throw new RuntimeException("loading puzzle " + load.getKey() + " failed", e.getCause());
                     }
-                    puzzles.put(puzzleID, newPuzzle);
+                    failures.put(load.getKey(), (Exception) e.getCause());
                 }
             }
+            return puzzlesByFile;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while loading puzzles");
+        } finally {
+            loaders.shutdownNow();
+        }
+    }
+    
+    /**
+     * Names puzzles in the order of their file names, so that a puzzle whose name is taken is
+     * always given the same numbered name (name1, name2, ...) however long each file took to
+     * load.
+     * 
+     * @param puzzlesByFile map of file name : puzzle
+     * @return map of puzzleID : puzzle of the same puzzles
+     */
+    static Map<String, Puzzle> namePuzzles(SortedMap<String, Puzzle> puzzlesByFile) {
+        return namePuzzles(new HashMap<>(), puzzlesByFile.values(), Puzzle::getName);
+    }
+    
+    /**
+     * Names puzzle templates as namePuzzles names puzzles.
+     * 
+     * @param templatesByFile map of file name : template
+     * @return map of puzzleID : template of the same templates
+     */
+    static Map<String, PuzzleTemplate> nameTemplates(SortedMap<String, PuzzleTemplate> templatesByFile) {
+        return namePuzzles(new HashMap<>(), templatesByFile.values(), PuzzleTemplate::getName);
+    }
+    
+    /*
+     * Adds puzzles to named in order, each named with uniquePuzzleID.
+     * @return named
+     */
+    private static <T> Map<String, T> namePuzzles(Map<String, T> named, Collection<T> puzzles, Function<T, String> nameOf) {
+        for (T newPuzzle : puzzles) {
+            named.put(uniquePuzzleID(nameOf.apply(newPuzzle), named.keySet()), newPuzzle);
+        }
+        return named;
+    }
+    
+    /*
+     * @return map of the same names to the templates of puzzles
+     */
+    private static Map<String, PuzzleTemplate> templatesOf(Map<String, Puzzle> puzzles) {
+        final Map<String, PuzzleTemplate> templates = new HashMap<>();
+        for (Map.Entry<String, Puzzle> puzzle : puzzles.entrySet()) {
+            templates.put(puzzle.getKey(), new PuzzleTemplate(puzzle.getValue()));
+        }
+        return templates;
+    }
+    
+    /*
+     * @param name name of a puzzle
+     * @param taken puzzle IDs already in use
+     * @return name if it is not taken, otherwise the first of name1, name2, etc. that is not
+     *         taken; the empty name is replaced by JYZ
+     */
+    private static String uniquePuzzleID(String name, Set<String> taken) {
+        final String baseID = name.length() == 0 ? "JYZ" : name;
+        String puzzleID = baseID;
+        for (int i = 1; taken.contains(puzzleID); i++) {
+            puzzleID = baseID + i;
         }
-        return new Game(puzzles);
+        return puzzleID;
     }
     
     // Abstraction function:
-    //    AF(players, puzzles, playerToMatch, matches, 
-    //       watchListeners, waitListeners, playListeners):
+    //    AF(players, handles, nextHandle, puzzles, playerToMatch, matches, 
+    //       watchListeners, waitListeners, playListeners, watchSubscribers, playSubscribers):
     //          a crossword game with multiple crossword puzzles, where players represents the
-    //          set of players logged in to the game and where each entry in puzzles 
+    //          set of players logged in to the game, handles maps each player logged in to the
+    //          compact int that matches know it by, and where each entry in puzzles 
     //          represents a mapping of puzzle name to the crossword puzzle it represents, 
     //          each entry in playerToMatch represents a mapping of a current player to the match 
     //          it represents, and matches represents a mapping of a match name to an object
-    //          representation of a match. watchListeners represents the set of WatchListeners
+    //          representation of a match, of which lobby indexes those waiting for a second
+    //          player. watchListeners represents the set of WatchListeners
     //          that notifies all players when a change occurs to the list of available matches.
     //          waitListeners and playListeners represent a mapping of players in matches to 
     //          the respective listeners when a change occurs in their match.
+    //          watchSubscribers and playSubscribers are like watchListeners and playListeners,
+    //          except that they are called on every change until they are unsubscribed.
+    //          lobbyBroadcaster calls the watch listeners and subscribers for the lobby changes,
+    //          at once or once per tick.
+    //          Each puzzle in puzzles is kept as a template, and templates holds the
+    //          recently used puzzles decoded from them. importedPuzzles are the templates
+    //          in puzzles that were added by addPuzzles, which setPuzzles keeps.
     // Representation invariant:
-    //  true
+    //  every puzzle in importedPuzzles is a value of puzzles
+    //  handles's values are distinct and less than nextHandle, so a handle is never reused
+    //  every match in lobby is a value of matches, and every waiting match of matches is in
+    //      lobby once createMatch has returned
     // Safety from rep exposure:
-    //  all fields are final and private
-    //  puzzles map is mutable, but defensive copies are made in getPuzzles() to not return the original
-    //      puzzles
-    //  puzzles's keys and values are immutable types (String and Puzzle respectively)
+    //  all fields are private, and all but puzzles are final
+    //  puzzles is an unmodifiable copy of the map it was made from
+    //  puzzles's keys and values are immutable types (String and PuzzleTemplate respectively)
     //  all getter methods return an immutable String object and does not access the reps directly
     //  only way to modify reps is through mutator methods
     // Thread Safety Argument:
-    //  uses monitor pattern
+    //  puzzles is a volatile reference to an unmodifiable map of immutable templates; setPuzzles
+    //      swaps in a new map instead of changing it, and each method reads the reference once,
+    //      so it sees one whole catalog
+    //  setTemplates and addPuzzles only change puzzles and importedPuzzles while holding the
+    //      lock on this Game, so neither loses the other's puzzles, and importedPuzzles is
+    //      only used while holding it
+    //  templates, lobby and lobbyBroadcaster are threadsafe; a match is removed from lobby after it leaves the
+    //      waiting state, and lobby skips matches that are no longer waiting
+    //  a Match keeps the Puzzle it was made from, so swapping the catalog does not change it,
+    //      and templates gives that Puzzle to new matches of its template while it is in use
+    //  players, handles, playerToMatch, matches and the listener collections are concurrent collections,
+    //      and lobby changes that touch more than one of them only use their atomic
+    //      operations (add, putIfAbsent, computeIfAbsent, conditional remove) so that losing a race fails
+    //      the request instead of corrupting the lobby
+    //  match-level operations (trying, challenging, exiting, scores, guesses) look the match
+    //      up and then only hold that Match's lock, so matches do not block one another
+    //  listeners are removed atomically before they are called, so each fires at most once,
+    //      and they are called without holding any lock
+    //  subscribers stay registered and may be called by several threads at once
+    //  listeners are called on the thread that made the change, or for watch listeners with
+    //      a watch tick on lobbyBroadcaster's timer thread, so they must not block; the
+    //      servers' listeners only queue their output for the connection
     
     /**
      * Creates a new Game
      * @param puzzles map of name : puzzles that are valid (consistent)
      */
     public Game(Map<String, Puzzle> puzzles) {
+        this(templatesOf(puzzles), PuzzleTemplateCache.DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Creates a new Game that holds the puzzles it has decoded from their templates up to a
+     * total number of entries, besides those of matches in progress.
+     * @param puzzles map of name : templates of puzzles that are valid (consistent)
+     * @param templateCapacity greatest total number of entries of the puzzles to hold, >= 0
+     */
+    Game(Map<String, PuzzleTemplate> puzzles, int templateCapacity) {
         this.puzzles = Collections.unmodifiableMap(new HashMap<>(puzzles));
-        this.matches = Collections.synchronizedMap(new HashMap<String, Match>());
-        this.playerToMatch = Collections.synchronizedMap(new HashMap<String, String>());
-        this.players = Collections.synchronizedSet(new HashSet<String>());
-        this.watchListeners = Collections.synchronizedSet(new HashSet<>());
-        this.waitListeners = Collections.synchronizedMap(new HashMap<>());
-        this.playListeners = Collections.synchronizedMap(new HashMap<>());
+        this.importedPuzzles = new ArrayList<>();
+        this.templates = new PuzzleTemplateCache(templateCapacity);
+        this.matches = new ConcurrentHashMap<>();
+        this.lobby = new LobbyIndex();
+        this.lobbyBroadcaster = new LobbyBroadcaster(this::notifyWatchers);
+        this.playerToMatch = new ConcurrentHashMap<>();
+        this.players = ConcurrentHashMap.newKeySet();
+        this.handles = new ConcurrentHashMap<>();
+        this.nextHandle = new AtomicInteger();
+        this.watchListeners = ConcurrentHashMap.newKeySet();
+        this.waitListeners = new ConcurrentHashMap<>();
+        this.playListeners = new ConcurrentHashMap<>();
+        this.watchSubscribers = ConcurrentHashMap.newKeySet();
+        this.playSubscribers = new ConcurrentHashMap<>();
     }
     
     /**
@@ -122,17 +303,8 @@ public class Game {
      * @return string with format: length, clue, orientation, row, col\n
      *         e.g: "4, "twinkle twinkle", ACROSS, 0, 1\n"
      */
-    public synchronized String getPuzzleForResponse(String name) {
-        Puzzle puzzle = puzzles.get(name);
-        String puzzleString = "";
-        for (Map.Entry<Integer, PuzzleEntry> entry: puzzle.getEntries().entrySet()) {
-            Integer id = entry.getKey();
-            PuzzleEntry puzzleEntry = entry.getValue();
-            puzzleString += id + WORD_DELIM + puzzleEntry.getWord().length() + WORD_DELIM + puzzleEntry.getClue() + WORD_DELIM + 
-                    puzzleEntry.getOrientation() + WORD_DELIM + puzzleEntry.getPosition().getRow() 
-                            + WORD_DELIM + puzzleEntry.getPosition().getCol() + ENTRY_DELIM;
-        }
-        return puzzleString.substring(0,puzzleString.length()-ENTRY_DELIM.length());
+    public String getPuzzleForResponse(String name) {
+        return templates.get(puzzles.get(name)).getLayoutForResponse();
     }
     
     /**
@@ -140,44 +312,55 @@ public class Game {
      * @param matchID the id of the match
      * @return puzzle of the given match
      */
-    public synchronized String getPuzzleFromMatchID(String matchID) {
+    public String getPuzzleFromMatchID(String matchID) {
         return matches.get(matchID).getPuzzleForResponse();
     }
+    
+    /**
+     * @param matchID the id of the match
+     * @return PUZZLE response whose body is getPuzzleFromMatchID(matchID)
+     */
+    Response getLayoutOfMatch(String matchID) {
+        return matches.get(matchID).getLayout();
+    }
 
     /**
-     * 
+     * Removes the player's match and both of its players from the lobby if the match is done
      * @param playerID player
      */
-    public synchronized void removePlayerAndMatch(String playerID) {
+    public void removePlayerAndMatch(String playerID) {
         String matchID = playerToMatch.get(playerID);
+        if (matchID == null) {
+            // The other player already removed the match
+            return;
+        }
         Match match = matches.get(matchID);
-        String playerOne = match.getPlayerOne();
-        String playerTwo = match.getPlayerTwo();
-        if (match.isDone()) {
-            playerToMatch.remove(playerOne);
-            playerToMatch.remove(playerTwo);
-            matches.remove(matchID);
+        if (match != null && match.isDone()) {
+            // Only remove mappings that still point at this match
+            playerToMatch.remove(match.getPlayerOne(), matchID);
+            playerToMatch.remove(match.getPlayerTwo(), matchID);
+            matches.remove(matchID, match);
+            lobby.remove(match);
         }
     }
     
     /**
-     * Gets names of all puzzles and descriptions that are waiting for another player
+     * Gets names of all puzzles and descriptions that are waiting for another player.
+     * Only the waiting matches are listed, and the listing is only rebuilt after a match
+     * starts or stops waiting.
      * @return String with format: 
      *      match ::= match_ID WORD_DELIM description;
      *      response ::= match (ENTRY_DELIM match)*;
      */
-    public synchronized String getAvailableMatchesForResponse(){
-        StringBuilder responseBuilder = new StringBuilder();
-        for (Match match : matches.values()) {
-            if (responseBuilder.length() > 0) { // Add an entry delim if the entry is not the first one
-                responseBuilder.append(ENTRY_DELIM);
-            }
-            // Only add matches that are waiting for another player
-            if (match.isWaiting()) {
-                responseBuilder.append(match.getMatchId() + WORD_DELIM + match.getDescription());
-            }
-        }
-        return responseBuilder.toString();
+    public String getAvailableMatchesForResponse(){
+        return lobby.getListingForResponse();
+    }
+    
+    /**
+     * @return MATCHES response whose body is getAvailableMatchesForResponse()
+     */
+    Response getAvailableMatches() {
+        return lobby.getListing();
     }
         
     /**
@@ -185,31 +368,47 @@ public class Game {
      * @param playerID player name
      * @return true if player managed to join the game, false otherwise
      */
-    public synchronized boolean login(String playerID) {
-        if (players.contains(playerID)) { // Player already logged in!
+    public boolean login(String playerID) {
+        // add is atomic, so only one of two concurrent logins with the same ID succeeds
+        if (!players.add(playerID)) {
             return false;
         }
-        // player successfully logged in
-        players.add(playerID);
+        // interns the id to a handle, so that matches compare players as ints rather than by
+        // their ids; only login assigns handles, so a handle never changes under a match
+        handles.put(playerID, nextHandle.getAndIncrement());
         return true;
     }
+    
+    /**
+     * Looks up the handle a player was given at login, without assigning one
+     * @param playerID player id
+     * @return the handle of playerID, or Player.NO_HANDLE if it is not logged in
+     */
+    private int handleOf(String playerID) {
+        return handles.getOrDefault(playerID, Player.NO_HANDLE);
+    }
     /**
      * Player tries to join a match with match id
-     * @param playerID ID of the player who wants to join a game
+     * @param playerID ID of the player who wants to join a game, must be logged in
      * @param matchID ID of the puzzle that the player wants to join
      * @return true if successfully joined, false otherwise
      * @throws IOException 
      */
-    public synchronized boolean joinMatch(String playerID, String matchID) throws IOException {
-        if (!matches.containsKey(matchID)) {
+    public boolean joinMatch(String playerID, String matchID) throws IOException {
+        final int handle = handleOf(playerID);
+        if (handle == Player.NO_HANDLE) {
+            // Only a logged in player has a handle to play by
+            return false;
+        }
+        Match match = matches.get(matchID);
+        if (match == null) {
             // Match ID does not exist
             return false;
         }
-        boolean joined = matches.get(matchID).joinMatch(playerID);
+        boolean joined = match.joinMatch(playerID, handle);
         if (joined) {
+            lobby.remove(match);
             playerToMatch.put(playerID, matchID);
-            callWatchListeners();
-            Match match = matches.get(matchID);
             // Available matches just changed
             callWatchListeners();
             callWaitListener(match.getPlayerOne());
@@ -219,23 +418,46 @@ public class Game {
     
     /**
      * Player tries to create a match with matchID as the name
-     * @param playerID ID of the player who wants to join a game
+     * @param playerID ID of the player who wants to join a game, must be logged in
      * @param matchID ID of the puzzle that the player wants to join
      * @param puzzleID puzzle name
      * @param description description of the match
      * @return true if successfully joined, false otherwise
      * @throws IOException 
      */
-    public synchronized boolean createMatch(String playerID, String matchID, String puzzleID, String description) throws IOException {
+    public boolean createMatch(String playerID, String matchID, String puzzleID, String description) throws IOException {
+        final int handle = handleOf(playerID);
+        if (handle == Player.NO_HANDLE) {
+            // Only a logged in player has a handle to play by
+            return false;
+        }
         if (playerToMatch.containsKey(playerID) || matches.containsKey(matchID)) {
             return false;
         }
-        if (!puzzles.containsKey(puzzleID)) {
+        PuzzleTemplate template = puzzles.get(puzzleID);
+        if (template == null) {
             // No such puzzleID exists
             return false;
         }
-        playerToMatch.put(playerID, matchID);
-        matches.put(matchID, new Match(matchID, description, puzzles.get(puzzleID), playerID));
+        final Puzzle puzzle;
+        try {
+            // The match pins the puzzle, so the template is not decoded again while it is played
+            puzzle = templates.get(template);
+        } catch (UncheckedIOException e) {
+            // The puzzle's cached body was replaced or lost since the catalog was read
+            return false;
+        }
+        Match match = new Match(matchID, description, puzzle, playerID, handle);
+        if (matches.putIfAbsent(matchID, match) != null) {
+            // Another player took the match ID first
+            return false;
+        }
+        if (playerToMatch.putIfAbsent(playerID, matchID) != null) {
+            // The player joined or created another match first
+            matches.remove(matchID, match);
+            return false;
+        }
+        lobby.add(match);
         callWatchListeners();
         return true;
         
@@ -246,17 +468,18 @@ public class Game {
      * @param playerID player id
      * @return true if player managed to log out of the game, false otherwise
      */
-    public synchronized boolean logout(String playerID) {
+    public boolean logout(String playerID) {
         if (playerToMatch.containsKey(playerID)) {
             // Player already in a match cannot log out, they must exit the match first!
             return false;
         }
-        if (players.contains(playerID)) {
-            players.remove(playerID);
-            return true;
-        } else {
+        if (!players.remove(playerID)) {
             return false;
         }
+        // a player in a match cannot log out, so no match holds the handle; it is never given
+        // to another player
+        handles.remove(playerID);
+        return true;
     }
     
     /**
@@ -265,23 +488,39 @@ public class Game {
      * @return true if the player managed to exit the match, false otherwise
      * @throws IOException if something goes wrong
      */
-    public synchronized boolean exitWait(String playerID) throws IOException {
-        if (!playerToMatch.containsKey(playerID)) {
+    public boolean exitWait(String playerID) throws IOException {
+        String matchID = playerToMatch.get(playerID);
+        if (matchID == null) {
             // Player is not in a match to exit from
             return false;
         }
-        String matchID = playerToMatch.get(playerID);
         Match match = matches.get(matchID);
-        if (!match.isWaiting()) {
+        if (match == null || !match.cancelWaiting()) {
             // Match is not waiting
             return false;
         }
-        matches.remove(matchID);
-        playerToMatch.remove(playerID);
+        matches.remove(matchID, match);
+        lobby.remove(match);
+        playerToMatch.remove(playerID, matchID);
         
         callWatchListeners();
         return true;
     }
+
+    /**
+     * Returns the match the player is in
+     * @param playerID player name
+     * @return the player's match, or null if the player is not in a match
+     */
+    private Match getMatchOfPlayer(String playerID) {
+        String matchID = playerToMatch.get(playerID);
+        if (matchID == null) {
+            // The player id cannot be found
+            return null;
+        }
+        // null if the match id cannot be found
+        return matches.get(matchID);
+    }
     
     /**
      * Player tries to guess a word in the puzzle
@@ -291,26 +530,16 @@ public class Game {
      * @return true if player managed to guess, false otherwise
      * @throws IOException 
      */
-    public synchronized boolean tryWord(String playerID, int wordID, String word) throws IOException {
-        if (!playerToMatch.containsKey(playerID)) {
-            // The player id cannot be found
+    public boolean tryWord(String playerID, int wordID, String word) throws IOException {
+        Match match = getMatchOfPlayer(playerID);
+        if (match == null) {
             return false;
         }
-        String matchID = playerToMatch.get(playerID);
-        if (!matches.containsKey(matchID)) {
-            // The match id cannot be found
-            return false;
-        }
-        Match match = matches.get(matchID);
-        if (!match.isOngoing()) {
-            return false;
-        }
-        boolean success = match.tryWord(playerID, wordID, word);
-        String playerOne = match.getPlayerOne();
-        String playerTwo = match.getPlayerTwo();
+        // a player in a match stays logged in, so it still has the handle it entered with
+        boolean success = match.tryWord(handleOf(playerID), wordID, word);
         if (success) {
-            callPlayListener(playerOne);
-            callPlayListener(playerTwo);
+            callPlayListener(match.getPlayerOne());
+            callPlayListener(match.getPlayerTwo());
         }
         return success;
     }
@@ -323,26 +552,16 @@ public class Game {
      * @return true if player managed to challenge, false otherwise
      * @throws IOException 
      */
-    public synchronized boolean challengeWord(String playerID, int wordID, String word) throws IOException {
-        if (!playerToMatch.containsKey(playerID)) {
-            // The player id cannot be found
+    public boolean challengeWord(String playerID, int wordID, String word) throws IOException {
+        Match match = getMatchOfPlayer(playerID);
+        if (match == null) {
             return false;
         }
-        String matchID = playerToMatch.get(playerID);
-        if (!matches.containsKey(matchID)) {
-            // The match id cannot be found
-            return false;
-        }
-        Match match = matches.get(matchID);
-        if (!match.isOngoing()) {
-            return false;
-        }
-        String playerOne = match.getPlayerOne();
-        String playerTwo = match.getPlayerTwo();
-        boolean success = match.challengeWord(playerID, wordID, word);
+        // a player in a match stays logged in, so it still has the handle it entered with
+        boolean success = match.challengeWord(handleOf(playerID), wordID, word);
         if (success) {
-            callPlayListener(playerOne);
-            callPlayListener(playerTwo);
+            callPlayListener(match.getPlayerOne());
+            callPlayListener(match.getPlayerTwo());
         }
         return success;
      }
@@ -353,22 +572,18 @@ public class Game {
      * @return true if managed to quit
      * @throws IOException 
      */
-    public synchronized boolean exitPlay(String playerID) throws IOException {
-        if (!playerToMatch.containsKey(playerID)) {
-            // The player id cannot be found
-            return false;
-        }
-        String matchID = playerToMatch.get(playerID);
-        if (!matches.containsKey(matchID)) {
-            // The match id cannot be found
+    public boolean exitPlay(String playerID) throws IOException {
+        Match match = getMatchOfPlayer(playerID);
+        if (match == null) {
             return false;
         }
-        Match match = matches.get(matchID);
-        String playerOne = match.getPlayerOne();
-        String playerTwo = match.getPlayerTwo();
         if (match.forfeit()) {
-            callPlayListener(playerOne);
-            callPlayListener(playerTwo);
+            if (lobby.remove(match)) {
+                // a waiting match that is forfeited is no longer available
+                callWatchListeners();
+            }
+            callPlayListener(match.getPlayerOne());
+            callPlayListener(match.getPlayerTwo());
             return true;
         }
         return false;
@@ -380,17 +595,69 @@ public class Game {
      * @param playerID player name
      * @return the score of the player
      */
-    public synchronized String showScore(String playerID) {
+    public String showScore(String playerID) {
         return matches.get(playerToMatch.get(playerID)).showScore();
     }
     
+    /**
+     * @param playerID player name
+     * @return SCORE response whose body is showScore(playerID)
+     */
+    Response getScore(String playerID) {
+        return matches.get(playerToMatch.get(playerID)).getScore();
+    }
+    
     /**
      * @return set of the names of all puzzles in the game
      */
-    public synchronized Set<String> getPuzzleNames() {
+    public Set<String> getPuzzleNames() {
         return puzzles.keySet();
     }
     
+    /**
+     * Replaces the puzzles that new matches can be made from, except those added by
+     * addPuzzles, which are kept and named after the new ones, and calls the watch listeners.
+     * Matches already made keep playing the puzzle they were made from.
+     * @param puzzles map of name : puzzles that are valid (consistent)
+     * @throws IOException if calling a watch listener does not work out
+     */
+    public void setPuzzles(Map<String, Puzzle> puzzles) throws IOException {
+        setTemplates(templatesOf(puzzles));
+    }
+    
+    /**
+     * Replaces the puzzles that new matches can be made from, as setPuzzles.
+     * @param puzzles map of name : templates of puzzles that are valid (consistent)
+     * @throws IOException if calling a watch listener does not work out
+     */
+    void setTemplates(Map<String, PuzzleTemplate> puzzles) throws IOException {
+        synchronized (this) {
+            this.puzzles = Collections.unmodifiableMap(namePuzzles(new HashMap<>(puzzles), importedPuzzles,
+                    PuzzleTemplate::getName));
+        }
+        callWatchListeners();
+    }
+    
+    /**
+     * Adds puzzles that new matches can be made from, each named after its puzzle name as
+     * namePuzzles names them, and calls the watch listeners. Added puzzles are kept when the
+     * other puzzles are replaced by setPuzzles.
+     * @param newPuzzles puzzles that are valid (consistent), in the order to name them
+     * @throws IOException if calling a watch listener does not work out
+     */
+    public void addPuzzles(Collection<Puzzle> newPuzzles) throws IOException {
+        final List<PuzzleTemplate> newTemplates = new ArrayList<>();
+        for (Puzzle newPuzzle : newPuzzles) {
+            newTemplates.add(new PuzzleTemplate(newPuzzle));
+        }
+        synchronized (this) {
+            importedPuzzles.addAll(newTemplates);
+            this.puzzles = Collections.unmodifiableMap(namePuzzles(new HashMap<>(puzzles), newTemplates,
+                    PuzzleTemplate::getName));
+        }
+        callWatchListeners();
+    }
+    
     /**
      * Returns a PlayablePuzzle with a specific format where every entry is separate by new lines and no 
      * words are revealed
@@ -398,20 +665,28 @@ public class Game {
      * @return string with format: length, clue, orientation, row, col\n
      *         e.g: "4, "twinkle twinkle", ACROSS, 0, 1\n"
      */
-    public synchronized String getMatchPuzzleForResponse(String playerID) {
-        if (!playerToMatch.containsKey(playerID)) {
+    public String getMatchPuzzleForResponse(String playerID) {
+        return getMatchLayout(playerID).getBody();
+    }
+    
+    /**
+     * @param playerID name of player
+     * @return PUZZLE response whose body is getMatchPuzzleForResponse(playerID)
+     */
+    Response getMatchLayout(String playerID) {
+        Match match = getMatchOfPlayer(playerID);
+        if (match == null) {
             throw new RuntimeException("PlayerID is not currently in a match");
         }
-        String matchID = playerToMatch.get(playerID);
-        Match match = matches.get(matchID);
-        return match.getPuzzleForResponse();
+        return match.getLayout();
     }
 
     /** A watch listener for the board  */
     public interface WatchListener {
         /** 
          * Called when the available matches in the game changes.
-         * A change is defined as when a new match becomes available or an available match becomes full
+         * A change is defined as when a new match becomes available or an available match becomes full,
+         * or when the puzzles that matches can be made from are replaced
          */
         public void onChange();
     }
@@ -419,15 +694,77 @@ public class Game {
      * Adds a listener for changes to available matches in the game
      * @param listener Adds a new listener
      */
-    public synchronized void addWatchListener(WatchListener listener) {
+    public void addWatchListener(WatchListener listener) {
         watchListeners.add(listener);
     }
     
-    private synchronized void callWatchListeners() throws IOException{
+    /**
+     * Subscribes a listener to every change in available matches until it is unsubscribed.
+     * The listener is called once right away with the current matches.
+     * @param listener listener to call on each change
+     */
+    public void subscribeToWatch(WatchListener listener) {
+        watchSubscribers.add(listener);
+        listener.onChange();
+    }
+    
+    /**
+     * Stops calling a listener added with subscribeToWatch
+     * @param listener listener to remove
+     * @return true if listener was subscribed
+     */
+    public boolean unsubscribeFromWatch(WatchListener listener) {
+        return watchSubscribers.remove(listener);
+    }
+    
+    private void callWatchListeners() throws IOException{
+        // broadcast now, or with the other changes of this tick if there is a watch tick
+        lobbyBroadcaster.changed();
+    }
+    
+    /**
+     * Calls the watch listeners and subscribers, recording how long after the change each
+     * was called
+     * @param changedNanos System.nanoTime() of the first change the notification covers
+     */
+    private void notifyWatchers(long changedNanos) {
         for (WatchListener listener : new ArrayList<>(watchListeners)) {
-            listener.onChange();
-            watchListeners.remove(listener);
+            // Another thread may be calling the same listeners, only the one that removes it calls it
+            if (watchListeners.remove(listener)) {
+                notifyWatcher(listener, changedNanos);
+            }
+        }
+        for (WatchListener subscriber : watchSubscribers) {
+            notifyWatcher(subscriber, changedNanos);
+        }
+    }
+    
+    /*
+     * Calls a watch listener or subscriber, reporting rather than throwing its failure, so
+     * that one failing watcher neither keeps the rest from being notified nor, on the watch
+     * tick's timer thread, cancels every later tick.
+     */
+    private void notifyWatcher(WatchListener watcher, long changedNanos) {
+        try {
+            watcher.onChange();
+        } catch (RuntimeException re) {
+            re.printStackTrace();
+            return;
         }
+        // the watcher has only queued its notification; the connection's dispatcher times the write
+        lobbyBroadcaster.recordEnqueueLatency(changedNanos);
+    }
+    
+    /**
+     * Sets how often watch listeners and subscribers are told that the available matches
+     * changed. With a tick, the changes made during a tick are coalesced into one
+     * notification per watcher at its end, so each watcher reads the listing once per tick
+     * however many matches were made, joined or exited.
+     * @param tickMillis milliseconds between notifications, >= 0, or 0 (the default) to
+     *                   notify on every change, on the thread that made it
+     */
+    public void setWatchTick(long tickMillis) {
+        lobbyBroadcaster.setTickMillis(tickMillis);
     }
     
     /** A watch listener for the game  */
@@ -444,7 +781,7 @@ public class Game {
      * @param playerID id of the player
      * @param listener Adds a new listener
      */
-    public synchronized void addWaitListener(String playerID, WaitListener listener) {
+    public void addWaitListener(String playerID, WaitListener listener) {
         waitListeners.put(playerID, listener);
     }
     
@@ -453,13 +790,12 @@ public class Game {
      * @param playerID the ID of the player
      * @throws IOException if calling wait listener does not work out
      */
-    private synchronized void callWaitListener(String playerID) throws IOException {
-        if (!waitListeners.containsKey(playerID)) {
+    private void callWaitListener(String playerID) throws IOException {
+        WaitListener listener = waitListeners.remove(playerID);
+        if (listener == null) {
             throw new RuntimeException("PlayerID must be waiting to call their wait listener: " + playerID);
         }
-        WaitListener listener = waitListeners.get(playerID);
         listener.onChange();
-        waitListeners.remove(playerID);
     }
     
     /** A play listener for the game */
@@ -477,7 +813,7 @@ public class Game {
      * @param playerID id of the player
      * @param listener the player listener to add
      */
-    public synchronized void addPlayListener(String playerID, PlayListener listener) {
+    public void addPlayListener(String playerID, PlayListener listener) {
         playListeners.put(playerID, listener);
     }
     
@@ -486,37 +822,106 @@ public class Game {
      * @param playerID the ID of the player
      * @throws IOException if calling play listener does not work out
      */
-    private synchronized void callPlayListener(String playerID) throws IOException {
-        if (!playListeners.containsKey(playerID)) {
+    private void callPlayListener(String playerID) throws IOException {
+        PlayListener listener = playListeners.remove(playerID);
+        Set<PlayListener> subscribers = playSubscribers.getOrDefault(playerID, Collections.emptySet());
+        if (listener == null && subscribers.isEmpty()) {
             throw new RuntimeException("PlayerID must be playing to call their play listener: " + playerID);
         }
-        PlayListener listener = playListeners.get(playerID);
-        listener.onChange();
-        playListeners.remove(playerID);
+        if (listener != null) {
+            listener.onChange();
+        }
+        for (PlayListener subscriber : subscribers) {
+            subscriber.onChange();
+        }
     }
     
     /**
-     * @return string of puzzle names with format:
-     *  response = puzzleName (ENTRY_DELIM puzzleName)*
+     * Subscribes a listener to every change in the player's matches until it is unsubscribed.
+     * The listener is called once right away with the current state of the player's match.
+     * @param playerID id of the player, who must be in a match
+     * @param listener listener to call on each change
+     * @return true if the player is in a match and listener was subscribed, false otherwise
      */
-    private synchronized String getPuzzleNamesForResponse() {
-        StringBuilder builder = new StringBuilder();
-        for (String puzzleName : puzzles.keySet()) {
-            builder.append(puzzleName + Game.ENTRY_DELIM);
+    public boolean subscribeToPlay(String playerID, PlayListener listener) {
+        if (getMatchOfPlayer(playerID) == null) {
+            return false;
         }
-        return builder.toString().substring(0, builder.length()-ENTRY_DELIM.length());
+        // Add inside compute so it cannot race with unsubscribeFromPlay dropping an empty set
+        playSubscribers.compute(playerID, (id, subscribers) -> {
+            Set<PlayListener> updated = (subscribers == null) ? ConcurrentHashMap.newKeySet() : subscribers;
+            updated.add(listener);
+            return updated;
+        });
+        listener.onChange();
+        return true;
+    }
+    
+    /**
+     * Stops calling a listener added with subscribeToPlay
+     * @param playerID id of the player the listener was subscribed for
+     * @param listener listener to remove
+     * @return true if listener was subscribed
+     */
+    public boolean unsubscribeFromPlay(String playerID, PlayListener listener) {
+        boolean[] removed = { false };
+        // Drop the player's set once it is empty, atomically with the removal
+        playSubscribers.computeIfPresent(playerID, (id, subscribers) -> {
+            removed[0] = subscribers.remove(listener);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+        return removed[0];
     }
     
     /**
      * @return puzzles and available matches
      */
-    public synchronized String getPuzzlesAndAvailableMatchesForResponse() {
-        // Build the string in 3 parts: add puzzle names -> add response delim -> add available matches
-        StringBuilder builder = new StringBuilder();
-        builder.append(getPuzzleNamesForResponse());
-        builder.append(RESPONSE_DELIM);
-        builder.append(getAvailableMatchesForResponse());
-        return builder.toString();
+    public String getPuzzlesAndAvailableMatchesForResponse() {
+        return getPuzzlesAndAvailableMatches().getBody();
+    }
+    
+    /**
+     * @return PUZZLES_AND_MATCHES response whose body is getPuzzlesAndAvailableMatchesForResponse()
+     */
+    Response getPuzzlesAndAvailableMatches() {
+        // A reload may have left the catalog empty
+        return new PuzzlesAndMatches(List.copyOf(puzzles.keySet()), lobby.getListing());
+    }
+    
+    /** PUZZLES_AND_MATCHES response: the names of the puzzles and the available matches */
+    private static class PuzzlesAndMatches extends Response {
+        private final List<String> puzzleNames;
+        private final Response matches;
+        
+        private PuzzlesAndMatches(List<String> puzzleNames, Response matches) {
+            super(ResponseType.PUZZLES_AND_MATCHES);
+            this.puzzleNames = puzzleNames;
+            this.matches = matches;
+        }
+        
+        /**
+         * @return puzzle names with format:
+         *  response = puzzleName (ENTRY_DELIM puzzleName)*
+         *  then RESPONSE_DELIM and the available matches
+         */
+        @Override
+        String getBody() {
+            // Build the string in 3 parts: add puzzle names -> add response delim -> add available matches
+            StringBuilder builder = new StringBuilder();
+            builder.append(String.join(ENTRY_DELIM, puzzleNames));
+            builder.append(RESPONSE_DELIM);
+            builder.append(matches.getBody());
+            return builder.toString();
+        }
+        
+        @Override
+        void writeBody(ByteBuffer buffer) {
+            buffer.putInt(puzzleNames.size());
+            for (String name : puzzleNames) {
+                BinaryProtocol.putString(buffer, name);
+            }
+            matches.writeBody(buffer);
+        }
     }
     
     /**
@@ -525,16 +930,47 @@ public class Game {
      * @return either a response containing a puzzle or the total score of the game based on whether
      *  the the match has ended or not
      */
-    public synchronized String getPlayListenerResponse(String playerID) {
-        if (!playerToMatch.containsKey(playerID)) {
+    public String getPlayListenerResponse(String playerID) {
+        return getPlayUpdate(playerID).getBody();
+    }
+    
+    /**
+     * @param playerID the ID of the player
+     * @return GUESSES or SCORE response whose body is getPlayListenerResponse(playerID)
+     */
+    Response getPlayUpdate(String playerID) {
+        Match match = getMatchOfPlayer(playerID);
+        if (match == null) {
             throw new RuntimeException("Player is not in a match");
         }
-        Match match = matches.get(playerToMatch.get(playerID));
-        if (match.isDone()) {
-            return match.showScore();
-        } else {
-            return getGuessesForResponse(playerID);
+        return match.getPlayUpdate();
+    }
+    
+    /**
+     * Returns the changes to a player's match since a version, as Match.getChangesForResponse
+     * @param playerID the ID of the player
+     * @param matchID the match the caller last saw; a snapshot is returned if the player is now in another match
+     * @param since last version of matchID the caller has seen, or -1 for a snapshot
+     * @return the player's match changes since version since, or null if the player is not in a match
+     */
+    public String getChangesForResponse(String playerID, String matchID, int since) {
+        Match.Changes changes = getChanges(playerID, matchID, since);
+        return (changes == null) ? null : changes.getBody();
+    }
+    
+    /**
+     * @param playerID the ID of the player
+     * @param matchID the match the caller last saw
+     * @param since last version of matchID the caller has seen, or -1 for a snapshot
+     * @return CHANGES response whose body is getChangesForResponse(playerID, matchID, since),
+     *         or null if the player is not in a match
+     */
+    Match.Changes getChanges(String playerID, String matchID, int since) {
+        Match match = getMatchOfPlayer(playerID);
+        if (match == null) {
+            return null;
         }
+        return match.getChanges(match.getMatchId().equals(matchID) ? since : -1);
     }
     
     /**
@@ -542,30 +978,70 @@ public class Game {
      * @param playerID player
      * @return puzzle
      */
-    public synchronized String getGuessesForResponse(String playerID) {
-        if (!playerToMatch.containsKey(playerID)) {
+    public String getGuessesForResponse(String playerID) {
+        return getGuesses(playerID).getBody();
+    }
+    
+    /**
+     * @param playerID player
+     * @return GUESSES response whose body is getGuessesForResponse(playerID)
+     */
+    Response getGuesses(String playerID) {
+        Match match = getMatchOfPlayer(playerID);
+        if (match == null) {
             throw new RuntimeException("Player is not in a match");
         }
-        return matches.get(playerToMatch.get(playerID)).getGuessesForResponse();
+        return match.getGuesses();
     }
     /**
      * Prints number of each listener currently in-game
      */
-    public synchronized void printListenerStats() {
+    public void printListenerStats() {
         System.out.println("Game listener stats:");
         System.out.println("\tWatch listeners: " + this.watchListeners.size());
         System.out.println("\tWait listeners: " + this.waitListeners.size());
+        System.out.println("\tPlay listeners: " + this.playListeners.size());
+        System.out.println("\tWatch subscribers: " + this.watchSubscribers.size());
+        System.out.println("\tPlay subscribers: " + this.playSubscribers.values().stream().mapToInt(Set::size).sum());
+    }
+    
+    /**
+     * Prints how lobby changes were broadcast to watchers, with percentiles of the time from
+     * a change until a watcher's listener returned, having queued its notification
+     */
+    public void printLobbyStats() {
+        System.out.println("Game lobby stats:");
+        System.out.println("\tWaiting matches: " + this.lobby.size());
+        System.out.println("\tWatch tick (ms): " + this.lobbyBroadcaster.getTickMillis());
+        System.out.println("\tChanges: " + this.lobbyBroadcaster.getChangeCount());
+        System.out.println("\tBroadcasts: " + this.lobbyBroadcaster.getBroadcastCount());
+        System.out.println("\tNotifications: " + this.lobbyBroadcaster.getNotificationCount());
+        for (double percentile : new double[] { 50, 90, 99, 100 }) {
+            System.out.println("\tFan-out enqueue latency p" + (int) percentile + " (us): "
+                    + this.lobbyBroadcaster.getEnqueueLatencyPercentileMicros(percentile));
+        }
+    }
+    
+    /**
+     * Prints how often the puzzles of new matches were already decoded from their templates
+     */
+    public void printTemplateStats() {
+        System.out.println("Game template stats:");
+        System.out.println("\tPuzzles: " + this.puzzles.size());
+        System.out.println("\tDecoded entries held: " + this.templates.getSize());
+        System.out.println("\tHits: " + this.templates.getHits());
+        System.out.println("\tMisses: " + this.templates.getMisses());
+        System.out.println("\tEvictions: " + this.templates.getEvictions());
     }
     
     /**
      * @return game with puzzle names and their representation separated by newlines
      */
     @Override
-    public synchronized String toString() {
+    public String toString() {
         StringBuilder gameString = new StringBuilder();
-        for (String puzzleName : puzzles.keySet()) {
-            Puzzle puzzle = puzzles.get(puzzleName);
-            gameString.append(puzzleName + "\n" + puzzle.toString() + "\n\n");
+        for (Map.Entry<String, PuzzleTemplate> puzzle : puzzles.entrySet()) {
+            gameString.append(puzzle.getKey() + "\n" + puzzle.getValue().toString() + "\n\n");
         }
 
         // Remove the string minus the newline at the end
@@ -0,0 +1,199 @@
+package crossword;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Mutable, threadsafe coalescer of the lobby changes of a game. With a tick of 0 every change
+ * is broadcast to the watchers at once, on the thread that made it. With a tick > 0 changes
+ * only mark the lobby changed, and a timer thread broadcasts once per tick in which the lobby
+ * changed, so a burst of changes costs one listing and one notification per watcher.
+ *
+ * Also keeps the enqueue latency of recent notifications: the time from the first change a
+ * broadcast covers until a watcher's listener returned. A client connection's listener only
+ * queues its notification in the connection's NotificationDispatcher outbox, so this leaves
+ * out the time spent in the outbox and writing to the socket, which the dispatcher measures.
+ */
+class LobbyBroadcaster {
+    static final int LATENCY_SAMPLES = 4096;
+
+    // Abstraction function:
+    //    AF(broadcast, tickMillis, timer, tick, changedNanos, changes, broadcasts, latencies,
+    //       recorded):
+    //          a coalescer that calls broadcast with the time of the first change not yet
+    //          broadcast, at once if tickMillis == 0 or else every tickMillis from timer
+    //          through tick if changedNanos != 0; changes and broadcasts count the changes
+    //          and the broadcasts made of them, and latencies holds the last
+    //          min(recorded, LATENCY_SAMPLES) enqueue latencies in nanoseconds, the one
+    //          recorded i-th at latencies[i % LATENCY_SAMPLES]
+    // Representation invariant:
+    //  tickMillis >= 0
+    //  tick != null iff tickMillis > 0, and then timer != null
+    //  recorded >= 0
+    // Safety from rep exposure:
+    //  all fields are private, and only primitives are returned
+    // Thread safety argument:
+    //  changedNanos is an atomic: the first change of a tick sets it with compareAndSet and
+    //      the tick takes it with getAndSet, so every change is covered by exactly one broadcast
+    //  tickMillis, timer and tick are only changed while holding the lock on this
+    //  changes and broadcasts are atomics
+    //  latencies and recorded are guarded by the lock on latencies
+    //  broadcast must be threadsafe, since changes with a tick of 0 call it on their own threads
+    //  a broadcast that throws on the timer thread is reported, so it never cancels tick
+
+    private final LongConsumer broadcast;
+    private volatile long tickMillis = 0;
+    private ScheduledExecutorService timer = null;
+    private ScheduledFuture<?> tick = null;
+    private final AtomicLong changedNanos = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong broadcasts = new AtomicLong();
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private long recorded = 0;
+
+    /**
+     * Make a coalescer that broadcasts every change at once.
+     * @param broadcast notifies the watchers of the lobby, given the System.nanoTime() of the
+     *                  first change it covers
+     */
+    LobbyBroadcaster(LongConsumer broadcast) {
+        this.broadcast = broadcast;
+    }
+
+    /**
+     * Sets how often changes are broadcast. Changes not yet broadcast are broadcast first.
+     * @param tickMillis milliseconds between broadcasts, or 0 to broadcast every change at once
+     */
+    synchronized void setTickMillis(long tickMillis) {
+        if (tickMillis < 0) {
+            throw new IllegalArgumentException("tick must be >= 0: " + tickMillis);
+        }
+        if (tick != null) {
+            tick.cancel(false);
+            tick = null;
+        }
+        this.tickMillis = tickMillis;
+        flush();
+        if (tickMillis > 0) {
+            if (timer == null) {
+                timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "lobby-broadcast");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            tick = timer.scheduleAtFixedRate(this::flushOnTick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return milliseconds between broadcasts, or 0 if every change is broadcast at once
+     */
+    long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Records a change to the lobby, broadcasting it now if the tick is 0 and otherwise at
+     * the end of the current tick.
+     */
+    void changed() {
+        changes.incrementAndGet();
+        final long now = System.nanoTime();
+        if (tickMillis == 0) {
+            broadcasts.incrementAndGet();
+            broadcast.accept(now);
+            return;
+        }
+        // 0 means no change is pending, so a change made at nanoTime 0 is recorded at 1
+        changedNanos.compareAndSet(0, (now == 0) ? 1 : now);
+        if (tickMillis == 0) {
+            // the tick was set to 0 after this change read it, and will not flush it
+            flush();
+        }
+    }
+
+    /**
+     * Broadcasts the changes made since the last broadcast, if there were any.
+     */
+    void flush() {
+        final long since = changedNanos.getAndSet(0);
+        if (since != 0) {
+            broadcasts.incrementAndGet();
+            broadcast.accept(since);
+        }
+    }
+
+    /*
+     * Flushes at the end of a tick, reporting a failed broadcast rather than throwing it,
+     * since the timer runs no more ticks after one throws.
+     */
+    private void flushOnTick() {
+        try {
+            flush();
+        } catch (RuntimeException re) {
+            re.printStackTrace();
+        }
+    }
+
+    /**
+     * Records the enqueue latency of one notification, once its watcher's listener returned.
+     * @param changedNanos the System.nanoTime() the broadcast was given
+     */
+    void recordEnqueueLatency(long changedNanos) {
+        final long latency = System.nanoTime() - changedNanos;
+        synchronized (latencies) {
+            latencies[(int) (recorded % LATENCY_SAMPLES)] = latency;
+            recorded++;
+        }
+    }
+
+    /**
+     * @return number of changes recorded
+     */
+    long getChangeCount() {
+        return changes.get();
+    }
+
+    /**
+     * @return number of broadcasts made
+     */
+    long getBroadcastCount() {
+        return broadcasts.get();
+    }
+
+    /**
+     * @return number of notifications whose latency was recorded
+     */
+    long getNotificationCount() {
+        synchronized (latencies) {
+            return recorded;
+        }
+    }
+
+    /**
+     * @param percentile percentile to find, 0 < percentile <= 100
+     * @return enqueue latency in microseconds that the given percent of the last
+     *         LATENCY_SAMPLES notifications took at most, or 0 if none was recorded
+     */
+    long getEnqueueLatencyPercentileMicros(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be in (0, 100]: " + percentile);
+        }
+        final long[] sorted;
+        synchronized (latencies) {
+            sorted = Arrays.copyOf(latencies, (int) Math.min(recorded, LATENCY_SAMPLES));
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        final int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(rank, 1) - 1]);
+    }
+}
@@ -0,0 +1,164 @@
+package crossword;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mutable, threadsafe index of the matches of a game that are waiting for a second player,
+ * with their listing for responses cached until a match enters or leaves the index. Listing
+ * the lobby then neither scans the ongoing and done matches nor rebuilds the same string for
+ * every watcher.
+ */
+class LobbyIndex {
+
+    /* MATCHES response listing the index as it was at a version, its binary body built on first use */
+    private static class Listing extends Response {
+        private final long version;
+        private final List<String> matchIds;
+        private final List<String> descriptions;
+        private final String text;
+        private volatile byte[] binary;
+
+        private Listing(long version, List<String> matchIds, List<String> descriptions) {
+            super(ResponseType.MATCHES);
+            this.version = version;
+            this.matchIds = matchIds;
+            this.descriptions = descriptions;
+            StringBuilder responseBuilder = new StringBuilder();
+            for (int i = 0; i < matchIds.size(); i++) {
+                if (i > 0) {
+                    responseBuilder.append(Game.ENTRY_DELIM);
+                }
+                responseBuilder.append(matchIds.get(i)).append(Game.WORD_DELIM).append(descriptions.get(i));
+            }
+            this.text = responseBuilder.toString();
+        }
+
+        @Override
+        String getBody() {
+            return text;
+        }
+
+        @Override
+        void writeBody(ByteBuffer buffer) {
+            byte[] body = binary;
+            if (body == null) {
+                int size = Integer.BYTES;
+                for (int i = 0; i < matchIds.size(); i++) {
+                    size += BinaryProtocol.stringSize(matchIds.get(i)) + BinaryProtocol.stringSize(descriptions.get(i));
+                }
+                ByteBuffer built = ByteBuffer.allocate(size);
+                built.putInt(matchIds.size());
+                for (int i = 0; i < matchIds.size(); i++) {
+                    BinaryProtocol.putString(built, matchIds.get(i));
+                    BinaryProtocol.putString(built, descriptions.get(i));
+                }
+                body = built.array();
+                // threads that build it at once build equal bodies, so any of them may be kept
+                binary = body;
+            }
+            buffer.put(body);
+        }
+    }
+
+    // Abstraction function:
+    //    AF(waiting, version, listing): the matches waiting for a second player, each the
+    //          value of its match ID in waiting; version counts the changes to waiting, and
+    //          listing, if its version is version, is the response listing waiting
+    // Representation invariant:
+    //  every key of waiting is the match ID of its value
+    //  if listing.version == version, listing lists the waiting matches of waiting
+    // Safety from rep exposure:
+    //  all fields are private, and all but listing are final
+    //  only immutable Strings and Listings are returned; the index keeps the Matches it is given, as the
+    //      game does
+    // Thread safety argument:
+    //  waiting is a concurrent map, whose updates to different matches do not contend
+    //  version is only incremented after waiting changes, and a listing is stamped with the
+    //      version read before it was built, so a listing built while waiting changed has an
+    //      old version and is rebuilt by the next reader
+    //  listing is a volatile reference to a Listing, immutable but for its binary body, which
+    //      is a volatile reference to an array never changed once published; a reader that
+    //      replaces a newer listing with an older one only makes the next reader rebuild it
+    //  a match added as another thread takes it out of the waiting state is removed again,
+    //      since add checks the match's state after putting it and remove is called after
+    //      the state has changed
+
+    private final Map<String, Match> waiting = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Listing listing = new Listing(0, List.of(), List.of());
+
+    /**
+     * Adds a match that is waiting for a second player. Has no effect if it is no longer waiting.
+     * @param match match that was made waiting
+     */
+    void add(Match match) {
+        waiting.put(match.getMatchId(), match);
+        if (!match.isWaiting()) {
+            // another thread took the match out of the waiting state first
+            waiting.remove(match.getMatchId(), match);
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * Removes a match that is no longer waiting for a second player.
+     * @param match match whose state has changed from waiting, or any match that is not waiting
+     * @return true if the match was in the index
+     */
+    boolean remove(Match match) {
+        if (!waiting.remove(match.getMatchId(), match)) {
+            return false;
+        }
+        version.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return number of matches in the index
+     */
+    int size() {
+        return waiting.size();
+    }
+
+    /**
+     * Gets the IDs and descriptions of the matches waiting for another player.
+     * @return String with format:
+     *      match ::= match_ID WORD_DELIM description;
+     *      response ::= match (ENTRY_DELIM match)*;
+     *      built once for each change to the index
+     */
+    String getListingForResponse() {
+        return getListing().getBody();
+    }
+
+    /**
+     * Gets the IDs and descriptions of the matches waiting for another player.
+     * @return MATCHES response whose body is getListingForResponse(), built once for each
+     *         change to the index
+     */
+    Response getListing() {
+        final long current = version.get();
+        final Listing cached = listing;
+        if (cached.version == current) {
+            return cached;
+        }
+        final List<String> matchIds = new ArrayList<>();
+        final List<String> descriptions = new ArrayList<>();
+        for (Match match : waiting.values()) {
+            // a match leaves the waiting state before it is removed
+            if (!match.isWaiting()) {
+                continue;
+            }
+            matchIds.add(match.getMatchId());
+            descriptions.add(match.getDescription());
+        }
+        final Listing built = new Listing(current, matchIds, descriptions);
+        listing = built;
+        return built;
+    }
+}
@@ -1,37 +1,53 @@
 package crossword;
 
-import java.util.AbstractMap.SimpleImmutableEntry;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Mutable class representing a crossword game match between two players
  */
 public class Match {
+    public static final String DELTA = "DELTA";
+    public static final String SNAPSHOT = "SNAPSHOT";
+    private static final int MAX_LOGGED_CHANGES = 1024;
+    
     // Abstraction Function:
-    // AF(matchId, description, puzzle, playerOne, playerTwo, state) = A match that has a match ID (matchID), a description,
+    // AF(matchId, description, puzzle, playerOne, playerTwo, state, version, logStart, changeLog) = 
+    //                                                      A match that has a match ID (matchID), a description,
     //                                                      a playable puzzle, and two players that are playing in the match 
     //                                                      (playerOne and playerTwo). The state of the match can be waiting 
     //                                                      (for a second player), ongoing (when the match has two players), and
     //                                                      done (if all words in the puzzle are confirmed).
+    //                                                      version counts the successful changes to the match, and changeLog
+    //                                                      holds, in order, every change made after version logStart
     // Rep Invariant:
-    //      true
+    //      0 <= logStart <= version
+    //      the version of every change in changeLog is in (logStart, version] and changeLog is in version order
     // Safety From Rep Exposure:
     //  all fields are private
     //  matchId and puzzle are final so they are not reassignable
     //  matchId and state are immutable
     //  puzzle is never returned directly to clients so it cannot be modified by clients
-    //  clients only pass in player ids and never get access to the player objects so they cannot modify the players
+    //  clients only pass in player ids or handles and never get access to the player objects so they cannot modify the players
+    //  responses are immutable and only hold values copied under lock and immutable changes and entries
     // Thread safety argument:
-    //  uses monitor pattern
+    //  uses monitor pattern, with lock as the monitor so that virtual threads waiting on
+    //  a match do not pin their carrier threads
+    //  puzzle is only accessed while holding lock, except its layout, which is immutable
     private final String matchId;
     private final String description;
     private final PlayablePuzzle puzzle;
     private Player playerOne;
     private Player playerTwo;
     private MatchState state;
+    private int version = 0;
+    private int logStart = 0;
+    private final Deque<Change> changeLog = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
     
     /**
      * Creates a match with a match_id and a template puzzle
@@ -42,26 +58,51 @@ public class Match {
      * @param playerOneId the first player's id for the game
      */
     public Match(String matchId, String description, Puzzle templatePuzzle, String playerOneId) {
+        this(matchId, description, templatePuzzle, playerOneId, Player.NO_HANDLE);
+    }
+    
+    /**
+     * Creates a match with a match_id and a template puzzle, whose first player is known by
+     *  the handle the game interned its id to
+     * @param matchId the id of the match
+     * @param description the description of the match
+     * @param templatePuzzle the template puzzle to create the playable puzzle from
+     * @param playerOneId the first player's id for the game
+     * @param playerOneHandle the first player's handle, >= 0, or Player.NO_HANDLE
+     */
+    public Match(String matchId, String description, Puzzle templatePuzzle, String playerOneId, int playerOneHandle) {
         this.state = MatchState.WAITING;
         this.description = description;
         this.matchId = matchId;
-        playerOne = new Player(playerOneId);
+        playerOne = new Player(playerOneId, playerOneHandle);
         playerTwo = new Player(Player.EMPTY_PLAYER_ID);
         puzzle = new PlayablePuzzle(templatePuzzle);
+        puzzle.seatPlayer(PlayablePuzzle.SEAT_ONE, playerOne);
+        puzzle.seatPlayer(PlayablePuzzle.SEAT_TWO, playerTwo);
     }
     
     /**
      * @return id of the match
      */
-    public synchronized String getMatchId() {
-        return this.matchId;
+    public String getMatchId() {
+        lock.lock();
+        try {
+            return this.matchId;
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
      * @return description of the match
      */
-    public synchronized String getDescription() {
-        return this.description;
+    public String getDescription() {
+        lock.lock();
+        try {
+            return this.description;
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
@@ -70,34 +111,89 @@ public class Match {
      *          as the player that is already in match
      * @return true of the player was added to the match and false otherwise
      */
-    public synchronized boolean joinMatch(String playerId) {
-        if (isWaiting()) {
-            state = MatchState.ONGOING;
-            playerTwo = new Player(playerId);
-            return true;
+    public boolean joinMatch(String playerId) {
+        return joinMatch(playerId, Player.NO_HANDLE);
+    }
+    
+    /**
+     * Add a player known by a handle to the match if the match is not full yet
+     * @param playerId the id of the player to add, the new player id cannot be the same
+     *          as the player that is already in match
+     * @param playerHandle the handle the game interned playerId to, >= 0 and different
+     *          from the first player's, or Player.NO_HANDLE
+     * @return true of the player was added to the match and false otherwise
+     */
+    public boolean joinMatch(String playerId, int playerHandle) {
+        lock.lock();
+        try {
+            if (isWaiting()) {
+                state = MatchState.ONGOING;
+                playerTwo = new Player(playerId, playerHandle);
+                puzzle.seatPlayer(PlayablePuzzle.SEAT_TWO, playerTwo);
+                version++;
+                recordChange("JOIN", playerId);
+                recordChange("STATE", state);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Cancels the match if it is still waiting for a second player, so that nobody can join it
+     * @return true if the match was waiting and is now done, false otherwise
+     */
+    public boolean cancelWaiting() {
+        lock.lock();
+        try {
+            if (isWaiting()) {
+                state = MatchState.DONE;
+                version++;
+                recordChange("STATE", state);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
         }
-        return false;
     }
     
     /**
      * @return true if the match is ongoing and false otherwise
      */
-    public synchronized boolean isOngoing() {
-        return state == MatchState.ONGOING;
+    public boolean isOngoing() {
+        lock.lock();
+        try {
+            return state == MatchState.ONGOING;
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
      * @return true if the match is waiting and false otherwise
      */
-    public synchronized boolean isWaiting() {
-        return state == MatchState.WAITING;
+    public boolean isWaiting() {
+        lock.lock();
+        try {
+            return state == MatchState.WAITING;
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
      * @return true if the match is done and false otherwise
      */
-    public synchronized boolean isDone() {
-        return state == MatchState.DONE;
+    public boolean isDone() {
+        lock.lock();
+        try {
+            return state == MatchState.DONE;
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
@@ -105,7 +201,12 @@ public class Match {
      * @return name of first player
      */
     public String getPlayerOne() {
-        return playerOne.getId();
+        lock.lock();
+        try {
+            return playerOne.getId();
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
@@ -113,7 +214,12 @@ public class Match {
      * @return name of second player
      */
     public String getPlayerTwo() {
-        return playerTwo.getId();
+        lock.lock();
+        try {
+            return playerTwo.getId();
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
@@ -121,8 +227,41 @@ public class Match {
      * @param playerId the id of the player, the player id must exist in the match
      * @return the Player with the corresponding player id in the match
      */
-    private synchronized Player getPlayer(String id) {
-        return (id.equals(playerOne.getId())) ? playerOne : playerTwo;
+    private Player getPlayer(String id) {
+        lock.lock();
+        try {
+            return (id.equals(playerOne.getId())) ? playerOne : playerTwo;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the player object with the given handle
+     * @param handle handle of the player
+     * @return the player with the handle, or null if neither player has it
+     */
+    private Player getPlayer(int handle) {
+        lock.lock();
+        try {
+            if (handle == Player.NO_HANDLE) {
+                return null;
+            } else if (handle == playerOne.getHandle()) {
+                return playerOne;
+            } else if (handle == playerTwo.getHandle()) {
+                return playerTwo;
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * @return seat of a player of this match in the puzzle
+     */
+    private int seatOf(Player player) {
+        return (player == playerOne) ? PlayablePuzzle.SEAT_ONE : PlayablePuzzle.SEAT_TWO;
     }
     
     /**
@@ -131,37 +270,78 @@ public class Match {
      * The rules for a try guess are as follows:
      *   1) the id corresponds to either an empty word or
      *   2) an un-confirmed word entered by the same user and false otherwise
+     * A guess is never valid unless the match is ongoing
+     * Finds the player by comparing ids, so it is only for tests and benchmarks that play a
+     *  match without a Game; a Game plays through tryWord(int, int, String)
      * @param playerId the id of the player making a guess
      * @param wordID wordID
      * @param word guessed word
      * @return true if the guess is valid and false otherwise
      */
-    public synchronized boolean tryWord(String playerId, int wordID, String word) {
-        Map<Integer, SimpleImmutableEntry<Player, PuzzleEntry>> playerEntries = puzzle.getPlayerEntries();
-        Map<Integer, PuzzleEntry> confirmedEntries = puzzle.getConfirmedEntries();
-        Player player = getPlayer(playerId);
-        PuzzleEntry correctEntry = puzzle.getCorrectEntries().get(wordID);
-        PuzzleEntry guess = new PuzzleEntry(word, correctEntry.getClue(), correctEntry.getOrientation(), correctEntry.getPosition());
-        if (playerEntries.containsKey(wordID) && !playerEntries.get(wordID).getKey().getId().equals(player.getId())) { //if guessed, make sure it's same player
-            return false;
-        } else if (confirmedEntries.containsKey(wordID)) { //makes sure the word entry is not confirmed
-            return false;
-        } else if (word.length() != correctEntry.getWord().length()) { //make sure length of guess matches
-            return false;
-        } else if (getInconsistentWords(wordID, guess).size() != 0) {
-            return false;
+    boolean tryWord(String playerId, int wordID, String word) {
+        lock.lock();
+        try {
+            return tryWord(getPlayer(playerId), wordID, word);
+        } finally {
+            lock.unlock();
         }
-        puzzle.addPlayerEntry(wordID, player, guess);
-        if (checkGameEnd()) {
-            state = MatchState.DONE;
+    }
+    
+    /**
+     * Tries to make a guess for the match puzzle for the player with a handle, as
+     *  tryWord(String, int, String) but without comparing player ids
+     * @param playerHandle the handle the player joined the match with
+     * @param wordID wordID
+     * @param word guessed word
+     * @return true if the guess is valid and false otherwise
+     */
+    public boolean tryWord(int playerHandle, int wordID, String word) {
+        lock.lock();
+        try {
+            return tryWord(getPlayer(playerHandle), wordID, word);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private boolean tryWord(Player player, int wordID, String word) {
+        lock.lock();
+        try {
+            if (player == null || !isOngoing() || !isWordID(wordID)) {
+                return false;
+            }
+            // reads the entry's slot in place, without copying the puzzle's entries; owners
+            // are seats, so they compare as ints
+            int seat = seatOf(player);
+            int owner = puzzle.getOwner(wordID);
+            PuzzleEntry correctEntry = puzzle.getCorrectEntry(wordID);
+            if (owner != PlayablePuzzle.NO_SEAT && owner != seat) { //if guessed, make sure it's same player
+                return false;
+            } else if (puzzle.isConfirmed(wordID)) { //makes sure the word entry is not confirmed
+                return false;
+            } else if (word.length() != correctEntry.getWord().length()) { //make sure length of guess matches
+                return false;
+            } else if (puzzle.hasConflictingEntries(wordID, word)) {
+                return false;
+            }
+            PuzzleEntry guess = new PuzzleEntry(word, correctEntry.getClue(), correctEntry.getOrientation(), correctEntry.getPosition());
+            puzzle.addPlayerEntry(wordID, seat, guess);
+            version++;
+            recordAddedEntry(player, wordID, guess);
+            if (checkGameEnd()) {
+                state = MatchState.DONE;
+                recordChange("STATE", state);
+            }
+            return true;
+        } finally {
+            lock.unlock();
         }
-        return true;
-     }
+    }
     
 
     /**
      * Tries to challenge a guess for the match puzzle for the given player id
-     * Preconditions: Match must have two players and game must be ongoing
+     * A challenge is never valid unless the match is ongoing
      * The rules for a challenge guess are as follows:
      *      A challenge is valid if:
      *          a) the challenged word was entered by the other player (can’t challenge your own words)
@@ -182,138 +362,134 @@ public class Match {
      *                  loses one point for an incorrect challenge.
      *      Else if the challenge is invalid: 
      *          The challenge is invalid
+     * Finds the player by comparing ids, so it is only for tests and benchmarks that play a
+     *  match without a Game; a Game challenges through challengeWord(int, int, String)
      * @param playerId the id of the player making a guess
      * @param wordID the id of the entry being challenged
      * @param word the challenger word
      * @return true if the challenge is valid and false otherwise
      */
-    public synchronized boolean challengeWord(String playerId, int wordID, String word) {
-        Map<Integer, SimpleImmutableEntry<Player, PuzzleEntry>> playerEntries = puzzle.getPlayerEntries();
-        Map<Integer, PuzzleEntry> confirmedEntries = puzzle.getConfirmedEntries();    
-        PuzzleEntry correctEntry = puzzle.getCorrectEntries().get(wordID);
-        // Make sure the entry exists, or else cannot challenge it
-        if (!playerEntries.containsKey(wordID)) {
-            return false;
+    boolean challengeWord(String playerId, int wordID, String word) {
+        lock.lock();
+        try {
+            return challengeWord(getPlayer(playerId), wordID, word);
+        } finally {
+            lock.unlock();
         }
-        PuzzleEntry originalEntry = playerEntries.get(wordID).getValue();
-        Player player = getPlayer(playerId);
-        Player opponent = (player.getId().equals(playerOne.getId())) ? playerTwo : playerOne;
-        if (playerEntries.containsKey(wordID) && playerEntries.get(wordID).getKey().getId().equals(player.getId())) { //can't challenge self
-            return false;
-        } else if (confirmedEntries.containsKey(wordID)) { //makes sure the word entry is not confirmed
-            return false;
-        } else if (word.length() != correctEntry.getWord().length()) { //make sure length of guess matches
-            return false;
-        } else if (originalEntry.getWord().equals(word)) { //can't challenge the same word
-            return false;
+    }
+    
+    /**
+     * Tries to challenge a guess for the match puzzle for the player with a handle, as
+     *  challengeWord(String, int, String) but without comparing player ids
+     * @param playerHandle the handle the player joined the match with
+     * @param wordID the id of the entry being challenged
+     * @param word the challenger word
+     * @return true if the challenge is valid and false otherwise
+     */
+    public boolean challengeWord(int playerHandle, int wordID, String word) {
+        lock.lock();
+        try {
+            return challengeWord(getPlayer(playerHandle), wordID, word);
+        } finally {
+            lock.unlock();
         }
-        
-        if (correctEntry.getWord().equals(originalEntry.getWord())) { //original word was correct
-            puzzle.addPlayerEntry(wordID, opponent, correctEntry);
-            puzzle.addConfirmedEntry(wordID, correctEntry);
-            player.changeScore(-1);
-        } else if (!correctEntry.getWord().equals(word)) { //challenger and original word is incorrect
-            puzzle.deletePlayerEntry(wordID);
-            player.changeScore(-1);
-        } else {
-            puzzle.deletePlayerEntry(wordID);
-            puzzle.addPlayerEntry(wordID, player, correctEntry);
-            puzzle.addConfirmedEntry(wordID, correctEntry);
-            player.changeScore(2);
-            for (Integer id: getInconsistentWords(wordID, correctEntry)) {
-                puzzle.deletePlayerEntry(id);
+    }
+    
+    private boolean challengeWord(Player player, int wordID, String word) {
+        lock.lock();
+        try {
+            if (player == null || !isOngoing() || !isWordID(wordID)) {
+                return false;
             }
-        }
-        if (checkGameEnd()) {
-            state = MatchState.DONE;
-        }
-        return true;
-    }
-    
-    private synchronized List<Integer> getInconsistentWords(int wordID, PuzzleEntry guess){
-        Map<Integer, PuzzleEntry> entries = puzzle.getFlattenedPlayerEntries();
-        entries.remove(wordID);
-        Map<Point, Character> pointToLetter = new HashMap<>();
-        String word = guess.getWord();
-        Orientation orientation = guess.getOrientation();
-        Point position = guess.getPosition();
-        //add in the correct challenge
-        for (int j = 0; j < word.length(); j++) {
-            Point letterPosition; // Position of the letter in the word
-            if (orientation == Orientation.ACROSS) {
-                // getCol() + j represents the column of the letter
-                letterPosition = new Point(position.getRow(), position.getCol() + j);  
-            } else { 
-                // getRow() + j represents the row of the letter
-                letterPosition = new Point(position.getRow() + j, position.getCol());
+            PuzzleEntry correctEntry = puzzle.getCorrectEntry(wordID);
+            PuzzleEntry originalEntry = puzzle.getPlayerEntry(wordID);
+            // Make sure the entry exists, or else cannot challenge it
+            if (originalEntry == null) {
+                return false;
             }
-            pointToLetter.put(letterPosition, word.charAt(j));
-        }
-        List<Integer> wordIDs = new ArrayList<>();
-        //check for inconsistent words
-        for (Integer i : entries.keySet()) {
-            PuzzleEntry entry = entries.get(i);
-            word = entry.getWord();
-            orientation = entry.getOrientation();
-            position = entry.getPosition();
-            for (int j = 0; j < word.length(); j++) {
-                Point letterPosition; // Position of the letter in the word
-                if (orientation == Orientation.ACROSS) {
-                    // getCol() + j represents the column of the letter
-                    letterPosition = new Point(position.getRow(), position.getCol() + j);  
-                } else { 
-                    // getRow() + j represents the row of the letter
-                    letterPosition = new Point(position.getRow() + j, position.getCol());
-                }
-                // If the point is already in the map and the letters do not match, return false
-                //  otherwise add the point and letter pair to the map
-                if (pointToLetter.containsKey(letterPosition) && pointToLetter.get(letterPosition) != word.charAt(j)) {
-                    wordIDs.add(i);
-                }
+            int seat = seatOf(player);
+            int opponentSeat = (seat == PlayablePuzzle.SEAT_ONE) ? PlayablePuzzle.SEAT_TWO : PlayablePuzzle.SEAT_ONE;
+            if (puzzle.getOwner(wordID) == seat) { //can't challenge self
+                return false;
+            } else if (puzzle.isConfirmed(wordID)) { //makes sure the word entry is not confirmed
+                return false;
+            } else if (word.length() != correctEntry.getWord().length()) { //make sure length of guess matches
+                return false;
+            } else if (originalEntry.getWord().equals(word)) { //can't challenge the same word
+                return false;
             }
-        }
-        return wordIDs;
-    }
-    
-    private synchronized Map<Point, Character> generateAllPoints(Map<Integer, PuzzleEntry> entries) {
-        Map<Point, Character> pointToLetter = new HashMap<>();
-        for (Integer i : entries.keySet()) {
-            PuzzleEntry entry = entries.get(i);
-            String word = entry.getWord();
-            Orientation orientation = entry.getOrientation();
-            Point position = entry.getPosition();
-            for (int j = 0; j < word.length(); j++) {
-                Point letterPosition; // Position of the letter in the word
-                if (orientation == Orientation.ACROSS) {
-                    // getCol() + j represents the column of the letter
-                    letterPosition = new Point(position.getRow(), position.getCol() + j);  
-                } else { 
-                    // getRow() + j represents the row of the letter
-                    letterPosition = new Point(position.getRow() + j, position.getCol());
+        
+            version++;
+            if (correctEntry.getWord().equals(originalEntry.getWord())) { //original word was correct
+                puzzle.addPlayerEntry(wordID, opponentSeat, correctEntry);
+                puzzle.addConfirmedEntry(wordID, correctEntry);
+                player.changeScore(-1);
+                recordChange("CONFIRM", wordID);
+            } else if (!correctEntry.getWord().equals(word)) { //challenger and original word is incorrect
+                puzzle.deletePlayerEntry(wordID);
+                player.changeScore(-1);
+                recordChange("REMOVE", wordID);
+            } else {
+                puzzle.deletePlayerEntry(wordID);
+                puzzle.addPlayerEntry(wordID, seat, correctEntry);
+                puzzle.addConfirmedEntry(wordID, correctEntry);
+                player.changeScore(2);
+                recordAddedEntry(player, wordID, correctEntry);
+                recordChange("CONFIRM", wordID);
+                for (Integer id: puzzle.getConflictingEntries(wordID, correctEntry.getWord())) {
+                    if (puzzle.deletePlayerEntry(id)) {
+                        recordChange("REMOVE", id);
+                    }
                 }
-                pointToLetter.put(letterPosition, word.charAt(j));
             }
+            recordChange("SCORE", player.getId(), player.getScore());
+            if (checkGameEnd()) {
+                state = MatchState.DONE;
+                recordChange("STATE", state);
+            }
+            return true;
+        } finally {
+            lock.unlock();
         }
-        return pointToLetter;
     }
     
-    private synchronized boolean checkGameEnd() {
-        Map<Integer, PuzzleEntry> entries = puzzle.getFlattenedPlayerEntries();
-        Map<Point, Character> pointToLetterPlayer = generateAllPoints(entries);
-        Map<Point, Character> pointToLetterCorrect = generateAllPoints(puzzle.getCorrectEntries());
-        return pointToLetterPlayer.equals(pointToLetterCorrect);
+    /*
+     * @return true if wordID is the id of an entry of the puzzle
+     */
+    private boolean isWordID(int wordID) {
+        return wordID >= 0 && wordID < puzzle.getEntryCount();
+    }
+    
+    /**
+     * @return true if every entry of the puzzle has been guessed correctly
+     */
+    boolean checkGameEnd() {
+        lock.lock();
+        try {
+            // the playable puzzle counts its correctly filled cells as entries change
+            return puzzle.isFilledCorrectly();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * Forfeits a player from the match and ends the match
      * @return true if forfeited 
      */
-    public synchronized boolean forfeit() {
-        if (state == MatchState.DONE) {
-            return false;
+    public boolean forfeit() {
+        lock.lock();
+        try {
+            if (state == MatchState.DONE) {
+                return false;
+            }
+            state = MatchState.DONE;
+            version++;
+            recordChange("STATE", state);
+            return true;
+        } finally {
+            lock.unlock();
         }
-        state = MatchState.DONE;
-        return true;
     }
     
     /**
@@ -322,20 +498,124 @@ public class Match {
      *  blank puzzle
      * @return a representation of the puzzle with entries separated by delimiters of the same kind
      */
-    public synchronized String getPuzzleForResponse() {
+    public String getPuzzleForResponse() {
+        // the layout is immutable and cached on the template, so no lock is needed
         return puzzle.getPuzzleForResponse();
     }
     
+    /**
+     * @return PUZZLE response whose body is getPuzzleForResponse()
+     */
+    Response getLayout() {
+        return puzzle.getLayout();
+    }
+    
     /**
      * Returns a string of the player entries with a specific format where every entry 
      *  is separated by a delimiter and words are populated based on the playable puzzle's 
      *  confirmed and guessed entries
      * @return a representation of the puzzle with entries separated by delimiters of the same kind
      */
-    public synchronized String getGuessesForResponse() {
-        return state + Game.RESPONSE_DELIM +  playerOne.getId() + Game.WORD_DELIM + playerOne.getScore() + Game.ENTRY_DELIM + 
-                playerTwo.getId() + Game.WORD_DELIM + playerTwo.getScore() +
-                Game.RESPONSE_DELIM + puzzle.getGuessesForResponse();
+    public String getGuessesForResponse() {
+        return getGuesses().getBody();
+    }
+    
+    /**
+     * @return GUESSES response whose body is getGuessesForResponse(), read atomically
+     */
+    Response getGuesses() {
+        lock.lock();
+        try {
+            return new Guesses(state, playerOne, playerTwo, puzzle.getGuesses());
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the changes made to the match after a version, or a full snapshot if they are
+     *  no longer logged (or since is not a version of this match).
+     * 
+     * Each change is one of (fields separated by WORD_DELIM):
+     *      ADD playerID wordID word orientation row col    - playerID now holds this guess for wordID
+     *      REMOVE wordID                                   - the guess for wordID was cleared
+     *      CONFIRM wordID                                  - the guess for wordID is confirmed correct
+     *      SCORE playerID challengePoints                  - playerID's challenge points changed
+     *      JOIN playerID                                   - playerID joined as the second player
+     *      STATE state                                     - the match is now WAITING, ONGOING or DONE
+     * 
+     * @param since last version the caller has seen, or -1 for a snapshot
+     * @return DELTA RESPONSE_DELIM matchId RESPONSE_DELIM version RESPONSE_DELIM change (ENTRY_DELIM change)*
+     *          with the changes made after since in order, or
+     *          SNAPSHOT RESPONSE_DELIM matchId RESPONSE_DELIM version RESPONSE_DELIM getGuessesForResponse()
+     */
+    public String getChangesForResponse(int since) {
+        return getChanges(since).getBody();
+    }
+    
+    /**
+     * @param since last version the caller has seen, or -1 for a snapshot
+     * @return CHANGES response whose body is getChangesForResponse(since), read atomically
+     */
+    Changes getChanges(int since) {
+        lock.lock();
+        try {
+            if (since < logStart || since > version) {
+                return new Changes(matchId, version, new Guesses(state, playerOne, playerTwo, puzzle.getGuesses()), List.of());
+            }
+            List<Change> changes = new ArrayList<>();
+            for (Change change : changeLog) {
+                if (change.version > since) {
+                    changes.add(change);
+                }
+            }
+            return new Changes(matchId, version, null, changes);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Logs a change made in the current version, dropping the oldest versions once the log is full
+     * @param fields change kind followed by its fields
+     */
+    private void recordChange(Object... fields) {
+        changeLog.addLast(new Change(version, fields));
+        while (changeLog.size() > MAX_LOGGED_CHANGES) {
+            // Drop whole versions so a delta never holds part of a version
+            logStart = changeLog.removeFirst().version;
+            while (!changeLog.isEmpty() && changeLog.peekFirst().version == logStart) {
+                changeLog.removeFirst();
+            }
+        }
+    }
+    
+    /**
+     * Logs that player now holds entry as the guess for wordID
+     */
+    private void recordAddedEntry(Player player, int wordID, PuzzleEntry entry) {
+        recordChange("ADD", player.getId(), wordID, entry.getWord(), entry.getOrientation(),
+                entry.getPosition().getRow(), entry.getPosition().getCol());
+    }
+    
+    /**
+     * Returns what a player listening for plays should see next, read atomically
+     * @return showScore() if the match is done and getGuessesForResponse() otherwise
+     */
+    public String getPlayUpdateForResponse() {
+        return getPlayUpdate().getBody();
+    }
+    
+    /**
+     * @return getScore() if the match is done and getGuesses() otherwise, read atomically
+     */
+    Response getPlayUpdate() {
+        lock.lock();
+        try {
+            return isDone() ? getScore() : getGuesses();
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
@@ -344,42 +624,231 @@ public class Match {
      * @param player the player
      * @return total score of the player
      */
-    private synchronized int getTotalScore(Player player) {
-        int numCorrect = 0;
-        Map<Integer, SimpleImmutableEntry<Player, PuzzleEntry>> playerEntries = puzzle.getPlayerEntries();
-        Map<Integer, PuzzleEntry> correctEntries = puzzle.getCorrectEntries();
-        for (Map.Entry<Integer, PuzzleEntry> entry: correctEntries.entrySet()) {
-            Integer id = entry.getKey();
-            if (!playerEntries.containsKey(id)) {
-                continue;
-            }
-            if (playerEntries.get(id).getKey().getId().equals(player.getId())) {
-                numCorrect++;
-            }
+    private int getTotalScore(Player player) {
+        lock.lock();
+        try {
+            return puzzle.countPlayerEntries(seatOf(player)) + player.getScore();
+        } finally {
+            lock.unlock();
         }
-        return numCorrect + player.getScore();
     }
     
     /**
      * Preconditions: Match must have two players and game must be done
      * @return string representing the score of each player
      */
-    public synchronized String showScore() {
-        String winner = "";
-        int scoreOne = getTotalScore(playerOne);
-        int scoreTwo = getTotalScore(playerTwo);
-        if (scoreOne > scoreTwo) {
-            winner = playerOne.getId() + " wins";
-        } else if (scoreTwo > scoreOne) {
-            winner = playerTwo.getId() + " wins";
-        } else {
-            winner = "Tie";
-        }
-        // Add ! for excitement
-        winner += "!";
+    public String showScore() {
+        return getScore().getBody();
+    }
+    
+    /**
+     * Preconditions: Match must have two players and game must be done
+     * @return SCORE response whose body is showScore(), read atomically
+     */
+    Response getScore() {
+        lock.lock();
+        try {
+            String winner = "";
+            int scoreOne = getTotalScore(playerOne);
+            int scoreTwo = getTotalScore(playerTwo);
+            if (scoreOne > scoreTwo) {
+                winner = playerOne.getId() + " wins";
+            } else if (scoreTwo > scoreOne) {
+                winner = playerTwo.getId() + " wins";
+            } else {
+                winner = "Tie";
+            }
+            // Add ! for excitement
+            winner += "!";
             
-        return state + Game.RESPONSE_DELIM + playerOne.getId() + Game.WORD_DELIM + playerOne.getScore() + Game.WORD_DELIM + scoreOne
-                        + Game.ENTRY_DELIM + playerTwo.getId() + Game.WORD_DELIM + playerTwo.getScore() + Game.WORD_DELIM + scoreTwo
-                        + Game.RESPONSE_DELIM + winner;
+            return new Score(state, playerOne, scoreOne, playerTwo, scoreTwo, winner);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /** A change to a match, logged with the version it was made in */
+    private static class Change {
+        private final int version;
+        private final Object[] fields; // kind, then Strings, Integers, Orientations and MatchStates
+        private final String text;
+        
+        private Change(int version, Object[] fields) {
+            this.version = version;
+            this.fields = fields;
+            StringBuilder change = new StringBuilder();
+            for (Object field : fields) {
+                if (change.length() > 0) {
+                    change.append(Game.WORD_DELIM);
+                }
+                change.append(field);
+            }
+            this.text = change.toString();
+        }
+        
+        /*
+         * Writes the change in the binary protocol: its kind's code, then each field by its type
+         */
+        private void writeTo(ByteBuffer buffer) {
+            buffer.put(BinaryProtocol.changeKind((String) fields[0]));
+            for (int i = 1; i < fields.length; i++) {
+                Object field = fields[i];
+                if (field instanceof Integer) {
+                    buffer.putInt((Integer) field);
+                } else if (field instanceof Orientation) {
+                    BinaryProtocol.putOrientation(buffer, (Orientation) field);
+                } else if (field instanceof MatchState) {
+                    BinaryProtocol.putState(buffer, (MatchState) field);
+                } else {
+                    BinaryProtocol.putString(buffer, (String) field);
+                }
+            }
+        }
+    }
+    
+    /** GUESSES response: the state of a match, its players' challenge points and the player entries */
+    private static class Guesses extends Response {
+        private final MatchState state;
+        private final String playerOne;
+        private final int pointsOne;
+        private final String playerTwo;
+        private final int pointsTwo;
+        private final PlayablePuzzle.GuessList guesses;
+        
+        private Guesses(MatchState state, Player playerOne, Player playerTwo, PlayablePuzzle.GuessList guesses) {
+            super(ResponseType.GUESSES);
+            this.state = state;
+            this.playerOne = playerOne.getId();
+            this.pointsOne = playerOne.getScore();
+            this.playerTwo = playerTwo.getId();
+            this.pointsTwo = playerTwo.getScore();
+            this.guesses = guesses;
+        }
+        
+        @Override
+        String getBody() {
+            StringBuilder text = new StringBuilder();
+            text.append(state).append(Game.RESPONSE_DELIM)
+                .append(playerOne).append(Game.WORD_DELIM).append(pointsOne).append(Game.ENTRY_DELIM)
+                .append(playerTwo).append(Game.WORD_DELIM).append(pointsTwo).append(Game.RESPONSE_DELIM);
+            guesses.appendTo(text);
+            return text.toString();
+        }
+        
+        @Override
+        void writeBody(ByteBuffer buffer) {
+            BinaryProtocol.putState(buffer, state);
+            BinaryProtocol.putString(buffer, playerOne);
+            buffer.putInt(pointsOne);
+            BinaryProtocol.putString(buffer, playerTwo);
+            buffer.putInt(pointsTwo);
+            guesses.writeTo(buffer);
+        }
+    }
+    
+    /** SCORE response: the state of a finished match, its players' points and the result */
+    private static class Score extends Response {
+        private final MatchState state;
+        private final String playerOne;
+        private final int pointsOne;
+        private final int totalOne;
+        private final String playerTwo;
+        private final int pointsTwo;
+        private final int totalTwo;
+        private final String result;
+        
+        private Score(MatchState state, Player playerOne, int totalOne, Player playerTwo, int totalTwo, String result) {
+            super(ResponseType.SCORE);
+            this.state = state;
+            this.playerOne = playerOne.getId();
+            this.pointsOne = playerOne.getScore();
+            this.totalOne = totalOne;
+            this.playerTwo = playerTwo.getId();
+            this.pointsTwo = playerTwo.getScore();
+            this.totalTwo = totalTwo;
+            this.result = result;
+        }
+        
+        @Override
+        String getBody() {
+            return state + Game.RESPONSE_DELIM + playerOne + Game.WORD_DELIM + pointsOne + Game.WORD_DELIM + totalOne
+                    + Game.ENTRY_DELIM + playerTwo + Game.WORD_DELIM + pointsTwo + Game.WORD_DELIM + totalTwo
+                    + Game.RESPONSE_DELIM + result;
+        }
+        
+        @Override
+        void writeBody(ByteBuffer buffer) {
+            BinaryProtocol.putState(buffer, state);
+            BinaryProtocol.putString(buffer, playerOne);
+            buffer.putInt(pointsOne);
+            buffer.putInt(totalOne);
+            BinaryProtocol.putString(buffer, playerTwo);
+            buffer.putInt(pointsTwo);
+            buffer.putInt(totalTwo);
+            BinaryProtocol.putString(buffer, result);
+        }
+    }
+    
+    /** CHANGES response: the changes to a match after a version, or a snapshot of it */
+    static class Changes extends Response {
+        private final String matchId;
+        private final int version;
+        private final Guesses snapshot; // null for a delta
+        private final List<Change> changes;
+        
+        private Changes(String matchId, int version, Guesses snapshot, List<Change> changes) {
+            super(ResponseType.CHANGES);
+            this.matchId = matchId;
+            this.version = version;
+            this.snapshot = snapshot;
+            this.changes = changes;
+        }
+        
+        /**
+         * @return id of the match
+         */
+        String getMatchId() {
+            return matchId;
+        }
+        
+        /**
+         * @return version of the match the changes bring the caller to
+         */
+        int getVersion() {
+            return version;
+        }
+        
+        @Override
+        String getBody() {
+            StringBuilder text = new StringBuilder();
+            text.append(snapshot != null ? SNAPSHOT : DELTA).append(Game.RESPONSE_DELIM)
+                .append(matchId).append(Game.RESPONSE_DELIM).append(version).append(Game.RESPONSE_DELIM);
+            if (snapshot != null) {
+                text.append(snapshot.getBody());
+                return text.toString();
+            }
+            for (int i = 0; i < changes.size(); i++) {
+                if (i > 0) {
+                    text.append(Game.ENTRY_DELIM);
+                }
+                text.append(changes.get(i).text);
+            }
+            return text.toString();
+        }
+        
+        @Override
+        void writeBody(ByteBuffer buffer) {
+            buffer.put(snapshot != null ? BinaryProtocol.SNAPSHOT : BinaryProtocol.DELTA);
+            BinaryProtocol.putString(buffer, matchId);
+            buffer.putInt(version);
+            if (snapshot != null) {
+                snapshot.writeBody(buffer);
+                return;
+            }
+            buffer.putInt(changes.size());
+            for (Change change : changes) {
+                change.writeTo(buffer);
+            }
+        }
     }
 }
@@ -0,0 +1,487 @@
+package crossword;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text-protocol game server that multiplexes every client connection on a single
+ * non-blocking selector thread. Speaks the same protocols as TextServer: clients that open
+ * their connection with BinaryProtocol.MAGIC are served the binary protocol instead.
+ *
+ * Listener notifications go through a non-blocking NotificationDispatcher outbox: the
+ * thread that sends one only queues it on the connection for the selector thread to write,
+ * so a parked listener connection costs no thread, even while its output waits. A connection
+ * that lets more than the dispatcher's queue bound of notifications pile up, or whose output
+ * makes no progress for the dispatcher's write timeout, is disconnected as a slow consumer.
+ * A client that does not read its responses stops being read from once MAX_PENDING_RESPONSES
+ * are waiting, and a client that sends a line (or binary request frame) longer than
+ * MAX_LINE_BYTES is disconnected.
+ */
+public class NioTextServer {
+    public static final int MAX_LINE_BYTES = 64 * 1024;
+    public static final int MAX_PENDING_RESPONSES = 64;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_POOLED_BUFFERS = 256;
+
+    // Abstraction function:
+    //    AF(selector, serverChannel, handler, dispatcher, pendingWrites, bufferPool, writeTimeoutNanos,
+    //       checkPeriodMillis): TextServer-compatible
+    //          server where serverChannel accepts connections, selector multiplexes all client
+    //          channels on the thread running serve(), handler applies each request line to
+    //          the Crossword game, dispatcher delivers listener notifications to each
+    //          connection, and pendingWrites holds the connections that were handed output
+    //          from another thread and need their write interest updated; bufferPool lends
+    //          the buffers binary responses are encoded into; every checkPeriodMillis the
+    //          selector thread disconnects connections whose output has been stuck for
+    //          longer than writeTimeoutNanos
+    // Representation invariant:
+    //  writeTimeoutNanos > 0, checkPeriodMillis > 0
+    // Safety from rep exposure:
+    //  all fields are private and final
+    //  no method returns a reference to a rep
+    // Thread Safety Argument:
+    //   selector, serverChannel and every connection's channel and buffers are only used
+    //      by the thread running serve()
+    //   listener callbacks hand their output to the connection's outbox, which queues it on
+    //      the sending thread through threadsafe queues (each connection's outbound queue and
+    //      pendingWrites) followed by selector.wakeup(), without waiting for the write
+    //   a connection may be closed by a sending thread when its outbox overflows; close is
+    //      idempotent, and only closes the channel, cancels the key and drops queued output,
+    //      which are threadsafe
+    //   a pooled buffer is only released by the selector thread, once it is fully written
+    //   handler, dispatcher and bufferPool are objects with threadsafe types
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final RequestHandler handler;
+    private final NotificationDispatcher dispatcher;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final ByteBufferPool bufferPool = new ByteBufferPool(BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final long writeTimeoutNanos;
+    private final long checkPeriodMillis;
+
+    /**
+     * Make a new selector-based game server using game that listens for connections on port.
+     *
+     * @param game shared crossword puzzles
+     * @param port server port number
+     * @throws IOException if an error occurs opening the server channel
+     */
+    public NioTextServer(Game game, int port) throws IOException {
+        this(game, port, new NotificationDispatcher());
+    }
+
+    /**
+     * Make a new selector-based game server using game that listens for connections on port.
+     *
+     * @param game shared crossword puzzles
+     * @param port server port number
+     * @param dispatcher delivers listener notifications to the connections, and sets their
+     *                   queue bound and write timeout
+     * @throws IOException if an error occurs opening the server channel
+     */
+    public NioTextServer(Game game, int port, NotificationDispatcher dispatcher) throws IOException {
+        this.dispatcher = dispatcher;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(dispatcher.getWriteTimeoutMillis());
+        this.checkPeriodMillis = Math.max(1, dispatcher.getWriteTimeoutMillis() / 2);
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.handler = new RequestHandler(game);
+    }
+
+    /**
+     * @return the port on which this server is listening for connections
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Run the server, listening for and handling client connections.
+     * Never returns normally.
+     *
+     * @throws IOException if an error occurs waiting for a connection
+     */
+    public void serve() throws IOException {
+        System.err.println("Server listening on " + serverChannel.getLocalAddress());
+        long nextCheckNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(checkPeriodMillis);
+        while (true) {
+            selector.select(checkPeriodMillis);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isReadable()) {
+                        connection.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.write();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Only this client is affected, the same as a connection thread dying in TextServer
+                    e.printStackTrace();
+                    connection.close();
+                }
+            }
+            for (Connection connection = pendingWrites.poll(); connection != null; connection = pendingWrites.poll()) {
+                try {
+                    connection.write();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    connection.close();
+                }
+            }
+            if (System.nanoTime() - nextCheckNanos >= 0) {
+                disconnectStalled();
+                nextCheckNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(checkPeriodMillis);
+            }
+        }
+    }
+
+    /**
+     * Disconnects every connection whose output has made no progress for writeTimeoutNanos.
+     * Must run on the selector thread.
+     */
+    private void disconnectStalled() {
+        final long now = System.nanoTime();
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                Connection connection = (Connection) key.attachment();
+                if (connection.stalled && now - connection.stalledSinceNanos > writeTimeoutNanos) {
+                    connection.outbox.disconnect();
+                }
+            }
+        }
+    }
+
+    /**
+     * Accept a pending client connection, if any, and register it for reading.
+     */
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            new Connection(channel);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Output waiting to be written to a connection */
+    private static class Pending {
+        private final ByteBuffer bytes;
+        private final boolean pooled; // bytes was borrowed from bufferPool
+        private final boolean notification; // from the outbox, rather than a response to a request
+        private final long sentNanos; // when the outbox handed over the notification
+
+        Pending(ByteBuffer bytes, boolean pooled) {
+            this(bytes, pooled, false, 0);
+        }
+
+        Pending(ByteBuffer bytes, boolean pooled, boolean notification, long sentNanos) {
+            this.bytes = bytes;
+            this.pooled = pooled;
+            this.notification = notification;
+            this.sentNanos = sentNanos;
+        }
+    }
+
+    /**
+     * One client connection: frames incoming bytes into request lines, or into request frames
+     * if the client negotiates the binary protocol, and queues outgoing responses until the
+     * channel is ready to take them.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final NotificationDispatcher.Outbox outbox;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(); // request so far
+        private final Queue<Pending> outbound = new ConcurrentLinkedQueue<>();
+        private boolean negotiated = false; // true once the first byte chose the protocol
+        private volatile boolean binary = false;
+        private int magicRead = 0; // bytes of MAGIC read, if binary
+        private int frameLength = -1; // length of the binary request being read, or -1 while reading it
+        private boolean closing = false; // true after quit, close once outbound is drained
+        private volatile boolean closed = false;
+        private boolean stalled = false; // the head of outbound is waiting for the channel
+        private long stalledSinceNanos; // when the head of outbound first could not be written, if stalled
+
+        /**
+         * Registers a new connection for reading. Must run on the selector thread.
+         * @param channel non-blocking channel to the client
+         * @throws IOException if the channel cannot be registered
+         */
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.key = channel.register(selector, SelectionKey.OP_READ, this);
+            this.outbox = dispatcher.openNonBlocking(this::deliver, this::close);
+        }
+
+        /**
+         * Read what is available and handle every complete line.
+         * @throws IOException if the channel cannot be read
+         */
+        void read() throws IOException {
+            int read = channel.read(readBuffer);
+            if (read == -1) {
+                close();
+                return;
+            }
+            handleLines();
+        }
+
+        /**
+         * Handle the complete requests in readBuffer, stopping early while too many responses
+         * are waiting to be written, and update interest.
+         * @throws IOException if a request fails
+         */
+        private void handleLines() throws IOException {
+            readBuffer.flip();
+            while (readBuffer.hasRemaining() && !closing && !closed && outbound.size() < MAX_PENDING_RESPONSES) {
+                byte b = readBuffer.get();
+                if (!negotiated) {
+                    // No text request starts with MAGIC's first byte, so one byte decides
+                    negotiated = true;
+                    binary = (b == BinaryProtocol.MAGIC[0]);
+                }
+                if (binary ? !readBinary(b) : !readText(b)) {
+                    return;
+                }
+            }
+            readBuffer.compact();
+            updateInterest();
+        }
+
+        /**
+         * Add a byte of the text protocol to the request line, handling the line once it ends.
+         * @param b next byte from the client
+         * @return false if the connection was closed
+         * @throws IOException if the request fails
+         */
+        private boolean readText(byte b) throws IOException {
+            if (b != '\n') {
+                return append(b);
+            }
+            String input = line.toString(UTF_8);
+            line.reset();
+            if (input.endsWith("\r")) {
+                input = input.substring(0, input.length() - 1);
+            }
+            handleLine(input);
+            return true;
+        }
+
+        /**
+         * Add a byte of the binary protocol to MAGIC or the request frame, answering MAGIC and
+         * handling the request once they are complete.
+         * @param b next byte from the client
+         * @return false if the connection was closed
+         * @throws IOException if the request fails
+         */
+        private boolean readBinary(byte b) throws IOException {
+            if (magicRead < BinaryProtocol.MAGIC.length) {
+                if (b != BinaryProtocol.MAGIC[magicRead++]) {
+                    System.err.println("Closing " + channel.getRemoteAddress() + ": unknown protocol header");
+                    close();
+                    return false;
+                }
+                if (magicRead == BinaryProtocol.MAGIC.length) {
+                    outbound.add(new Pending(ByteBuffer.wrap(BinaryProtocol.MAGIC).asReadOnlyBuffer(), false));
+                }
+                return true;
+            }
+            if (!append(b)) {
+                return false;
+            }
+            if (frameLength < 0 && line.size() == Integer.BYTES) {
+                frameLength = ByteBuffer.wrap(line.toByteArray()).getInt();
+                line.reset();
+                if (frameLength < 0 || frameLength > MAX_LINE_BYTES) {
+                    System.err.println("Closing " + channel.getRemoteAddress() + ": bad frame length " + frameLength);
+                    close();
+                    return false;
+                }
+            }
+            if (frameLength == line.size()) {
+                String input = line.toString(UTF_8);
+                line.reset();
+                frameLength = -1;
+                handleLine(input);
+            }
+            return true;
+        }
+
+        /**
+         * Add a byte to the request so far, closing the connection if it grows too long.
+         * @param b next byte of the request
+         * @return false if the connection was closed
+         * @throws IOException if the client's address cannot be read
+         */
+        private boolean append(byte b) throws IOException {
+            if (line.size() >= MAX_LINE_BYTES) {
+                System.err.println("Closing " + channel.getRemoteAddress() + ": request line longer than "
+                        + MAX_LINE_BYTES + " bytes");
+                close();
+                return false;
+            }
+            line.write(b);
+            return true;
+        }
+
+        /**
+         * Apply one request line, with the same outcomes as TextServer.handleConnection
+         * @param input request line without its terminator
+         * @throws IOException if the request fails
+         */
+        private void handleLine(String input) throws IOException {
+            try {
+                Response output = handler.handleRequest(input, outbox);
+                if (output == RequestHandler.QUIT) {
+                    closing = true;
+                    write();
+                    return;
+                } else if (output == RequestHandler.LISTENER) {
+                    return;
+                }
+                outbound.add(encode(output));
+            } catch (NumberFormatException nfe) {
+                outbound.add(encode(Response.error("Expected number instead of word")));
+            }
+        }
+
+        /**
+         * @param response response to a request
+         * @return output holding response in the connection's protocol
+         */
+        private Pending encode(Response response) {
+            return encode(response, false, 0);
+        }
+
+        /**
+         * @param response response to write
+         * @param notification true if response is a listener notification from the outbox
+         * @param sentNanos when the outbox handed over the notification, if notification
+         * @return output holding response in the connection's protocol
+         */
+        private Pending encode(Response response, boolean notification, long sentNanos) {
+            if (binary) {
+                return new Pending(BinaryProtocol.encode(response, bufferPool), true, notification, sentNanos);
+            }
+            return new Pending(UTF_8.encode(response.toText() + "\n"), false, notification, sentNanos);
+        }
+
+        /**
+         * Queue a listener notification for the selector thread to write, and return without
+         * waiting for it. Runs on the thread that sent the notification.
+         * @param response response to write
+         * @throws IOException if the connection is closed
+         */
+        private void deliver(Response response) throws IOException {
+            if (closed) {
+                throw new IOException("connection closed");
+            }
+            outbound.add(encode(response, true, System.nanoTime()));
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+
+        /**
+         * Write as much queued output as the channel accepts and update interest, handling
+         * the lines that were left unread while output was waiting.
+         * @throws IOException if the channel cannot be written
+         */
+        void write() throws IOException {
+            if (closed) {
+                return;
+            }
+            for (Pending pending = outbound.peek(); pending != null; pending = outbound.peek()) {
+                channel.write(pending.bytes);
+                if (pending.bytes.hasRemaining()) {
+                    if (!stalled) {
+                        stalled = true;
+                        stalledSinceNanos = System.nanoTime();
+                    }
+                    updateInterest();
+                    return;
+                }
+                outbound.poll();
+                stalled = false;
+                if (pending.notification) {
+                    outbox.written(pending.sentNanos);
+                }
+                if (pending.pooled) {
+                    bufferPool.release(pending.bytes);
+                }
+            }
+            if (closing) {
+                close();
+            } else if (readBuffer.position() > 0) {
+                handleLines();
+            } else {
+                updateInterest();
+            }
+        }
+
+        /**
+         * Read only while few enough responses are waiting, and write while any are.
+         */
+        private void updateInterest() {
+            if (closed) {
+                return;
+            }
+            int ops = outbound.isEmpty() ? 0 : SelectionKey.OP_WRITE;
+            if (outbound.size() < MAX_PENDING_RESPONSES) {
+                ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+        }
+
+        /**
+         * Close the channel and end its subscriptions; one-shot listeners still holding this
+         * connection send into a closed outbox. Safe to call from any thread, more than once.
+         */
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            handler.connectionClosed(outbox);
+            outbox.close();
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            outbound.clear();
+        }
+    }
+}
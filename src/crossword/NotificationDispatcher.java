@@ -0,0 +1,410 @@
+package crossword;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers listener notifications to client connections off the thread that sent them, so
+ * that a change to the game never waits on a client's socket.
+ *
+ * Each connection gets a bounded Outbox. A connection whose outbox overflows, or whose
+ * current write has been blocked for longer than the write timeout, is a slow consumer
+ * and is disconnected.
+ *
+ * An outbox made by open() is drained by a delivery thread that may block in the client's
+ * write. Delivery threads are not shared while they block: the pool starts another thread
+ * whenever every idle one is busy, so a blocked client holds only the thread writing to it
+ * and other connections keep getting their notifications. An outbox made by openNonBlocking()
+ * hands each notification straight to a connection that queues it for its own writer, such as
+ * NioTextServer's selector thread, which then enforces the write timeout itself.
+ */
+public class NotificationDispatcher {
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_MAX_QUEUED = 64;
+    public static final long DEFAULT_WRITE_TIMEOUT_MILLIS = 5000;
+    private static final long IDLE_THREAD_SECONDS = 60;
+
+    // Abstraction function:
+    //    AF(deliveryPool, watchdog, maxQueued, writeTimeoutNanos, outboxes, queueDepth, delivered,
+    //       totalLatencyNanos, maxLatencyNanos, disconnected):
+    //          a dispatcher whose deliveryPool threads write queued notifications to the open
+    //          connections in outboxes, or hand them to connections that write them without
+    //          blocking, holding at most maxQueued unwritten notifications per
+    //          connection, while watchdog disconnects connections whose write has taken longer
+    //          than writeTimeoutNanos. queueDepth is the number of notifications waiting in all
+    //          outboxes; delivered, totalLatencyNanos and maxLatencyNanos describe the time from
+    //          send() to the end of each finished write; disconnected counts slow consumers dropped.
+    // Representation invariant:
+    //  maxQueued > 0
+    //  writeTimeoutNanos > 0
+    //  queueDepth >= 0, delivered >= 0, disconnected >= 0
+    // Safety from rep exposure:
+    //  all fields are private and final
+    //  metrics are returned as primitive values
+    // Thread safety argument:
+    //  outboxes is a concurrent set and every metric is an atomic
+    //  each outbox's queue is a threadsafe BlockingQueue, and its scheduled flag makes sure
+    //      at most one pool thread drains it at a time, so notifications keep their order
+    //  a non-blocking outbox guards its count of unwritten notifications with its own lock,
+    //      which is never held while calling its delivery or closing its connection
+
+    private final ExecutorService deliveryPool;
+    private final ScheduledExecutorService watchdog;
+    private final int maxQueued;
+    private final long writeTimeoutNanos;
+    private final Set<Outbox> outboxes = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong disconnected = new AtomicLong();
+
+    /**
+     * Make a dispatcher that keeps DEFAULT_THREADS idle delivery threads, DEFAULT_MAX_QUEUED notifications
+     * per connection and a write timeout of DEFAULT_WRITE_TIMEOUT_MILLIS.
+     */
+    public NotificationDispatcher() {
+        this(DEFAULT_THREADS, DEFAULT_MAX_QUEUED, DEFAULT_WRITE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Make a dispatcher.
+     * @param threads number of delivery threads kept while idle, > 0; more are started while
+     *                that many are blocked writing
+     * @param maxQueued most notifications a connection may have waiting before it is disconnected, > 0
+     * @param writeTimeoutMillis longest a single write may block before its connection is disconnected, > 0
+     */
+    public NotificationDispatcher(int threads, int maxQueued, long writeTimeoutMillis) {
+        this.deliveryPool = new ThreadPoolExecutor(threads, Integer.MAX_VALUE,
+                IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "notification-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maxQueued = maxQueued;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        final long checkPeriod = Math.max(1, writeTimeoutMillis / 2);
+        watchdog.scheduleAtFixedRate(this::disconnectStuckWriters, checkPeriod, checkPeriod, TimeUnit.MILLISECONDS);
+        checkRep();
+    }
+
+    private void checkRep() {
+        assert maxQueued > 0;
+        assert writeTimeoutNanos > 0;
+        assert queueDepth.get() >= 0;
+        assert delivered.get() >= 0;
+        assert disconnected.get() >= 0;
+    }
+
+    /** Writes responses to one client connection */
+    public interface Delivery {
+        /**
+         * Writes a response to the client in the connection's protocol, blocking until it is
+         * written, or for a non-blocking outbox, queues it to be written without waiting
+         * @param response response to write
+         * @throws IOException if the response cannot be written
+         */
+        public void deliver(Response response) throws IOException;
+    }
+    
+    /**
+     * Opens an outbox for a client connection whose writes block.
+     * @param delivery writes to the client; the outbox calls it from one delivery thread at a time
+     * @param connection closed to disconnect the client if it is a slow consumer
+     * @return a new outbox delivering through delivery
+     */
+    public Outbox open(Delivery delivery, Closeable connection) {
+        Outbox outbox = new Outbox(delivery, connection, false);
+        outboxes.add(outbox);
+        return outbox;
+    }
+
+    /**
+     * Opens an outbox for a client connection that queues its output and writes it itself.
+     * The outbox calls delivery on the sending thread and never waits for the write; the
+     * connection must call Outbox.written() as each notification is written, and
+     * Outbox.disconnect() if its output makes no progress for getWriteTimeoutMillis().
+     * @param delivery queues a response for the client without blocking; may be called
+     *                 from several threads at once
+     * @param connection closed to disconnect the client if it is a slow consumer
+     * @return a new outbox delivering through delivery
+     */
+    public Outbox openNonBlocking(Delivery delivery, Closeable connection) {
+        Outbox outbox = new Outbox(delivery, connection, true);
+        outboxes.add(outbox);
+        return outbox;
+    }
+
+    /**
+     * @return longest a connection's output may stay blocked before it is a slow consumer
+     */
+    public long getWriteTimeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos);
+    }
+
+    /**
+     * @return number of notifications waiting in all outboxes
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return number of notifications written to clients
+     */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * @return number of connections disconnected as slow consumers
+     */
+    public long getDisconnectedCount() {
+        return disconnected.get();
+    }
+
+    /**
+     * @return mean time in microseconds from sending a notification until it was written,
+     *         or 0 if nothing has been delivered
+     */
+    public long getMeanLatencyMicros() {
+        long count = delivered.get();
+        return (count == 0) ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.get() / count);
+    }
+
+    /**
+     * @return longest time in microseconds from sending a notification until it was written
+     */
+    public long getMaxLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.get());
+    }
+
+    /**
+     * Prints the dispatcher's metrics
+     */
+    public void printStats() {
+        System.out.println("Notification dispatcher stats:");
+        System.out.println("\tOpen outboxes: " + outboxes.size());
+        System.out.println("\tQueue depth: " + getQueueDepth());
+        System.out.println("\tDelivered: " + getDeliveredCount());
+        System.out.println("\tMean latency (us): " + getMeanLatencyMicros());
+        System.out.println("\tMax latency (us): " + getMaxLatencyMicros());
+        System.out.println("\tSlow consumers disconnected: " + getDisconnectedCount());
+    }
+
+    /**
+     * Records a notification written to its client.
+     * @param sentNanos when the notification was sent
+     */
+    private void recordDelivery(long sentNanos) {
+        long latency = System.nanoTime() - sentNanos;
+        delivered.incrementAndGet();
+        totalLatencyNanos.addAndGet(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * Disconnects every connection whose current write started more than writeTimeoutNanos ago.
+     */
+    private void disconnectStuckWriters() {
+        final long now = System.nanoTime();
+        for (Outbox outbox : outboxes) {
+            final long started = outbox.writeStartedNanos;
+            if (started != 0 && now - started > writeTimeoutNanos) {
+                outbox.disconnect();
+            }
+        }
+    }
+
+    /** A notification waiting in an outbox */
+    private static class Notification {
+        private final Response response;
+        private final long sentNanos;
+
+        Notification(Response response, long sentNanos) {
+            this.response = response;
+            this.sentNanos = sentNanos;
+        }
+    }
+
+    /**
+     * Bounded queue of notifications for one client connection, written in order by the
+     * dispatcher's delivery threads, or handed to a connection that writes them itself.
+     */
+    public class Outbox implements RequestHandler.Output {
+        private final Delivery delivery;
+        private final Closeable connection;
+        private final boolean nonBlocking; // delivery only queues, and the connection reports writes
+        private final BlockingQueue<Notification> queue = new ArrayBlockingQueue<>(maxQueued);
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private volatile long writeStartedNanos = 0; // 0 unless a delivery thread is writing
+        private int unwritten = 0; // notifications handed to a non-blocking delivery; guarded by this
+
+        private Outbox(Delivery delivery, Closeable connection, boolean nonBlocking) {
+            this.delivery = delivery;
+            this.connection = connection;
+            this.nonBlocking = nonBlocking;
+        }
+
+        /**
+         * Queues a response for delivery and returns without waiting for it to be written.
+         * Disconnects the client instead if its outbox is full.
+         * @param response response to deliver
+         */
+        @Override
+        public void send(Response response) {
+            if (closed.get()) {
+                return;
+            }
+            if (nonBlocking) {
+                handOver(response);
+                return;
+            }
+            if (!queue.offer(new Notification(response, System.nanoTime()))) {
+                disconnect();
+                return;
+            }
+            queueDepth.incrementAndGet();
+            if (scheduled.compareAndSet(false, true)) {
+                deliveryPool.execute(this::drain);
+            }
+        }
+
+        /**
+         * Writes queued notifications until the queue is empty.
+         * Runs on a delivery thread, and on at most one at a time.
+         */
+        private void drain() {
+            while (true) {
+                for (Notification notification = queue.poll(); notification != null; notification = queue.poll()) {
+                    queueDepth.decrementAndGet();
+                    if (closed.get()) {
+                        continue;
+                    }
+                    writeStartedNanos = System.nanoTime();
+                    try {
+                        delivery.deliver(notification.response);
+                    } catch (IOException ioe) {
+                        writeStartedNanos = 0;
+                        disconnect();
+                        continue;
+                    } catch (RuntimeException re) {
+                        // a response that cannot be written leaves a gap in the stream, so the
+                        //  connection is dropped as well, but the cause is a bug worth reporting
+                        re.printStackTrace();
+                        writeStartedNanos = 0;
+                        disconnect();
+                        continue;
+                    }
+                    writeStartedNanos = 0;
+                    recordDelivery(notification.sentNanos);
+                }
+                scheduled.set(false);
+                // Another send may have queued a notification after the queue looked empty
+                if (queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Hands a response to a non-blocking delivery, counting it until the connection
+         * reports it written. Runs on the sending thread.
+         * @param response response to deliver
+         */
+        private void handOver(Response response) {
+            final boolean full;
+            synchronized (this) {
+                if (closed.get()) {
+                    return;
+                }
+                full = (unwritten == maxQueued);
+                if (!full) {
+                    unwritten++;
+                    queueDepth.incrementAndGet();
+                }
+            }
+            if (full) {
+                disconnect();
+                return;
+            }
+            try {
+                delivery.deliver(response);
+            } catch (IOException ioe) {
+                disconnect();
+            } catch (RuntimeException re) {
+                re.printStackTrace();
+                disconnect();
+            }
+        }
+
+        /**
+         * Reports that a notification handed to a non-blocking delivery has been written.
+         * @param sentNanos System.nanoTime() when the notification was handed over
+         */
+        public void written(long sentNanos) {
+            synchronized (this) {
+                if (unwritten == 0) {
+                    // dropped when the outbox closed
+                    return;
+                }
+                unwritten--;
+                queueDepth.decrementAndGet();
+            }
+            recordDelivery(sentNanos);
+        }
+
+        /**
+         * Disconnects a slow consumer: drops its notifications and closes its connection.
+         */
+        public void disconnect() {
+            if (closed.get()) {
+                return;
+            }
+            close();
+            disconnected.incrementAndGet();
+            try {
+                connection.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Stops delivering to this connection and drops anything still queued.
+         * Does not close the connection.
+         */
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            outboxes.remove(this);
+            for (Notification notification = queue.poll(); notification != null; notification = queue.poll()) {
+                queueDepth.decrementAndGet();
+            }
+            synchronized (this) {
+                queueDepth.addAndGet(-unwritten);
+                unwritten = 0;
+            }
+        }
+    }
+}
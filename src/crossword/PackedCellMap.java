@@ -0,0 +1,128 @@
+package crossword;
+
+import java.util.Arrays;
+
+/**
+ * Mutable map from the cells of a grid to non-negative ints, where each cell is packed into
+ * one long by key(row, col). Keys are kept in an open-addressing table of primitive arrays,
+ * so lookups neither allocate nor box, unlike a HashMap of Points to Integers.
+ */
+class PackedCellMap {
+    private static final int ABSENT = -1;
+    private static final int MIN_CAPACITY = 16;
+    private static final long FIBONACCI = 0x9E3779B97F4A7C15L;
+
+    // Abstraction function:
+    //    AF(keys, values, size): the map from keys[i] to values[i] for each i where
+    //          values[i] != ABSENT
+    // Representation invariant:
+    //  keys.length == values.length is a power of 2, at least MIN_CAPACITY
+    //  size is the number of i with values[i] != ABSENT, and size < keys.length / 2
+    //  each key is found by probing linearly from slot(key) without passing an ABSENT slot
+    //  no key appears at two slots with values other than ABSENT
+    // Safety from rep exposure:
+    //  all fields are private, and the arrays are never returned
+    // Thread safety argument:
+    //  not threadsafe: a map must be used by one thread, or built before being shared and
+    //      then only read
+
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    /**
+     * Make an empty map.
+     * @param expected number of cells expected to be put, which it can hold without growing
+     */
+    PackedCellMap(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity / 2 <= expected) {
+            capacity *= 2;
+        }
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, ABSENT);
+    }
+
+    /**
+     * @param row row of a cell
+     * @param col column of a cell
+     * @return the cell packed into a long, different for each row and col
+     */
+    static long key(int row, int col) {
+        return ((long) row << Integer.SIZE) | (col & 0xFFFF_FFFFL);
+    }
+
+    /**
+     * @param key a cell packed by key(row, col)
+     * @return the value of the cell, or -1 if it has none
+     */
+    int get(long key) {
+        final int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != ABSENT; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Set the value of a cell.
+     * @param key a cell packed by key(row, col)
+     * @param value value of the cell, >= 0
+     */
+    void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must be >= 0: " + value);
+        }
+        final int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] != ABSENT) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        if (size >= keys.length / 2) {
+            grow();
+        }
+    }
+
+    /**
+     * @return number of cells with a value
+     */
+    int size() {
+        return size;
+    }
+
+    /*
+     * @return the slot to start probing for key from, with the high bits of a Fibonacci hash
+     */
+    private static int slot(long key, int mask) {
+        return (int) ((key * FIBONACCI) >>> (Long.SIZE - Integer.bitCount(mask))) & mask;
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, ABSENT);
+        final int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != ABSENT) {
+                int i = slot(oldKeys[j], mask);
+                while (values[i] != ABSENT) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
@@ -1,37 +1,70 @@
 package crossword;
 
+import java.nio.ByteBuffer;
 import java.util.AbstractMap.SimpleImmutableEntry;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class PlayablePuzzle {
+    /** Seat of nobody, the owner of an entry without a guess */
+    public static final int NO_SEAT = 0;
+    /** Seat of the player who created the match */
+    public static final int SEAT_ONE = 1;
+    /** Seat of the player who joined the match */
+    public static final int SEAT_TWO = 2;
+    
     // Abstraction Function:
-    // AF(name, description, playerEntries, confirmedEntries, correctEntries, puzzle): 
+    // AF(name, description, seats, owners, guesses, confirmed, correctEntries,
+    //    playerEntryCount, puzzle, grid, correctGuesses, wrongGuesses, correctCells): 
     //     A Puzzle representing a specific crossword puzzle with a name and a description.
-    //     playerEntries represents the mapping of wordID of a particular word mapped to 
-    //     a Player and a PuzzleEntry, to indicate the player who currently has the guess to the
-    //     particular entry. confirmedEntries represents the mapping of wordID to PuzzleEntry,
-    //     to represent the entries that have been confirmed as correct and can no longer be
-    //     guessed. correctEntries is a mapping of wordID to a PuzzleEntry that encompasses
-    //     all the correct entries in the puzzle. puzzle represents the immutable correct 
+    //     Each entry of the puzzle has a slot, indexed by its wordID in the arrays owners, guesses
+    //     and confirmed: if guesses[wordID] is not null, seats[owners[wordID] - 1] is the player who
+    //     currently has the guess guesses[wordID] for that entry, and if confirmed[wordID] is not null, the
+    //     entry has been confirmed as confirmed[wordID] and can no longer be guessed.
+    //     correctEntries[wordID] is the correct entry for wordID, and playerEntryCount counts the
+    //     slots with a guess. puzzle represents the immutable correct 
     //     puzzle that the player can check the mutalbe playable puzzle against.
+    //     grid is the puzzle's index of its cells, their correct letters and the crossings
+    //     between entries; correctGuesses[c] and wrongGuesses[c] count the player entries over cell c with
+    //     its correct letter and with another letter, and correctCells counts the cells that
+    //     player entries fill correctly.
     //                                    
     // Rep Invariant:
-    //  true
+    //  owners, guesses, confirmed and correctEntries all have one slot for each entry of puzzle
+    //  owners[wordID] is NO_SEAT, SEAT_ONE or SEAT_TWO, and owners[wordID] == NO_SEAT iff guesses[wordID] == null
+    //  seats.length == 2, and seats[owners[wordID] - 1] != null if guesses[wordID] != null
+    //  playerEntryCount is the number of wordIDs with guesses[wordID] != null
+    //  guesses[wordID], if not null, has the position, orientation and length of correctEntries[wordID]
+    //  correctGuesses.length == wrongGuesses.length == grid.cellCount()
+    //  correctCells == number of cells c with correctGuesses[c] > 0 and wrongGuesses[c] == 0
     // Safety From Rep Exposure:
     //  name, description, and puzzle are private, final and immutable
-    //  playerEntries, confirmedENtries, and correctEntries can only be gotten through getter methods, and returns a copy of the map, which
-    //  playerEntries and confirmedEntries can only be modified through mutator methods
-    //  correctEntries is never returned neither directly or as a copy
+    //  the slot arrays are private and never returned; getPlayerEntries, getConfirmedEntries,
+    //      getCorrectEntries and getFlattenedPlayerEntries return new maps built from them
+    //      and getGuesses a new GuessList copied from them, whose arrays are never returned
+    //  seats is never returned; getPlayerEntries only returns the Players seated by the
+    //      caller, and the slot accessors return immutable PuzzleEntries and seat numbers
+    //  slots can only be modified through mutator methods
+    //  grid is immutable, and correctGuesses and wrongGuesses are never returned
     // Thread safety argument:
-    //  Uses monitor Pattern
+    //  Uses monitor Pattern, except getPuzzleForResponse, getLayout, getCorrectEntry and
+    //  getEntryCount, which only read the immutable puzzle and correctEntries
     private final String name; 
     private final String description;
-    private final Map<Integer, SimpleImmutableEntry<Player, PuzzleEntry>> playerEntries = Collections.synchronizedMap(new HashMap<>()); // unconfirmed word id : puzzle entry
-    private final Map<Integer, PuzzleEntry> confirmedEntries  = Collections.synchronizedMap(new HashMap<>());
-    private final Map<Integer, PuzzleEntry> correctEntries;
+    private final Player[] seats = new Player[2]; // seat - 1 : player in the seat, or null
+    private final byte[] owners; // word id : seat of the player who has the guess, or NO_SEAT
+    private final PuzzleEntry[] guesses; // word id : current guess, or null
+    private final PuzzleEntry[] confirmed; // word id : confirmed entry, or null
+    private final PuzzleEntry[] correctEntries; // word id : correct entry
+    private int playerEntryCount = 0;
     private final Puzzle puzzle; // immutable correct puzzle
+    private final CellGrid grid;
+    private final int[] correctGuesses; // cell : player entries over it with its correct letter
+    private final int[] wrongGuesses; // cell : player entries over it with another letter
+    private int correctCells = 0;
+    
     /**
      * Constructs a puzzle that can be played by different players
      * @param puzzle an unmodifiable puzzle with the correct answers
@@ -39,45 +72,119 @@ public class PlayablePuzzle {
     public PlayablePuzzle(Puzzle puzzle) {
         name = puzzle.getName();
         description = puzzle.getDescription();
-        correctEntries = Collections.unmodifiableMap(puzzle.getEntries());
+        final Map<Integer, PuzzleEntry> entries = puzzle.getEntries();
+        owners = new byte[entries.size()];
+        guesses = new PuzzleEntry[entries.size()];
+        confirmed = new PuzzleEntry[entries.size()];
+        correctEntries = new PuzzleEntry[entries.size()];
+        for (int wordID = 0; wordID < entries.size(); wordID++) {
+            correctEntries[wordID] = entries.get(wordID);
+        }
         this.puzzle = puzzle;
+        grid = puzzle.getGrid();
+        correctGuesses = new int[grid.cellCount()];
+        wrongGuesses = new int[grid.cellCount()];
+    }
+    
+    /*
+     * Adds delta to the guess counts of the cells of the player entry for wordID,
+     * keeping correctCells up to date.
+     */
+    private void countGuesses(int wordID, PuzzleEntry entry, int delta) {
+        String word = entry.getWord();
+        for (int j = 0; j < word.length(); j++) {
+            int cell = grid.cell(wordID, j);
+            boolean wasCorrect = correctGuesses[cell] > 0 && wrongGuesses[cell] == 0;
+            if (word.charAt(j) == grid.correctLetter(cell)) {
+                correctGuesses[cell] += delta;
+            } else {
+                wrongGuesses[cell] += delta;
+            }
+            boolean isCorrect = correctGuesses[cell] > 0 && wrongGuesses[cell] == 0;
+            if (wasCorrect != isCorrect) {
+                correctCells += isCorrect ? 1 : -1;
+            }
+        }
     }
     
     /**
-     * Adds a player entry/guess to a map of words player guessed
+     * Seats a player, who adds entries by its seat. Entries record seats rather than players,
+     * so that ownership takes one byte per entry and is compared as an int.
+     * @param seat SEAT_ONE for the player who created the match, SEAT_TWO for the one who joined it
+     * @param player the player to seat, replacing any player in seat; a seat may only be given
+     *               to another player while it holds no entries
+     * @throws IllegalArgumentException if seat is not SEAT_ONE or SEAT_TWO
+     */
+    public synchronized void seatPlayer(int seat, Player player) {
+        checkSeat(seat);
+        seats[seat - 1] = player;
+    }
+    
+    /*
+     * @throws IllegalArgumentException if seat is not SEAT_ONE or SEAT_TWO
+     */
+    private static void checkSeat(int seat) {
+        if (seat != SEAT_ONE && seat != SEAT_TWO) {
+            throw new IllegalArgumentException("no such seat: " + seat);
+        }
+    }
+    
+    /**
+     * Sets the player entry/guess for a word, replacing any guess it had
      * @param wordID the id of the word on the crossword puzzle
-     * @param player the player that is making a guess
-     * @param word word to add as a puzzle entry 
+     * @param seat seat of the player that is making a guess, SEAT_ONE or SEAT_TWO, which must
+     *             have been given to a player with seatPlayer
+     * @param word word to add as a puzzle entry, with the position, orientation and length
+     *             of the puzzle's entry wordID
      * @return true if word is added, false otherwise
+     * @throws IllegalArgumentException if seat is not SEAT_ONE or SEAT_TWO, or nobody is in it
      */
-    public synchronized boolean addPlayerEntry(int wordID, Player player, PuzzleEntry word) {
-        playerEntries.put(wordID, new SimpleImmutableEntry<>(player, word));
+    public synchronized boolean addPlayerEntry(int wordID, int seat, PuzzleEntry word) {
+        PuzzleEntry correctEntry = correctEntries[wordID];
+        assert word.getPosition().equals(correctEntry.getPosition())
+                && word.getOrientation() == correctEntry.getOrientation()
+                && word.getWord().length() == correctEntry.getWord().length();
+        checkSeat(seat);
+        if (seats[seat - 1] == null) {
+            throw new IllegalArgumentException("nobody is in seat " + seat);
+        }
+        if (guesses[wordID] != null) {
+            countGuesses(wordID, guesses[wordID], -1);
+        } else {
+            playerEntryCount++;
+        }
+        owners[wordID] = (byte) seat;
+        guesses[wordID] = word;
+        countGuesses(wordID, word, 1);
         return true;
     }
     /**
-     * Deletes the entry of the word from the playerEntries
+     * Deletes the player entry/guess for the word
      * @param wordID the id of the word on the crossword puzzle
      * @return true if entry is deleted, false otherwise
      */
     public synchronized boolean deletePlayerEntry(int wordID) {
-        if (!playerEntries.containsKey(wordID)) {
+        if (guesses[wordID] == null) {
             return false;
         }
-        playerEntries.remove(wordID);
+        countGuesses(wordID, guesses[wordID], -1);
+        owners[wordID] = NO_SEAT;
+        guesses[wordID] = null;
+        playerEntryCount--;
         return true;
     }
     
     /**
-     * Adds a confirmed entry/guess to a map of words that has been confirmed
+     * Confirms an entry/guess for a word
      * @param wordID the id of the word on the crossword puzzle
      * @param word word to add as a puzzle entry 
      * @return true if word is added, false otherwise
      */
     public synchronized boolean addConfirmedEntry(int wordID, PuzzleEntry word) {
-        if (confirmedEntries.containsKey(wordID)) {
+        if (confirmed[wordID] != null) {
             return false;
         }
-        confirmedEntries.put(wordID, word);
+        confirmed[wordID] = word;
         return true;
     }
     /**
@@ -90,73 +197,262 @@ public class PlayablePuzzle {
     }*/
     
     /**
-     * @return map of playerEntries in the puzzle
+     * @return number of entries in the puzzle; word ids are 0 to getEntryCount() - 1
+     */
+    public int getEntryCount() {
+        return correctEntries.length;
+    }
+    
+    /**
+     * @param wordID the id of the word on the crossword puzzle
+     * @return the correct entry for wordID
+     */
+    public PuzzleEntry getCorrectEntry(int wordID) {
+        return correctEntries[wordID];
+    }
+    
+    /**
+     * @param wordID the id of the word on the crossword puzzle
+     * @return seat of the player who has the guess for wordID, or NO_SEAT if nobody has
+     */
+    public synchronized int getOwner(int wordID) {
+        return owners[wordID];
+    }
+    
+    /**
+     * @param wordID the id of the word on the crossword puzzle
+     * @return the guess for wordID, or null if nobody has guessed it
+     */
+    public synchronized PuzzleEntry getPlayerEntry(int wordID) {
+        return guesses[wordID];
+    }
+    
+    /**
+     * @param wordID the id of the word on the crossword puzzle
+     * @return true if wordID has been confirmed
+     */
+    public synchronized boolean isConfirmed(int wordID) {
+        return confirmed[wordID] != null;
+    }
+    
+    /**
+     * @param seat SEAT_ONE or SEAT_TWO
+     * @return number of entries whose guess is held by the player in seat
+     * @throws IllegalArgumentException if seat is not SEAT_ONE or SEAT_TWO
+     */
+    public synchronized int countPlayerEntries(int seat) {
+        checkSeat(seat);
+        int count = 0;
+        for (byte owner : owners) {
+            if (owner == seat) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * @return new map of word id : (player, guess) of the entries that have a guess
      */
     public synchronized Map<Integer, SimpleImmutableEntry<Player,PuzzleEntry>> getPlayerEntries() {
-        return new HashMap<>(playerEntries);
+        Map<Integer, SimpleImmutableEntry<Player, PuzzleEntry>> playerEntries = new HashMap<>();
+        for (int wordID = 0; wordID < guesses.length; wordID++) {
+            if (guesses[wordID] != null) {
+                playerEntries.put(wordID, new SimpleImmutableEntry<>(seats[owners[wordID] - 1], guesses[wordID]));
+            }
+        }
+        return playerEntries;
     }
     
     /**
-     * @return map of confirmedEntries in the puzzle
+     * @return new map of word id : confirmed entry of the confirmed entries
      */
     public synchronized Map<Integer, PuzzleEntry> getConfirmedEntries() {
-        return new HashMap<>(confirmedEntries);
+        return toMap(confirmed);
     }
     
     /**
-     * @return map of correctEntries in the puzzle
+     * @return new map of word id : correct entry of every entry in the puzzle
      */
     public synchronized Map<Integer, PuzzleEntry> getCorrectEntries() {
-        return new HashMap<>(correctEntries);
+        return toMap(correctEntries);
     }
     
     /**
-     * Flattens playerEntries to <Integer, PuzzleEntry>
-     * @return flattened player entries
+     * Flattens the player entries to <Integer, PuzzleEntry>
+     * @return new map of word id : guess of the entries that have a guess
      */
     public synchronized Map<Integer, PuzzleEntry> getFlattenedPlayerEntries()  {
-        Map<Integer, PuzzleEntry> flattened = new HashMap<>();
-        for (Map.Entry<Integer, SimpleImmutableEntry<Player,PuzzleEntry>> entry: playerEntries.entrySet()) {
-            flattened.put(entry.getKey(), entry.getValue().getValue());
+        return toMap(guesses);
+    }
+    
+    /*
+     * @return new map of index : element of the elements of slots that are not null
+     */
+    private static Map<Integer, PuzzleEntry> toMap(PuzzleEntry[] slots) {
+        Map<Integer, PuzzleEntry> map = new HashMap<>();
+        for (int wordID = 0; wordID < slots.length; wordID++) {
+            if (slots[wordID] != null) {
+                map.put(wordID, slots[wordID]);
+            }
         }
-        return flattened;
+        return map;
     }
     
     /**
-     * @return puzzle formatted for responses
+     * Finds the player entries that disagree with a word at a cell they share. Only the
+     * entries crossing the word are examined.
+     * @param wordID the id of the word on the crossword puzzle
+     * @param word word with the length of the puzzle's entry wordID
+     * @return ids, in increasing order, of the player entries other than wordID that have
+     *         a different letter than word at a cell of entry wordID, listed once per such cell
      */
-    public synchronized String getPuzzleForResponse() {
-        String puzzleString = "";
-        for (Map.Entry<Integer, PuzzleEntry> entry: puzzle.getEntries().entrySet()) {
-            Integer id = entry.getKey();
-            PuzzleEntry puzzleEntry = entry.getValue();
-            puzzleString += id + Game.WORD_DELIM + puzzleEntry.getWord().length() + Game.WORD_DELIM + puzzleEntry.getClue() + Game.WORD_DELIM + 
-                    puzzleEntry.getOrientation() + Game.WORD_DELIM + puzzleEntry.getPosition().getRow() 
-                            + Game.WORD_DELIM + puzzleEntry.getPosition().getCol() + Game.ENTRY_DELIM;
+    public synchronized List<Integer> getConflictingEntries(int wordID, String word) {
+        List<Integer> conflicts = new ArrayList<>();
+        for (int k = 0; k < grid.crossingCount(wordID); k++) {
+            if (conflictsAt(wordID, word, k)) {
+                conflicts.add(grid.crossingEntry(wordID, k));
+            }
         }
-        return puzzleString.substring(0,puzzleString.length()-Game.ENTRY_DELIM.length());
+        return conflicts;
+    }
+    
+    /**
+     * Checks whether any player entry disagrees with a word at a cell they share, as
+     * getConflictingEntries but without listing them.
+     * @param wordID the id of the word on the crossword puzzle
+     * @param word word with the length of the puzzle's entry wordID
+     * @return true iff getConflictingEntries(wordID, word) is not empty
+     */
+    public synchronized boolean hasConflictingEntries(int wordID, String word) {
+        for (int k = 0; k < grid.crossingCount(wordID); k++) {
+            if (conflictsAt(wordID, word, k)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /*
+     * @return true if the player entry at crossing k of wordID has a different letter than
+     *         word at the cell they share
+     */
+    private boolean conflictsAt(int wordID, String word, int k) {
+        PuzzleEntry other = guesses[grid.crossingEntry(wordID, k)];
+        return other != null && other.getWord().charAt(grid.crossedOffset(wordID, k))
+                != word.charAt(grid.crossingOffset(wordID, k));
+    }
+    
+    /**
+     * Checks whether the player entries fill the puzzle: every cell of the puzzle is under a
+     * player entry, and every player entry over it has the cell's correct letter.
+     * Takes constant time, since the filled cells are counted as entries are added and deleted.
+     * @return true if the player entries fill every cell of the puzzle correctly
+     */
+    public synchronized boolean isFilledCorrectly() {
+        return correctCells == grid.cellCount();
+    }
+    
+    /**
+     * @return puzzle formatted for responses, as Puzzle.getLayoutForResponse
+     */
+    public String getPuzzleForResponse() {
+        return puzzle.getLayoutForResponse();
+    }
+    
+    /**
+     * @return PUZZLE response giving the puzzle's layout, as Puzzle.getLayout
+     */
+    Response getLayout() {
+        return puzzle.getLayout();
     }
     
     /**
      * 
      * @return player entries for responses
      */
-    public synchronized String getGuessesForResponse() {
-        if (playerEntries.size() == 0) {
-            return "";
+    public String getGuessesForResponse() {
+        StringBuilder puzzleString = new StringBuilder();
+        getGuesses().appendTo(puzzleString);
+        return puzzleString.toString();
+    }
+    
+    /**
+     * @return the player entries as they are now, in word ID order
+     */
+    synchronized GuessList getGuesses() {
+        return new GuessList(this);
+    }
+    
+    /**
+     * Immutable copy of the player entries of a PlayablePuzzle, in word ID order, that can be
+     * written for either protocol.
+     */
+    static class GuessList {
+        private final String[] owners;
+        private final boolean[] confirmed;
+        private final int[] wordIDs;
+        private final PuzzleEntry[] entries;
+        
+        /*
+         * Copies the player entries of puzzle. Requires the lock on puzzle.
+         */
+        private GuessList(PlayablePuzzle puzzle) {
+            final int n = puzzle.playerEntryCount;
+            owners = new String[n];
+            confirmed = new boolean[n];
+            wordIDs = new int[n];
+            entries = new PuzzleEntry[n];
+            int i = 0;
+            for (int wordID = 0; wordID < puzzle.guesses.length && i < n; wordID++) {
+                if (puzzle.guesses[wordID] == null) {
+                    continue;
+                }
+                owners[i] = puzzle.seats[puzzle.owners[wordID] - 1].getId();
+                confirmed[i] = puzzle.confirmed[wordID] != null;
+                wordIDs[i] = wordID;
+                entries[i] = puzzle.guesses[wordID];
+                i++;
+            }
+        }
+        
+        /**
+         * Appends the player entries in the text protocol: entries separated by ENTRY_DELIM,
+         * each player, T or F for confirmed, wordID, word, orientation, row and col separated
+         * by WORD_DELIM
+         * @param text text to append to
+         */
+        void appendTo(StringBuilder text) {
+            for (int i = 0; i < entries.length; i++) {
+                if (i > 0) {
+                    text.append(Game.ENTRY_DELIM);
+                }
+                PuzzleEntry puzzleEntry = entries[i];
+                text.append(owners[i]).append(Game.WORD_DELIM).append(confirmed[i] ? "T" : "F")
+                        .append(Game.WORD_DELIM).append(wordIDs[i]).append(Game.WORD_DELIM).append(puzzleEntry.getWord())
+                        .append(Game.WORD_DELIM).append(puzzleEntry.getOrientation())
+                        .append(Game.WORD_DELIM).append(puzzleEntry.getPosition().getRow())
+                        .append(Game.WORD_DELIM).append(puzzleEntry.getPosition().getCol());
+            }
         }
         
-        String puzzleString = "";
-        for (Map.Entry<Integer, SimpleImmutableEntry<Player,PuzzleEntry>> entry: playerEntries.entrySet()) {
-            Integer wordID = entry.getKey();
-            String playerID = entry.getValue().getKey().getId();
-            PuzzleEntry puzzleEntry = entry.getValue().getValue();
-            String confirmed = (confirmedEntries.containsKey(wordID)) ? "T" : "F";
-            puzzleString += playerID + Game.WORD_DELIM + confirmed + Game.WORD_DELIM + wordID + Game.WORD_DELIM + puzzleEntry.getWord() + Game.WORD_DELIM + 
-                    puzzleEntry.getOrientation() + Game.WORD_DELIM + puzzleEntry.getPosition().getRow() 
-                            + Game.WORD_DELIM + puzzleEntry.getPosition().getCol() + Game.ENTRY_DELIM;
+        /**
+         * Writes the player entries in the binary protocol, as the end of a GUESSES body
+         * @param buffer buffer to write to
+         */
+        void writeTo(ByteBuffer buffer) {
+            buffer.putInt(entries.length);
+            for (int i = 0; i < entries.length; i++) {
+                PuzzleEntry puzzleEntry = entries[i];
+                BinaryProtocol.putString(buffer, owners[i]);
+                BinaryProtocol.putBoolean(buffer, confirmed[i]);
+                buffer.putInt(wordIDs[i]);
+                BinaryProtocol.putString(buffer, puzzleEntry.getWord());
+                BinaryProtocol.putOrientation(buffer, puzzleEntry.getOrientation());
+                buffer.putInt(puzzleEntry.getPosition().getRow());
+                buffer.putInt(puzzleEntry.getPosition().getCol());
+            }
         }
-        return puzzleString.substring(0,puzzleString.length()-Game.ENTRY_DELIM.length());
     }
     
     /**
@@ -6,18 +6,21 @@ package crossword;
  */
 public class Player {
     public static final String EMPTY_PLAYER_ID = "EMPTY_PLAYER";
+    public static final int NO_HANDLE = -1;
     
     private final String id;
+    private final int handle;
     private int score;
     
     // Abstraction Function:
-    // AF(id, score): id maps to a unique identifier for the player and score represents
-    //                the player's score in the crossword game.                                 
+    // AF(id, handle, score): id maps to a unique identifier for the player, handle is the
+    //                compact int the game interned id to at login (or NO_HANDLE), and score
+    //                represents the player's score in the crossword game.
     // Rep Invariant:
-    //  true
+    //  handle >= 0 or handle == NO_HANDLE
     // Safety From Rep Exposure:
     //  All fields are private
-    //  id is final and immutable
+    //  id and handle are final and immutable
     //  score is immutable and only modified through changeScore()
     // Thread safety argument:
     //  Player is only referenced through threadsafe maps
@@ -27,7 +30,21 @@ public class Player {
      * @param id the id of the player
      */
     public Player(String id) {
+        this(id, NO_HANDLE);
+    }
+    
+    /**
+     * Creates a new player for the game with the handle its id was interned to
+     * @param id the id of the player
+     * @param handle the player's handle, unique among the players of a game, >= 0,
+     *               or NO_HANDLE if the player has none
+     */
+    public Player(String id, int handle) {
+        if (handle < 0 && handle != NO_HANDLE) {
+            throw new IllegalArgumentException("handle must be >= 0: " + handle);
+        }
         this.id = id;
+        this.handle = handle;
         // The player starts with a score of 0 and has no guesses so far
         this.score = 0;
     }
@@ -54,6 +71,13 @@ public class Player {
         return id;
     }
     
+    /**
+     * @return the handle the player's id was interned to, or NO_HANDLE if it has none
+     */
+    public int getHandle() {
+        return handle;
+    }
+    
     /**
      * @return true if the player is empty (not a real player) and false otherwise
      */
@@ -56,7 +56,9 @@ public class Point {
     
     @Override
     public int hashCode() {
-        return this.row + this.col;
+        // row + col would put every cell of an anti-diagonal in one bucket; multiplying by an
+        // odd constant spreads rows apart, so the cells of a grid rarely share a hash
+        return 0x9E3779B9 * this.row + this.col;
     }
     
     /**
@@ -1,7 +1,11 @@
 package crossword;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,14 +18,17 @@ import edu.mit.eecs.parserlib.UnableToParseException;
  */
 public class Puzzle {
     // Abstraction Function:
-    // AF(name, description, entries): a Puzzle representing a crossword puzzle with a name 
+    // AF(name, description, entries, layout, grid): a Puzzle representing a crossword puzzle with a name 
     //                                 and a description for the crossword. There is a map of ID 
     //                                 to PuzzleEntries that represents each word in the puzzle.
+    //                                 layout is the response giving the puzzle's blank layout,
+    //                                 and grid indexes the cells of entries and which entries cross.
     //                                    
     // Rep Invariant:
-    // true
+    // layout's body is the serialization of entries described in getLayoutForResponse
+    // grid indexes exactly the entries in entries
     // Safety From Rep Exposure:
-    //  name and description is private and final and immutable
+    //  name, description, layout and grid are private and final and immutable
     //  entries is only accessed through getter methods like getEntries which creates a copy 
     //      before returning to the client
     // Thread safety argument:
@@ -29,6 +36,8 @@ public class Puzzle {
     private final String name; 
     private final String description;
     private final Map<Integer, PuzzleEntry> entries;
+    private final Layout layout; // serialized once, shared by every match of this puzzle
+    private final CellGrid grid; // built once, shared by every match of this puzzle
     
     /**
      * Returns a new Puzzle by parsing a file
@@ -56,6 +65,54 @@ public class Puzzle {
             tempEntries.put(i,  entries.get(i));
         }
         this.entries = Collections.unmodifiableMap(tempEntries); // Wrap the entries with an unmodifiable map
+        this.layout = new Layout(this.entries);
+        this.grid = new CellGrid(this.entries);
+    }
+    
+    /* PUZZLE response giving the blank layout of a puzzle's entries */
+    private static class Layout extends Response {
+        private final Map<Integer, PuzzleEntry> entries;
+        private final String text;
+
+        /*
+         * Serializes the blank layout of entries, in ID order, as described in getLayoutForResponse.
+         */
+        private Layout(Map<Integer, PuzzleEntry> entries) {
+            super(ResponseType.PUZZLE);
+            this.entries = entries;
+            StringBuilder layout = new StringBuilder();
+            for (int id = 0; id < entries.size(); id++) {
+                PuzzleEntry entry = entries.get(id);
+                if (id > 0) {
+                    layout.append(Game.ENTRY_DELIM);
+                }
+                layout.append(id).append(Game.WORD_DELIM).append(entry.getWord().length())
+                      .append(Game.WORD_DELIM).append(entry.getClue())
+                      .append(Game.WORD_DELIM).append(entry.getOrientation())
+                      .append(Game.WORD_DELIM).append(entry.getPosition().getRow())
+                      .append(Game.WORD_DELIM).append(entry.getPosition().getCol());
+            }
+            this.text = layout.toString();
+        }
+
+        @Override
+        String getBody() {
+            return text;
+        }
+
+        @Override
+        void writeBody(ByteBuffer buffer) {
+            buffer.putInt(entries.size());
+            for (int id = 0; id < entries.size(); id++) {
+                PuzzleEntry entry = entries.get(id);
+                buffer.putInt(id);
+                buffer.putInt(entry.getWord().length());
+                BinaryProtocol.putString(buffer, entry.getClue());
+                BinaryProtocol.putOrientation(buffer, entry.getOrientation());
+                buffer.putInt(entry.getPosition().getRow());
+                buffer.putInt(entry.getPosition().getCol());
+            }
+        }
     }
     
     /**
@@ -80,73 +137,98 @@ public class Puzzle {
     }
     
     /**
+     * Returns the puzzle's layout without revealing any words. The layout is computed once
+     * when the puzzle is made, so every call returns the same string.
+     * @return entries in ID order, separated by Game.ENTRY_DELIM, each formatted as
+     *         id, word length, clue, orientation, row, col separated by Game.WORD_DELIM
+     */
+    public String getLayoutForResponse() {
+        return layout.getBody();
+    }
+    
+    /**
+     * @return PUZZLE response whose body is getLayoutForResponse(), made once when the puzzle is made
+     */
+    Response getLayout() {
+        return layout;
+    }
+    
+    /**
+     * @return index of the puzzle's cells and of the crossings between its entries, computed
+     *         once when the puzzle is made
+     */
+    CellGrid getGrid() {
+        return grid;
+    }
+    
+    /**
+     * A puzzle is consistent if entries that share a cell agree on its letter, no two different
+     * entries have the same word, and no two entries of the same orientation on the same line
+     * overlap or touch end to start.
+     * Takes O(n log n) time for n entries, plus time linear in the total length of the words.
      * @return true if the puzzle is consistent and false otherwise
      */
     public boolean isConsistent() {
-        // check whether intersections are constant 
-        Map<Point, Character> pointToLetter = new HashMap<>();
-        for (int i = 0; i < entries.size(); i++) {
-            PuzzleEntry entry = entries.get(i);
-            String word = entry.getWord();
-            Orientation orientation = entry.getOrientation();
-            Point position = entry.getPosition();
-            for (int j = 0; j < word.length(); j++) {
-                Point letterPosition; // Position of the letter in the word
-                if (orientation == Orientation.ACROSS) {
-                    // getCol() + j represents the column of the letter
-                    letterPosition = new Point(position.getRow(), position.getCol() + j);  
-                } else { 
-                    // getRow() + j represents the row of the letter
-                    letterPosition = new Point(position.getRow() + j, position.getCol());
-                }
-                
-                // If the point is already in the map and the letters do not match, return false
-                //  otherwise add the point and letter pair to the map
-                if (pointToLetter.containsKey(letterPosition) && pointToLetter.get(letterPosition) != word.charAt(j)) {
+        // check whether intersections are constant, using the crossings found when the grid was built
+        for (int wordID = 0; wordID < entries.size(); wordID++) {
+            String word = entries.get(wordID).getWord();
+            for (int k = 0; k < grid.crossingCount(wordID); k++) {
+                String otherWord = entries.get(grid.crossingEntry(wordID, k)).getWord();
+                if (word.charAt(grid.crossingOffset(wordID, k)) != otherWord.charAt(grid.crossedOffset(wordID, k))) {
                     return false;
-                } else {
-                    pointToLetter.put(letterPosition, word.charAt(j));
                 }
             }
         }
         
-        for (int i = 0; i < entries.size(); i++) {
-            PuzzleEntry currentPuzzle = entries.get(i);
-            for (int j = i + 1; j < entries.size(); j++) {
-                PuzzleEntry otherPuzzle = entries.get(j);
-                
-                // words must be unique
-                if (currentPuzzle.getWord().equals(otherPuzzle.getWord()) 
-                        && !currentPuzzle.equals(otherPuzzle)) {
-                    return false;
-                }
-                
-                final Orientation currentOrientation = currentPuzzle.getOrientation();
-                final Point currentPosition = currentPuzzle.getPosition();
-                final Point otherPosition = otherPuzzle.getPosition();
-                final String currentWord = currentPuzzle.getWord();
-                final String otherWord = otherPuzzle.getWord();
-                
-                if (currentOrientation == otherPuzzle.getOrientation()) {
-                    // Check for overlaps
-                    if (currentOrientation == Orientation.ACROSS) {
-                        if (currentPosition.getRow() == otherPosition.getRow() && 
-                                !(currentPosition.getCol() + currentWord.length() < otherPosition.getCol()
-                                || currentPosition.getCol() > otherPosition.getCol() + otherWord.length())) {
-                            return false;
-                        }
-                    } else {
-                        if (currentPosition.getCol() == otherPosition.getCol() &&
-                                !(currentPosition.getRow() + currentWord.length() < otherPosition.getRow()
-                                || currentPosition.getRow() > otherPosition.getRow() + otherWord.length())) {
-                            return false;
-                        }
-                    
-                    }
+        // words must be unique, unless the entries are equal
+        Map<String, PuzzleEntry> entryOfWord = new HashMap<>();
+        for (PuzzleEntry entry : entries.values()) {
+            PuzzleEntry existing = entryOfWord.putIfAbsent(entry.getWord(), entry);
+            if (existing != null && !existing.equals(entry)) {
+                return false;
+            }
+        }
+        
+        // entries of the same orientation on the same line must not overlap: bucket them by line,
+        //  then sort each line by starting position and compare each entry to the furthest end so far
+        Map<Integer, List<PuzzleEntry>> acrossRows = new HashMap<>();
+        Map<Integer, List<PuzzleEntry>> downCols = new HashMap<>();
+        for (PuzzleEntry entry : entries.values()) {
+            if (entry.getOrientation() == Orientation.ACROSS) {
+                acrossRows.computeIfAbsent(entry.getPosition().getRow(), row -> new ArrayList<>()).add(entry);
+            } else {
+                downCols.computeIfAbsent(entry.getPosition().getCol(), col -> new ArrayList<>()).add(entry);
+            }
+        }
+        return !hasOverlap(acrossRows.values(), Orientation.ACROSS) && !hasOverlap(downCols.values(), Orientation.DOWN);
+    }
+    
+    /*
+     * Checks lines of entries for overlaps. Entry e covers the closed interval from start(e) to
+     * start(e) + length of its word, where start(e) is its column if orientation is ACROSS and its
+     * row otherwise, so entries that touch end to start also overlap.
+     * @return true if two entries in the same line have intersecting intervals
+     */
+    private static boolean hasOverlap(Collection<List<PuzzleEntry>> lines, Orientation orientation) {
+        for (List<PuzzleEntry> line : lines) {
+            line.sort(Comparator.comparingInt(entry -> start(entry, orientation)));
+            long furthestEnd = Long.MIN_VALUE;
+            for (PuzzleEntry entry : line) {
+                int start = start(entry, orientation);
+                if (start <= furthestEnd) {
+                    return true;
                 }
+                furthestEnd = Math.max(furthestEnd, (long) start + entry.getWord().length());
             }
         }
-        return true;
+        return false;
+    }
+    
+    /*
+     * @return position of entry along its line
+     */
+    private static int start(PuzzleEntry entry, Orientation orientation) {
+        return orientation == Orientation.ACROSS ? entry.getPosition().getCol() : entry.getPosition().getRow();
     }
     
     @Override
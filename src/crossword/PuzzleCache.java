@@ -0,0 +1,484 @@
+package crossword;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * Cache of parsed puzzle files, kept in a binary file beside the puzzle directory so that a
+ * server restart only parses the puzzle files that changed since they were cached.
+ *
+ * A cache file is int MAGIC, int n, then n records:
+ *
+ *      record  str fileName, long size, long modifiedNanos, int crc, int length, body
+ *      body    str name, str description, int n, (str word, str clue, orientation, int row, int col) * n
+ *
+ * where str is an int byte count and UTF-8 bytes, orientation is the byte ordinal of an
+ * Orientation, length is the byte count of body and crc is its CRC-32. A record is used only
+ * while its file's size and modification time are unchanged and its body matches crc;
+ * otherwise the file is parsed again, and the record is replaced only once the file parses,
+ * so a template made from the record can still read it. Only the records' headers are read
+ * when the cache is opened; a body is read from the cache file when its puzzle is loaded. A
+ * body parsed since the cache was opened is held in memory only until save writes it to the
+ * file. The file is never memory-mapped, so save can replace it on any platform.
+ */
+public class PuzzleCache {
+    /** Ending of a cache file's name, after the name of the puzzle directory */
+    public static final String SUFFIX = ".puzzlecache";
+
+    private static final int MAGIC = ('X' << 24) | ('W' << 16) | ('C' << 8) | 1;
+
+    // Abstraction function:
+    //    AF(file, records, generation, dirty, hits, misses): the cache stored in file,
+    //          holding for each file name key of records the encoded puzzle that file held
+    //          when it had the record's size and modification time; a record's body is its
+    //          body array, or else the length bytes at offset in file if the record's
+    //          generation is generation, and is lost otherwise; dirty is true if records has
+    //          changed since file was last read or written, and hits and misses count the
+    //          loads answered from records and by parsing
+    // Representation invariant:
+    //  every record has a body array or an offset >= 0, not both
+    //  generation >= 0, hits >= 0, misses >= 0
+    // Safety from rep exposure:
+    //  all fields are private, and all but generation are final
+    //  records and their bodies are never returned; load returns newly decoded or parsed
+    //      Puzzles, which are immutable
+    // Thread safety argument:
+    //  records is a ConcurrentHashMap of immutable Records, whose body arrays are never written
+    //  file is only read while holding the read lock of fileLock, and only replaced, with
+    //      generation incremented, while holding its write lock, so a body read from file is
+    //      read from the generation its record points into
+    //  dirty, hits and misses are atomics
+    //  save is synchronized, so only one thread writes the file at a time
+
+    private final Path file;
+    private final Map<String, Record> records = new ConcurrentHashMap<>();
+    private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+    private int generation = 0;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /*
+     * A cached puzzle file: its size and modification time when parsed, and its encoded puzzle,
+     * either in memory or at an offset into a generation of the cache file
+     */
+    private static class Record {
+        private final long size;
+        private final long modifiedNanos;
+        private final int crc;
+        private final int length;
+        private final byte[] body;
+        private final long offset;
+        private final int generation;
+
+        /* Make a record whose body is in memory until it is saved */
+        private Record(long size, long modifiedNanos, int crc, byte[] body) {
+            this.size = size;
+            this.modifiedNanos = modifiedNanos;
+            this.crc = crc;
+            this.length = body.length;
+            this.body = body;
+            this.offset = -1;
+            this.generation = -1;
+        }
+
+        /* Make a record whose body is at offset in the given generation of the cache file */
+        private Record(long size, long modifiedNanos, int crc, int length, long offset, int generation) {
+            this.size = size;
+            this.modifiedNanos = modifiedNanos;
+            this.crc = crc;
+            this.length = length;
+            this.body = null;
+            this.offset = offset;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * @param directory the folder to the puzzles
+     * @return cache stored beside directory, in a file named after it with SUFFIX
+     */
+    public static PuzzleCache beside(String directory) {
+        final Path folder = Paths.get(directory).toAbsolutePath().normalize();
+        return new PuzzleCache(folder.resolveSibling(folder.getFileName() + SUFFIX));
+    }
+
+    /**
+     * Open a cache, reading the records of file if it exists. A file that is not a cache, or
+     * whose end is cut off, gives the records before the damage, if any.
+     * @param file where the cache is stored
+     */
+    public PuzzleCache(Path file) {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long end = channel.size();
+            final ByteBuffer header = read(channel, 0, 2 * Integer.BYTES);
+            if (header.getInt() != MAGIC) {
+                return;
+            }
+            final int count = header.getInt();
+            long position = header.capacity();
+            for (int i = 0; i < count; i++) {
+                final int nameLength = read(channel, position, Integer.BYTES).getInt();
+                position += Integer.BYTES;
+                if (nameLength < 0 || nameLength > end - position) {
+                    return;
+                }
+                final String fileName = UTF_8.decode(read(channel, position, nameLength)).toString();
+                position += nameLength;
+                final ByteBuffer stamp = read(channel, position, 2 * Long.BYTES + 2 * Integer.BYTES);
+                position += stamp.capacity();
+                final long size = stamp.getLong();
+                final long modifiedNanos = stamp.getLong();
+                final int crc = stamp.getInt();
+                final int length = stamp.getInt();
+                if (length < 0 || length > end - position) {
+                    return;
+                }
+                records.put(fileName, new Record(size, modifiedNanos, crc, length, position, generation));
+                position += length;
+            }
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException | RuntimeException e) {
+            // A damaged cache only costs parsing the files again
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Load a puzzle file from the cache if it is unchanged since it was cached, or else parse
+     * it and cache it.
+     * @param source a puzzle file
+     * @return the puzzle in source
+     * @throws IOException if source cannot be read
+     * @throws UnableToParseException if source is changed or not cached and cannot be parsed
+     */
+    public Puzzle load(File source) throws IOException, UnableToParseException {
+        final String fileName = source.getName();
+        // Read before parsing, so a change made while parsing makes the record stale
+        final BasicFileAttributes attributes = Files.readAttributes(source.toPath(), BasicFileAttributes.class);
+        final long size = attributes.size();
+        final long modifiedNanos = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        final Record record = records.get(fileName);
+        if (record != null && record.size == size && record.modifiedNanos == modifiedNanos) {
+            final Puzzle cached = decodeOrNull(readBody(record));
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        // a file that no longer parses keeps its last record, for templates made from it
+        final Puzzle puzzle = Puzzle.parseFromFile(source.getPath());
+        final byte[] body = encode(puzzle);
+        records.put(fileName, new Record(size, modifiedNanos, checksum(body), body));
+        dirty.set(true);
+        return puzzle;
+    }
+
+    /**
+     * Load the puzzle last cached for a file, whether or not the file has changed since.
+     * @param fileName name of a puzzle file
+     * @param crc checksum of the encoded puzzle wanted
+     * @return the puzzle cached for fileName if checksum(encode(puzzle)) == crc, or null if
+     *         another puzzle or none is cached for it, or its body can no longer be read
+     */
+    Puzzle loadCached(String fileName, int crc) {
+        final Record record = records.get(fileName);
+        if (record == null || record.crc != crc) {
+            return null;
+        }
+        final Puzzle cached = decodeOrNull(readBody(record));
+        if (cached != null) {
+            hits.incrementAndGet();
+        }
+        return cached;
+    }
+
+    /**
+     * Forget the files whose names are not in fileNames.
+     * @param fileNames names of the puzzle files to keep
+     */
+    public void retainAll(Collection<String> fileNames) {
+        if (records.keySet().retainAll(fileNames)) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Forget a file.
+     * @param fileName name of a puzzle file
+     */
+    public void remove(String fileName) {
+        if (records.remove(fileName) != null) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Write the cache to its file if it has changed since it was read or last written. The
+     * file is replaced in one move, so a crash never leaves half a cache, and the records
+     * then point into the new file, so bodies held in memory since the last save are dropped.
+     * Records whose bodies can no longer be read are forgotten.
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        final List<Map.Entry<String, Record>> snapshot = new ArrayList<>(records.entrySet());
+        final Map<String, Record> saved = new HashMap<>();
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            // only save replaces the file, so it is read here without the lock
+            try (FileChannel current = openForReading();
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(0); // count, filled in below
+                for (Map.Entry<String, Record> entry : snapshot) {
+                    final Record record = entry.getValue();
+                    final ByteBuffer body = readBody(record, current);
+                    if (body == null) {
+                        records.remove(entry.getKey(), record);
+                        continue;
+                    }
+                    writeString(out, entry.getKey());
+                    out.writeLong(record.size);
+                    out.writeLong(record.modifiedNanos);
+                    out.writeInt(record.crc);
+                    out.writeInt(record.length);
+                    if (out.size() == Integer.MAX_VALUE) {
+                        // size() stops counting there, so offsets past it are unknown
+                        throw new IOException("puzzle cache too large: " + file);
+                    }
+                    saved.put(entry.getKey(), new Record(record.size, record.modifiedNanos, record.crc, record.length,
+                            out.size(), generation + 1));
+                    out.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+                }
+            }
+            try (FileChannel written = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                written.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, saved.size()), Integer.BYTES);
+            }
+            fileLock.writeLock().lock();
+            try {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                generation++;
+                for (Map.Entry<String, Record> entry : snapshot) {
+                    if (saved.containsKey(entry.getKey())) {
+                        // a record replaced since the snapshot keeps its own body
+                        records.replace(entry.getKey(), entry.getValue(), saved.get(entry.getKey()));
+                    }
+                }
+            } finally {
+                fileLock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            dirty.set(true);
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of loads answered from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of loads that parsed their file
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /*
+     * Reads the body of a record, from memory or from the cache file.
+     * @return heap buffer holding the body from position to limit, or null if it is lost,
+     *         cannot be read or does not match the record's CRC
+     */
+    private ByteBuffer readBody(Record record) {
+        if (record.body != null) {
+            return readBody(record, null);
+        }
+        fileLock.readLock().lock();
+        try (FileChannel current = openForReading()) {
+            return readBody(record, current);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Reads the body of a record, from memory or from current, which must stay the current
+     * generation of the cache file until this returns.
+     * @param current the cache file open for reading, or null if it does not exist
+     * @return heap buffer holding the body from position to limit, or null if it is lost,
+     *         cannot be read or does not match the record's CRC
+     */
+    private ByteBuffer readBody(Record record, FileChannel current) {
+        final ByteBuffer body;
+        if (record.body != null) {
+            body = ByteBuffer.wrap(record.body);
+        } else if (current == null || record.generation != generation) {
+            return null;
+        } else {
+            try {
+                body = read(current, record.offset, record.length);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        return (int) crc.getValue() == record.crc ? body : null;
+    }
+
+    /**
+     * @param body a body as written by encode
+     * @return the CRC-32 of body, as a record of it holds
+     */
+    static int checksum(byte[] body) {
+        final CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    /*
+     * @return the cache file open for reading, or null if it does not exist
+     */
+    private FileChannel openForReading() throws IOException {
+        try {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /*
+     * @param body a record's body as readBody returns it
+     * @return the puzzle encoded in body, or null if body is null or damaged
+     */
+    private static Puzzle decodeOrNull(ByteBuffer body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return decode(body);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Reads length bytes of channel starting at position.
+     * @return heap buffer holding them, at position 0
+     * @throws EOFException if channel ends first
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("puzzle cache ends early");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * @param body a body as written by encode, from position to limit; its position is moved
+     *             past the body
+     * @return the puzzle encoded in body
+     * @throws RuntimeException if body is not a body written by encode
+     */
+    static Puzzle decode(ByteBuffer body) {
+        final String name = getString(body);
+        final String description = getString(body);
+        final int count = body.getInt();
+        final List<PuzzleEntry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final String word = getString(body);
+            final String clue = getString(body);
+            final Orientation orientation = Orientation.values()[body.get()];
+            final int row = body.getInt();
+            final int col = body.getInt();
+            entries.add(new PuzzleEntry(word, clue, orientation, new Point(row, col)));
+        }
+        return new Puzzle(name, description, entries);
+    }
+
+    /**
+     * @param puzzle a puzzle
+     * @return body of a record holding puzzle, which decode turns back into an equal puzzle
+     */
+    static byte[] encode(Puzzle puzzle) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, puzzle.getName());
+            writeString(out, puzzle.getDescription());
+            final Map<Integer, PuzzleEntry> entries = puzzle.getEntries();
+            out.writeInt(entries.size());
+            for (int id = 0; id < entries.size(); id++) {
+                final PuzzleEntry entry = entries.get(id);
+                writeString(out, entry.getWord());
+                writeString(out, entry.getClue());
+                out.writeByte(entry.getOrientation().ordinal());
+                out.writeInt(entry.getPosition().getRow());
+                out.writeInt(entry.getPosition().getCol());
+            }
+        } catch (IOException e) {
+            throw new AssertionError("writing to memory cannot fail", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        final byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("bad string length: " + length);
+        }
+        final ByteBuffer bytes = buffer.slice();
+        bytes.limit(length);
+        buffer.position(buffer.position() + length);
+        return UTF_8.decode(bytes).toString();
+    }
+}
@@ -0,0 +1,243 @@
+package crossword;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a Game's puzzles up to date with the puzzle files in a directory, so puzzles can be
+ * added, changed or removed without restarting the server. A thread waits on a WatchService
+ * for files in the directory to change, parses only the files that changed, and gives the
+ * game a new catalog named the way Game.parseGameFromFiles names it.
+ */
+public class PuzzleDirectoryWatcher implements Closeable {
+    /** After a change, how long to wait for more changes before reloading, so a burst of changes is one reload */
+    public static final long SETTLE_MILLIS = 50;
+
+    // Abstraction function:
+    //    AF(directory, watchService, cache, puzzlesByFile): a watcher of the files in directory,
+    //          where puzzlesByFile maps the name of each file that held a consistent puzzle
+    //          when it was last read to that puzzle's template, watchService queues the changes to the
+    //          directory since then, and cache, if not null, holds the files as last read
+    // Representation invariant:
+    //  every key of puzzlesByFile is the name of a file in directory when it was last read
+    // Safety from rep exposure:
+    //  all fields are private and final
+    //  getPuzzles and getTemplates return new maps; Puzzles and PuzzleTemplates are immutable
+    // Thread safety argument:
+    //  puzzlesByFile is only read or changed in synchronized methods
+    //  cache is threadsafe
+    //  watchService is threadsafe, and only the thread running watch() takes from it
+    //  Game.setTemplates swaps the game's catalog in one write, so the game never sees half a reload
+
+    private final Path directory;
+    private final WatchService watchService;
+    private final PuzzleCache cache;
+    private final SortedMap<String, PuzzleTemplate> puzzlesByFile = new TreeMap<>();
+
+    /**
+     * Start watching a directory and load its puzzles in parallel, as Game.parseGameFromFiles
+     * does. Files that cannot be read or parsed are reported to System.err and skipped.
+     * @param directory the folder to the puzzles
+     * @throws IOException if directory cannot be watched or listed
+     */
+    public PuzzleDirectoryWatcher(String directory) throws IOException {
+        this(directory, null);
+    }
+
+    /**
+     * Start watching a directory and load its puzzles in parallel through a cache, which is
+     * saved after every load. Files that cannot be read or parsed, and a cache that cannot be
+     * saved, are reported to System.err.
+     * @param directory the folder to the puzzles
+     * @param cache cache of the puzzle files in directory, or null to parse every file
+     * @throws IOException if directory cannot be watched or listed
+     */
+    public PuzzleDirectoryWatcher(String directory, PuzzleCache cache) throws IOException {
+        this.directory = Paths.get(directory);
+        this.cache = cache;
+        this.watchService = this.directory.getFileSystem().newWatchService();
+        // Registered before loading, so that no change made while loading is missed
+        this.directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        reload(null);
+    }
+
+    /**
+     * @return map of puzzleID : puzzle of the consistent puzzles in the directory when it was
+     *         last read, named as Game.namePuzzles
+     */
+    public synchronized Map<String, Puzzle> getPuzzles() {
+        final Map<String, Puzzle> puzzles = new HashMap<>();
+        for (Map.Entry<String, PuzzleTemplate> template : getTemplates().entrySet()) {
+            puzzles.put(template.getKey(), template.getValue().decode());
+        }
+        return puzzles;
+    }
+
+    /**
+     * @return map of puzzleID : template of the puzzles of getPuzzles(), for a Game that
+     *         decodes them only when matches are made from them
+     */
+    synchronized Map<String, PuzzleTemplate> getTemplates() {
+        return Game.nameTemplates(puzzlesByFile);
+    }
+
+    /**
+     * Watch the directory on a new daemon thread, as watch(game).
+     * @param game game whose puzzles to keep up to date
+     * @return the watching thread, already started
+     */
+    public Thread start(Game game) {
+        final Thread thread = new Thread(() -> {
+            try {
+                watch(game);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "puzzle-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Reload the files in the directory as they are created, changed and deleted, and give
+     * game the new puzzles after each reload that changed them, until this watcher is closed
+     * or the calling thread is interrupted. A file that can no longer be parsed, which may be
+     * in the middle of being saved, keeps its last puzzle until it parses again.
+     * @param game game whose puzzles to keep up to date
+     * @throws IOException if the directory cannot be listed or a watch listener fails
+     */
+    public void watch(Game game) throws IOException {
+        try {
+            while (true) {
+                final Set<String> changed = new TreeSet<>();
+                boolean overflowed = false;
+                for (WatchKey key = watchService.take(); key != null;
+                        key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            overflowed = true;
+                        } else {
+                            changed.add(event.context().toString());
+                        }
+                    }
+                    key.reset();
+                }
+                // Events were dropped, so every file may have changed
+                if (reload(overflowed ? null : changed)) {
+                    game.setTemplates(getTemplates());
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     * Reads the files with the given names again, or every file in the directory if fileNames
+     * is null, and reports those that cannot be read or parsed to System.err.
+     * @return true if any puzzle was added, replaced or removed
+     */
+    private synchronized boolean reload(Set<String> fileNames) throws IOException {
+        final Set<String> names = fileNames == null ? new TreeSet<>(puzzlesByFile.keySet()) : fileNames;
+        final List<File> files = new ArrayList<>();
+        if (fileNames == null) {
+            final File[] listOfFiles = directory.toFile().listFiles(File::isFile);
+            if (listOfFiles == null) {
+                throw new IOException("cannot list puzzle directory " + directory);
+            }
+            for (File file : listOfFiles) {
+                names.add(file.getName());
+                files.add(file);
+            }
+        } else {
+            for (String name : fileNames) {
+                final File file = directory.resolve(name).toFile();
+                if (file.isFile()) {
+                    files.add(file);
+                }
+            }
+        }
+
+        final Map<String, Exception> failures = new TreeMap<>();
+        final Map<String, Puzzle> loaded = Game.loadPuzzleFiles(files, failures, cache);
+        Game.reportFailures(failures);
+        boolean changed = false;
+        for (String name : names) {
+            if (loaded.containsKey(name)) {
+                // with a cache, only the puzzle's metadata stays in memory; its cached body is
+                // read again when a match is made of it
+                final Puzzle puzzle = loaded.get(name);
+                puzzlesByFile.put(name, (cache == null) ? new PuzzleTemplate(puzzle)
+                        : new PuzzleTemplate(puzzle, directory.resolve(name).toFile(), cache));
+                changed = true;
+            } else if (!failures.containsKey(name)) {
+                // Deleted, or no longer consistent
+                changed |= puzzlesByFile.remove(name) != null;
+            }
+        }
+        if (cache != null) {
+            saveCache(names, fileNames == null);
+        }
+        return changed;
+    }
+
+    /*
+     * Forgets the cached files among names that are gone, or all cached files not in names if
+     * listed is true, then saves the cache.
+     */
+    private void saveCache(Set<String> names, boolean listed) {
+        if (listed) {
+            final Set<String> present = new TreeSet<>();
+            for (String name : names) {
+                if (directory.resolve(name).toFile().isFile()) {
+                    present.add(name);
+                }
+            }
+            cache.retainAll(present);
+        } else {
+            for (String name : names) {
+                if (!directory.resolve(name).toFile().isFile()) {
+                    cache.remove(name);
+                }
+            }
+        }
+        try {
+            cache.save();
+        } catch (IOException e) {
+            System.err.println("Cannot save puzzle cache: " + e);
+        }
+    }
+
+    /**
+     * Stop watching the directory; watch() returns once this is called.
+     * @throws IOException if the WatchService cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
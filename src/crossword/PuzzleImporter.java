@@ -0,0 +1,274 @@
+package crossword;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * Imports archives of many puzzles into a Game. An archive is either puzzle files written one
+ * after another, each puzzle starting on the line of its ">>", or a zip file whose entries are
+ * such archives (including single puzzle files). Puzzles are read, parsed and checked one at
+ * a time, so only one puzzle's text is held while reading, and consistent puzzles are added
+ * to the game in batches of BATCH_SIZE as they are read, so matches can be made from them
+ * before the import ends. Progress is printed every PROGRESS_MILLIS while importing.
+ *
+ * Command: java -cp bin:lib/parserlib.jar crossword.PuzzleImporter archive...
+ * imports the archives into an empty game, reporting the puzzles that cannot be parsed.
+ */
+public class PuzzleImporter {
+    /** Number of consistent puzzles added to the game at once */
+    public static final int BATCH_SIZE = 1000;
+    /** How often progress is printed while importing */
+    public static final long PROGRESS_MILLIS = 1000;
+
+    private static final byte[] ZIP_MAGIC = { 'P', 'K', 3, 4 };
+
+    // Abstraction function:
+    //    AF(game, progress, batch, imported, inconsistent, failures, bytesRead, startNanos,
+    //       lastProgressNanos): an importer into game that has read bytesRead bytes of archives
+    //          since startNanos, found imported consistent puzzles, of which those in batch are
+    //          not yet added to game, and inconsistent inconsistent ones, and could not parse
+    //          the puzzles named by the keys of failures; it prints progress to progress, if
+    //          not null, last at lastProgressNanos
+    // Representation invariant:
+    //  batch.size() < BATCH_SIZE between calls
+    //  batch.size() <= imported, inconsistent >= 0, bytesRead >= 0
+    // Safety from rep exposure:
+    //  all fields are private
+    //  getFailures returns an unmodifiable copy; Puzzles are immutable
+    // Thread safety argument:
+    //  not threadsafe: an importer must be used by one thread; the game it adds to is
+    //      threadsafe, so the game may be played while importing
+
+    private final Game game;
+    private final PrintStream progress;
+    private List<Puzzle> batch = new ArrayList<>();
+    private int imported = 0;
+    private int inconsistent = 0;
+    private final Map<String, Exception> failures = new LinkedHashMap<>();
+    private long bytesRead = 0;
+    private final long startNanos = System.nanoTime();
+    private long lastProgressNanos = startNanos;
+
+    /**
+     * Make an importer into a game.
+     * @param game game to add the imported puzzles to
+     * @param progress where to print progress while importing, or null to print none
+     */
+    public PuzzleImporter(Game game, PrintStream progress) {
+        this.game = game;
+        this.progress = progress;
+    }
+
+    /**
+     * Import a puzzle archive, or a zip of puzzle archives, and add its consistent puzzles to
+     * the game. Puzzles that cannot be parsed are skipped and added to getFailures().
+     * @param file an archive or zip of archives
+     * @throws IOException if file cannot be read, or a watch listener of the game fails
+     */
+    public void importFile(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new CountingInputStream(Files.newInputStream(file)))) {
+            in.mark(ZIP_MAGIC.length);
+            final boolean zipped = Arrays.equals(ZIP_MAGIC, in.readNBytes(ZIP_MAGIC.length));
+            in.reset();
+            if (zipped) {
+                importZip(file.getFileName().toString(), in);
+            } else {
+                readPuzzles(file.getFileName().toString(), in);
+            }
+        }
+        addBatch();
+    }
+
+    /**
+     * Import a puzzle archive, and add its consistent puzzles to the game. Puzzles that
+     * cannot be parsed are skipped and added to getFailures(). in is not closed.
+     * @param source name of the archive, used to name the puzzles in getFailures()
+     * @param in UTF-8 bytes of the archive
+     * @throws IOException if in cannot be read, or a watch listener of the game fails
+     */
+    public void importStream(String source, InputStream in) throws IOException {
+        readPuzzles(source, new CountingInputStream(in));
+        addBatch();
+    }
+
+    /**
+     * @return number of consistent puzzles imported
+     */
+    public int getImported() {
+        return imported;
+    }
+
+    /**
+     * @return number of puzzles skipped for being inconsistent
+     */
+    public int getInconsistent() {
+        return inconsistent;
+    }
+
+    /**
+     * @return map of "source#n (line l)" : exception parsing it failed with, for each puzzle
+     *         that could not be parsed, where n counts the puzzles of the archive or zip entry
+     *         source from 1 and l is the line the puzzle starts on
+     */
+    public Map<String, Exception> getFailures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    /**
+     * @return one line of the puzzles imported so far, and how fast they were read
+     */
+    public String getProgress() {
+        final double seconds = (System.nanoTime() - startNanos) / 1e9;
+        final int read = imported + inconsistent + failures.size();
+        return String.format(Locale.ROOT, "%d puzzles imported (%d inconsistent, %d unparsable), %.1f MB in %.1f s: "
+                + "%.0f puzzles/s, %.2f MB/s", imported, inconsistent, failures.size(), bytesRead / 1e6, seconds,
+                read / seconds, bytesRead / 1e6 / seconds);
+    }
+
+    /*
+     * Reads each entry of a zip as an archive.
+     */
+    private void importZip(String source, InputStream in) throws IOException {
+        final ZipInputStream zip = new ZipInputStream(in, UTF_8);
+        for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+            if (!entry.isDirectory()) {
+                readPuzzles(source + "!" + entry.getName(), zip);
+            }
+        }
+    }
+
+    /*
+     * Splits an archive into puzzles at the lines that start with ">>", and imports each.
+     * Text before the first ">>" is read as part of the first puzzle. in is not closed.
+     */
+    private void readPuzzles(String source, InputStream in) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        final StringBuilder text = new StringBuilder();
+        boolean started = false;
+        int number = 0;
+        int startLine = 1;
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            // A string cannot span lines, so a line starting with >> always starts a puzzle
+            if (line.stripLeading().startsWith(">>")) {
+                if (started) {
+                    importPuzzle(source + "#" + ++number + " (line " + startLine + ")", text);
+                    text.setLength(0);
+                }
+                started = true;
+                startLine = lineNumber;
+            }
+            text.append(line).append('\n');
+        }
+        if (!text.toString().isBlank()) {
+            importPuzzle(source + "#" + ++number + " (line " + startLine + ")", text);
+        }
+    }
+
+    /*
+     * Parses and checks the text of one puzzle, and adds it to the batch if it is consistent.
+     */
+    private void importPuzzle(String name, CharSequence text) throws IOException {
+        try {
+            final Puzzle puzzle = StreamingPuzzleParser.parse(CharBuffer.wrap(text));
+            if (puzzle.isConsistent()) {
+                batch.add(puzzle);
+                imported++;
+            } else {
+                inconsistent++;
+            }
+        } catch (UnableToParseException e) {
+            failures.put(name, e);
+        }
+        if (batch.size() >= BATCH_SIZE) {
+            addBatch();
+        }
+        if (progress != null && System.nanoTime() - lastProgressNanos >= PROGRESS_MILLIS * 1_000_000) {
+            lastProgressNanos = System.nanoTime();
+            progress.println(getProgress());
+        }
+    }
+
+    private void addBatch() throws IOException {
+        if (!batch.isEmpty()) {
+            game.addPuzzles(batch);
+            batch = new ArrayList<>();
+        }
+    }
+
+    /* Counts the bytes read from an archive into bytesRead */
+    private class CountingInputStream extends FilterInputStream {
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                bytesRead++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            final int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                bytesRead += count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+            bytesRead += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Import puzzle archives into an empty game, printing progress to System.err, then the
+     * puzzles that could not be parsed and a summary.
+     *
+     * @param args paths of archives or zips of archives
+     * @throws IOException if an archive cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        final PuzzleImporter importer = new PuzzleImporter(new Game(Map.of()), System.err);
+        for (String arg : args) {
+            importer.importFile(Paths.get(arg));
+        }
+        Game.reportFailures(importer.getFailures());
+        System.out.println(importer.getProgress());
+    }
+}
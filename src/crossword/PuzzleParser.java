@@ -4,9 +4,13 @@
 package crossword;
 
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -40,57 +44,91 @@ public class PuzzleParser {
         System.out.println("The parsed puzzle is: \n" + puzzle);
     }
     
+    // name of the grammar's file, beside this class on the classpath
+    private static final String GRAMMAR_RESOURCE = "Puzzle.g";
+    
     // the nonterminals of the grammar
     private static enum PuzzleGrammar {
         FILE, COMMENT, NAME, DESCRIPTION, ENTRY, WORDNAME, CLUE, DIRECTION, ROW, COL, STRING, STRINGINDENT, INT, WHITESPACE
     }
     
-    private static Parser<PuzzleGrammar> parser = makeParser();
+    // the grammar's text, read once from the classpath
+    private static final String GRAMMAR = readGrammar();
+    
+    // parserlib does not promise that a Parser can be used by several threads at once, so each
+    // thread compiles its own the first time it parses with the grammar; parse(Reader) and
+    // parseFromFile never compile it
+    private static final ThreadLocal<Parser<PuzzleGrammar>> PARSER = ThreadLocal.withInitial(PuzzleParser::makeParser);
+    
+    /**
+     * Read the grammar, which is kept beside this class on the classpath, so that it is found
+     * from any working directory and inside a jar.
+     * 
+     * @return text of the grammar
+     * @throws RuntimeException if the grammar can't be read
+     */
+    private static String readGrammar() {
+        try (InputStream grammar = PuzzleParser.class.getResourceAsStream(GRAMMAR_RESOURCE)) {
+            if (grammar != null) {
+                return new String(grammar.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            // a build that compiled the classes without copying resources, run from the project root
+            return Files.readString(Paths.get("src", "crossword", GRAMMAR_RESOURCE));
+        } catch (IOException e) {
+            throw new RuntimeException("can't read the grammar file", e);
+        }
+    }
     
     /**
      * Compile the grammar into a parser.
      * 
      * @return parser for the grammar
-     * @throws RuntimeException if grammar file can't be read or has syntax errors
+     * @throws RuntimeException if the grammar has syntax errors
      */
     private static Parser<PuzzleGrammar> makeParser() {
         try {
-            // read the grammar as a file, relative to the project root.
-            final File grammarFile = new File("src/crossword/Puzzle.g");
-            return Parser.compile(grammarFile, PuzzleGrammar.FILE);
+            return Parser.compile(GRAMMAR, PuzzleGrammar.FILE);
             
-        // Parser.compile() throws two checked exceptions.
-        // Translate these checked exceptions into unchecked RuntimeExceptions,
-        // because these failures indicate internal bugs rather than client errors
-        } catch (IOException e) {
-            throw new RuntimeException("can't read the grammar file", e);
+        // Parser.compile() throws a checked exception.
+        // Translate it into an unchecked RuntimeException,
+        // because this failure indicates an internal bug rather than a client error
         } catch (UnableToParseException e) {
             throw new RuntimeException("the grammar has a syntax error", e);
         }
     }
     
     /**
-     * Returns a new Puzzle by parsing a file
+     * Returns a new Puzzle by parsing a file, as parse(Reader)
      * @param filename the name of the .puzzle file
      * @return a new Puzzle parsed from the file
      * @throws IOException if there is a problem with reading the file
      * @throws UnableToParseException if there is a problem with parsing
      */
     public static Puzzle parseFromFile(String filename) throws IOException, UnableToParseException{
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        StringBuilder inputBuilder = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            inputBuilder.append(line + "\n");
+        try (Reader reader = new FileReader(filename)) {
+            return parse(reader);
         }
-        
-        reader.close();
-        String input = inputBuilder.toString();
-        return PuzzleParser.parse(input);
+    }
+    
+    /**
+     * Parse a puzzle in one pass with a hand-written parser, which gives the same puzzle as
+     * parse(String) on the same text with "\r\n" and "\r" replaced by "\n" and a "\n" added
+     * to the end if it is missing.
+     * 
+     * @param reader puzzle to parse; it is read to the end but not closed
+     * @return Puzzle parsed from reader
+     * @throws IOException if reader cannot be read
+     * @throws UnableToParseException if the puzzle doesn't match the Puzzle grammar, or a row or
+     *                                column is too large for an int
+     */
+    public static Puzzle parse(final Reader reader) throws IOException, UnableToParseException {
+        return StreamingPuzzleParser.parse(reader);
     }
 
     /**
-     * Parse a string into an puzzle.
+     * Parse a string into an puzzle with the grammar in Puzzle.g compiled by parserlib. This is
+     * the reference that parse(Reader) is tested against. Threads may call it at once; each
+     * compiles the grammar the first time it calls it.
      * 
      * @param string string to parse
      * @return Puzzle parsed from the string
@@ -98,7 +136,7 @@ public class PuzzleParser {
      */
     public static Puzzle parse(final String string) throws UnableToParseException {
         // parse the example into a parse tree
-        final ParseTree<PuzzleGrammar> parseTree = parser.parse(string);
+        final ParseTree<PuzzleGrammar> parseTree = PARSER.get().parse(string);
 
         // display the parse tree in various ways, for debugging only
         // System.out.println("parse tree " + parseTree);
@@ -135,8 +173,9 @@ public class PuzzleParser {
                 */
                 switch (child.name()) {
                     case NAME: // '"' [^"\r\n\t\\]* '"'
-                        String nameWithQuotes = child.text();
-                        name = nameWithQuotes.substring(1, nameWithQuotes.length()-2);
+                        // The text ends with the whitespace skipped after the name, if any
+                        String nameWithQuotes = child.text().trim();
+                        name = nameWithQuotes.substring(1, nameWithQuotes.length()-1);
                         break;
                     case DESCRIPTION: // string "\n"
                         String descWithNewline = child.text();
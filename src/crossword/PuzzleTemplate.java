@@ -0,0 +1,116 @@
+package crossword;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable entry of a game's catalog of puzzles: a puzzle's name, description and number of
+ * entries, and where to get the whole puzzle when a match is made from it. A puzzle read from
+ * a file through a PuzzleCache is only located, by its file's name and the checksum of its
+ * cached body, and is read back from that body on decode, whatever the file holds since. Any
+ * other puzzle, like one imported from an archive, is kept encoded as in a PuzzleCache body,
+ * which is several times smaller than the Puzzle.
+ */
+class PuzzleTemplate {
+    // Abstraction function:
+    //    AF(name, description, size, source, cache, crc, body): the puzzle named name, with
+    //          description description and size entries, that is encoded in body if body is
+    //          not null, and otherwise is the puzzle cache holds for the file source in a
+    //          body whose checksum is crc
+    // Representation invariant:
+    //  exactly one of source and body is null, and cache is null iff source is
+    //  body, or the body with checksum crc, was written by PuzzleCache.encode from a puzzle
+    //      with this name, description and size
+    // Safety from rep exposure:
+    //  all fields are private and final
+    //  body is never returned or written to; Strings and Files are immutable, and cache is
+    //      never returned
+    // Thread safety argument:
+    //  This class is immutable, and PuzzleCache is threadsafe
+
+    private final String name;
+    private final String description;
+    private final int size;
+    private final File source;
+    private final PuzzleCache cache;
+    private final int crc;
+    private final byte[] body;
+
+    /**
+     * Make the template of a puzzle that has no file, holding it encoded.
+     * @param puzzle a puzzle
+     */
+    PuzzleTemplate(Puzzle puzzle) {
+        this.name = puzzle.getName();
+        this.description = puzzle.getDescription();
+        this.size = puzzle.getEntries().size();
+        this.source = null;
+        this.cache = null;
+        this.crc = 0;
+        this.body = PuzzleCache.encode(puzzle);
+    }
+
+    /**
+     * Make the template of a puzzle read from a file, holding only where to read it again.
+     * @param puzzle the consistent puzzle that cache last loaded from source
+     * @param source the puzzle's file
+     * @param cache cache that source was loaded through
+     */
+    PuzzleTemplate(Puzzle puzzle, File source, PuzzleCache cache) {
+        this.name = puzzle.getName();
+        this.description = puzzle.getDescription();
+        this.size = puzzle.getEntries().size();
+        this.source = source;
+        this.cache = cache;
+        this.crc = PuzzleCache.checksum(PuzzleCache.encode(puzzle));
+        this.body = null;
+    }
+
+    /**
+     * @return name of the puzzle
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return description of the puzzle
+     */
+    String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return number of entries in the puzzle
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * @return a new Puzzle equal to the one this template was made from, even if its file
+     *         has changed or stopped parsing since
+     * @throws UncheckedIOException if the template's cache no longer holds the puzzle, as
+     *         once its file was loaded again with another puzzle, or cannot read it
+     */
+    Puzzle decode() {
+        if (body != null) {
+            return PuzzleCache.decode(ByteBuffer.wrap(body));
+        }
+        final Puzzle puzzle = cache.loadCached(source.getName(), crc);
+        if (puzzle == null) {
+            throw new UncheckedIOException(new IOException("puzzle cache no longer holds the puzzle of " + source));
+        }
+        return puzzle;
+    }
+
+    /**
+     * @return name and description of the puzzle, and its number of entries
+     */
+    @Override
+    public String toString() {
+        return name + " (" + description + "), " + size + " entries";
+    }
+}
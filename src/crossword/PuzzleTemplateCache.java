@@ -0,0 +1,142 @@
+package crossword;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Cache of the puzzles decoded from PuzzleTemplates, holding the most recently used ones
+ * up to a bound on their total number of entries and evicting the least recently used.
+ * A puzzle that is still in use, such as the template of a match in progress, is pinned:
+ * it is returned again for its template, even after being evicted, instead of being decoded
+ * a second time.
+ */
+class PuzzleTemplateCache {
+    /** Default bound on the total number of entries of the puzzles held */
+    static final int DEFAULT_CAPACITY = 100_000;
+
+    // Abstraction function:
+    //    AF(capacity, recent, loaded, size, hits, misses, evictions): a cache holding the
+    //          puzzles that are values of recent, least recently used first, whose entries
+    //          number size in all; loaded finds the puzzle last decoded from each template
+    //          while anything still uses it; hits and misses count the gets answered without
+    //          and with decoding, and evictions counts the puzzles dropped from recent
+    // Representation invariant:
+    //  capacity >= 0
+    //  size is the sum of the sizes of the keys of recent
+    //  size <= capacity, or recent holds only its most recently used puzzle
+    //  every value of recent is the referent of its key's value in loaded
+    //  hits, misses, evictions >= 0
+    // Safety from rep exposure:
+    //  all fields are private; recent and loaded are never returned
+    //  Puzzles and PuzzleTemplates are immutable
+    // Thread safety argument:
+    //  all fields other than capacity are only read or changed in synchronized blocks on this
+    //  templates are decoded outside the lock, so a slow decode does not hold up other gets;
+    //      of two threads decoding the same template at once, the second uses the first's puzzle
+
+    private final int capacity;
+    private final LinkedHashMap<PuzzleTemplate, Puzzle> recent = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<PuzzleTemplate, WeakReference<Puzzle>> loaded = new WeakHashMap<>();
+    private long size = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Make an empty cache.
+     * @param capacity greatest total number of entries of the puzzles to hold, >= 0; the
+     *                 most recently used puzzle is held even if it alone has more entries
+     */
+    PuzzleTemplateCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must be >= 0: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Get the puzzle of a template, decoding it if it is neither held nor still in use.
+     * @param template a puzzle template
+     * @return a puzzle equal to the one template decodes to; the same puzzle as the last
+     *         call with template, if that puzzle is held or still in use
+     * @throws java.io.UncheckedIOException if template has to be decoded and cannot be
+     */
+    Puzzle get(PuzzleTemplate template) {
+        synchronized (this) {
+            final Puzzle held = find(template);
+            if (held != null) {
+                hits++;
+                hold(template, held);
+                return held;
+            }
+            misses++;
+        }
+        final Puzzle decoded = template.decode();
+        synchronized (this) {
+            final Puzzle raced = find(template);
+            final Puzzle puzzle = raced != null ? raced : decoded;
+            loaded.put(template, new WeakReference<>(puzzle));
+            hold(template, puzzle);
+            return puzzle;
+        }
+    }
+
+    /**
+     * @return number of gets answered without decoding
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of gets that decoded their template
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of puzzles evicted to keep to the capacity
+     */
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return total number of entries of the puzzles held
+     */
+    synchronized long getSize() {
+        return size;
+    }
+
+    /*
+     * @return the puzzle of template that is held or still in use, or null
+     */
+    private Puzzle find(PuzzleTemplate template) {
+        final Puzzle held = recent.get(template);
+        if (held != null) {
+            return held;
+        }
+        final WeakReference<Puzzle> reference = loaded.get(template);
+        return reference == null ? null : reference.get();
+    }
+
+    /*
+     * Holds puzzle as the most recently used, and evicts the least recently used puzzles
+     * other than it until the held puzzles are within capacity.
+     */
+    private void hold(PuzzleTemplate template, Puzzle puzzle) {
+        if (recent.put(template, puzzle) == null) {
+            size += template.getSize();
+        }
+        final Iterator<PuzzleTemplate> eldest = recent.keySet().iterator();
+        while (size > capacity && recent.size() > 1) {
+            size -= eldest.next().getSize();
+            eldest.remove();
+            evictions++;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package crossword;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import crossword.Game.PlayListener;
+import crossword.Game.WaitListener;
+import crossword.Game.WatchListener;
+
+/**
+ * Text-protocol command dispatcher shared by the game servers.
+ * Requests are text in every protocol; responses are Responses, which each server writes in
+ * the protocol of the connection.
+ */
+public class RequestHandler {
+    public static final Response QUIT = new Response.Status(ResponseType.OK, "quit"); // Returned when the client asks to close the connection
+    public static final Response LISTENER = new Response.Status(ResponseType.OK, "listener"); // Returned by listener commands 
+    public static final String WATCH = "WATCH";
+    public static final String PLAY = "PLAY";
+    public static final String CHANGES = "CHANGES";
+    public static final String UNSUBSCRIBED = "UNSUBSCRIBED"; // Last line of a subscription's stream
+    
+    // Abstraction function:
+    //    AF(game, subscriptions): dispatcher that applies text-protocol requests to the Crossword game,
+    //          where subscriptions maps each connection's output to its open subscriptions by kind
+    // Representation invariant:
+    //  every subscription in subscriptions.get(out) sends to out and is keyed by its own kind
+    // Safety from rep exposure:
+    //  game and subscriptions are private and final
+    //  no method returns a reference to a rep
+    // Thread Safety Argument:
+    //   apart from subscriptions, handleRequest keeps no state of its own between calls
+    //   subscriptions is a concurrent map of concurrent maps, changed only with atomic operations
+    //   game is an object with threadsafe type
+    
+    private final Game game;
+    private final Map<Output, Map<String, Subscription>> subscriptions = new ConcurrentHashMap<>();
+    
+    /**
+     * Where listener and subscription responses for one client connection are sent
+     */
+    public interface Output {
+        /**
+         * Sends a response to the client without blocking. Listeners call this on the thread
+         * that changed the game, so implementations should queue rather than write.
+         * @param response response read from the game when the change was made
+         */
+        public void send(Response response);
+    }
+    
+    /**
+     * Make a new request handler that applies requests to game.
+     * 
+     * @param game shared crossword puzzles
+     */
+    public RequestHandler(Game game) {
+        this.game = game;
+    }
+    
+    /**
+     * Handle a single client request and return the server response.
+     * 
+     * Returns an ERROR response (text "I" + "<Error message>") if the request is invalid and 
+     *         a response of another type (text "V" + "<Response body>") if the request is valid
+     *         and the request is successful
+     * 
+     * Listener commands register a callback that later sends its response to out
+     * and return LISTENER; the quit command returns QUIT. Both are compared by identity.
+     * 
+     * SUBSCRIBE WATCH and SUBSCRIBE PLAY are persistent versions of WATCH and WAIT_PLAY: they send
+     * the current matches or play state to out, then one response per change, until UNSUBSCRIBE of
+     * the same kind sends "V" + UNSUBSCRIBED as the last response of that stream, or until
+     * connectionClosed(out).
+     * 
+     * CHANGES matchID N returns the changes to the player's match after version N (see
+     * Match.getChangesForResponse), or a snapshot if N is too old or matchID is not the player's match.
+     * SUBSCRIBE CHANGES streams the same: a snapshot first, then one delta per change.
+     * 
+     * @param input message from client
+     * @param out output of the client's connection, used by listener callbacks
+     * @return output message to client
+     * @throws IOException 
+     */
+    public Response handleRequest(String input, Output out) throws IOException {  
+        String[] tokens = input.split(" ");
+        if (tokens.length < 2) {
+            return Response.error("Invalid command");
+        }
+        String playerID = tokens[0];
+        String command = tokens[1];  
+        // Check whether the playerID is valid
+        if (!(playerID.matches("[A-Za-z0-9]*") && playerID.length() > 0)) {
+            return Response.error("Player ID must be alphanumeric and have a length > 0");
+        }
+        
+        if (command.equals("quit")) {
+            return QUIT;
+        }
+        if (command.equals("WATCH")) { // blocks and returns only when there is a change in available matches
+            game.addWatchListener(new WatchListener() {
+                public void onChange() {
+                    out.send(game.getAvailableMatches());
+                }
+            });
+            
+            return LISTENER;
+        }
+        else if (command.equals("WAIT")) { // blocks and returns only when a match has two players
+            game.addWaitListener(playerID, new WaitListener() {
+                public void onChange() {
+                    out.send(game.getMatchLayout(playerID));
+                }
+            });
+            
+            return LISTENER;
+        }
+        else if (command.equals("WAIT_PLAY")) { // blocks and returns only when a play has been made in a match
+            game.addPlayListener(playerID, new PlayListener() {
+                public void onChange() {
+                    out.send(game.getPlayUpdate(playerID));
+                }
+            });
+            
+            return LISTENER;
+        }
+        else if (command.equals("SUBSCRIBE")) { // streams updates to out until unsubscribed
+            final int numTokens = 3;
+            if (tokens.length < numTokens) {
+                return Response.error("SUBSCRIBE command must include WATCH or PLAY");
+            }
+            return subscribe(playerID, tokens[2], out);
+        }
+        else if (command.equals("UNSUBSCRIBE")) {
+            final int numTokens = 3;
+            if (tokens.length < numTokens) {
+                return Response.error("UNSUBSCRIBE command must include WATCH or PLAY");
+            }
+            return unsubscribe(tokens[2], out);
+        }
+        else if (command.equals(CHANGES)) { // changes to the player's match since a version
+            final int numTokens = 4;
+            if (tokens.length < numTokens) {
+                return Response.error("CHANGES command must contain matchID and version");
+            }
+            final int versionIndex = 3;
+            Response changes = game.getChanges(playerID, tokens[2], Integer.parseInt(tokens[versionIndex]));
+            if (changes == null) {
+                return Response.error("Player is not in a match");
+            }
+            return changes;
+        }
+        else if (command.equals("LOGIN")) { // Logs in a player and returns the names of all puzzle templates
+            if (game.login(playerID)) {
+                return game.getPuzzlesAndAvailableMatches();
+            } else {
+                return Response.error("Player id is already taken");
+            }
+        }
+        else if (command.equals("NEW_MATCH")) {
+            return game.getPuzzlesAndAvailableMatches();
+        }
+        else if (command.equals("PLAY")) {
+            final int numTokens = 3;
+            if (tokens.length < numTokens) {
+                return Response.error("PLAY command must include matchID");
+            }
+            boolean join = game.joinMatch(playerID, tokens[2]);
+            if (join) {
+                return game.getLayoutOfMatch(tokens[2]);
+            }
+            return Response.error("Failed to join the match");
+        }
+        else if (command.equals("NEW")) {
+            final int numTokens = 5;
+            if (tokens.length < numTokens) {
+                return Response.error("NEW command must contain matchID, puzzleID, and description");
+            }
+            String matchID = tokens[2];
+            final int puzzleIndex = 3;
+            String puzzleID = tokens[puzzleIndex];
+            final int descriptionIndex = 4;
+            String description = "";
+            // The rest of the string is the description
+            for (String token : Arrays.copyOfRange(tokens, descriptionIndex, tokens.length)) {
+                description += " " + token;
+            }
+            // Remove the extra space at the beginning
+            description = description.substring(1);
+            
+            if (description.matches("\"[^\\n\\t\\\\\\r]+\"")) {
+                description = description.substring(1, description.length()-1);
+            } else {
+                return Response.error("Description should not contain newlines, tabs or \\ and have length > 0: " + description);
+            }
+            // Check whether MATCH_ID is alphanumeric
+            if (!matchID.matches("[0-9a-zA-Z]+")) {
+                return Response.error("MatchID should be alphanumeric and have length > 0: " + matchID);
+            }
+            
+            boolean create = game.createMatch(playerID, matchID, puzzleID, description);
+            if (create) {
+                return Response.ok();
+            }
+            return Response.error("Failed to create a match");
+        }
+        else if (command.equals("LOGOUT")) {
+            if (game.logout(playerID)) {
+                return Response.ok();
+            }
+            return Response.error("Failed to log out the player");
+        }
+        else if (command.equals("EXIT_WAIT")) {
+            if (game.exitWait(playerID)) {
+                return Response.ok();
+            }
+            return Response.error("Failed to log out the player");
+        }
+        else if (command.equals("EXIT_PLAY")) {
+            if (game.exitPlay(playerID)) {
+                Response score = game.getScore(playerID);
+                game.removePlayerAndMatch(playerID);
+                return score;
+            }
+            return Response.error("Failed to exit game");
+        }
+        else if (command.equals("TRY")) {
+            final int numTokens = 4;
+            if (tokens.length < numTokens) {
+                return Response.error("TRY command must contain entry ID and word");
+            }
+            int wordID = Integer.parseInt(tokens[2]);
+            final int wordIndex = 3;
+            String word = tokens[wordIndex].toLowerCase();
+            if (game.tryWord(playerID, wordID, word)) {
+                Response response = game.getGuesses(playerID);
+                game.removePlayerAndMatch(playerID);
+                return response;
+            }
+            return Response.error("Failed to guess word");
+        }
+        else if (command.equals("CHALLENGE")) {
+            final int numTokens = 4;
+            if (tokens.length < numTokens) {
+                return Response.error("CHALLENGE command must contain entry ID and word");
+            }
+            int wordID = Integer.parseInt(tokens[2]);
+            final int wordIndex = 3;
+            String word = tokens[wordIndex].toLowerCase();
+            if (game.challengeWord(playerID, wordID, word)) {
+                Response response = game.getGuesses(playerID);
+                game.removePlayerAndMatch(playerID);
+                return response;
+            }
+            return Response.error("Failed to challenge word");        
+        }
+        // if we reach here, the client message did not follow the protocol
+        return Response.error("Sorry, that is not a valid command: " + input);
+    }
+    
+    /**
+     * Ends every subscription of a connection. Servers call this when the connection closes.
+     * @param out output that was passed to handleRequest for the connection
+     */
+    public void connectionClosed(Output out) {
+        Map<String, Subscription> connectionSubscriptions = subscriptions.remove(out);
+        if (connectionSubscriptions == null) {
+            return;
+        }
+        for (Subscription subscription : connectionSubscriptions.values()) {
+            subscription.cancel(false);
+        }
+    }
+    
+    /**
+     * Subscribes a connection to WATCH or PLAY updates
+     * @param playerID player subscribing
+     * @param kind WATCH, PLAY or CHANGES
+     * @param out output of the client's connection
+     * @return LISTENER if subscribed, otherwise an ERROR response
+     */
+    private Response subscribe(String playerID, String kind, Output out) {
+        if (!kind.equals(WATCH) && !kind.equals(PLAY) && !kind.equals(CHANGES)) {
+            return Response.error("Can only subscribe to WATCH, PLAY or CHANGES");
+        }
+        Map<String, Subscription> connectionSubscriptions =
+                subscriptions.computeIfAbsent(out, writer -> new ConcurrentHashMap<>());
+        Subscription subscription = new Subscription(kind, playerID, out);
+        if (connectionSubscriptions.putIfAbsent(kind, subscription) != null) {
+            return Response.error("Already subscribed to " + kind);
+        }
+        if (kind.equals(WATCH)) {
+            game.subscribeToWatch(subscription);
+        } else if (!game.subscribeToPlay(playerID, subscription)) {
+            connectionSubscriptions.remove(kind, subscription);
+            return Response.error("Player must be in a match to subscribe to " + kind);
+        }
+        return LISTENER;
+    }
+    
+    /**
+     * Ends a connection's WATCH or PLAY subscription
+     * @param kind WATCH, PLAY or CHANGES
+     * @param out output of the client's connection
+     * @return LISTENER if unsubscribed, otherwise an ERROR response
+     */
+    private Response unsubscribe(String kind, Output out) {
+        Map<String, Subscription> connectionSubscriptions = subscriptions.get(out);
+        Subscription subscription = (connectionSubscriptions == null) ? null : connectionSubscriptions.remove(kind);
+        if (subscription == null) {
+            return Response.error("Not subscribed to " + kind);
+        }
+        subscription.cancel(true);
+        return LISTENER;
+    }
+    
+    /**
+     * A persistent WATCH, PLAY or CHANGES subscription that sends every update to its connection, in order.
+     */
+    private class Subscription implements WatchListener, PlayListener {
+        private final String kind;
+        private final String playerID;
+        private final Output out;
+        private final Lock lock = new ReentrantLock();
+        private boolean cancelled = false; // guarded by lock
+        private String matchID = ""; // match of the last CHANGES update sent, guarded by lock
+        private int version = -1; // version of the last CHANGES update sent, guarded by lock
+        
+        Subscription(String kind, String playerID, Output out) {
+            this.kind = kind;
+            this.playerID = playerID;
+            this.out = out;
+        }
+        
+        @Override
+        public void onChange() {
+            // Read and send under one lock so concurrent changes reach the client in the order read
+            lock.lock();
+            try {
+                if (cancelled) {
+                    return;
+                }
+                if (kind.equals(WATCH)) {
+                    out.send(game.getAvailableMatches());
+                } else if (kind.equals(PLAY)) {
+                    out.send(game.getPlayUpdate(playerID));
+                } else {
+                    sendChanges();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Sends the changes since the last CHANGES update, if there are any. Requires lock.
+         */
+        private void sendChanges() {
+            Match.Changes changes = game.getChanges(playerID, matchID, version);
+            if (changes == null) {
+                return;
+            }
+            if (changes.getMatchId().equals(matchID) && changes.getVersion() == version) {
+                return;
+            }
+            matchID = changes.getMatchId();
+            version = changes.getVersion();
+            out.send(changes);
+        }
+        
+        /**
+         * Removes this subscription from the game; it sends nothing more after this returns
+         * @param acknowledge true to send "V" + UNSUBSCRIBED as the last response of the stream
+         */
+        void cancel(boolean acknowledge) {
+            if (kind.equals(WATCH)) {
+                game.unsubscribeFromWatch(this);
+            } else {
+                game.unsubscribeFromPlay(playerID, this);
+            }
+            lock.lock();
+            try {
+                cancelled = true;
+                if (acknowledge) {
+                    out.send(Response.unsubscribed());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package crossword;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable server response, holding the values read from the game when it was made. It is
+ * written as text in the text protocol and as a typed body in the binary protocol, each form
+ * built straight from those values, so both protocols carry the same content.
+ */
+public abstract class Response {
+    private static final Response OK = new Status(ResponseType.OK, "");
+    private static final Response UNSUBSCRIBED = new Status(ResponseType.UNSUBSCRIBED, RequestHandler.UNSUBSCRIBED);
+
+    // Abstraction function:
+    //    AF(type): a response of kind type, whose content is given by the subclass
+    // Representation invariant:
+    //  true
+    // Safety from rep exposure:
+    //  type is private, final and immutable
+    // Thread safety argument:
+    //  Responses are immutable and therefore threadsafe
+
+    private final ResponseType type;
+
+    /**
+     * @param type kind of response
+     */
+    Response(ResponseType type) {
+        this.type = type;
+    }
+
+    /**
+     * @return kind of response
+     */
+    public ResponseType getType() {
+        return type;
+    }
+
+    /**
+     * @return the response in the text protocol: "I" + error message for ERROR, and
+     *         "V" + getBody() otherwise
+     */
+    public String toText() {
+        return (type == ResponseType.ERROR ? "I" : "V") + getBody();
+    }
+
+    /**
+     * @return the text protocol's body of the response, after its "V" or "I"
+     */
+    abstract String getBody();
+
+    /**
+     * Writes the binary protocol's body of the response, as described in BinaryProtocol.
+     * @param buffer buffer positioned after the frame's type code
+     * @throws java.nio.BufferOverflowException if buffer has too little room
+     */
+    abstract void writeBody(ByteBuffer buffer);
+
+    /**
+     * @return the response to a request that succeeded with nothing to report
+     */
+    public static Response ok() {
+        return OK;
+    }
+
+    /**
+     * @param message what went wrong
+     * @return error response with message
+     */
+    public static Response error(String message) {
+        return new Status(ResponseType.ERROR, message);
+    }
+
+    /**
+     * @return the last response of a subscription's stream
+     */
+    static Response unsubscribed() {
+        return UNSUBSCRIBED;
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+
+    /** OK, ERROR or UNSUBSCRIBED response, whose only content is its text body */
+    static class Status extends Response {
+        private final String body;
+
+        /**
+         * @param type OK, ERROR or UNSUBSCRIBED
+         * @param body text body; only an ERROR's is written in the binary protocol
+         */
+        Status(ResponseType type, String body) {
+            super(type);
+            this.body = body;
+        }
+
+        @Override
+        String getBody() {
+            return body;
+        }
+
+        @Override
+        void writeBody(ByteBuffer buffer) {
+            if (getType() == ResponseType.ERROR) {
+                BinaryProtocol.putString(buffer, body);
+            }
+        }
+    }
+}
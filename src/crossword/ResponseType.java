@@ -0,0 +1,53 @@
+package crossword;
+
+/**
+ * Kinds of server Response, each with its own body in the binary protocol.
+ * Every kind's text form starts with "V", except ERROR, which starts with "I".
+ */
+public enum ResponseType {
+    /** "V" with no body */
+    OK(1),
+    /** "I" + error message */
+    ERROR(2),
+    /** "V" + puzzle names RESPONSE_DELIM available matches, as Game.getPuzzlesAndAvailableMatchesForResponse */
+    PUZZLES_AND_MATCHES(3),
+    /** "V" + available matches, as Game.getAvailableMatchesForResponse */
+    MATCHES(4),
+    /** "V" + puzzle layout, as Match.getPuzzleForResponse */
+    PUZZLE(5),
+    /** "V" + guesses, as Match.getGuessesForResponse */
+    GUESSES(6),
+    /** "V" + final scores, as Match.showScore */
+    SCORE(7),
+    /** "V" + changes or snapshot, as Match.getChangesForResponse */
+    CHANGES(8),
+    /** "V" + RequestHandler.UNSUBSCRIBED, the last line of a subscription */
+    UNSUBSCRIBED(9);
+
+    private final byte code;
+
+    private ResponseType(int code) {
+        this.code = (byte) code;
+    }
+
+    /**
+     * @return this type's code in binary protocol frames
+     */
+    public byte code() {
+        return code;
+    }
+
+    /**
+     * @param code code of a binary protocol frame
+     * @return type with that code
+     * @throws IllegalArgumentException if no type has that code
+     */
+    public static ResponseType fromCode(byte code) {
+        for (ResponseType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("unknown response type code: " + code);
+    }
+}
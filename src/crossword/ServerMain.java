@@ -8,40 +8,90 @@ import java.util.LinkedList;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 
-import edu.mit.eecs.parserlib.UnableToParseException;
 /**
  * Game server runner.
  */
 public class ServerMain {
+    private static final long DEFAULT_WATCH_TICK_MILLIS = 50;
+    
     /**
      * Start a Crossword Extravaganza server.
      * 
      * Command to connect server: java -cp "bin;lib/parserlib.jar" crossword.ServerMain puzzles/ 4444
      *      via Mac: java -cp bin:lib/parserlib.jar crossword.ServerMain puzzles/ 4444
+     *      with the selector-based server: java -cp bin:lib/parserlib.jar crossword.ServerMain --mode=nio puzzles/ 4444
+     *      with a virtual thread per connection (Java 21+): 
+     *          java -cp bin:lib/parserlib.jar crossword.ServerMain --mode=virtual puzzles/ 4444
+     *      with lobby changes sent to watchers every 200 ms:
+     *          java -cp bin:lib/parserlib.jar crossword.ServerMain --watch-tick=200 puzzles/ 4444
      * Command to Client: java -cp bin crossword.Client localhost 4444
-     * @param args The command line arguments should include only the folder where
-     *             the puzzles are located.
-     * @throws IOException Server won't connect
-     * @throws UnableToParseException Unable to Parse Exception
+     * @param args The command line arguments should include an optional --mode=threads|virtual|nio
+     *             (threads by default), an optional --watch-tick=MILLIS (50 by default, 0 to tell
+     *             watchers of every lobby change at once; see Game.setWatchTick), the folder
+     *             where the puzzles are located and the port.
+     *             The folder is watched, and puzzle files added to it, changed or removed
+     *             while the server runs are used for matches made afterwards. Parsed puzzles
+     *             are cached beside the folder (see PuzzleCache), so restarts only parse
+     *             files that changed.
+     * @throws IOException Server won't connect or the puzzle folder cannot be listed
      */
-    public static void main(String[] args) throws IOException, UnableToParseException {
+    public static void main(String[] args) throws IOException {
         final Queue<String> arguments = new LinkedList<>(Arrays.asList(args));
         final int port;
         final String directory;
         final Game game;
+        String mode = "threads";
+        long watchTick = DEFAULT_WATCH_TICK_MILLIS;
 
+        while (!arguments.isEmpty() && arguments.peek().startsWith("--")) {
+            String flag = arguments.remove();
+            if (flag.startsWith("--mode=")) {
+                mode = flag.substring("--mode=".length());
+            } else if (flag.startsWith("--watch-tick=")) {
+                try {
+                    watchTick = Long.parseLong(flag.substring("--watch-tick=".length()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("invalid watch tick: " + flag, e);
+                }
+            } else {
+                throw new IllegalArgumentException("unknown flag: " + flag);
+            }
+        }
         try {
             directory = arguments.remove();
-            game = Game.parseGameFromFiles(directory);
-        } catch (NoSuchElementException | NumberFormatException e) {
-            throw new IllegalArgumentException("missing or invalid PORT", e);
+        } catch (NoSuchElementException e) {
+            throw new IllegalArgumentException("missing puzzle folder", e);
         }
         try {
             port = Integer.parseInt(arguments.remove());
         } catch (NoSuchElementException | NumberFormatException e) {
             throw new IllegalArgumentException("missing or invalid PORT", e);
         }
-        new TextServer(game, port).serve();
+        // Puzzle files added, changed or removed while the server runs are picked up for new matches
+        final long loadStart = System.nanoTime();
+        final PuzzleCache cache = PuzzleCache.beside(directory);
+        final PuzzleDirectoryWatcher watcher = new PuzzleDirectoryWatcher(directory, cache);
+        // Only the templates of the puzzles are held until matches are made from them
+        game = new Game(watcher.getTemplates(), PuzzleTemplateCache.DEFAULT_CAPACITY);
+        System.err.println("Loaded " + game.getPuzzleNames().size() + " puzzles in "
+                + (System.nanoTime() - loadStart) / 1_000_000 + " ms (" + cache.getHits() + " cached, "
+                + cache.getMisses() + " parsed)");
+        // Watchers get one lobby update per tick, however many matches change during it
+        game.setWatchTick(watchTick);
+        watcher.start(game);
+        switch (mode) {
+        case "threads":
+            new TextServer(game, port).serve();
+            break;
+        case "virtual":
+            new TextServer(game, port, TextServer.newVirtualThreadExecutor()).serve();
+            break;
+        case "nio":
+            new NioTextServer(game, port).serve();
+            break;
+        default:
+            throw new IllegalArgumentException("unknown server mode: " + mode);
+        }
   
     }
    
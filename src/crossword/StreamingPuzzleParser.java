@@ -0,0 +1,322 @@
+package crossword;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+/**
+ * Hand-written single-pass parser for the grammar in Puzzle.g, which reads characters straight
+ * from a Readable and makes PuzzleEntries as it goes, without a parse tree.
+ *
+ * Line terminators are read as PuzzleParser.parseFromFile reads them: "\r\n" and "\r" are
+ * read as "\n", and input that does not end with a line terminator is read as if it did.
+ * Clues and descriptions keep their escape sequences as written, as the grammar does.
+ */
+class StreamingPuzzleParser {
+    private static final int BUFFER_CHARS = 8192;
+    private static final int EOF = -1;
+    private static final int UNREAD = -2;
+
+    // Abstraction function:
+    //    AF(source, buffer, lookahead, previous, line, column, text): a parser that has read
+    //          the characters of source before buffer's position, with line terminators
+    //          read as "\n"; lookahead is the next character if it has been peeked at, or
+    //          UNREAD, and previous is the last character read, or UNREAD before the first;
+    //          the next character is at line, column; text holds the characters of the
+    //          token being read
+    // Representation invariant:
+    //  line >= 1, column >= 1
+    // Safety from rep exposure:
+    //  all fields are private, and only Puzzles, which are immutable, are returned
+    // Thread safety argument:
+    //  not threadsafe: each parse makes its own parser, used by one thread
+
+    private final Readable source;
+    private final CharBuffer buffer = CharBuffer.allocate(BUFFER_CHARS);
+    private int lookahead = UNREAD;
+    private int previous = UNREAD;
+    private int line = 1;
+    private int column = 1;
+    private final StringBuilder text = new StringBuilder();
+
+    private StreamingPuzzleParser(Readable source) {
+        this.source = source;
+        buffer.flip();
+    }
+
+    /**
+     * Parse a puzzle.
+     * @param source characters of a puzzle in the grammar of Puzzle.g
+     * @return the puzzle
+     * @throws IOException if source cannot be read
+     * @throws UnableToParseException if source does not match the grammar, or a row or column
+     *                                is too large for an int
+     */
+    static Puzzle parse(Readable source) throws IOException, UnableToParseException {
+        return new StreamingPuzzleParser(source).parseFile();
+    }
+
+    /**
+     * Parse a puzzle.
+     * @param bytes UTF-8 bytes of a puzzle in the grammar of Puzzle.g, from position to limit;
+     *              bytes is not changed
+     * @return the puzzle
+     * @throws UnableToParseException if bytes are not UTF-8 or do not match the grammar, or a
+     *                                row or column is too large for an int
+     */
+    static Puzzle parse(ByteBuffer bytes) throws UnableToParseException {
+        final ByteBuffer remaining = bytes.duplicate();
+        final CharsetDecoder decoder = UTF_8.newDecoder();
+        final boolean[] flushed = { false };
+        final Readable decoded = chars -> {
+            if (flushed[0]) {
+                return EOF;
+            }
+            final int start = chars.position();
+            final CoderResult result = decoder.decode(remaining, chars, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (!remaining.hasRemaining()) {
+                // UTF-8 keeps no state to flush, so this never overflows chars
+                decoder.flush(chars);
+                flushed[0] = true;
+            }
+            final int count = chars.position() - start;
+            return count == 0 && flushed[0] ? EOF : count;
+        };
+        try {
+            return parse(decoded);
+        } catch (CharacterCodingException e) {
+            throw new UnableToParseException("puzzle is not UTF-8: " + e);
+        } catch (IOException e) {
+            throw new AssertionError("reading a buffer cannot fail", e);
+        }
+    }
+
+    /*
+     * file ::= ">>" name description (comment | entry)*, skipping whitespace
+     */
+    private Puzzle parseFile() throws IOException, UnableToParseException {
+        skipWhitespace();
+        expect('>');
+        expect('>');
+        skipWhitespace();
+        final String name = parseQuoted(false);
+        skipWhitespace();
+        final String description = parseQuoted(true);
+        expect('\n');
+        final List<PuzzleEntry> entries = new ArrayList<>();
+        while (true) {
+            skipWhitespace();
+            final int c = peek();
+            if (c == EOF) {
+                return new Puzzle(name, description, entries);
+            } else if (c == '/') {
+                skipComment();
+            } else if (c == '(') {
+                entries.add(parseEntry());
+            } else {
+                throw error("// or (");
+            }
+        }
+    }
+
+    /*
+     * entry ::= "(" wordname "," clue "," direction "," row "," col ")", skipping whitespace
+     */
+    private PuzzleEntry parseEntry() throws IOException, UnableToParseException {
+        expect('(');
+        skipWhitespace();
+        // wordname ::= [a-z\-]+
+        text.setLength(0);
+        for (int c = peek(); (c >= 'a' && c <= 'z') || c == '-'; c = peek()) {
+            text.append((char) take());
+        }
+        if (text.length() == 0) {
+            throw error("[a-z\\-]");
+        }
+        final String word = text.toString();
+        skipSeparator();
+        final String clue = parseQuoted(true);
+        skipSeparator();
+        final Orientation orientation;
+        if (peek() == 'D') {
+            expectWord("DOWN");
+            orientation = Orientation.DOWN;
+        } else {
+            expectWord("ACROSS");
+            orientation = Orientation.ACROSS;
+        }
+        skipSeparator();
+        final int row = parseInt();
+        skipSeparator();
+        final int col = parseInt();
+        skipWhitespace();
+        expect(')');
+        return new PuzzleEntry(word, clue, orientation, new Point(row, col));
+    }
+
+    /*
+     * Reads string ::= '"' ([^"\r\n\\] | '\\' [\\nrt] )* '"' if escapes is true, otherwise
+     * stringIndent ::= '"' [^"\r\n\t\\]* '"'.
+     * @return the characters between the quotes
+     */
+    private String parseQuoted(boolean escapes) throws IOException, UnableToParseException {
+        expect('"');
+        text.setLength(0);
+        while (true) {
+            final int c = peek();
+            if (c == '"') {
+                take();
+                return text.toString();
+            } else if (c == '\\' && escapes) {
+                text.append((char) take());
+                final int escaped = peek();
+                if (escaped != '\\' && escaped != 'n' && escaped != 'r' && escaped != 't') {
+                    throw error("[\\\\nrt]");
+                }
+                text.append((char) take());
+            } else if (c == EOF || c == '\n' || c == '\\' || (c == '\t' && !escapes)) {
+                throw error("\"");
+            } else {
+                text.append((char) take());
+            }
+        }
+    }
+
+    /*
+     * int ::= [0-9]+
+     */
+    private int parseInt() throws IOException, UnableToParseException {
+        if (peek() < '0' || peek() > '9') {
+            throw error("[0-9]");
+        }
+        long value = 0;
+        for (int c = peek(); c >= '0' && c <= '9'; c = peek()) {
+            value = value * 10 + (take() - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw error("a smaller number");
+            }
+        }
+        return (int) value;
+    }
+
+    /*
+     * comment ::= "//" [^\r\n]* "\n"
+     */
+    private void skipComment() throws IOException, UnableToParseException {
+        expect('/');
+        expect('/');
+        for (int c = peek(); c != '\n' && c != EOF; c = peek()) {
+            take();
+        }
+        expect('\n');
+    }
+
+    private void skipSeparator() throws IOException, UnableToParseException {
+        skipWhitespace();
+        expect(',');
+        skipWhitespace();
+    }
+
+    /*
+     * whitespace ::= [ \t\r\n]+
+     */
+    private void skipWhitespace() throws IOException {
+        for (int c = peek(); c == ' ' || c == '\t' || c == '\n'; c = peek()) {
+            take();
+        }
+    }
+
+    private void expectWord(String word) throws IOException, UnableToParseException {
+        for (int i = 0; i < word.length(); i++) {
+            if (peek() != word.charAt(i)) {
+                throw error("DOWN or ACROSS");
+            }
+            take();
+        }
+    }
+
+    private void expect(char expected) throws IOException, UnableToParseException {
+        if (peek() != expected) {
+            throw error(expected == '\n' ? "newline" : String.valueOf(expected));
+        }
+        take();
+    }
+
+    private UnableToParseException error(String expected) throws IOException {
+        final int c = peek();
+        final String saw = c == EOF ? "end of input" : c == '\n' ? "newline" : "'" + (char) c + "'";
+        return new UnableToParseException("line " + line + " column " + column + ": expected " + expected
+                + " but saw " + saw);
+    }
+
+    /*
+     * @return the next character, with line terminators read as '\n', or EOF
+     */
+    private int peek() throws IOException {
+        if (lookahead == UNREAD) {
+            lookahead = readNormalized();
+        }
+        return lookahead;
+    }
+
+    /*
+     * @return the next character, with line terminators read as '\n', or EOF, and moves past it
+     */
+    private int take() throws IOException {
+        final int c = peek();
+        lookahead = UNREAD;
+        if (c == '\n') {
+            line++;
+            column = 1;
+        } else {
+            column++;
+        }
+        return c;
+    }
+
+    private int readNormalized() throws IOException {
+        int c = readRaw();
+        if (c == '\r') {
+            if (fill() && buffer.get(buffer.position()) == '\n') {
+                buffer.get();
+            }
+            c = '\n';
+        } else if (c == EOF && previous != '\n' && previous != UNREAD && previous != EOF) {
+            // the last line is read as if it ended with a line terminator
+            c = '\n';
+        }
+        previous = c;
+        return c;
+    }
+
+    private int readRaw() throws IOException {
+        return fill() ? buffer.get() : EOF;
+    }
+
+    /*
+     * @return true if buffer has a character, reading more from source if it is empty
+     */
+    private boolean fill() throws IOException {
+        while (!buffer.hasRemaining()) {
+            buffer.clear();
+            final int count = source.read(buffer);
+            buffer.flip();
+            if (count < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -2,54 +2,121 @@ package crossword;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-
-import crossword.Game.PlayListener;
-import crossword.Game.WaitListener;
-import crossword.Game.WatchListener;
-
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Text-protocol game server.
+ * Text-protocol game server. Clients that open their connection with BinaryProtocol.MAGIC
+ * are served the binary protocol instead.
  */
 public class TextServer {
-    private static final String QUIT = "quit";
-    private static final String LISTENER = "listener"; // Returned by listener commands 
+    private static final int FRAME_BUFFER_SIZE = 8192;
+    private static final int MAX_POOLED_BUFFERS = 256;
     
     // Abstraction function:
-    //    AF(serverSocket, game): TextServer Object having the ability to connect one player to 
+    //    AF(serverSocket, handler, executor, dispatcher, bufferPool): TextServer Object having the ability to connect one player to 
     //                            a Crossword Puzzle game. One serverSocket (a rep) is able to 
-    //                            run multiple connections, game is the game class for
-    //                            the Crossword game
+    //                            run multiple connections, handler applies each request to
+    //                            the Crossword game, executor runs each connection,
+    //                            dispatcher delivers listener notifications to each connection, and
+    //                            bufferPool lends the buffers binary responses are encoded into
     // Representation invariant:
     //  true
     // Safety from rep exposure:
     //  serverSocket is private and final
-    //  game is private and final
+    //  handler is private and final
+    //  executor is private and final
+    //  dispatcher is private and final
+    //  bufferPool is private and final, and a borrowed buffer is released right after it is written
     // Thread Safety Argument:
-    //   TextServer creates a new thread for each new connecting client
-    //   game is an object with threadsafe type
+    //   TextServer hands each new connecting client to executor, which runs it on its own
+    //      (platform or virtual) thread
+    //   handler, dispatcher and bufferPool are objects with threadsafe types
+    //   listener callbacks only queue their output on the connection's outbox, so a slow client
+    //      never blocks the thread that changed the game, and a client that stops reading
+    //      blocks only the delivery thread writing to it, until the dispatcher's write timeout
+    //   a connection's thread and the dispatcher's delivery thread share its output: text
+    //      responses go through a PrintWriter, whose println writes a whole line under the
+    //      writer's lock, and binary frames are written under the connection's write lock
     //   threads for each clients operates on their own and do not interact with each other
     
     private final ServerSocket serverSocket;
-    private final Game game;
+    private final RequestHandler handler;
+    private final Executor executor;
+    private final NotificationDispatcher dispatcher;
+    private final ByteBufferPool bufferPool = new ByteBufferPool(FRAME_BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    
     /**
      * Make a new text game server using game that listens for connections on port.
+     * Each connection runs on a new platform thread.
      * 
      * @param game shared crossword puzzles
      * @param port server port number
      * @throws IOException if an error occurs opening the server socket
      */
     public TextServer(Game game, int port) throws IOException {
+        this(game, port, command -> new Thread(command).start());
+    }
+    
+    /**
+     * Make a new text game server using game that listens for connections on port.
+     * 
+     * @param game shared crossword puzzles
+     * @param port server port number
+     * @param executor runs each connection; must not bound the number of connections running
+     *                 at once, since a connection holds its thread until the client disconnects
+     * @throws IOException if an error occurs opening the server socket
+     */
+    public TextServer(Game game, int port, Executor executor) throws IOException {
+        this(game, port, executor, new NotificationDispatcher());
+    }
+    
+    /**
+     * Make a new text game server using game that listens for connections on port.
+     * 
+     * @param game shared crossword puzzles
+     * @param port server port number
+     * @param executor runs each connection; must not bound the number of connections running
+     *                 at once, since a connection holds its thread until the client disconnects
+     * @param dispatcher delivers listener notifications to the connections
+     * @throws IOException if an error occurs opening the server socket
+     */
+    public TextServer(Game game, int port, Executor executor, NotificationDispatcher dispatcher) throws IOException {
         this.serverSocket = new ServerSocket(port);
-        this.game = game;
+        this.handler = new RequestHandler(game);
+        this.executor = executor;
+        this.dispatcher = dispatcher;
+    }
+    
+    /**
+     * Returns an executor that runs each task on a new virtual thread.
+     * The project compiles for Java 11, so the Java 21 factory is looked up at runtime.
+     * 
+     * @return virtual-thread-per-task executor
+     * @throws UnsupportedOperationException if the running JVM has no virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("virtual threads need Java 21 or later, running "
+                    + System.getProperty("java.version"), e);
+        }
     }
         
     /**
@@ -70,7 +137,7 @@ public class TextServer {
         while (true) {  
             Socket socket = serverSocket.accept();
             try {
-            new Thread(new Runnable() {
+            executor.execute(new Runnable() {
                 public void run() {
                     try {
                         handleConnection(socket);
@@ -86,7 +153,7 @@ public class TextServer {
                         }
                     }
                 }
-            }).start();
+            });
             }
             catch (Exception e) {
                 e.printStackTrace();
@@ -95,30 +162,47 @@ public class TextServer {
     }
     
     /**
-     * Handle a single client connection.
+     * Handle a single client connection in the protocol it chooses.
      * Returns when the client disconnects.
      * 
      * @param socket socket connected to client
      * @throws IOException if the connection encounters an error or closes unexpectedly
      */
     private void handleConnection(Socket socket) throws IOException {
-        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+        BufferedInputStream input = new BufferedInputStream(socket.getInputStream());
+        // No text request starts with MAGIC's first byte, so one byte decides
+        input.mark(BinaryProtocol.MAGIC.length);
+        if (input.read() != BinaryProtocol.MAGIC[0]) {
+            input.reset();
+            handleTextConnection(socket, input);
+            return;
+        }
+        byte[] magic = new byte[BinaryProtocol.MAGIC.length];
+        int read = 1 + input.readNBytes(magic, 1, magic.length - 1);
+        if (read != magic.length || !Arrays.equals(magic, BinaryProtocol.MAGIC)) {
+            throw new IOException("client sent an unknown protocol header");
+        }
+        handleBinaryConnection(socket, input);
+    }
+    
+    /**
+     * Handle a client connection speaking the text protocol.
+     * 
+     * @param socket socket connected to client
+     * @param input stream from the client
+     * @throws IOException if the connection encounters an error or closes unexpectedly
+     */
+    private void handleTextConnection(Socket socket, BufferedInputStream input) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(input, UTF_8));
         PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8), true);
         
         try {
-            for (String input = in.readLine(); input != null; input = in.readLine()) {
-                try {
-                    String output = handleRequest(input, out);
-                    if (output.equals(QUIT)) {
-                        break;
-                    } else if (output.equals(LISTENER)) {
-                        continue;
-                    }
-                    out.println(output);
-                } catch (NumberFormatException nfe) {
-                    out.println("I" + "Expected number instead of word");
+            serveRequests(socket, in::readLine, response -> {
+                out.println(response.toText());
+                if (out.checkError()) {
+                    throw new IOException("cannot write to client");
                 }
-            }
+            });
         } finally {
             out.close();
             in.close();
@@ -126,164 +210,73 @@ public class TextServer {
     }
     
     /**
-     * Handle a single client request and return the server response.
-     * 
-     * Returns "I" + "<Error message>" if the request is invalid and 
-     *         "V" + "<Response body>" if the request is valid and the 
-     *         request is successful
+     * Handle a client connection that negotiated the binary protocol.
      * 
-     * @param input message from client
-     * @return output message to client
-     * @throws IOException 
+     * @param socket socket connected to client
+     * @param input stream from the client, just past BinaryProtocol.MAGIC
+     * @throws IOException if the connection encounters an error or closes unexpectedly
      */
-    private String handleRequest(String input, PrintWriter out) throws IOException {  
-        String[] tokens = input.split(" ");
-        if (tokens.length < 2) {
-            return "I" + "Invalid command";
-        }
-        String playerID = tokens[0];
-        String command = tokens[1];  
-        // Check whether the playerID is valid
-        if (!(playerID.matches("[A-Za-z0-9]*") && playerID.length() > 0)) {
-            return "I" + "Player ID must be alphanumeric and have a length > 0";
-        }
+    private void handleBinaryConnection(Socket socket, BufferedInputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        OutputStream out = socket.getOutputStream();
+        Lock writeLock = new ReentrantLock();
+        out.write(BinaryProtocol.MAGIC);
+        out.flush();
         
-        if (command.equals("quit")) {
-            return QUIT;
-        }
-        if (command.equals("WATCH")) { // blocks and returns only when there is a change in available matches
-            game.addWatchListener(new WatchListener() {
-                public void onChange() {
-                    out.println("V" + game.getAvailableMatchesForResponse());
-                }
-            });
-            
-            return LISTENER;
-        }
-        else if (command.equals("WAIT")) { // blocks and returns only when a match has two players
-            game.addWaitListener(playerID, new WaitListener() {
-                public void onChange() {
-                    out.println("V" + game.getMatchPuzzleForResponse(playerID));
+        try {
+            serveRequests(socket, () -> BinaryProtocol.readRequest(in), response -> {
+                ByteBuffer frame = BinaryProtocol.encode(response, bufferPool);
+                writeLock.lock();
+                try {
+                    out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+                    out.flush();
+                } finally {
+                    writeLock.unlock();
+                    bufferPool.release(frame);
                 }
             });
-            
-            return LISTENER;
+        } finally {
+            out.close();
+            in.close();
         }
-        else if (command.equals("WAIT_PLAY")) { // blocks and returns only when a play has been made in a match
-            game.addPlayListener(playerID, new PlayListener() {
-                public void onChange() {
-                    out.println("V" + game.getPlayListenerResponse(playerID));
+    }
+    
+    /** Reads the requests of one connection */
+    private interface RequestReader {
+        /**
+         * @return next request line, or null if the client closed the connection
+         * @throws IOException if the request cannot be read
+         */
+        public String readRequest() throws IOException;
+    }
+    
+    /**
+     * Apply a connection's requests until it disconnects or quits.
+     * 
+     * @param socket socket connected to client
+     * @param in reads the client's requests
+     * @param out writes responses to the client; also used by the dispatcher for listener responses
+     * @throws IOException if the connection encounters an error or closes unexpectedly
+     */
+    private void serveRequests(Socket socket, RequestReader in, NotificationDispatcher.Delivery out) throws IOException {
+        NotificationDispatcher.Outbox outbox = dispatcher.open(out, socket);
+        try {
+            for (String input = in.readRequest(); input != null; input = in.readRequest()) {
+                try {
+                    Response output = handler.handleRequest(input, outbox);
+                    if (output == RequestHandler.QUIT) {
+                        break;
+                    } else if (output == RequestHandler.LISTENER) {
+                        continue;
+                    }
+                    out.deliver(output);
+                } catch (NumberFormatException nfe) {
+                    out.deliver(Response.error("Expected number instead of word"));
                 }
-            });
-            
-            return LISTENER;
-        }
-        else if (command.equals("LOGIN")) { // Logs in a player and returns the names of all puzzle templates
-            if (game.login(playerID)) {
-                // Build the string in 3 parts: add puzzle names -> add response delim -> add available matches
-                return "V" + game.getPuzzlesAndAvailableMatchesForResponse();
-            } else {
-                return "I" + "Player id is already taken";
-            }
-        }
-        else if (command.equals("NEW_MATCH")) {
-            return "V" + game.getPuzzlesAndAvailableMatchesForResponse();
-        }
-        else if (command.equals("PLAY")) {
-            final int numTokens = 3;
-            if (tokens.length < numTokens) {
-                return "I" + "PLAY command must include matchID";
-            }
-            boolean join = game.joinMatch(playerID, tokens[2]);
-            if (join) {
-                return "V" + game.getPuzzleFromMatchID(tokens[2]);
-            }
-            return "I" + "Failed to join the match";
-        }
-        else if (command.equals("NEW")) {
-            final int numTokens = 5;
-            if (tokens.length < numTokens) {
-                return "I" + "NEW command must contain matchID, puzzleID, and description";
-            }
-            String matchID = tokens[2];
-            final int puzzleIndex = 3;
-            String puzzleID = tokens[puzzleIndex];
-            final int descriptionIndex = 4;
-            String description = "";
-            // The rest of the string is the description
-            for (String token : Arrays.copyOfRange(tokens, descriptionIndex, tokens.length)) {
-                description += " " + token;
-            }
-            // Remove the extra space at the beginning
-            description = description.substring(1);
-            
-            if (description.matches("\"[^\\n\\t\\\\\\r]+\"")) {
-                description = description.substring(1, description.length()-1);
-            } else {
-                return "I" + "Description should not contain newlines, tabs or \\ and have length > 0: " + description;
-            }
-            // Check whether MATCH_ID is alphanumeric
-            if (!matchID.matches("[0-9a-zA-Z]+")) {
-                return "I" + "MatchID should be alphanumeric and have length > 0: " + matchID;
-            }
-            
-            boolean create = game.createMatch(playerID, matchID, puzzleID, description);
-            if (create) {
-                return "V";
-            }
-            return "I" + "Failed to create a match";
-        }
-        else if (command.equals("LOGOUT")) {
-            if (game.logout(playerID)) {
-                return "V";
-            }
-            return "I" + "Failed to log out the player";
-        }
-        else if (command.equals("EXIT_WAIT")) {
-            if (game.exitWait(playerID)) {
-                return "V";
-            }
-            return "I" + "Failed to log out the player";
-        }
-        else if (command.equals("EXIT_PLAY")) {
-            if (game.exitPlay(playerID)) {
-                String score = game.showScore(playerID);
-                game.removePlayerAndMatch(playerID);
-                return "V" + score;
-            }
-            return "I" + "Failed to exit game";
-        }
-        else if (command.equals("TRY")) {
-            final int numTokens = 4;
-            if (tokens.length < numTokens) {
-                return "I" + "TRY command must contain entry ID and word";
-            }
-            int wordID = Integer.parseInt(tokens[2]);
-            final int wordIndex = 3;
-            String word = tokens[wordIndex].toLowerCase();
-            if (game.tryWord(playerID, wordID, word)) {
-                String response = game.getGuessesForResponse(playerID);
-                game.removePlayerAndMatch(playerID);
-                return "V" + response;
-            }
-            return "I" + "Failed to guess word";
-        }
-        else if (command.equals("CHALLENGE")) {
-            final int numTokens = 4;
-            if (tokens.length < numTokens) {
-                return "I" + "CHALLENGE command must contain entry ID and word";
-            }
-            int wordID = Integer.parseInt(tokens[2]);
-            final int wordIndex = 3;
-            String word = tokens[wordIndex].toLowerCase();
-            if (game.challengeWord(playerID, wordID, word)) {
-                String response = game.getGuessesForResponse(playerID);
-                game.removePlayerAndMatch(playerID);
-                return "V" + response;
             }
-            return "I" + "Failed to challenge word";        
+        } finally {
+            handler.connectionClosed(outbox);
+            outbox.close();
         }
-        // if we reach here, the client message did not follow the protocol
-        return "I" + "Sorry, that is not a valid command: " + input;
     }
 }
@@ -0,0 +1,132 @@
+package crossword;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class BinaryProtocolTest {
+    // Partitions:
+    //     Response type: OK, ERROR, PUZZLES_AND_MATCHES, MATCHES, PUZZLE, GUESSES, SCORE,
+    //          CHANGES (delta, snapshot), UNSUBSCRIBED
+    //     Number of entries in a list: 0, 1, > 1
+    //     Frame size: fits a pooled buffer, larger than a pooled buffer
+    //     Lobby listing: encoded once, encoded again from its cached body
+    //     String: ASCII, multi-byte characters, unpaired surrogate;
+    //          byte count < 128, >= 128, > 0xFFFF
+
+    private static final ByteBufferPool POOL = new ByteBufferPool(64, 4);
+
+    /* Encodes response, checks the frame's length prefix and type, and returns it decoded. */
+    private static String roundTrip(Response response) {
+        ByteBuffer frame = BinaryProtocol.encode(response, POOL);
+        try {
+            assertEquals(frame.remaining() - Integer.BYTES, frame.getInt(), "expected the frame length first");
+            assertEquals(response.getType().code(), frame.get(frame.position()), "expected the type code next");
+            return BinaryProtocol.decodeToText(frame);
+        } finally {
+            POOL.release(frame);
+        }
+    }
+
+    /* Asserts that response decodes to its own text. */
+    private static void assertRoundTrips(Response response) {
+        assertEquals(response.toText(), roundTrip(response));
+    }
+
+    /* Makes a match between me and you on the cross puzzle with one guess and one confirmed word. */
+    private static Match makeMatch() throws IOException, UnableToParseException {
+        Match match = new Match("0", "binary", Puzzle.parseFromFile("puzzles/cross.puzzle"), "me");
+        assertTrue(match.joinMatch("you"));
+        assertTrue(match.tryWord("me", 0, "mat"));
+        assertTrue(match.challengeWord("you", 0, "cat"));
+        return match;
+    }
+
+    @Test
+    public void testAssertionsEnabled() {
+        assertThrows(AssertionError.class, () -> { assert false; },
+                "make sure assertions are enabled with VM argument '-ea'");
+    }
+
+    // Covers: OK, ERROR, UNSUBSCRIBED
+    @Test
+    public void testStatusResponses() {
+        assertEquals("V", roundTrip(Response.ok()));
+        assertEquals("IFailed to guess word", roundTrip(Response.error("Failed to guess word")));
+        assertEquals("V" + RequestHandler.UNSUBSCRIBED, roundTrip(Response.unsubscribed()));
+    }
+
+    // Covers: PUZZLES_AND_MATCHES, MATCHES, number of entries 0, 1, > 1, listing encoded once and again
+    @Test
+    public void testLobbyResponses() throws IOException, UnableToParseException {
+        Puzzle easy = Puzzle.parseFromFile("puzzles/simple.puzzle");
+        Game game = new Game(Map.of("Easy", easy));
+        assertEquals("VEasy cs2fd ", roundTrip(game.getPuzzlesAndAvailableMatches()));
+        assertEquals("V", roundTrip(game.getAvailableMatches()));
+        assertTrue(game.login("one"));
+        assertTrue(game.login("two"));
+        assertTrue(game.createMatch("one", "0", "Easy", "easy puzzle"));
+        assertEquals("VEasy cs2fd 0 bs1fc easy puzzle", roundTrip(game.getPuzzlesAndAvailableMatches()));
+        assertTrue(game.createMatch("two", "1", "Easy", "second"));
+        Response listing = game.getAvailableMatches();
+        assertRoundTrips(listing);
+        assertRoundTrips(listing);
+        assertEquals(ResponseType.MATCHES, game.getAvailableMatches().getType());
+        assertEquals(ResponseType.PUZZLES_AND_MATCHES, game.getPuzzlesAndAvailableMatches().getType());
+    }
+
+    // Covers: PUZZLE, GUESSES, SCORE, number of entries > 1, larger than a pooled buffer
+    @Test
+    public void testMatchResponses() throws IOException, UnableToParseException {
+        Match match = makeMatch();
+        assertEquals("V" + match.getPuzzleForResponse(), roundTrip(match.getLayout()));
+        assertEquals("V" + match.getGuessesForResponse(), roundTrip(match.getGuesses()));
+        assertEquals(ResponseType.GUESSES, match.getPlayUpdate().getType());
+        assertRoundTrips(match.getPlayUpdate());
+        assertTrue(match.forfeit());
+        assertEquals("V" + match.showScore(), roundTrip(match.getScore()));
+        assertEquals(ResponseType.SCORE, match.getPlayUpdate().getType());
+        assertRoundTrips(match.getPlayUpdate());
+    }
+
+    // Covers: CHANGES delta and snapshot, number of entries 0, > 1
+    @Test
+    public void testChangesResponses() throws IOException, UnableToParseException {
+        Match match = makeMatch();
+        for (int since = -1; since <= 3; since++) {
+            assertEquals("V" + match.getChangesForResponse(since), roundTrip(match.getChanges(since)), "since " + since);
+        }
+    }
+
+    // Covers: binary frames are smaller than the text they encode
+    @Test
+    public void testFramesAreCompact() throws IOException, UnableToParseException {
+        Match match = makeMatch();
+        Response guesses = match.getGuesses();
+        ByteBuffer frame = BinaryProtocol.encode(guesses, POOL);
+        assertTrue(frame.remaining() < guesses.toText().length(), frame.remaining() + " >= " + guesses.toText().length());
+        POOL.release(frame);
+    }
+
+    // Covers: multi-byte characters, unpaired surrogate, byte count < 128, >= 128, > 0xFFFF
+    @Test
+    public void testStrings() {
+        assertEquals("Ié \uD83D\uDE00 ü", roundTrip(Response.error("é \uD83D\uDE00 ü")));
+        assertEquals("Ia?b", roundTrip(Response.error("a\uD800b")), "expected the encoder's replacement");
+        final int longLength = 200;
+        assertRoundTrips(Response.error("x".repeat(longLength)));
+        final int veryLongLength = 0x10000;
+        assertRoundTrips(Response.error("ü".repeat(veryLongLength)));
+        for (String s : new String[] { "", "é \uD83D\uDE00 ü", "a\uD800b", "x".repeat(longLength), "ü".repeat(veryLongLength) }) {
+            ByteBuffer frame = BinaryProtocol.encode(Response.error(s), POOL);
+            assertEquals(Integer.BYTES + 1 + BinaryProtocol.stringSize(s), frame.remaining(), "expected stringSize to count the str");
+            POOL.release(frame);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package crossword;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CellGridTest {
+    // Partitions:
+    //     Number of entries = 0, 1, > 1
+    //     Crossings of an entry = 0, 1, > 1
+    //     Entries agree on a crossed cell's letter: yes, no
+
+    // Covers: number of entries = 0
+    @Test
+    public void testEmpty() {
+        assertEquals(0, new CellGrid(new Puzzle("", "", new ArrayList<>()).getEntries()).cellCount());
+    }
+
+    // Covers: number of entries > 1, crossings of an entry = 1, > 1, entries agree on a crossed cell's letter
+    @Test
+    public void testCrossings() {
+        Puzzle puzzle = PuzzleTest.makeSimplePuzzle();
+        CellGrid grid = new CellGrid(puzzle.getEntries());
+        int letters = 0;
+        int crossings = 0;
+        for (int wordID = 0; wordID < puzzle.getEntries().size(); wordID++) {
+            letters += puzzle.getEntries().get(wordID).getWord().length();
+            crossings += grid.crossingCount(wordID);
+            for (int k = 0; k < grid.crossingCount(wordID); k++) {
+                int otherID = grid.crossingEntry(wordID, k);
+                assertNotEquals(wordID, otherID);
+                assertEquals(grid.cell(wordID, grid.crossingOffset(wordID, k)), grid.cell(otherID, grid.crossedOffset(wordID, k)),
+                        "expected crossing entries to share a cell");
+                assertTrue(k == 0 || grid.crossingEntry(wordID, k - 1) <= otherID, "expected crossings in ID order");
+            }
+        }
+        // every letter is a cell, except that each crossing is seen from both of its entries
+        assertEquals(letters, grid.cellCount() + crossings / 2);
+
+        // star (0) crosses market (1) at star's letter 2 and market's letter 1
+        assertEquals(1, grid.crossingCount(0));
+        assertEquals(1, grid.crossingEntry(0, 0));
+        assertEquals(2, grid.crossingOffset(0, 0));
+        assertEquals(1, grid.crossedOffset(0, 0));
+        assertEquals('a', grid.correctLetter(grid.cell(0, 2)));
+        assertNotEquals(grid.cell(0, 0), grid.cell(0, 1));
+        assertSame(puzzle.getGrid(), puzzle.getGrid(), "expected the puzzle to build its grid once");
+    }
+
+    // Covers: number of entries = 1, crossings of an entry = 0, entries disagree on a crossed cell's letter
+    @Test
+    public void testInconsistentLetters() {
+        CellGrid single = new CellGrid(new Puzzle("a", "b",
+                List.of(new PuzzleEntry("star", "twinkle twinkle", Orientation.ACROSS, new Point(1, 0)))).getEntries());
+        assertEquals(4, single.cellCount());
+        assertEquals(0, single.crossingCount(0));
+
+        // cat (0) ends on market's (1) first cell with a different letter
+        CellGrid grid = new CellGrid(PuzzleTest.makeSimpleInconsistentPuzzle().getEntries());
+        int cell = grid.cell(0, 2);
+        assertEquals(cell, grid.cell(1, 0));
+        assertEquals('m', grid.correctLetter(cell), "expected the entry with the larger ID to give the letter");
+    }
+}
@@ -6,11 +6,20 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 
@@ -24,6 +33,12 @@ public class GameTest {
     //Whether a player joins a match
     //Whether a player creates a match
     //Whether a play quits a game
+    //Subscriptions: none, WATCH, PLAY; subscribed, unsubscribed
+    //Watch tick: none, > 0
+    //Watchers notified on a tick: all return, one throws
+    //Available matches: none, waiting before and after an ongoing match, after a waiting match is exited
+    //Puzzle files: consistent, inconsistent, unparsable; puzzle name taken = 0, 1, > 9 times
+    //Player logged in: before entering a match, never
 
     
     public static Game createSimpleGame() {
@@ -51,6 +66,43 @@ public class GameTest {
                 test.getPuzzleForResponse("Easy"), "not correct Puzzle entries");
     }
     
+    // Covers: puzzle files consistent, inconsistent, unparsable; puzzle name taken 0, 1, > 9 times
+    @Test
+    public void testParseGameFromFilesReportsFailures() throws IOException {
+        Path directory = Files.createTempDirectory("puzzles");
+        try {
+            // twelve puzzles named Dup, told apart by their clues
+            for (int i = 0; i < 12; i++) {
+                Files.writeString(directory.resolve(String.format("dup%02d.puzzle", i)),
+                        ">> \"Dup\" \"taken\"\n(star, \"clue" + i + "\", ACROSS, 0, 0)\n");
+            }
+            Files.writeString(directory.resolve("alone.puzzle"), ">> \"Alone\" \"one\"\n(star, \"twinkle\", ACROSS, 0, 0)\n");
+            Files.writeString(directory.resolve("bad.puzzle"), "not a puzzle");
+            Files.writeString(directory.resolve("overlap.puzzle"),
+                    ">> \"Overlap\" \"inconsistent\"\n(star, \"a\", ACROSS, 0, 0)\n(tar, \"b\", ACROSS, 0, 1)\n");
+            
+            Map<String, Exception> failures = new TreeMap<>();
+            Game game = Game.parseGameFromFiles(directory.toString(), failures);
+            assertEquals(Set.of("bad.puzzle"), failures.keySet(), "expected only the unparsable file to be reported");
+            assertTrue(failures.get("bad.puzzle") instanceof UnableToParseException);
+            Set<String> expected = new HashSet<>(List.of("Alone", "Dup"));
+            for (int i = 1; i < 12; i++) {
+                expected.add("Dup" + i);
+            }
+            assertEquals(expected, game.getPuzzleNames());
+            assertEquals("0 bs1fc 4 bs1fc clue0 bs1fc ACROSS bs1fc 0 bs1fc 0", game.getPuzzleForResponse("Dup"));
+            assertEquals("0 bs1fc 4 bs1fc clue11 bs1fc ACROSS bs1fc 0 bs1fc 0", game.getPuzzleForResponse("Dup11"),
+                    "expected names to be given in file name order");
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+    
     public void addPlayerListeners(Game test, String playerOne, String playerTwo) {
         test.addPlayListener(playerOne, new Game.PlayListener() {
             public void onChange() {
@@ -226,7 +278,7 @@ public class GameTest {
         });
         assertTrue(test.createMatch("me", "0", "Reactions", "Having Fun"));
         assertFalse(test.createMatch("you", "0", "Reactions", "Havingf Fun"));
-        assertTrue(test.createMatch("nome", "1", "Cross", "Fun Stuff"));
+        assertFalse(test.createMatch("nome", "1", "Cross", "Fun Stuff"), "expected a player who is not logged in not to create a match");
         assertFalse(test.createMatch("nome", "1", "Cross", "recreation"));
         test.exitWait("nome");
         assertEquals("0 bs1fc Having Fun", test.getAvailableMatchesForResponse());
@@ -309,4 +361,200 @@ public class GameTest {
         assertFalse(test.login("me"));
         assertFalse(test.login("you"));
     }
+    
+    // Covers: player logged in before entering a match, never
+    @Test
+    public void testPlayersMustLogInToPlay() throws IOException {
+        Game test = createSimpleGame();
+        assertFalse(test.createMatch("me", "0", "Easy", "handles"), "expected a player who is not logged in not to create a match");
+        assertTrue(test.login("me"));
+        assertTrue(test.createMatch("me", "0", "Easy", "handles"));
+        test.addWaitListener("me", () -> {});
+        assertFalse(test.joinMatch("you", "0"), "expected a player who is not logged in not to join a match");
+        assertFalse(test.tryWord("you", 0, "star"));
+        assertTrue(test.login("you"));
+        assertTrue(test.joinMatch("you", "0"));
+        test.subscribeToPlay("me", () -> {});
+        test.subscribeToPlay("you", () -> {});
+        assertTrue(test.tryWord("you", 0, "star"));
+        assertFalse(test.tryWord("me", 0, "stab"), "expected the joiner to keep its entry");
+        assertFalse(test.challengeWord("you", 0, "stab"), "expected the joiner not to challenge its own entry");
+        assertTrue(test.tryWord("you", 1, "market"));
+        assertTrue(test.tryWord("me", 2, "kettle"));
+        assertTrue(test.challengeWord("me", 0, "stab"));
+        assertTrue(test.getGuessesForResponse("me").contains("you bs1fc T bs1fc 0 bs1fc star"));
+        assertTrue(test.getGuessesForResponse("me").contains("you bs1fc F bs1fc 1 bs1fc market"));
+        assertTrue(test.getGuessesForResponse("me").contains("me bs1fc F bs1fc 2 bs1fc kettle"));
+        assertFalse(test.logout("me"), "expected a player in a match not to log out");
+    }
+    
+    //Tests that lobby changes racing on the same player or match ID only succeed once
+    @Test
+    public void testConcurrentLobbyChanges() throws InterruptedException {
+        Game test = createSimpleGame();
+        final int numThreads = 8;
+        AtomicInteger logins = new AtomicInteger();
+        AtomicInteger creates = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            final String playerID = "player" + i;
+            threads.add(new Thread(() -> {
+                if (test.login("same")) {
+                    logins.incrementAndGet();
+                }
+                test.login(playerID);
+                try {
+                    if (test.createMatch(playerID, "0", "Easy", "race")) {
+                        creates.incrementAndGet();
+                    }
+                } catch (IOException ioe) {
+                    throw new RuntimeException(ioe);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, logins.get());
+        assertEquals(1, creates.get());
+        assertEquals("0 bs1fc race", test.getAvailableMatchesForResponse());
+    }
+    
+    // Covers: WATCH subscription, subscribed then unsubscribed, number of matches = 0, > 1
+    @Test
+    public void testWatchSubscription() throws IOException {
+        Game test = createSimpleGame();
+        assertTrue(test.login("me"));
+        assertTrue(test.login("you"));
+        List<String> updates = new ArrayList<>();
+        Game.WatchListener subscriber = () -> updates.add(test.getAvailableMatchesForResponse());
+        test.subscribeToWatch(subscriber);
+        assertEquals(List.of(""), updates, "expected the current matches right away");
+        assertTrue(test.createMatch("me", "0", "Easy", "first"));
+        assertTrue(test.createMatch("you", "1", "Easy", "second"));
+        assertEquals(3, updates.size(), "expected one update per change");
+        assertTrue(test.unsubscribeFromWatch(subscriber));
+        assertFalse(test.unsubscribeFromWatch(subscriber));
+        assertTrue(test.exitWait("me"));
+        assertEquals(3, updates.size(), "expected no updates after unsubscribing");
+    }
+    
+    // Covers: available matches none, waiting before and after an ongoing match, after a
+    //         waiting match is exited; WATCH subscription
+    @Test
+    public void testAvailableMatchesListOnlyWaiting() throws IOException {
+        Game test = createSimpleGame();
+        for (String player : List.of("me", "you", "them", "other")) {
+            assertTrue(test.login(player));
+        }
+        List<String> updates = new ArrayList<>();
+        test.subscribeToWatch(() -> updates.add(test.getAvailableMatchesForResponse()));
+        assertTrue(test.createMatch("me", "0", "Easy", "first"));
+        assertTrue(test.createMatch("you", "1", "Easy", "second"));
+        assertTrue(test.createMatch("them", "2", "Easy", "third"));
+        test.addWaitListener("you", () -> { });
+        assertTrue(test.joinMatch("other", "1"));
+        assertEquals("0 bs1fc first as3fb 2 bs1fc third", test.getAvailableMatchesForResponse());
+        assertTrue(test.exitWait("them"));
+        assertEquals("0 bs1fc first", updates.get(updates.size() - 1), "expected watchers to see an exited match go");
+        assertTrue(test.exitWait("me"));
+        assertEquals("", test.getAvailableMatchesForResponse());
+    }
+    
+    // Covers: watch tick > 0, watchers notified on a tick one throws, WATCH subscription and
+    //         listener, number of matches > 1
+    @Test
+    public void testWatchTickSurvivesFailingWatcher() throws IOException, InterruptedException {
+        Game test = createSimpleGame();
+        assertTrue(test.login("me"));
+        assertTrue(test.login("you"));
+        BlockingQueue<String> updates = new LinkedBlockingQueue<>();
+        AtomicInteger calls = new AtomicInteger();
+        // fails on every change after the call made on subscribing
+        test.subscribeToWatch(() -> {
+            if (calls.getAndIncrement() > 0) {
+                throw new IllegalStateException("watcher fails");
+            }
+        });
+        test.addWatchListener(() -> {
+            throw new IllegalStateException("listener fails");
+        });
+        test.subscribeToWatch(() -> updates.add(test.getAvailableMatchesForResponse()));
+        assertEquals("", updates.take());
+        test.setWatchTick(20);
+        assertTrue(test.createMatch("me", "0", "Easy", "first"));
+        assertEquals("0 bs1fc first", updates.poll(5, TimeUnit.SECONDS), "expected the other watcher to be notified");
+        assertTrue(test.createMatch("you", "1", "Easy", "second"));
+        assertEquals("0 bs1fc first as3fb 1 bs1fc second", updates.poll(5, TimeUnit.SECONDS),
+                "expected the next tick to notify the other watcher");
+        test.setWatchTick(0);
+    }
+    
+    // Covers: watch tick > 0, WATCH subscription and listener, number of matches > 1
+    @Test
+    public void testWatchTickCoalescesChanges() throws IOException, InterruptedException {
+        Game test = createSimpleGame();
+        assertTrue(test.login("me"));
+        assertTrue(test.login("you"));
+        test.setWatchTick(TimeUnit.HOURS.toMillis(1));
+        List<String> updates = new ArrayList<>();
+        test.subscribeToWatch(() -> updates.add(test.getAvailableMatchesForResponse()));
+        AtomicInteger listened = new AtomicInteger();
+        test.addWatchListener(() -> listened.incrementAndGet());
+        assertTrue(test.createMatch("me", "0", "Easy", "first"));
+        assertTrue(test.createMatch("you", "1", "Easy", "second"));
+        assertTrue(test.exitWait("me"));
+        assertEquals(1, updates.size(), "expected no updates before the tick");
+        assertEquals(0, listened.get());
+        // setting the tick broadcasts the changes still pending
+        test.setWatchTick(0);
+        assertEquals(List.of("", "1 bs1fc second"), updates);
+        assertEquals(1, listened.get());
+    }
+    
+    // Covers: PLAY subscription, subscribed then unsubscribed, number of matches = 1
+    @Test
+    public void testPlaySubscription() throws IOException {
+        Game test = createSimpleGame();
+        assertTrue(test.login("me"));
+        assertTrue(test.login("you"));
+        AtomicInteger meUpdates = new AtomicInteger();
+        AtomicInteger youUpdates = new AtomicInteger();
+        Game.PlayListener meSubscriber = () -> meUpdates.incrementAndGet();
+        Game.PlayListener youSubscriber = () -> youUpdates.incrementAndGet();
+        assertFalse(test.subscribeToPlay("me", meSubscriber), "expected no subscription outside a match");
+        assertTrue(test.createMatch("me", "0", "Easy", "subscribed"));
+        test.addWaitListener("me", () -> { });
+        assertTrue(test.joinMatch("you", "0"));
+        assertTrue(test.subscribeToPlay("me", meSubscriber));
+        assertTrue(test.subscribeToPlay("you", youSubscriber));
+        assertEquals(1, meUpdates.get(), "expected the current play state right away");
+        // No one-shot play listeners are needed while both players are subscribed
+        assertTrue(test.tryWord("me", 0, "star"));
+        assertTrue(test.tryWord("you", 1, "market"));
+        assertEquals(3, meUpdates.get());
+        assertEquals(3, youUpdates.get());
+        assertTrue(test.unsubscribeFromPlay("me", meSubscriber));
+        assertFalse(test.unsubscribeFromPlay("me", meSubscriber));
+        assertThrows(RuntimeException.class, () -> test.tryWord("you", 2, "kettle"));
+        assertEquals(3, meUpdates.get(), "expected no updates after unsubscribing");
+    }
+    
+    // Covers: number of matches = 1, player in a match and not in a match
+    @Test
+    public void testChangesForResponse() throws IOException {
+        Game test = createSimpleGame();
+        assertTrue(test.login("me"));
+        assertTrue(test.login("you"));
+        assertEquals(null, test.getChangesForResponse("me", "0", 0), "expected null outside a match");
+        assertTrue(test.createMatch("me", "0", "Easy", "versioned"));
+        test.addWaitListener("me", () -> { });
+        assertTrue(test.joinMatch("you", "0"));
+        assertEquals("DELTA cs2fd 0 cs2fd 1 cs2fd ", test.getChangesForResponse("you", "0", 1));
+        assertTrue(test.getChangesForResponse("you", "other", 1).startsWith("SNAPSHOT cs2fd 0 cs2fd 1 cs2fd "),
+                "expected a snapshot when asking about another match");
+    }
 }
@@ -0,0 +1,96 @@
+package crossword;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class LobbyBroadcasterTest {
+    // Partitions:
+    //     Tick: 0, > 0, changed from > 0 to 0 with changes pending
+    //     Changes in a tick: 0, 1, > 1
+    //     Latencies recorded: 0, 1, > LATENCY_SAMPLES
+    //     Percentile: 50, 100, invalid
+    //     Broadcast on a tick: returns, throws
+
+    // Covers: tick 0; latencies recorded 0, 1; percentile 50, 100, invalid
+    @Test
+    public void testBroadcastsEveryChangeWithoutTick() {
+        final List<Long> broadcasts = new ArrayList<>();
+        final LobbyBroadcaster broadcaster = new LobbyBroadcaster(broadcasts::add);
+        assertEquals(0, broadcaster.getEnqueueLatencyPercentileMicros(50));
+        broadcaster.changed();
+        broadcaster.changed();
+        assertEquals(2, broadcasts.size());
+        assertEquals(2, broadcaster.getBroadcastCount());
+        broadcaster.recordEnqueueLatency(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(3));
+        assertEquals(1, broadcaster.getNotificationCount());
+        assertTrue(broadcaster.getEnqueueLatencyPercentileMicros(50) >= 3000);
+        assertEquals(broadcaster.getEnqueueLatencyPercentileMicros(50), broadcaster.getEnqueueLatencyPercentileMicros(100));
+        assertThrows(IllegalArgumentException.class, () -> broadcaster.getEnqueueLatencyPercentileMicros(0));
+    }
+
+    // Covers: tick > 0, changes in a tick 0, 1, > 1; tick changed to 0 with changes pending
+    @Test
+    public void testCoalescesChangesOnTick() throws InterruptedException {
+        final BlockingQueue<Long> broadcasts = new LinkedBlockingQueue<>();
+        final LobbyBroadcaster broadcaster = new LobbyBroadcaster(broadcasts::add);
+        broadcaster.setTickMillis(20);
+        final long first = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            broadcaster.changed();
+        }
+        final Long since = broadcasts.poll(5, TimeUnit.SECONDS);
+        assertTrue(since != null && since >= first, "expected one broadcast from the first change");
+        assertEquals(null, broadcasts.poll(100, TimeUnit.MILLISECONDS), "expected no broadcast without changes");
+        assertEquals(10, broadcaster.getChangeCount());
+        assertEquals(1, broadcaster.getBroadcastCount());
+
+        broadcaster.setTickMillis(TimeUnit.HOURS.toMillis(1));
+        broadcaster.changed();
+        broadcaster.setTickMillis(0);
+        assertEquals(1, broadcasts.size(), "expected pending changes to be broadcast");
+    }
+
+    // Covers: tick > 0, changes in a tick 1; broadcast on a tick throws
+    @Test
+    public void testKeepsTickingAfterFailedBroadcast() throws InterruptedException {
+        final BlockingQueue<Long> broadcasts = new LinkedBlockingQueue<>();
+        final LobbyBroadcaster broadcaster = new LobbyBroadcaster(since -> {
+            broadcasts.add(since);
+            if (broadcasts.size() == 1) {
+                throw new IllegalStateException("first broadcast fails");
+            }
+        });
+        broadcaster.setTickMillis(20);
+        broadcaster.changed();
+        assertTrue(broadcasts.poll(5, TimeUnit.SECONDS) != null, "expected the failing broadcast");
+        broadcaster.changed();
+        assertTrue(broadcasts.poll(5, TimeUnit.SECONDS) != null, "expected the next tick to broadcast");
+        broadcaster.setTickMillis(0);
+    }
+
+    // Covers: latencies recorded > LATENCY_SAMPLES; percentile 50, 100
+    @Test
+    public void testKeepsRecentLatencies() {
+        final LobbyBroadcaster broadcaster = new LobbyBroadcaster(since -> { });
+        final long now = System.nanoTime();
+        for (int i = 0; i < LobbyBroadcaster.LATENCY_SAMPLES; i++) {
+            broadcaster.recordEnqueueLatency(now - TimeUnit.SECONDS.toNanos(1000));
+        }
+        for (int i = 0; i < LobbyBroadcaster.LATENCY_SAMPLES; i++) {
+            broadcaster.recordEnqueueLatency(now - TimeUnit.MILLISECONDS.toNanos(i % 100));
+        }
+        assertEquals(2 * LobbyBroadcaster.LATENCY_SAMPLES, broadcaster.getNotificationCount());
+        assertTrue(broadcaster.getEnqueueLatencyPercentileMicros(100) < TimeUnit.SECONDS.toMicros(1000),
+                "expected older latencies to be dropped");
+        assertTrue(broadcaster.getEnqueueLatencyPercentileMicros(50) >= TimeUnit.MILLISECONDS.toMicros(49));
+    }
+}
@@ -0,0 +1,59 @@
+package crossword;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class LobbyIndexTest {
+    // Partitions:
+    //     Matches in the index: 0, 1, > 1
+    //     Add: waiting match, match no longer waiting
+    //     Remove: match in the index, match not in it
+    //     Listing: unchanged since last listed, after an add, after a remove, with a match
+    //         that left the waiting state but is not yet removed
+
+    /* A waiting match of a simple puzzle. */
+    private static Match waiting(String matchId, String description) {
+        return new Match(matchId, description, PuzzleTest.makeSimplePuzzle(), "player" + matchId);
+    }
+
+    // Covers: 0, 1, > 1 matches; add waiting match; remove match in the index, not in it;
+    //         listing unchanged, after an add, after a remove
+    @Test
+    public void testListsWaitingMatches() {
+        final LobbyIndex lobby = new LobbyIndex();
+        assertEquals("", lobby.getListingForResponse());
+        final Match first = waiting("0", "first");
+        final Match second = waiting("1", "second");
+        lobby.add(first);
+        assertEquals("0 bs1fc first", lobby.getListingForResponse());
+        lobby.add(second);
+        final String listing = lobby.getListingForResponse();
+        assertEquals("0 bs1fc first as3fb 1 bs1fc second", listing);
+        assertSame(listing, lobby.getListingForResponse(), "expected the listing to be cached");
+        assertTrue(lobby.remove(first));
+        assertFalse(lobby.remove(first));
+        assertEquals(1, lobby.size());
+        assertEquals("1 bs1fc second", lobby.getListingForResponse());
+    }
+
+    // Covers: add match no longer waiting; listing with a match that left the waiting state
+    @Test
+    public void testSkipsMatchesNoLongerWaiting() {
+        final LobbyIndex lobby = new LobbyIndex();
+        final Match joined = waiting("0", "joined");
+        joined.joinMatch("other");
+        lobby.add(joined);
+        assertEquals(0, lobby.size());
+        final Match first = waiting("1", "first");
+        final Match second = waiting("2", "second");
+        lobby.add(first);
+        lobby.add(second);
+        first.joinMatch("other");
+        lobby.add(waiting("3", "third"));
+        assertEquals("2 bs1fc second as3fb 3 bs1fc third", lobby.getListingForResponse());
+    }
+}
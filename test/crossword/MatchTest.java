@@ -18,6 +18,9 @@ public class MatchTest {
     //     Whether or not a player attempts a challenge
     //     Whether or not a player attempts a try
     //     Whether or not a player forfeits a match
+    //     Changes requested since: before the first version, a logged version, the current version, a future version
+    //     Word ID of a try or challenge: of an entry, negative, past the last entry
+    //     Player of a try or challenge: by id, by handle, by a handle neither player has
     
     
     //This test covers 2 player match on a small puzzle based on empty and partially filled puzzles to completion
@@ -149,4 +152,70 @@ public class MatchTest {
         assertEquals("DONE cs2fd me bs1fc 0 bs1fc 0 as3fb you bs1fc 0 bs1fc 0 cs2fd Tie!", tester.showScore());
 
     }
+    
+    //This test covers a match cancelled while waiting and guesses in a match that is not ongoing
+    @Test
+    public void testCancelWaiting() throws IOException, UnableToParseException {
+        Puzzle template = Puzzle.parseFromFile("puzzles/cross.puzzle");
+        Match tester = new Match("0", "this is a test", template, "me");
+        assertFalse(tester.tryWord("me", 0, "cat"));
+        assertTrue(tester.cancelWaiting());
+        assertTrue(tester.isDone());
+        assertFalse(tester.cancelWaiting());
+        assertFalse(tester.joinMatch("you"));
+        assertFalse(tester.challengeWord("you", 0, "mat"));
+    }
+    
+    //This test covers changes requested since before the first version, a logged version, the current version and a future version
+    @Test
+    public void testChangesSince() throws IOException, UnableToParseException {
+        Puzzle template = Puzzle.parseFromFile("puzzles/cross.puzzle");
+        Match tester = new Match("0", "this is a test", template, "me");
+        assertTrue(tester.joinMatch("you"));
+        assertTrue(tester.tryWord("me", 0, "mat"));
+        assertTrue(tester.challengeWord("you", 0, "cat"));
+        assertEquals("SNAPSHOT cs2fd 0 cs2fd 3 cs2fd " + tester.getGuessesForResponse(), tester.getChangesForResponse(-1));
+        assertEquals("DELTA cs2fd 0 cs2fd 3 cs2fd "
+                + "ADD bs1fc me bs1fc 0 bs1fc mat bs1fc ACROSS bs1fc 1 bs1fc 0 as3fb "
+                + "ADD bs1fc you bs1fc 0 bs1fc cat bs1fc ACROSS bs1fc 1 bs1fc 0 as3fb "
+                + "CONFIRM bs1fc 0 as3fb SCORE bs1fc you bs1fc 2", tester.getChangesForResponse(1));
+        assertEquals("DELTA cs2fd 0 cs2fd 3 cs2fd ", tester.getChangesForResponse(3));
+        assertTrue(tester.getChangesForResponse(4).startsWith("SNAPSHOT cs2fd 0 cs2fd 3 cs2fd "));
+        assertTrue(tester.tryWord("me", 1, "mat"));
+        assertEquals("DELTA cs2fd 0 cs2fd 4 cs2fd ADD bs1fc me bs1fc 1 bs1fc mat bs1fc DOWN bs1fc 0 bs1fc 1 as3fb "
+                + "STATE bs1fc DONE", tester.getChangesForResponse(3));
+    }
+    
+    // Covers: word ID of an entry, negative, past the last entry
+    @Test
+    public void testWordIDsOutsidePuzzle() throws IOException, UnableToParseException {
+        Puzzle template = Puzzle.parseFromFile("puzzles/cross.puzzle");
+        Match tester = new Match("0", "this is a test", template, "me");
+        tester.joinMatch("you");
+        assertFalse(tester.tryWord("me", -1, "mat"));
+        assertFalse(tester.tryWord("me", 2, "mat"));
+        assertTrue(tester.tryWord("me", 0, "mat"));
+        assertFalse(tester.challengeWord("you", -1, "cat"));
+        assertFalse(tester.challengeWord("you", 2, "cat"));
+        assertTrue(tester.isOngoing());
+    }
+    
+    // Covers: try and challenge by handle, by a handle neither player has, two players,
+    //         puzzle filled to completion
+    @Test
+    public void testPlayersByHandle() throws IOException, UnableToParseException {
+        Puzzle template = Puzzle.parseFromFile("puzzles/cross.puzzle");
+        Match tester = new Match("0", "this is a test", template, "me", 7);
+        tester.joinMatch("you", 3);
+        assertFalse(tester.tryWord(5, 0, "mat"), "expected a handle neither player has to be refused");
+        assertFalse(tester.challengeWord(Player.NO_HANDLE, 0, "mat"));
+        assertTrue(tester.tryWord(7, 0, "mat"));
+        assertFalse(tester.tryWord(3, 0, "cat"));
+        assertFalse(tester.challengeWord(7, 0, "cat"));
+        assertTrue(tester.challengeWord(3, 0, "cat"));
+        assertFalse(tester.challengeWord(3, 1, "mat"));
+        assertTrue(tester.tryWord("me", 1, "mat"));
+        assertTrue(tester.isDone());
+        assertEquals("DONE cs2fd me bs1fc 0 bs1fc 1 as3fb you bs1fc 2 bs1fc 3 cs2fd you wins!", tester.showScore());
+    }
 }
@@ -0,0 +1,241 @@
+package crossword;
+
+import static crossword.TextServerTest.connectToServer;
+import static crossword.TextServerTest.startServer;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class NioTextServerTest {
+    // Partitions:
+    //     Protocol: text, binary
+    //     Number of connecting clients = 1, > 1
+    //     Requests per read: one line, several lines in one write,
+    //                        more than MAX_PENDING_RESPONSES lines before reading any response
+    //     Listener connections: none, one parked WATCH connection, one SUBSCRIBE WATCH connection that never reads
+    //     Connection ends with: client close, quit, line longer than MAX_LINE_BYTES,
+    //                           disconnected as a slow consumer
+
+    private static final String PUZZLES_AND_NO_MATCHES =
+            "V6031 as3fb Easy as3fb SimpleComments as3fb Cross as3fb Easy1 as3fb Reactions as3fb Metamorphic cs2fd ";
+
+    /* Assert that the server closed the connection; it may reset it if it left input unread. */
+    private static void assertClosed(BufferedReader in) throws IOException {
+        try {
+            assertNull(in.readLine(), "expected the server to close the connection");
+        } catch (SocketException se) {
+            // connection reset
+        }
+    }
+
+    /**
+     * Tests that assertions are enabled
+     */
+    @Test
+    public void testAssertionsEnabled() {
+        assertThrows(AssertionError.class, () -> { assert false; },
+                "make sure assertions are enabled with VM argument '-ea'");
+    }
+
+    // This test covers
+    //     Number of connecting clients = 1
+    //     Requests per read: one line
+    //     Listener connections: none
+    //     Connection ends with: quit
+    @Test
+    public void testLoginAndQuit() throws IOException, UnableToParseException {
+        final NioTextServer server = new NioTextServer(Game.parseGameFromFiles("puzzles/"), 0);
+        final Thread thread = startServer(server::serve);
+        try (
+            Socket socket = connectToServer(thread, server.port());
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8), true);
+        ) {
+            out.println("player420 LOGIN");
+            assertEquals(PUZZLES_AND_NO_MATCHES, in.readLine());
+            out.println("player420 TRY one word");
+            assertEquals("IExpected number instead of word", in.readLine());
+            out.println("player420 quit");
+            assertNull(in.readLine(), "expected the server to close the connection");
+        }
+    }
+
+    // This test covers
+    //     Number of connecting clients > 1
+    //     Requests per read: several lines in one write
+    //     Listener connections: one parked WATCH connection
+    //     Connection ends with: client close
+    @Test
+    public void testWatchIsPushed() throws IOException, UnableToParseException {
+        final NioTextServer server = new NioTextServer(Game.parseGameFromFiles("puzzles/"), 0);
+        final Thread thread = startServer(server::serve);
+        try (
+            Socket watchSocket = connectToServer(thread, server.port());
+            BufferedReader watchIn = new BufferedReader(new InputStreamReader(watchSocket.getInputStream(), UTF_8));
+            PrintWriter watchOut = new PrintWriter(new OutputStreamWriter(watchSocket.getOutputStream(), UTF_8), true);
+            Socket socket = connectToServer(thread, server.port());
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8), true);
+        ) {
+            watchOut.println("player360 WATCH");
+            // Requests on one connection are handled in order, so WATCH is registered
+            //  once the LOGIN response arrives
+            watchOut.println("player360 LOGIN");
+            assertEquals(PUZZLES_AND_NO_MATCHES, watchIn.readLine());
+
+            out.print("player420 LOGIN\nplayer420 NEW 0 Easy \"easy puzzle\"\n");
+            out.flush();
+            assertEquals(PUZZLES_AND_NO_MATCHES, in.readLine());
+            assertEquals("V", in.readLine());
+            assertEquals("V0 bs1fc easy puzzle", watchIn.readLine());
+        }
+    }
+
+    // This test covers
+    //     Number of connecting clients = 1
+    //     Requests per read: one line
+    //     Listener connections: none
+    //     Connection ends with: line longer than MAX_LINE_BYTES
+    @Test
+    public void testOverlongLineCloses() throws IOException, UnableToParseException {
+        final NioTextServer server = new NioTextServer(Game.parseGameFromFiles("puzzles/"), 0);
+        final Thread thread = startServer(server::serve);
+        try (
+            Socket socket = connectToServer(thread, server.port());
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8), true);
+        ) {
+            out.println("player420 LOGIN");
+            assertEquals(PUZZLES_AND_NO_MATCHES, in.readLine());
+            out.print("player420 LOGIN " + "a".repeat(NioTextServer.MAX_LINE_BYTES));
+            out.flush();
+            assertClosed(in);
+        }
+    }
+
+    // This test covers
+    //     Number of connecting clients = 1
+    //     Requests per read: more than MAX_PENDING_RESPONSES lines before reading any response
+    //     Listener connections: none
+    //     Connection ends with: quit
+    @Test
+    public void testPipelinedRequestsAnsweredInOrder() throws IOException, UnableToParseException {
+        final NioTextServer server = new NioTextServer(Game.parseGameFromFiles("puzzles/"), 0);
+        final Thread thread = startServer(server::serve);
+        final int requests = 4 * NioTextServer.MAX_PENDING_RESPONSES;
+        try (
+            Socket socket = connectToServer(thread, server.port());
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8), true);
+        ) {
+            final StringBuilder burst = new StringBuilder();
+            for (int i = 0; i < requests; i++) {
+                burst.append("player" + i + " LOGIN\n");
+            }
+            burst.append("player0 quit\n");
+            out.print(burst);
+            out.flush();
+            for (int i = 0; i < requests; i++) {
+                assertEquals(PUZZLES_AND_NO_MATCHES, in.readLine(), "response " + i);
+            }
+            assertNull(in.readLine(), "expected the server to close the connection");
+        }
+    }
+
+    // This test covers
+    //     Number of connecting clients > 1
+    //     Requests per read: one line
+    //     Listener connections: one SUBSCRIBE WATCH connection that never reads
+    //     Connection ends with: disconnected as a slow consumer
+    @Test
+    public void testSlowWatcherDisconnected() throws IOException, UnableToParseException {
+        final int maxQueued = 2;
+        final long writeTimeoutMillis = 200;
+        final NotificationDispatcher dispatcher = new NotificationDispatcher(1, maxQueued, writeTimeoutMillis);
+        final NioTextServer server = new NioTextServer(Game.parseGameFromFiles("puzzles/"), 0, dispatcher);
+        final Thread thread = startServer(server::serve);
+        final int maxMatches = 5000;
+        try (
+            Socket watchSocket = connectToServer(thread, server.port());
+            BufferedReader watchIn = new BufferedReader(new InputStreamReader(watchSocket.getInputStream(), UTF_8));
+            PrintWriter watchOut = new PrintWriter(new OutputStreamWriter(watchSocket.getOutputStream(), UTF_8), true);
+            Socket socket = connectToServer(thread, server.port());
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8), true);
+        ) {
+            watchOut.println("player360 SUBSCRIBE WATCH");
+            assertEquals("V", watchIn.readLine());
+
+            // every new match grows the listing sent to the watcher, which never reads it
+            for (int i = 0; i < maxMatches && dispatcher.getDisconnectedCount() == 0; i++) {
+                out.println("player" + i + " LOGIN");
+                assertTrue(in.readLine().startsWith("V"));
+                out.println("player" + i + " NEW " + i + " Easy \"a waiting match with a long description\"");
+                assertEquals("V", in.readLine());
+            }
+            assertEquals(1, dispatcher.getDisconnectedCount(), "expected the watcher to be disconnected");
+            // the server still serves the other connection
+            out.println("player420 LOGIN");
+            assertTrue(in.readLine().startsWith("V"));
+        }
+    }
+
+    // This test covers
+    //     Protocol: binary
+    //     Number of connecting clients > 1
+    //     Requests per read: one line
+    //     Listener connections: one parked WATCH connection
+    //     Connection ends with: quit
+    @Test
+    public void testBinaryProtocol() throws IOException, UnableToParseException {
+        final NioTextServer server = new NioTextServer(Game.parseGameFromFiles("puzzles/"), 0);
+        final Thread thread = startServer(server::serve);
+        try (
+            Socket socket = connectToServer(thread, server.port());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            Socket textSocket = connectToServer(thread, server.port());
+            BufferedReader textIn = new BufferedReader(new InputStreamReader(textSocket.getInputStream(), UTF_8));
+            PrintWriter textOut = new PrintWriter(new OutputStreamWriter(textSocket.getOutputStream(), UTF_8), true);
+        ) {
+            out.write(BinaryProtocol.MAGIC);
+            byte[] magic = new byte[BinaryProtocol.MAGIC.length];
+            in.readFully(magic);
+            assertTrue(Arrays.equals(BinaryProtocol.MAGIC, magic), "expected the server to accept the binary protocol");
+
+            BinaryProtocol.writeRequest(out, "player360 WATCH");
+            BinaryProtocol.writeRequest(out, "player360 LOGIN");
+            assertEquals(PUZZLES_AND_NO_MATCHES, BinaryProtocol.decodeToText(BinaryProtocol.readResponse(in)));
+            BinaryProtocol.writeRequest(out, "player360 TRY 0 0 star");
+            assertEquals(ResponseType.ERROR.code(), BinaryProtocol.readResponse(in).get(),
+                    "expected an error frame for a player not in a match");
+
+            textOut.println("player420 LOGIN");
+            assertEquals(PUZZLES_AND_NO_MATCHES, textIn.readLine());
+            textOut.println("player420 NEW 0 Easy \"easy puzzle\"");
+            assertEquals("V", textIn.readLine());
+            assertEquals("V0 bs1fc easy puzzle", BinaryProtocol.decodeToText(BinaryProtocol.readResponse(in)),
+                    "expected the WATCH notification as a binary frame");
+
+            BinaryProtocol.writeRequest(out, "player360 quit");
+            assertNull(BinaryProtocol.readResponse(in), "expected the server to close the connection");
+        }
+    }
+}
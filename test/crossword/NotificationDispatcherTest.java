@@ -0,0 +1,195 @@
+package crossword;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+public class NotificationDispatcherTest {
+    // Partitions:
+    //     Outbox: blocking, non-blocking
+    //     Notifications sent to an outbox: 1, > 1
+    //     Client: keeps up, blocked until its queue overflows, blocked past the write timeout,
+    //             delivery throws an unchecked exception
+    //     Other outboxes: none, one whose client is blocked on every delivery thread kept idle
+    //     Outbox closed: no, yes before sending
+
+    private static final long TIMEOUT_MILLIS = 3000;
+
+    /* Waits until condition holds or fails after TIMEOUT_MILLIS. */
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting");
+            Thread.sleep(5);
+        }
+    }
+
+    /* Delivery whose writes block until released. */
+    private static class BlockedDelivery implements NotificationDispatcher.Delivery {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch writing = new CountDownLatch(1);
+
+        @Override public void deliver(Response response) {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        public void close() { release.countDown(); }
+    }
+
+    @Test
+    public void testAssertionsEnabled() {
+        assertThrows(AssertionError.class, () -> { assert false; },
+                "make sure assertions are enabled with VM argument '-ea'");
+    }
+
+    // Covers: notifications sent > 1, client keeps up, outbox not closed
+    @Test
+    public void testDeliversInOrder() throws InterruptedException {
+        final NotificationDispatcher dispatcher = new NotificationDispatcher(2, 100, TIMEOUT_MILLIS);
+        final StringWriter client = new StringWriter();
+        final NotificationDispatcher.Outbox outbox = dispatcher.open(
+                response -> client.write(response.toText() + "\n"), () -> fail("closed"));
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            outbox.send(Response.error("" + i));
+            expected.append("I" + i + "\n");
+        }
+        awaitTrue(() -> dispatcher.getDeliveredCount() == 50);
+        assertEquals(expected.toString(), client.toString());
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertEquals(0, dispatcher.getDisconnectedCount());
+        assertTrue(dispatcher.getMaxLatencyMicros() >= dispatcher.getMeanLatencyMicros());
+    }
+
+    // Covers: notifications sent > 1, client blocked until its queue overflows
+    @Test
+    public void testSlowConsumerOverflowDisconnected() throws InterruptedException {
+        final NotificationDispatcher dispatcher = new NotificationDispatcher(1, 2, TimeUnit.MINUTES.toMillis(1));
+        final BlockedDelivery client = new BlockedDelivery();
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        final NotificationDispatcher.Outbox outbox = dispatcher.open(client, () -> {
+            disconnected.countDown();
+            client.close();
+        });
+        outbox.send(Response.error("first"));
+        assertTrue(client.writing.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        outbox.send(Response.error("second"));
+        outbox.send(Response.error("third"));
+        assertEquals(2, dispatcher.getQueueDepth());
+        outbox.send(Response.error("fourth")); // overflows, returns without blocking
+        assertTrue(disconnected.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(1, dispatcher.getDisconnectedCount());
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    // Covers: notifications sent = 1, client blocked past the write timeout
+    @Test
+    public void testStuckWriteDisconnected() throws InterruptedException {
+        final NotificationDispatcher dispatcher = new NotificationDispatcher(1, 10, 50);
+        final BlockedDelivery client = new BlockedDelivery();
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        final NotificationDispatcher.Outbox outbox = dispatcher.open(client, () -> {
+            disconnected.countDown();
+            client.close();
+        });
+        outbox.send(Response.error("V"));
+        assertTrue(disconnected.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(1, dispatcher.getDisconnectedCount());
+    }
+
+    // Covers: notifications sent = 1, outbox closed before sending
+    @Test
+    public void testClosedOutboxDropsNotifications() throws InterruptedException {
+        final NotificationDispatcher dispatcher = new NotificationDispatcher(1, 10, TIMEOUT_MILLIS);
+        final StringWriter client = new StringWriter();
+        final NotificationDispatcher.Outbox outbox = dispatcher.open(
+                response -> client.write(response.toText()), () -> fail("closed"));
+        outbox.close();
+        outbox.send(Response.error("V"));
+        Thread.sleep(50);
+        assertEquals("", client.toString());
+        assertEquals(0, dispatcher.getDeliveredCount());
+        assertEquals(0, dispatcher.getDisconnectedCount());
+    }
+
+    // Covers: notifications sent > 1, delivery throws an unchecked exception
+    @Test
+    public void testFailedDeliveryDisconnected() throws InterruptedException {
+        final NotificationDispatcher dispatcher = new NotificationDispatcher(1, 100, TimeUnit.MINUTES.toMillis(1));
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        final StringWriter client = new StringWriter();
+        final NotificationDispatcher.Outbox outbox = dispatcher.open(response -> {
+            if (response.toText().equals("Ibad")) {
+                throw new IllegalArgumentException("cannot encode " + response);
+            }
+            client.write(response.toText() + "\n");
+        }, disconnected::countDown);
+        outbox.send(Response.error("0"));
+        outbox.send(Response.error("bad"));
+        // long before the write timeout
+        assertTrue(disconnected.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "expected a disconnect");
+        assertEquals(1, dispatcher.getDisconnectedCount());
+        outbox.send(Response.error("1"));
+        assertEquals("I0\n", client.toString());
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    // Covers: blocking outbox, notifications sent = 1, client keeps up,
+    //         other outboxes: one whose client is blocked on every delivery thread kept idle
+    @Test
+    public void testBlockedClientDoesNotDelayOthers() throws InterruptedException {
+        final NotificationDispatcher dispatcher = new NotificationDispatcher(1, 10, TimeUnit.MINUTES.toMillis(1));
+        final BlockedDelivery blocked = new BlockedDelivery();
+        final NotificationDispatcher.Outbox blockedOutbox = dispatcher.open(blocked, blocked::close);
+        blockedOutbox.send(Response.error("stuck"));
+        assertTrue(blocked.writing.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        final StringWriter client = new StringWriter();
+        final NotificationDispatcher.Outbox outbox = dispatcher.open(
+                response -> client.write(response.toText() + "\n"), () -> fail("closed"));
+        outbox.send(Response.error("V"));
+        awaitTrue(() -> dispatcher.getDeliveredCount() == 1);
+        assertEquals("IV\n", client.toString());
+        assertEquals(0, dispatcher.getDisconnectedCount());
+        blocked.close();
+    }
+
+    // Covers: non-blocking outbox, notifications sent > 1, client blocked until its queue overflows
+    @Test
+    public void testNonBlockingOutbox() {
+        final NotificationDispatcher dispatcher = new NotificationDispatcher(1, 2, TimeUnit.MINUTES.toMillis(1));
+        final List<String> queued = new ArrayList<>();
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        final NotificationDispatcher.Outbox outbox = dispatcher.openNonBlocking(
+                response -> queued.add(response.toText()), disconnected::countDown);
+        final long sentNanos = System.nanoTime();
+        outbox.send(Response.error("0"));
+        outbox.send(Response.error("1"));
+        // handed over on this thread, but not yet written
+        assertEquals(List.of("I0", "I1"), queued);
+        assertEquals(2, dispatcher.getQueueDepth());
+        assertEquals(0, dispatcher.getDeliveredCount());
+
+        outbox.written(sentNanos);
+        assertEquals(1, dispatcher.getDeliveredCount());
+        assertEquals(1, dispatcher.getQueueDepth());
+        outbox.send(Response.error("2"));
+        assertEquals(1, disconnected.getCount(), "expected no disconnect yet");
+        outbox.send(Response.error("3")); // overflows
+        assertEquals(0, disconnected.getCount(), "expected a disconnect");
+        assertEquals(List.of("I0", "I1", "I2"), queued);
+        assertEquals(1, dispatcher.getDisconnectedCount());
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+}
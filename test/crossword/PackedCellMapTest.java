@@ -0,0 +1,57 @@
+package crossword;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class PackedCellMapTest {
+    // Partitions:
+    //     Cell: row and column >= 0, negative, Integer.MIN_VALUE or MAX_VALUE
+    //     Put: new cell, cell already with a value, more cells than expected (grows)
+    //     Get: cell with a value, cell without
+    //     Value: 0, > 0, < 0
+
+    // Covers: cell >= 0, negative, MIN_VALUE or MAX_VALUE; put new cell, cell with a value;
+    //         get cell with a value, without; value 0, > 0, < 0
+    @Test
+    public void testPutAndGet() {
+        final PackedCellMap map = new PackedCellMap(4);
+        assertEquals(-1, map.get(PackedCellMap.key(0, 0)));
+        map.put(PackedCellMap.key(0, 0), 0);
+        map.put(PackedCellMap.key(-1, 2), 7);
+        map.put(PackedCellMap.key(Integer.MAX_VALUE, Integer.MIN_VALUE), 9);
+        assertEquals(0, map.get(PackedCellMap.key(0, 0)));
+        assertEquals(7, map.get(PackedCellMap.key(-1, 2)));
+        assertEquals(-1, map.get(PackedCellMap.key(2, -1)));
+        assertEquals(9, map.get(PackedCellMap.key(Integer.MAX_VALUE, Integer.MIN_VALUE)));
+        assertNotEquals(PackedCellMap.key(0, -1), PackedCellMap.key(-1, 0));
+        map.put(PackedCellMap.key(-1, 2), 8);
+        assertEquals(8, map.get(PackedCellMap.key(-1, 2)));
+        assertEquals(3, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.put(PackedCellMap.key(1, 1), -1));
+    }
+
+    // Covers: put more cells than expected; get cells with and without values
+    @Test
+    public void testGrowsToHoldGrid() {
+        final PackedCellMap map = new PackedCellMap(0);
+        final Map<Point, Integer> expected = new HashMap<>();
+        for (int row = 0; row < 100; row++) {
+            for (int col = 0; col < 100; col++) {
+                map.put(PackedCellMap.key(row, col), row * 100 + col);
+                expected.put(new Point(row, col), row * 100 + col);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Point, Integer> cell : expected.entrySet()) {
+            assertEquals(cell.getValue(), map.get(PackedCellMap.key(cell.getKey().getRow(), cell.getKey().getCol())));
+        }
+        assertEquals(-1, map.get(PackedCellMap.key(100, 0)));
+        assertEquals(-1, map.get(PackedCellMap.key(0, 100)));
+    }
+}
@@ -1,9 +1,14 @@
 package crossword;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
@@ -17,6 +22,12 @@ public class PlayablePuzzleTest {
     //      Whether a player entry is added to the puzzle
     //      Whether a player entry is removed from the puzzle
     //      Whether a confirmed entry is added to the puzzle
+    //      Player entries fill the puzzle: no cells, some cells, all cells with a wrong letter,
+    //          all cells correctly, after replacing an entry, after deleting an entry
+    //      Player entries conflicting with a word: none, one, more than one, the word's own entry
+    //      Slot of an entry: no guess, guessed, guess replaced by another player, confirmed, deleted
+    //      Seat of an entry's owner: the match's creator, its joiner, a seat given to another
+    //          player, a seat nobody is in, no such seat
 
     // Covers: length of name = 0, length of description = 0, number of puzzle entries in playerEntries = 0,
     //         number of puzzle entries in confirmedEntries = 0, number of puzzle entries in correctEntries = 0
@@ -40,7 +51,8 @@ public class PlayablePuzzleTest {
         Puzzle puzzle = new Puzzle("a", "b", entries);
         PlayablePuzzle playable = new PlayablePuzzle(puzzle);
         Player player = new Player("p");
-        assertTrue(playable.addPlayerEntry(0, player, puzzleEntry));
+        playable.seatPlayer(PlayablePuzzle.SEAT_ONE, player);
+        assertTrue(playable.addPlayerEntry(0, PlayablePuzzle.SEAT_ONE, puzzleEntry));
         assertTrue(playable.addConfirmedEntry(0, puzzleEntry));
     }
     
@@ -61,12 +73,123 @@ public class PlayablePuzzleTest {
         Puzzle puzzle = new Puzzle("simple", "simplepuzzle", entries);
         PlayablePuzzle playable = new PlayablePuzzle(puzzle);
         Player player = new Player("p");
-        assertTrue(playable.addPlayerEntry(0, player, new PuzzleEntry("stan", "twinkle twinkle", Orientation.ACROSS, new Point(1, 0))));
-        assertTrue(playable.addPlayerEntry(1, player, new PuzzleEntry("father", "Farmers ______", Orientation.DOWN, new Point(0, 2))));
-        assertTrue(playable.addPlayerEntry(2, player, puzzleEntryThree));
-        assertTrue(playable.addPlayerEntry(3, player, puzzleEntryFour));
+        playable.seatPlayer(PlayablePuzzle.SEAT_ONE, player);
+        assertTrue(playable.addPlayerEntry(0, PlayablePuzzle.SEAT_ONE, new PuzzleEntry("stan", "twinkle twinkle", Orientation.ACROSS, new Point(1, 0))));
+        assertTrue(playable.addPlayerEntry(1, PlayablePuzzle.SEAT_ONE, new PuzzleEntry("father", "Farmers ______", Orientation.DOWN, new Point(0, 2))));
+        assertTrue(playable.addPlayerEntry(2, PlayablePuzzle.SEAT_ONE, puzzleEntryThree));
+        assertTrue(playable.addPlayerEntry(3, PlayablePuzzle.SEAT_ONE, puzzleEntryFour));
         assertTrue(playable.addConfirmedEntry(2, puzzleEntryThree));
         assertTrue(playable.addConfirmedEntry(3, puzzleEntryFour));
         assertTrue(playable.deletePlayerEntry(0));
     }
+    
+    // Covers: player entries fill no cells, some cells, all cells with a wrong letter, all cells correctly,
+    //         after replacing an entry, after deleting an entry, number of puzzle entries in correctEntries = 0, > 1
+    @Test
+    public void testFilledCorrectly() {
+        assertTrue(new PlayablePuzzle(new Puzzle("", "", new ArrayList<>())).isFilledCorrectly(),
+                "expected a puzzle without cells to be filled");
+        
+        List<PuzzleEntry> entries = new ArrayList<PuzzleEntry>();
+        PuzzleEntry star = new PuzzleEntry("star", "twinkle twinkle", Orientation.ACROSS, new Point(1, 0));
+        PuzzleEntry market = new PuzzleEntry("market", "Farmers ______", Orientation.DOWN, new Point(0, 2));
+        entries.add(star);
+        entries.add(market);
+        PlayablePuzzle playable = new PlayablePuzzle(new Puzzle("simple", "simplepuzzle", entries));
+        Player player = new Player("p");
+        playable.seatPlayer(PlayablePuzzle.SEAT_ONE, player);
+        assertFalse(playable.isFilledCorrectly());
+        playable.addPlayerEntry(1, PlayablePuzzle.SEAT_ONE, market);
+        assertFalse(playable.isFilledCorrectly(), "expected star's other cells to be empty");
+        playable.addPlayerEntry(0, PlayablePuzzle.SEAT_ONE, new PuzzleEntry("stan", "twinkle twinkle", Orientation.ACROSS, new Point(1, 0)));
+        assertFalse(playable.isFilledCorrectly(), "expected the last cell of stan to be wrong");
+        playable.addPlayerEntry(0, PlayablePuzzle.SEAT_ONE, star);
+        assertTrue(playable.isFilledCorrectly());
+        playable.deletePlayerEntry(1);
+        assertFalse(playable.isFilledCorrectly(), "expected market's other cells to be empty");
+        playable.addPlayerEntry(1, PlayablePuzzle.SEAT_ONE, market);
+        assertTrue(playable.isFilledCorrectly());
+    }
+    
+    // Covers: player entries conflicting with a word: none, one, more than one, the word's own entry
+    @Test
+    public void testConflictingEntries() {
+        PlayablePuzzle playable = new PlayablePuzzle(PuzzleTest.makeSimplePuzzle());
+        Player player = new Player("p");
+        playable.seatPlayer(PlayablePuzzle.SEAT_ONE, player);
+        assertEquals(List.of(), playable.getConflictingEntries(0, "stab"), "expected no player entries to conflict");
+        // market crosses star at its letter 1 and kettle at its letter 3
+        playable.addPlayerEntry(1, PlayablePuzzle.SEAT_ONE, new PuzzleEntry("market", "Farmers ______", Orientation.DOWN, new Point(0, 2)));
+        playable.addPlayerEntry(0, PlayablePuzzle.SEAT_ONE, new PuzzleEntry("stab", "twinkle twinkle", Orientation.ACROSS, new Point(1, 0)));
+        assertEquals(List.of(), playable.getConflictingEntries(0, "star"), "expected a word's own entry not to conflict");
+        assertEquals(List.of(1), playable.getConflictingEntries(0, "stor"));
+        assertEquals(List.of(), playable.getConflictingEntries(1, "market"));
+        assertEquals(List.of(0), playable.getConflictingEntries(1, "morket"));
+        playable.addPlayerEntry(2, PlayablePuzzle.SEAT_ONE, new PuzzleEntry("kettle", "It's tea time!", Orientation.ACROSS, new Point(3, 2)));
+        assertEquals(List.of(0, 2), playable.getConflictingEntries(1, "morxet"));
+    }
+    
+    // Covers: slot with no guess, guessed, guess replaced by another player, confirmed, deleted
+    @Test
+    public void testSlotsReadInPlace() {
+        PlayablePuzzle playable = new PlayablePuzzle(PuzzleTest.makeSimplePuzzle());
+        Player me = new Player("me");
+        Player you = new Player("you");
+        playable.seatPlayer(PlayablePuzzle.SEAT_ONE, me);
+        playable.seatPlayer(PlayablePuzzle.SEAT_TWO, you);
+        PuzzleEntry market = new PuzzleEntry("market", "Farmers ______", Orientation.DOWN, new Point(0, 2));
+        PuzzleEntry stab = new PuzzleEntry("stab", "twinkle twinkle", Orientation.ACROSS, new Point(1, 0));
+        assertEquals(8, playable.getEntryCount());
+        assertEquals(market, playable.getCorrectEntry(1));
+        assertEquals(PlayablePuzzle.NO_SEAT, playable.getOwner(1));
+        assertEquals(null, playable.getPlayerEntry(1));
+        assertFalse(playable.isConfirmed(1));
+        
+        playable.addPlayerEntry(1, PlayablePuzzle.SEAT_ONE, market);
+        playable.addPlayerEntry(0, PlayablePuzzle.SEAT_ONE, stab);
+        assertEquals(PlayablePuzzle.SEAT_ONE, playable.getOwner(0));
+        assertEquals(stab, playable.getPlayerEntry(0));
+        assertEquals(2, playable.countPlayerEntries(PlayablePuzzle.SEAT_ONE));
+        assertTrue(playable.hasConflictingEntries(1, "morket"));
+        assertFalse(playable.hasConflictingEntries(1, "market"));
+        Map<Integer, PuzzleEntry> snapshot = playable.getFlattenedPlayerEntries();
+        
+        playable.addPlayerEntry(1, PlayablePuzzle.SEAT_TWO, market);
+        playable.addConfirmedEntry(1, market);
+        assertEquals(PlayablePuzzle.SEAT_TWO, playable.getOwner(1));
+        assertTrue(playable.isConfirmed(1));
+        assertEquals(1, playable.countPlayerEntries(PlayablePuzzle.SEAT_ONE));
+        assertEquals(1, playable.countPlayerEntries(PlayablePuzzle.SEAT_TWO));
+        assertTrue(playable.deletePlayerEntry(0));
+        assertFalse(playable.deletePlayerEntry(0));
+        assertEquals(PlayablePuzzle.NO_SEAT, playable.getOwner(0));
+        assertEquals(Map.of(1, market), playable.getFlattenedPlayerEntries());
+        assertEquals(Map.of(0, stab, 1, market), snapshot, "expected a snapshot not to change");
+        assertEquals("you bs1fc T bs1fc 1 bs1fc market bs1fc DOWN bs1fc 0 bs1fc 2", playable.getGuessesForResponse());
+    }
+    
+    // Covers: seat of the match's creator, of its joiner, seat given to another player,
+    //         seat nobody is in, no such seat
+    @Test
+    public void testSeats() {
+        PlayablePuzzle playable = new PlayablePuzzle(PuzzleTest.makeSimplePuzzle());
+        Player me = new Player("me", 0);
+        playable.seatPlayer(PlayablePuzzle.SEAT_ONE, me);
+        assertThrows(IllegalArgumentException.class, () -> playable.addPlayerEntry(2,
+                PlayablePuzzle.SEAT_TWO, new PuzzleEntry("kettle", "It's tea time!", Orientation.ACROSS, new Point(3, 2))));
+        playable.seatPlayer(PlayablePuzzle.SEAT_TWO, new Player(Player.EMPTY_PLAYER_ID));
+        playable.seatPlayer(PlayablePuzzle.SEAT_TWO, new Player("you", 1));
+        playable.addPlayerEntry(1, PlayablePuzzle.SEAT_ONE, new PuzzleEntry("market", "Farmers ______", Orientation.DOWN, new Point(0, 2)));
+        playable.addPlayerEntry(0, PlayablePuzzle.SEAT_ONE, new PuzzleEntry("stab", "twinkle twinkle", Orientation.ACROSS, new Point(1, 0)));
+        playable.addPlayerEntry(2, PlayablePuzzle.SEAT_TWO, new PuzzleEntry("kettle", "It's tea time!", Orientation.ACROSS, new Point(3, 2)));
+        assertEquals(PlayablePuzzle.SEAT_ONE, playable.getOwner(0));
+        assertEquals(PlayablePuzzle.SEAT_ONE, playable.getOwner(1));
+        assertEquals(PlayablePuzzle.SEAT_TWO, playable.getOwner(2));
+        assertSame(me, playable.getPlayerEntries().get(0).getKey());
+        assertEquals("you", playable.getPlayerEntries().get(2).getKey().getId());
+        assertEquals(2, playable.countPlayerEntries(PlayablePuzzle.SEAT_ONE));
+        assertEquals(1, playable.countPlayerEntries(PlayablePuzzle.SEAT_TWO));
+        assertThrows(IllegalArgumentException.class, () -> playable.countPlayerEntries(3));
+        assertThrows(IllegalArgumentException.class, () -> playable.seatPlayer(PlayablePuzzle.NO_SEAT, me));
+    }
 }
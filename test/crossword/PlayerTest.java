@@ -8,13 +8,24 @@ public class PlayerTest {
     // Partitions:
     //     Length of player id = 1, > 1
     //     Player score = 0, 1, > 1
+    //     Player handle = none, 0, > 0, invalid
 
-    // Covers: length of player id = 1, player score = 0
+    // Covers: length of player id = 1, player score = 0, player handle = none
     @Test
     public void testPlayer() {
         Player player = new Player("p");
         assertEquals(1, player.getId().length());
         assertEquals(0, player.getScore());
+        assertEquals(Player.NO_HANDLE, player.getHandle());
+    }
+    
+    // Covers: player handle = 0, > 0, invalid
+    @Test
+    public void testHandle() {
+        assertEquals(0, new Player("p", 0).getHandle());
+        assertEquals(42, new Player("p", 42).getHandle());
+        assertEquals(Player.NO_HANDLE, new Player("p", Player.NO_HANDLE).getHandle());
+        assertThrows(IllegalArgumentException.class, () -> new Player("p", -2));
     }
     
     // Covers: length of player id > 1, player score = 1
@@ -4,12 +4,16 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.jupiter.api.Test;
 
 public class PointTest {
     // Partition
     //     Row number = 0, 1, > 1
     //     Column number = 0, 1, > 1 
+    //     Points compared: equal, on the same anti-diagonal
     
     // Covers: row = 0, column = 0
     @Test
@@ -33,5 +37,15 @@ public class PointTest {
         assertTrue(point.equals(new Point(1,16)));
         assertFalse(point.equals(new Point(34,98)));
     }
-
+    
+    // Covers: row = 0, 1, > 1, column = 0, 1, > 1; points equal, on the same anti-diagonal
+    @Test
+    public void testHashSpreadsAntiDiagonal() {
+        assertEquals(new Point(3, 4).hashCode(), new Point(3, 4).hashCode());
+        Set<Integer> hashes = new HashSet<>();
+        for (int row = 0; row <= 500; row++) {
+            hashes.add(new Point(row, 500 - row).hashCode());
+        }
+        assertEquals(501, hashes.size(), "expected the cells of an anti-diagonal to have distinct hashes");
+    }
 }
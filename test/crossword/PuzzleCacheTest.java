@@ -0,0 +1,176 @@
+package crossword;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class PuzzleCacheTest {
+    // Partitions:
+    //     Cache file: missing, written by save, replaced by save while open, corrupted, cut off,
+    //          not a cache
+    //     Puzzle file since cached: unchanged, changed, unparsable, forgotten
+    //     Puzzle: from puzzles/, with non-ASCII text
+
+    private Path directory;
+    private Path cacheFile;
+
+    @BeforeEach
+    public void makeDirectory() throws IOException {
+        directory = Files.createTempDirectory("puzzles");
+        cacheFile = directory.resolve("puzzles" + PuzzleCache.SUFFIX);
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /* Copies puzzles/name into the temporary directory. */
+    private File copyPuzzle(String name) throws IOException {
+        return Files.copy(Path.of("puzzles", name), directory.resolve(name)).toFile();
+    }
+
+    // Covers: cache file missing, written by save; puzzle file unchanged; puzzle from puzzles/
+    @Test
+    public void testWarmLoadMatchesParser() throws IOException, UnableToParseException {
+        final File[] sources = new File("puzzles").listFiles(File::isFile);
+        final PuzzleCache cold = new PuzzleCache(cacheFile);
+        for (File source : sources) {
+            copyPuzzle(source.getName());
+        }
+        for (File source : sources) {
+            assertEquals(Puzzle.parseFromFile(source.getPath()), cold.load(directory.resolve(source.getName()).toFile()));
+        }
+        assertEquals(0, cold.getHits());
+        assertEquals(sources.length, cold.getMisses());
+        cold.save();
+
+        final PuzzleCache warm = new PuzzleCache(cacheFile);
+        for (File source : sources) {
+            Puzzle cached = warm.load(directory.resolve(source.getName()).toFile());
+            assertEquals(Puzzle.parseFromFile(source.getPath()), cached);
+            assertEquals(Puzzle.parseFromFile(source.getPath()).getLayoutForResponse(), cached.getLayoutForResponse());
+        }
+        assertEquals(sources.length, warm.getHits());
+        assertEquals(0, warm.getMisses());
+    }
+
+    // Covers: cache file replaced by save while open; puzzle file unchanged
+    @Test
+    public void testSavedRecordsReadFromFile() throws IOException, UnableToParseException {
+        final File easy = copyPuzzle("simple.puzzle");
+        final File cross = copyPuzzle("cross.puzzle");
+        final PuzzleCache cache = new PuzzleCache(cacheFile);
+        final Puzzle easyPuzzle = cache.load(easy);
+        cache.save();
+        assertEquals(easyPuzzle, cache.load(easy));
+        assertEquals(1, cache.getHits(), "expected a saved record to be read from the file");
+
+        // the second save reads the first record from the file it replaces
+        final Puzzle crossPuzzle = cache.load(cross);
+        cache.save();
+        assertEquals(easyPuzzle, cache.load(easy));
+        assertEquals(crossPuzzle, cache.load(cross));
+        assertEquals(3, cache.getHits());
+        final PuzzleCache reopened = new PuzzleCache(cacheFile);
+        assertEquals(easyPuzzle, reopened.load(easy));
+        assertEquals(crossPuzzle, reopened.load(cross));
+        assertEquals(2, reopened.getHits());
+
+        // saved bodies are not kept in memory, so damage to the file is seen
+        final byte[] saved = Files.readAllBytes(cacheFile);
+        saved[saved.length - 1] ^= 1;
+        Files.write(cacheFile, saved);
+        assertEquals(easyPuzzle, cache.load(easy));
+        assertEquals(crossPuzzle, cache.load(cross));
+        assertEquals(3, cache.getMisses(), "expected the damaged record to be parsed");
+    }
+
+    // Covers: puzzle file changed, unparsable, forgotten; puzzle with non-ASCII text
+    @Test
+    public void testStaleEntriesReparsed() throws IOException, UnableToParseException {
+        final File file = directory.resolve("accents.puzzle").toFile();
+        Files.writeString(file.toPath(), ">> \"Café\" \"naïve\"\n(star, \"ünïcode\", ACROSS, 0, 0)\n");
+        final PuzzleCache cache = new PuzzleCache(cacheFile);
+        final Puzzle original = cache.load(file);
+        cache.save();
+
+        PuzzleCache reopened = new PuzzleCache(cacheFile);
+        assertEquals(original, reopened.load(file));
+        assertEquals(1, reopened.getHits());
+
+        // the same size, but a later modification time
+        Files.writeString(file.toPath(), ">> \"Cafe\" \"naïve\"\n(stat, \"ünïcode\", ACROSS, 0, 0)\n");
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(file.lastModified() + 2000));
+        reopened = new PuzzleCache(cacheFile);
+        assertEquals("stat", reopened.load(file).getEntries().get(0).getWord(), "expected a changed file to be parsed");
+        assertEquals(0, reopened.getHits());
+
+        Files.writeString(file.toPath(), "not a puzzle");
+        assertThrows(UnableToParseException.class, () -> new PuzzleCache(cacheFile).load(file));
+
+        reopened.retainAll(List.of());
+        reopened.save();
+        Files.writeString(file.toPath(), ">> \"Cafe\" \"naïve\"\n(stat, \"ünïcode\", ACROSS, 0, 0)\n");
+        final PuzzleCache forgotten = new PuzzleCache(cacheFile);
+        forgotten.load(file);
+        assertEquals(1, forgotten.getMisses(), "expected a forgotten file to be parsed");
+    }
+
+    // Covers: cache file corrupted, cut off, not a cache
+    @Test
+    public void testDamagedCacheFallsBackToParser() throws IOException, UnableToParseException {
+        final File easy = copyPuzzle("simple.puzzle");
+        final File cross = copyPuzzle("cross.puzzle");
+        final PuzzleCache cache = new PuzzleCache(cacheFile);
+        final Puzzle easyPuzzle = cache.load(easy);
+        final Puzzle crossPuzzle = cache.load(cross);
+        cache.save();
+        final byte[] saved = Files.readAllBytes(cacheFile);
+
+        // flipping the last byte damages the body of one record
+        final byte[] corrupted = saved.clone();
+        corrupted[corrupted.length - 1] ^= 1;
+        Files.write(cacheFile, corrupted);
+        PuzzleCache damaged = new PuzzleCache(cacheFile);
+        assertEquals(easyPuzzle, damaged.load(easy));
+        assertEquals(crossPuzzle, damaged.load(cross));
+        assertEquals(1, damaged.getHits());
+        assertEquals(1, damaged.getMisses());
+
+        Files.write(cacheFile, Arrays.copyOf(saved, saved.length / 2));
+        damaged = new PuzzleCache(cacheFile);
+        assertEquals(easyPuzzle, damaged.load(easy));
+        assertEquals(crossPuzzle, damaged.load(cross));
+        assertTrue(damaged.getMisses() >= 1, "expected the cut off record to be parsed");
+
+        Files.writeString(cacheFile, "not a cache");
+        damaged = new PuzzleCache(cacheFile);
+        assertEquals(easyPuzzle, damaged.load(easy));
+        assertEquals(0, damaged.getHits());
+        damaged.load(cross);
+        damaged.save();
+        final PuzzleCache rewritten = new PuzzleCache(cacheFile);
+        rewritten.load(easy);
+        assertEquals(1, rewritten.getHits(), "expected the damaged cache to be rewritten");
+    }
+}
@@ -0,0 +1,126 @@
+package crossword;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+public class PuzzleDirectoryWatcherTest {
+    // Partitions:
+    //     Change to a file: created, modified, deleted, made unparsable, made inconsistent
+    //     Match made from a changed puzzle: none, one
+    //     WATCH listeners: one-shot, subscribed
+    //     Puzzles: parsed, read through a cache with no decoded puzzle held
+
+    // Some platforms poll for changes instead of being told, every few seconds
+    private static final long TIMEOUT_MILLIS = 20000;
+
+    /* Waits until condition holds or fails after TIMEOUT_MILLIS. */
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting");
+            Thread.sleep(10);
+        }
+    }
+
+    /* A one-entry puzzle file named name, whose entry has clue clue. */
+    private static String puzzleFile(String name, String clue) {
+        return ">> \"" + name + "\" \"watched\"\n(star, \"" + clue + "\", ACROSS, 0, 0)\n";
+    }
+
+    // Covers: file created, modified, deleted, made unparsable, made inconsistent;
+    //         match made from a changed puzzle: none, one; WATCH listeners one-shot, subscribed
+    @Test
+    public void testReloadsChangedFiles() throws IOException, InterruptedException {
+        final Path directory = Files.createTempDirectory("puzzles");
+        Files.writeString(directory.resolve("first.puzzle"), puzzleFile("First", "old"));
+        try (PuzzleDirectoryWatcher watcher = new PuzzleDirectoryWatcher(directory.toString())) {
+            final Game game = new Game(watcher.getPuzzles());
+            assertEquals(Set.of("First"), game.getPuzzleNames());
+            final AtomicInteger watched = new AtomicInteger();
+            final AtomicInteger subscribed = new AtomicInteger();
+            game.addWatchListener(watched::incrementAndGet);
+            game.subscribeToWatch(subscribed::incrementAndGet);
+            assertTrue(game.login("one"));
+            game.addWaitListener("one", () -> { });
+            assertTrue(game.createMatch("one", "match", "First", "before the change"));
+            final String layout = game.getMatchPuzzleForResponse("one");
+            watched.set(0);
+            subscribed.set(0);
+            game.addWatchListener(watched::incrementAndGet);
+            watcher.start(game);
+
+            Files.writeString(directory.resolve("second.puzzle"), puzzleFile("Second", "new"));
+            awaitTrue(() -> game.getPuzzleNames().contains("Second"));
+            assertEquals(1, watched.get(), "expected the one-shot WATCH listener to be called once");
+            assertTrue(subscribed.get() > 0, "expected the WATCH subscriber to be told of the change");
+
+            Files.writeString(directory.resolve("first.puzzle"), puzzleFile("First", "changed"));
+            awaitTrue(() -> game.getPuzzleForResponse("First").contains("changed"));
+            assertEquals(layout, game.getMatchPuzzleForResponse("one"),
+                    "expected the match to keep the puzzle it was made from");
+
+            Files.writeString(directory.resolve("first.puzzle"), "not a puzzle");
+            Files.writeString(directory.resolve("third.puzzle"), puzzleFile("Third", "third"));
+            awaitTrue(() -> game.getPuzzleNames().contains("Third"));
+            assertTrue(game.getPuzzleForResponse("First").contains("changed"),
+                    "expected an unparsable file to keep its last puzzle");
+
+            Files.writeString(directory.resolve("third.puzzle"),
+                    ">> \"Third\" \"overlap\"\n(star, \"a\", ACROSS, 0, 0)\n(tar, \"b\", ACROSS, 0, 1)\n");
+            Files.delete(directory.resolve("second.puzzle"));
+            awaitTrue(() -> game.getPuzzleNames().equals(Set.of("First")));
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    // Covers: file made unparsable; match made from a changed puzzle: one; puzzles read
+    //         through a cache with no decoded puzzle held
+    @Test
+    public void testBrokenFileKeepsCachedPuzzle() throws IOException, InterruptedException {
+        final Path directory = Files.createTempDirectory("puzzles");
+        final Path file = Files.copy(Path.of("puzzles", "simple.puzzle"), directory.resolve("simple.puzzle"));
+        final PuzzleCache cache = new PuzzleCache(directory.resolve("puzzles" + PuzzleCache.SUFFIX));
+        Thread watching = null;
+        try (PuzzleDirectoryWatcher watcher = new PuzzleDirectoryWatcher(directory.toString(), cache)) {
+            // holding no template's puzzle, so every match decodes its template
+            final Game game = new Game(watcher.getTemplates(), 0);
+            final String layout = game.getPuzzleForResponse("Easy");
+            watching = watcher.start(game);
+            final long misses = cache.getMisses();
+
+            Files.writeString(file, ">> \"half saved");
+            awaitTrue(() -> cache.getMisses() > misses);
+            assertEquals(Set.of("Easy"), game.getPuzzleNames());
+            assertTrue(game.login("one"));
+            assertTrue(game.createMatch("one", "match", "Easy", "after the file broke"),
+                    "expected an unparsable file to keep its last puzzle");
+            assertEquals(layout, game.getMatchPuzzleForResponse("one"));
+        } finally {
+            // the watcher may still be saving the cache into the directory after it is closed
+            if (watching != null) {
+                watching.join(TIMEOUT_MILLIS);
+            }
+            deleteDirectory(directory);
+        }
+    }
+
+    /* Deletes directory and the files in it. */
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
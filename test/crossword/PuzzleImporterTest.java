@@ -0,0 +1,105 @@
+package crossword;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+public class PuzzleImporterTest {
+    // Partitions:
+    //     Archive: concatenated puzzles, zip of archives, empty
+    //     Puzzles in an archive: 0, 1, > BATCH_SIZE
+    //     Puzzle: consistent, inconsistent, unparsable, name already in the game
+    //     Line terminators: \n, \r\n
+    //     Game after importing: unchanged, puzzles replaced by setPuzzles
+
+    /* A one-entry puzzle named name. */
+    private static String puzzleFile(String name) {
+        return ">> \"" + name + "\" \"imported\"\n// a comment\n(star, \"shines\", ACROSS, 0, 0)\n";
+    }
+
+    // Covers: concatenated puzzles; 1 puzzle and > BATCH_SIZE puzzles; consistent,
+    //         inconsistent, unparsable, name already in the game; \n and \r\n;
+    //         puzzles replaced by setPuzzles
+    @Test
+    public void testImportConcatenatedPuzzles() throws IOException {
+        final Game game = new Game(Map.of("Star", new Puzzle("Star", "existing", List.of())));
+        final AtomicInteger watched = new AtomicInteger();
+        game.subscribeToWatch(watched::incrementAndGet);
+        watched.set(0);
+        final StringBuilder archive = new StringBuilder();
+        archive.append(puzzleFile("Star"));
+        archive.append(">> \"Broken\" \"no entries\"\n(star, \"unterminated, ACROSS, 0, 0)\n");
+        archive.append(">> \"Clash\" \"inconsistent\"\n(star, \"a\", ACROSS, 0, 0)\n(stop, \"b\", ACROSS, 0, 0)\n");
+        archive.append(puzzleFile("Windows").replace("\n", "\r\n"));
+        final int many = PuzzleImporter.BATCH_SIZE + 10;
+        for (int i = 0; i < many; i++) {
+            archive.append(puzzleFile("Many" + i));
+        }
+        final PuzzleImporter importer = new PuzzleImporter(game, null);
+        importer.importStream("archive", new ByteArrayInputStream(archive.toString().getBytes(UTF_8)));
+
+        assertEquals(2 + many, importer.getImported());
+        assertEquals(1, importer.getInconsistent());
+        assertEquals(Set.of("archive#2 (line 4)"), importer.getFailures().keySet());
+        assertEquals(3 + many, game.getPuzzleNames().size());
+        assertTrue(game.getPuzzleNames().containsAll(List.of("Star", "Star1", "Windows", "Many0", "Many" + (many - 1))));
+        assertEquals(2, watched.get(), "expected one change for each batch");
+
+        game.setPuzzles(Map.of("Other", new Puzzle("Other", "replaced", List.of())));
+        assertEquals(2 + many + 1, game.getPuzzleNames().size());
+        assertTrue(game.getPuzzleNames().containsAll(List.of("Other", "Star", "Windows")),
+                "expected imported puzzles to be kept");
+    }
+
+    // Covers: zip of archives; 0 and 1 puzzles; empty archive; game unchanged
+    @Test
+    public void testImportZip() throws IOException {
+        final Path zipFile = Files.createTempFile("puzzles", ".zip");
+        try {
+            try (OutputStream out = Files.newOutputStream(zipFile); ZipOutputStream zip = new ZipOutputStream(out, UTF_8)) {
+                zip.putNextEntry(new ZipEntry("folder/"));
+                zip.putNextEntry(new ZipEntry("folder/first.puzzle"));
+                zip.write(puzzleFile("First").getBytes(UTF_8));
+                zip.putNextEntry(new ZipEntry("empty.puzzle"));
+                zip.putNextEntry(new ZipEntry("both.puzzles"));
+                zip.write((puzzleFile("Second") + "\n" + puzzleFile("Third")).getBytes(UTF_8));
+                zip.putNextEntry(new ZipEntry("bad.puzzle"));
+                zip.write("not a puzzle\n".getBytes(UTF_8));
+            }
+            final Game game = new Game(Map.of());
+            final PuzzleImporter importer = new PuzzleImporter(game, null);
+            importer.importFile(zipFile);
+            assertEquals(Set.of("First", "Second", "Third"), game.getPuzzleNames());
+            assertEquals(List.of(zipFile.getFileName() + "!bad.puzzle#1 (line 1)"),
+                    new ArrayList<>(importer.getFailures().keySet()));
+            assertTrue(importer.getProgress().startsWith("3 puzzles imported (0 inconsistent, 1 unparsable)"),
+                    importer.getProgress());
+
+            final Game empty = new Game(Map.of());
+            final Path emptyFile = Files.createTempFile("puzzles", ".puzzles");
+            try {
+                new PuzzleImporter(empty, null).importFile(emptyFile);
+            } finally {
+                Files.delete(emptyFile);
+            }
+            assertEquals(Set.of(), empty.getPuzzleNames());
+        } finally {
+            Files.delete(zipFile);
+        }
+    }
+}
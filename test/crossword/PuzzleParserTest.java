@@ -2,7 +2,19 @@ package crossword;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Test;
 
@@ -17,6 +29,10 @@ public class PuzzleParserTest {
     //    Whether a puzzle contains comments
     //    Whether a puzzle contains words ACROSS
     //    Whether a puzzle contains words DOWN
+    //    Parser: parserlib reference, hand-written from a Reader, hand-written from UTF-8 bytes
+    //    Input: matches the grammar, does not match; line terminators "\n", "\r\n", "\r", none at the end
+    //    Whitespace after the name: none, one character, more than one
+    //    Threads parsing with the reference at once: 1, > 1
     
     /*
      * Helper method to assert that a parsed puzzle is the same as an expected puzzle
@@ -78,6 +94,104 @@ public class PuzzleParserTest {
         Puzzle expected = PuzzleTest.makeSimplePuzzle();
         assertParseFromFile(expected, "puzzles/simple.puzzle");
     }
+    /*
+     * Asserts that the hand-written parser, from a Reader and from UTF-8 bytes, agrees with the
+     * parserlib reference on input, with its line terminators read as "\n" by the reference
+     */
+    private static void assertParsersAgree(String input) throws IOException {
+        String lines = input.replace("\r\n", "\n").replace('\r', '\n');
+        if (!lines.isEmpty() && !lines.endsWith("\n")) {
+            lines += "\n";
+        }
+        Puzzle expected;
+        try {
+            expected = PuzzleParser.parse(lines);
+        } catch (UnableToParseException e) {
+            expected = null;
+        }
+        for (int i = 0; i < 2; i++) {
+            Puzzle actual;
+            try {
+                actual = i == 0 ? PuzzleParser.parse(new StringReader(input))
+                        : StreamingPuzzleParser.parse(ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8)));
+            } catch (UnableToParseException e) {
+                actual = null;
+            }
+            assertEquals(expected, actual, "parsers disagree on: " + input);
+            if (expected != null) {
+                assertEquals(expected.getLayoutForResponse(), actual.getLayoutForResponse());
+            }
+        }
+    }
+    
+    // This test covers:
+    //    Parser: parserlib reference, hand-written from a Reader, from UTF-8 bytes
+    //    Input matches the grammar, every puzzle in puzzles/
+    @Test
+    public void testParsersAgreeOnPuzzles() throws IOException {
+        for (File file : new File("puzzles").listFiles(File::isFile)) {
+            StringBuilder input = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                for (int c = reader.read(); c != -1; c = reader.read()) {
+                    input.append((char) c);
+                }
+            }
+            assertParsersAgree(input.toString());
+            assertParsersAgree(input.toString().replace("\n", "\r\n"));
+        }
+    }
+    
+    // This test covers:
+    //    Input matches the grammar, does not match
+    //    Line terminators "\n", "\r\n", "\r", none at the end
+    //    Whitespace after the name: none, one character, more than one
+    @Test
+    public void testParsersAgreeOnEdgeCases() throws IOException {
+        List<String> inputs = List.of(
+                "", "   ", ">>", "> > \"E\" \"d\"\n",
+                ">> \"Easy\" \"d\"\n", ">> \"Easy\"  \"d\"\n", ">> \"Easy\"\"d\"\n", ">>\"E\"\n\"d\"\n", ">>\n\"E\" \"d\"\n",
+                ">> \"E\"\t\"d\"\n", ">> \"E\" \r\"d\"\n", "  >> \"E\" \"d\"", ">> \"E\" \"d\"\n\n\n  ", ">> \"\" \"\"\n",
+                ">> \"E\" \"d\" \n", ">> \"E\" \"d\"\r\n", ">> \"E\" \"d\"\r(ab, \"c\", DOWN, 1, 2)",
+                ">> \"E\tF\" \"d\"\n", ">> \"E\\\\\" \"d\"\n", ">> \" spaced name \" \"d\"\n",
+                ">> \"E\" \"a\\nb\\\\c\\td\\re\"\n", ">> \"E\" \"bad \\q escape\"\n", ">> \"E\" \"tab\there\"\n",
+                ">> \"E\" \"d\"\n(ab,\"c\",DOWN,1,2)(cd , \"e\" ,\tACROSS , 3 , 4 )",
+                ">> \"E\" \"d\"\n( a-b,\"c\",DOWN,01,2)\n", ">> \"E\" \"d\"\n(Ab,\"c\",DOWN,1,2)\n",
+                ">> \"E\" \"d\"\n(ab,\"c\",DOWNWARD,1,2)\n", ">> \"E\" \"d\"\n(ab,\"c\",ACROSS,-1,2)\n",
+                ">> \"E\" \"d\"\n(ab,\"c\",ACROSS,1,2\n", ">> \"E\" \"d\"\n(ab,\"c\"\n,ACROSS,1,2)",
+                ">> \"E\" \"d\"\n//c\n(ab,\"c // not a comment\",DOWN,1,2)//x", ">> \"E\" \"d\"\n/ /c\n",
+                ">> \"E\" \"d\"\n// c\r\n\r\n// d", ">> \"E\" // c\n\"d\"\n", ">> \"E\" \"d\"\n(ab,\"c\",DOWN,1,2) x");
+        for (String input : inputs) {
+            assertParsersAgree(input);
+        }
+    }
+    
+    // This test covers:
+    //    Parser: parserlib reference
+    //    Threads parsing with the reference at once > 1
+    @Test
+    public void testReferenceParsesConcurrently() throws Exception {
+        List<String> inputs = new ArrayList<>();
+        List<Puzzle> expected = new ArrayList<>();
+        for (File file : new File("puzzles").listFiles(File::isFile)) {
+            String input = Files.readString(file.toPath()) + "\n";
+            inputs.add(input);
+            expected.add(PuzzleParser.parse(input));
+        }
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Puzzle>> parsed = new ArrayList<>();
+            for (int i = 0; i < 10 * inputs.size(); i++) {
+                String input = inputs.get(i % inputs.size());
+                parsed.add(threads.submit(() -> PuzzleParser.parse(input)));
+            }
+            for (int i = 0; i < parsed.size(); i++) {
+                assertEquals(expected.get(i % inputs.size()), parsed.get(i).get());
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+    
     // Manual test
     // This test covers:
     //    Number of puzzle entries to parse = 0
@@ -0,0 +1,155 @@
+package crossword;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import edu.mit.eecs.parserlib.UnableToParseException;
+
+public class PuzzleTemplateCacheTest {
+    // Partitions:
+    //     Template: of a puzzle from puzzles/, of a puzzle with no entries;
+    //          of a file read through a cache, of a file broken since, of a file changed since
+    //     Get: first, repeated while held, after eviction while in use, after eviction unused
+    //     Capacity: 0, less than one puzzle, several puzzles
+    //     Game: match made from a template, layout of a template
+
+    /* A puzzle of size entries named name, one on each row. */
+    private static Puzzle puzzle(String name, int size) {
+        final List<PuzzleEntry> entries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            entries.add(new PuzzleEntry(name + "-" + (char) ('a' + i), "clue " + i, Orientation.ACROSS, new Point(i, 0)));
+        }
+        return new Puzzle(name, "rows", entries);
+    }
+
+    // Covers: template of puzzles from puzzles/ and with no entries
+    @Test
+    public void testTemplateDecodesEqualPuzzle() throws IOException, UnableToParseException {
+        for (File file : new File("puzzles").listFiles(File::isFile)) {
+            final Puzzle puzzle = Puzzle.parseFromFile(file.getPath());
+            final PuzzleTemplate template = new PuzzleTemplate(puzzle);
+            assertEquals(puzzle, template.decode());
+            assertEquals(puzzle.getLayoutForResponse(), template.decode().getLayoutForResponse());
+            assertEquals(puzzle.getName(), template.getName());
+            assertEquals(puzzle.getDescription(), template.getDescription());
+            assertEquals(puzzle.getEntries().size(), template.getSize());
+        }
+        final PuzzleTemplate empty = new PuzzleTemplate(new Puzzle("", "", List.of()));
+        assertEquals(0, empty.getSize());
+        assertEquals(new Puzzle("", "", List.of()), empty.decode());
+    }
+
+    // Covers: template of a file read through a cache, its file broken since, changed since;
+    //         match made from a template
+    @Test
+    public void testFileTemplateReadsItsCachedBody() throws IOException, UnableToParseException {
+        final Path directory = Files.createTempDirectory("puzzles");
+        final Path file = Files.copy(Path.of("puzzles", "simple.puzzle"), directory.resolve("simple.puzzle"));
+        final Path cacheFile = directory.resolve("puzzles" + PuzzleCache.SUFFIX);
+        try {
+            final PuzzleCache cache = new PuzzleCache(cacheFile);
+            final Puzzle puzzle = cache.load(file.toFile());
+            cache.save();
+            final PuzzleTemplate cached = new PuzzleTemplate(puzzle, file.toFile(), cache);
+            assertEquals(puzzle.getName(), cached.getName());
+            assertEquals(puzzle.getEntries().size(), cached.getSize());
+            assertEquals(puzzle, cached.decode());
+            assertEquals(1, cache.getHits(), "expected the puzzle to be read from the cache");
+
+            Files.writeString(file, ">> \"half saved");
+            touch(file);
+            assertThrows(UnableToParseException.class, () -> cache.load(file.toFile()));
+            assertEquals(puzzle, cached.decode(), "expected a broken file to keep its last puzzle");
+            final Game game = new Game(Map.of("broken", cached), 0);
+            assertTrue(game.login("one"));
+            assertTrue(game.createMatch("one", "match", "broken", "description"), "expected a match of the last puzzle");
+
+            Files.writeString(file, ">> \"Other\" \"changed\"\n(star, \"clue\", ACROSS, 0, 0)\n");
+            touch(file);
+            final Puzzle changed = cache.load(file.toFile());
+            assertEquals(changed, new PuzzleTemplate(changed, file.toFile(), cache).decode());
+            assertThrows(UncheckedIOException.class, () -> cached.decode(),
+                    "expected no puzzle other than the template's own");
+        } finally {
+            Files.deleteIfExists(cacheFile);
+            Files.delete(file);
+            Files.delete(directory);
+        }
+    }
+
+    /* Moves the modification time of file on, so a cache sees it changed. */
+    private static void touch(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+    }
+
+    // Covers: get first, repeated while held, after eviction unused; capacity several puzzles
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        final PuzzleTemplateCache cache = new PuzzleTemplateCache(25);
+        final PuzzleTemplate first = new PuzzleTemplate(puzzle("first", 10));
+        final PuzzleTemplate second = new PuzzleTemplate(puzzle("second", 10));
+        final PuzzleTemplate third = new PuzzleTemplate(puzzle("third", 10));
+
+        final int firstHash = System.identityHashCode(cache.get(first));
+        cache.get(second);
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(firstHash, System.identityHashCode(cache.get(first)), "expected a held puzzle");
+        assertEquals(1, cache.getHits());
+
+        // first was used more recently than second, so second is evicted
+        cache.get(third);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(20, cache.getSize());
+        cache.get(first);
+        assertEquals(2, cache.getHits());
+        // an evicted puzzle is decoded again, unless it has not been collected yet
+        assertEquals(puzzle("second", 10), cache.get(second));
+        assertEquals(6, cache.getHits() + cache.getMisses());
+    }
+
+    // Covers: get after eviction while in use; capacity 0, less than one puzzle
+    @Test
+    public void testPuzzlesInUseArePinned() {
+        final PuzzleTemplateCache cache = new PuzzleTemplateCache(0);
+        final PuzzleTemplate first = new PuzzleTemplate(puzzle("first", 5));
+        final PuzzleTemplate second = new PuzzleTemplate(puzzle("second", 5));
+        final Puzzle inUse = cache.get(first);
+        assertEquals(5, cache.getSize(), "expected the most recent puzzle to be held");
+        cache.get(second);
+        assertEquals(1, cache.getEvictions());
+        assertSame(inUse, cache.get(first), "expected a puzzle in use to be returned again");
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertThrows(IllegalArgumentException.class, () -> new PuzzleTemplateCache(-1));
+    }
+
+    // Covers: match made from a template, layout of a template
+    @Test
+    public void testGameMakesMatchesFromTemplates() throws IOException {
+        final Puzzle puzzle = puzzle("shared", 8);
+        final Game game = new Game(Map.of("shared", new PuzzleTemplate(puzzle)), 0);
+        assertEquals(puzzle.getLayoutForResponse(), game.getPuzzleForResponse("shared"));
+        for (String player : List.of("one", "two")) {
+            game.login(player);
+            game.addWaitListener(player, () -> { });
+            game.createMatch(player, player + "Match", "shared", "description");
+            assertEquals(new PlayablePuzzle(puzzle).getPuzzleForResponse(), game.getMatchPuzzleForResponse(player));
+        }
+        assertEquals(1, game.getPuzzleNames().size());
+    }
+}
@@ -3,9 +3,12 @@ package crossword;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
@@ -19,6 +22,8 @@ public class PuzzleTest {
     //  Number of puzzle entries that overlap = 0, 1, > 1
     //  Number of puzzle entries that intersect = 0, 1, > 1
     //  Puzzle name contains numbers, letters, or non-alphanumeric characters
+    //  Layout requested from the same puzzle: once, more than once
+    //  Same-orientation entries on a line: apart, touching end to start, overlapping, equal
     
     /**
      * @return a simple puzzle for testing
@@ -168,4 +173,103 @@ public class PuzzleTest {
         Puzzle parsedReactionsInconsistent = Puzzle.parseFromFile("puzzles/reactionsInconsistent.puzzle");
         assertFalse(parsedReactionsInconsistent.isConsistent(), "Expected puzzle to be inconsistent");
     }
+    
+    // This test covers:
+    //  Number of puzzle entries in entries = 0, 1, > 1
+    //  Layout requested from the same puzzle: once, more than once
+    @Test
+    public void testLayoutForResponse() {
+        assertEquals("", makeEmptyPuzzle().getLayoutForResponse());
+        List<PuzzleEntry> entries = new ArrayList<>();
+        entries.add(new PuzzleEntry("star", "twinkle twinkle", Orientation.ACROSS, new Point(1, 0)));
+        assertEquals("0 bs1fc 4 bs1fc twinkle twinkle bs1fc ACROSS bs1fc 1 bs1fc 0",
+                new Puzzle("E4$y!", "Ez", entries).getLayoutForResponse());
+        
+        Puzzle puzzle = makeSimplePuzzle();
+        String layout = puzzle.getLayoutForResponse();
+        assertTrue(layout.startsWith("0 bs1fc 4 bs1fc twinkle twinkle bs1fc ACROSS bs1fc 1 bs1fc 0 as3fb "
+                + "1 bs1fc 6 bs1fc Farmers ______ bs1fc DOWN bs1fc 0 bs1fc 2 as3fb "), layout);
+        assertEquals(puzzle.getEntries().size(), layout.split(Game.ENTRY_DELIM).length);
+        assertSame(layout, puzzle.getLayoutForResponse(), "expected the layout to be computed once");
+        assertSame(layout, new PlayablePuzzle(puzzle).getPuzzleForResponse(), "expected matches to share the layout");
+    }
+    
+    /*
+     * The pairwise consistency check Puzzle.isConsistent made before it bucketed entries by line,
+     * kept to check that both give the same answers.
+     */
+    private static boolean isConsistentPairwise(Puzzle puzzle) {
+        Map<Integer, PuzzleEntry> entries = puzzle.getEntries();
+        Map<Point, Character> pointToLetter = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            PuzzleEntry entry = entries.get(i);
+            for (int j = 0; j < entry.getWord().length(); j++) {
+                Point letterPosition = entry.getOrientation() == Orientation.ACROSS
+                        ? new Point(entry.getPosition().getRow(), entry.getPosition().getCol() + j)
+                        : new Point(entry.getPosition().getRow() + j, entry.getPosition().getCol());
+                Character letter = pointToLetter.put(letterPosition, entry.getWord().charAt(j));
+                if (letter != null && letter != entry.getWord().charAt(j)) {
+                    return false;
+                }
+            }
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            PuzzleEntry current = entries.get(i);
+            for (int j = i + 1; j < entries.size(); j++) {
+                PuzzleEntry other = entries.get(j);
+                if (current.getWord().equals(other.getWord()) && !current.equals(other)) {
+                    return false;
+                }
+                boolean across = current.getOrientation() == Orientation.ACROSS;
+                if (current.getOrientation() == other.getOrientation()) {
+                    int currentLine = across ? current.getPosition().getRow() : current.getPosition().getCol();
+                    int otherLine = across ? other.getPosition().getRow() : other.getPosition().getCol();
+                    int currentStart = across ? current.getPosition().getCol() : current.getPosition().getRow();
+                    int otherStart = across ? other.getPosition().getCol() : other.getPosition().getRow();
+                    if (currentLine == otherLine && !(currentStart + current.getWord().length() < otherStart
+                            || currentStart > otherStart + other.getWord().length())) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    
+    // This test covers:
+    //  Number of puzzle entries in entries = 0, 1, > 1
+    //  Number of puzzle entries that overlap = 0, 1, > 1
+    //  Same-orientation entries on a line: apart, touching end to start, overlapping, equal
+    @Test
+    public void testConsistentMatchesPairwiseCheck() throws IOException, UnableToParseException {
+        List<Puzzle> puzzles = new ArrayList<>();
+        for (File file : new File("puzzles/").listFiles()) {
+            if (file.isFile()) {
+                puzzles.add(Puzzle.parseFromFile(file.getPath()));
+            }
+        }
+        puzzles.add(makeEmptyPuzzle());
+        puzzles.add(makeSimplePuzzle());
+        puzzles.add(makeSimpleInconsistentPuzzle());
+        puzzles.add(makeSimpleOverlapPuzzle());
+        PuzzleEntry star = new PuzzleEntry("star", "twinkle twinkle", Orientation.ACROSS, new Point(1, 0));
+        for (Orientation orientation : Orientation.values()) {
+            // "moon" starts inside, at the end of, just after, and apart from "star" on the same line
+            PuzzleEntry onLine = new PuzzleEntry("star", "twinkle twinkle", orientation, new Point(1, 1));
+            for (int start = 0; start <= 7; start++) {
+                Point position = orientation == Orientation.ACROSS ? new Point(1, start) : new Point(start, 1);
+                puzzles.add(new Puzzle("line", "entries on a line",
+                        List.of(onLine, new PuzzleEntry("moon", "night light", orientation, position))));
+            }
+        }
+        puzzles.add(new Puzzle("twice", "the same entry twice", List.of(star, star)));
+        puzzles.add(new Puzzle("duplicate", "the same word twice",
+                List.of(star, new PuzzleEntry("star", "shines", Orientation.ACROSS, new Point(8, 0)))));
+        
+        for (Puzzle puzzle : puzzles) {
+            assertEquals(isConsistentPairwise(puzzle), puzzle.isConsistent(), puzzle.toString());
+        }
+        assertTrue(puzzles.stream().anyMatch(Puzzle::isConsistent), "expected some consistent puzzles");
+        assertTrue(puzzles.stream().anyMatch(puzzle -> !puzzle.isConsistent()), "expected some inconsistent puzzles");
+    }
 }
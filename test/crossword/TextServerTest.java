@@ -6,6 +6,8 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
@@ -14,6 +16,7 @@ import java.net.ConnectException;
 import java.net.Socket;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
@@ -29,14 +32,20 @@ public class TextServerTest {
     //     Number of clients (players) waiting for a match to start = 0, 1, > 1
     //     Number of clients (players) playing in a match = 0, 1, > 1
     //     Includes commands: WATCH, WAIT, WAIT_PLAY, LOGIN, NEW_MATCH, PLAY,
-    //          NEW, LOGOUT, EXIT_WAIT, EXIT_PLAY, TRY, CHALLENGE
+    //          NEW, LOGOUT, EXIT_WAIT, EXIT_PLAY, TRY, CHALLENGE, SUBSCRIBE, UNSUBSCRIBE
+    //     Protocol: text, binary
 
     private static final String LOCALHOST = "127.0.0.1";
     
     private static final int MAX_CONNECTION_ATTEMPTS = 5;
     
-    /* Start server on its own thread. */
-    private static Thread startServer(final TextServer server) {
+    /* A server's serve() loop, such as TextServer::serve or NioTextServer::serve. */
+    interface Serving {
+        void serve() throws IOException;
+    }
+    
+    /* Start a server on its own thread; shared with NioTextServerTest. */
+    static Thread startServer(final Serving server) {
         Thread thread = new Thread(() ->  {
             try {
                 server.serve();
@@ -44,13 +53,13 @@ public class TextServerTest {
                 throw new RuntimeException("serve() threw IOException", ioe);
             }
         });
+        thread.setDaemon(true);
         thread.start();
         return thread;
     }
     
-    /* Connect to server with retries on failure. */
-    private static Socket connectToServer(final Thread serverThread, final TextServer server) throws IOException {
-        final int port = server.port();
+    /* Connect to the server listening on port with retries on failure; shared with NioTextServerTest. */
+    static Socket connectToServer(final Thread serverThread, final int port) throws IOException {
         assertTrue(port > 0, "server.port() returned " + port);
         for (int attempt = 0; attempt < MAX_CONNECTION_ATTEMPTS; attempt++) {
             final int attemptMultiplier = 10;
@@ -85,8 +94,8 @@ public class TextServerTest {
             List<String> commands, List<String> responses) throws IOException, URISyntaxException, UnableToParseException{
         Game game = Game.parseGameFromFiles(directory);
         final TextServer server = new TextServer(game, 0);
-        final Thread thread = startServer(server);
-        final Socket socket = connectToServer(thread, server);
+        final Thread thread = startServer(server::serve);
+        final Socket socket = connectToServer(thread, server.port());
         
         final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
         final PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8), true);
@@ -275,4 +284,77 @@ public class TextServerTest {
         responses.add("V");
         assertValidServerResponse(directory, commands, responses);
     }
+    
+    // This test covers
+    //     Number of connecting clients > 1
+    //     Number of puzzles > 1
+    //     Number of ongoing matches = 0
+    //     Number of matches waiting to start = 0, 1, > 1
+    //     Includes commands: SUBSCRIBE, UNSUBSCRIBE, LOGIN, NEW
+    @Test
+    public void testSubscribeWatchStreamsUntilUnsubscribed() throws IOException, UnableToParseException {
+        final TextServer server = new TextServer(Game.parseGameFromFiles("puzzles/"), 0);
+        final Thread thread = startServer(server::serve);
+        try (
+            Socket watchSocket = connectToServer(thread, server.port());
+            BufferedReader watchIn = new BufferedReader(new InputStreamReader(watchSocket.getInputStream(), UTF_8));
+            PrintWriter watchOut = new PrintWriter(new OutputStreamWriter(watchSocket.getOutputStream(), UTF_8), true);
+            Socket socket = connectToServer(thread, server.port());
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8), true);
+        ) {
+            watchOut.println("player360 SUBSCRIBE WATCH");
+            assertEquals("V", watchIn.readLine(), "expected the current (empty) matches first");
+            watchOut.println("player360 SUBSCRIBE WATCH");
+            assertEquals("IAlready subscribed to WATCH", watchIn.readLine());
+            
+            out.println("player420 LOGIN");
+            assertTrue(in.readLine().startsWith("V"));
+            out.println("player200 LOGIN");
+            assertTrue(in.readLine().startsWith("V"));
+            out.println("player420 NEW 0 Easy \"easy puzzle\"");
+            assertEquals("V", in.readLine());
+            assertEquals("V0 bs1fc easy puzzle", watchIn.readLine());
+            out.println("player200 NEW 1 Cross \"cross puzzle\"");
+            assertEquals("V", in.readLine());
+            assertEquals("V0 bs1fc easy puzzle as3fb 1 bs1fc cross puzzle", watchIn.readLine());
+            
+            watchOut.println("player360 UNSUBSCRIBE WATCH");
+            assertEquals("V" + RequestHandler.UNSUBSCRIBED, watchIn.readLine());
+            watchOut.println("player360 UNSUBSCRIBE WATCH");
+            assertEquals("INot subscribed to WATCH", watchIn.readLine());
+        }
+    }
+    
+    //This test covers:
+    //     Protocol: binary
+    //     Number of connecting clients = 1
+    //     Number of puzzles > 1
+    //     Number of ongoing matches = 0
+    //     Number of matches waiting to start = 0, 1
+    //     Includes commands: LOGIN, NEW, TRY
+    @Test
+    public void testBinaryProtocol() throws IOException, UnableToParseException {
+        final TextServer server = new TextServer(Game.parseGameFromFiles("puzzles/"), 0);
+        final Thread thread = startServer(server::serve);
+        try (
+            Socket socket = connectToServer(thread, server.port());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        ) {
+            out.write(BinaryProtocol.MAGIC);
+            byte[] magic = new byte[BinaryProtocol.MAGIC.length];
+            in.readFully(magic);
+            assertTrue(Arrays.equals(BinaryProtocol.MAGIC, magic), "expected the server to accept the binary protocol");
+            
+            BinaryProtocol.writeRequest(out, "player420 LOGIN");
+            assertEquals("V6031 as3fb Easy as3fb SimpleComments as3fb Cross as3fb Easy1 as3fb Reactions as3fb Metamorphic cs2fd ",
+                    BinaryProtocol.decodeToText(BinaryProtocol.readResponse(in)));
+            BinaryProtocol.writeRequest(out, "player420 NEW 0 Easy \"easy puzzle\"");
+            assertEquals("V", BinaryProtocol.decodeToText(BinaryProtocol.readResponse(in)));
+            BinaryProtocol.writeRequest(out, "player420 TRY 0 0 star");
+            assertEquals(ResponseType.ERROR.code(), BinaryProtocol.readResponse(in).get(),
+                    "expected an error frame for a player not in a match");
+        }
+    }
 }